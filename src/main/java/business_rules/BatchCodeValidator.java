@@ -0,0 +1,316 @@
+package business_rules;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import catalogue.Catalogue;
+import catalogue.CommandLineCatalogue;
+import utilities.EscapeUtil;
+
+/**
+ * Check a list of full codes (one for each line) with the business rules,
+ * without the graphical interface. The codes are checked in chunks by a pool
+ * of workers which share the same read only rules data and catalogue, and the
+ * results (code, semaphore level, warnings) are written in the same order of
+ * the input as csv or as json lines. Only a bounded number of chunks is kept in
+ * memory, therefore files of any size can be checked.
+ * 
+ * The catalogue should have its data already loaded in memory (see
+ * {@link Catalogue#loadData()}). The {@link #main(String[])} method runs the
+ * validation from the command line.
+ * 
+ * @author shahaal
+ *
+ */
+public class BatchCodeValidator {
+
+	private static final Logger LOGGER = LogManager.getLogger(BatchCodeValidator.class);
+
+	/**
+	 * Format of the results
+	 */
+	public enum OutputFormat {
+		CSV, JSONL
+	}
+
+	// number of codes checked together by a worker
+	private static final int CHUNK_SIZE = 500;
+
+	// separator of the warnings in the csv
+	private static final String CSV_WARNINGS_SEPARATOR = " | ";
+
+	private final BatchTermRules rules;
+	private final int threads;
+
+	/**
+	 * Create a validator which uses a worker for each available processor
+	 * 
+	 * @param catalogue
+	 */
+	public BatchCodeValidator(Catalogue catalogue) {
+		this(catalogue, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a validator
+	 * 
+	 * @param catalogue catalogue with the data loaded in memory
+	 * @param threads   number of workers
+	 */
+	public BatchCodeValidator(Catalogue catalogue, int threads) {
+
+		if (threads <= 0)
+			throw new IllegalArgumentException("The number of threads must be positive, found " + threads);
+
+		this.rules = new BatchTermRules(catalogue);
+		this.threads = threads;
+	}
+
+	/**
+	 * Check the codes of a file from the command line. Arguments: the code of the
+	 * catalogue, the input file, the output file (.jsonl for json lines, csv
+	 * otherwise) and optionally the number of threads. Use - as input or output
+	 * to read the codes from the standard input or to write the results as csv
+	 * into the standard output.
+	 * 
+	 * @param args
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	public static void main(String[] args) throws IOException, SQLException {
+
+		if (args.length < 3 || args.length > 4) {
+			System.err.println("Usage: BatchCodeValidator <catalogue code> <input file|-> <output file|-> [threads]");
+			System.exit(1);
+		}
+
+		int threads = args.length == 4 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+		Catalogue catalogue = CommandLineCatalogue.open(args[0]);
+
+		try {
+
+			BatchCodeValidator validator = new BatchCodeValidator(catalogue, threads);
+
+			String input = args[1];
+			String output = args[2];
+
+			if (!input.equals("-") && !output.equals("-")) {
+				validator.validate(new File(input), new File(output));
+				return;
+			}
+
+			OutputFormat format = output.toLowerCase(Locale.ROOT).endsWith(".jsonl") ? OutputFormat.JSONL : OutputFormat.CSV;
+
+			try (Reader reader = input.equals("-") ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+					: new InputStreamReader(new FileInputStream(input), StandardCharsets.UTF_8);
+					Writer writer = output.equals("-") ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+							: new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8);) {
+
+				validator.validate(reader, writer, format);
+			}
+
+		} finally {
+			CommandLineCatalogue.close(catalogue);
+		}
+	}
+
+	/**
+	 * Check the codes contained in the input file and write the results into the
+	 * output file. The results are written as json lines if the output file has
+	 * the .jsonl extension, as csv otherwise.
+	 * 
+	 * @param input
+	 * @param output
+	 * @return the number of checked codes
+	 * @throws IOException
+	 */
+	public long validate(File input, File output) throws IOException {
+
+		OutputFormat format = output.getName().toLowerCase(Locale.ROOT).endsWith(".jsonl") ? OutputFormat.JSONL
+				: OutputFormat.CSV;
+
+		try (Reader reader = new InputStreamReader(new FileInputStream(input), StandardCharsets.UTF_8);
+				Writer writer = new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8);) {
+
+			return validate(reader, writer, format);
+		}
+	}
+
+	/**
+	 * Check the codes read from the input (one code for each line, empty lines are
+	 * skipped) and write the results into the output. The streams are not closed.
+	 * 
+	 * @param input
+	 * @param output
+	 * @param format
+	 * @return the number of checked codes
+	 * @throws IOException
+	 */
+	public long validate(Reader input, Writer output, OutputFormat format) throws IOException {
+
+		long start = System.currentTimeMillis();
+
+		BufferedReader reader = new BufferedReader(input);
+		BufferedWriter writer = new BufferedWriter(output);
+
+		// each worker uses its own rules, since they keep the warnings of the code
+		final ThreadLocal<BatchTermRules> workerRules = ThreadLocal.withInitial(() -> new BatchTermRules(rules));
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+		// chunks submitted and not written yet, in input order
+		ArrayDeque<Future<List<CodeCheckResult>>> pending = new ArrayDeque<>();
+
+		long count = 0;
+
+		try {
+
+			if (format == OutputFormat.CSV)
+				writer.write("code,level,warnings\n");
+
+			ArrayList<String> chunk = new ArrayList<>();
+
+			String line;
+			while ((line = reader.readLine()) != null) {
+
+				String code = line.trim();
+
+				if (code.isEmpty())
+					continue;
+
+				chunk.add(code);
+
+				if (chunk.size() < CHUNK_SIZE)
+					continue;
+
+				pending.add(executor.submit(createTask(chunk, workerRules)));
+				chunk = new ArrayList<>();
+
+				// wait for the oldest chunks to limit the used memory
+				while (pending.size() > threads * 2)
+					count += write(pending.poll().get(), writer, format);
+			}
+
+			if (!chunk.isEmpty())
+				pending.add(executor.submit(createTask(chunk, workerRules)));
+
+			while (!pending.isEmpty())
+				count += write(pending.poll().get(), writer, format);
+
+			writer.flush();
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Validation interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Cannot check the codes", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		LOGGER.info("Checked " + count + " codes in " + (System.currentTimeMillis() - start) + " ms using "
+				+ threads + " threads");
+
+		return count;
+	}
+
+	/**
+	 * Create the task which checks a chunk of codes
+	 * 
+	 * @param codes
+	 * @param workerRules
+	 * @return
+	 */
+	private static Callable<List<CodeCheckResult>> createTask(final List<String> codes,
+			final ThreadLocal<BatchTermRules> workerRules) {
+
+		return new Callable<List<CodeCheckResult>>() {
+			@Override
+			public List<CodeCheckResult> call() {
+
+				BatchTermRules rules = workerRules.get();
+
+				ArrayList<CodeCheckResult> results = new ArrayList<>(codes.size());
+				for (String code : codes)
+					results.add(rules.check(code));
+
+				return results;
+			}
+		};
+	}
+
+	/**
+	 * Write the results of a chunk
+	 * 
+	 * @param results
+	 * @param writer
+	 * @param format
+	 * @return the number of written results
+	 * @throws IOException
+	 */
+	private static int write(List<CodeCheckResult> results, Writer writer, OutputFormat format) throws IOException {
+
+		for (CodeCheckResult result : results) {
+			if (format == OutputFormat.JSONL)
+				writeJson(result, writer);
+			else
+				writeCsv(result, writer);
+		}
+
+		return results.size();
+	}
+
+	private static void writeCsv(CodeCheckResult result, Writer writer) throws IOException {
+
+		writer.write(EscapeUtil.escapeCsv(result.getCode()));
+		writer.write(',');
+		writer.write(result.getLevel().name());
+		writer.write(',');
+		writer.write(EscapeUtil.escapeCsv(String.join(CSV_WARNINGS_SEPARATOR, result.getWarnings())));
+		writer.write('\n');
+	}
+
+	private static void writeJson(CodeCheckResult result, Writer writer) throws IOException {
+
+		StringBuilder sb = new StringBuilder();
+
+		sb.append("{\"code\":").append(EscapeUtil.escapeJson(result.getCode()));
+		sb.append(",\"level\":\"").append(result.getLevel().name()).append('"');
+		sb.append(",\"warnings\":[");
+
+		for (int i = 0; i < result.getWarnings().size(); i++) {
+
+			if (i > 0)
+				sb.append(',');
+
+			sb.append(EscapeUtil.escapeJson(result.getWarnings().get(i)));
+		}
+
+		sb.append("]}\n");
+
+		writer.write(sb.toString());
+	}
+}
@@ -0,0 +1,99 @@
+package business_rules;
+
+import java.util.ArrayList;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import catalogue.Catalogue;
+import utilities.GlobalUtil;
+
+/**
+ * Implementation of the business rules without graphical interface, used to
+ * check full codes in batch. The warnings raised by a code are collected into a
+ * {@link CodeCheckResult} instead of being printed into a table.
+ * 
+ * The forbidden processes, the warning messages and the rules context are read
+ * only, therefore they can be shared by several instances of this class (one
+ * for each thread, since the warnings of the code under check are kept in the
+ * instance).
+ * 
+ * @author shahaal
+ *
+ */
+public class BatchTermRules extends TermRules {
+
+	private static final Logger LOGGER = LogManager.getLogger(BatchTermRules.class);
+
+	// warnings of the code under check
+	private ArrayList<String> warnings;
+
+	// highest semaphore level of the code under check
+	private WarningLevel currentWarningLevel = WarningLevel.NONE;
+
+	/**
+	 * Load the business rules data and build the lookup tables of the catalogue
+	 * 
+	 * @param catalogue catalogue with the data loaded in memory
+	 */
+	public BatchTermRules(Catalogue catalogue) {
+
+		this.currentCat = catalogue;
+		this.forbiddenProcesses = loadForbiddenProcesses(GlobalUtil.getBRData());
+		this.warningMessages = loadWarningMessages(GlobalUtil.getBRMessages());
+		this.context = new RulesContext(catalogue, forbiddenProcesses);
+	}
+
+	/**
+	 * Create new rules which share the read only data of the given rules
+	 * 
+	 * @param rules
+	 */
+	public BatchTermRules(BatchTermRules rules) {
+
+		this.currentCat = rules.currentCat;
+		this.forbiddenProcesses = rules.forbiddenProcesses;
+		this.warningMessages = rules.warningMessages;
+		this.context = rules.context;
+	}
+
+	/**
+	 * Check the full code of a term (e.g. A0DPP#F01.A0FGM$F04.A000J)
+	 * 
+	 * @param fullCode
+	 * @return the warnings raised by the code and the semaphore level
+	 */
+	public CodeCheckResult check(String fullCode) {
+
+		warnings = new ArrayList<>();
+		currentWarningLevel = WarningLevel.NONE;
+
+		try {
+			// the codes are checked as the interpreting and checking tool does
+			performWarningChecks(fullCode, true, true);
+		} catch (Exception e) {
+			// malformed code
+			LOGGER.error("Cannot check the code " + fullCode, e);
+			warnings.add("Malformed code (" + e + ")");
+			currentWarningLevel = WarningLevel.ERROR;
+		}
+
+		return new CodeCheckResult(fullCode, warnings, currentWarningLevel);
+	}
+
+	@Override
+	protected void printWarning(WarningEvent event, String postMessage, boolean dateTime, boolean stdOut) {
+
+		warnings.add(createMessage(event, postMessage, false));
+
+		WarningLevel semaphoreLevel = getSemaphoreLevel(event);
+
+		if (semaphoreLevel.ordinal() >= currentWarningLevel.ordinal())
+			currentWarningLevel = semaphoreLevel;
+	}
+
+	@Override
+	protected boolean highWarningsPresent() {
+		return currentWarningLevel.ordinal() > 1;
+	}
+}
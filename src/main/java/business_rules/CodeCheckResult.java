@@ -0,0 +1,47 @@
+package business_rules;
+
+import java.util.Collections;
+import java.util.List;
+
+import business_rules.TermRules.WarningLevel;
+
+/**
+ * Warnings raised by the business rules for a single full code
+ * 
+ * @author shahaal
+ *
+ */
+public class CodeCheckResult {
+
+	private final String code;
+	private final List<String> warnings;
+	private final WarningLevel level;
+
+	public CodeCheckResult(String code, List<String> warnings, WarningLevel level) {
+		this.code = code;
+		this.warnings = Collections.unmodifiableList(warnings);
+		this.level = level;
+	}
+
+	public String getCode() {
+		return code;
+	}
+
+	/**
+	 * Get the messages of the raised warnings
+	 * 
+	 * @return
+	 */
+	public List<String> getWarnings() {
+		return warnings;
+	}
+
+	/**
+	 * Get the highest semaphore level of the warnings
+	 * 
+	 * @return
+	 */
+	public WarningLevel getLevel() {
+		return level;
+	}
+}
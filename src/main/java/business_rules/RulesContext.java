@@ -0,0 +1,304 @@
+package business_rules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import catalogue.Catalogue;
+import catalogue_object.Attribute;
+import catalogue_object.Hierarchy;
+import catalogue_object.Term;
+
+/**
+ * Lookup tables used by the business rules, built once from the catalogue
+ * loaded in memory and from the forbidden processes. They replace the database
+ * queries and the recursive tree walks which were performed for each checked
+ * code. The ancestors are checked with the children index of the catalogue;
+ * only if the index is not loaded they are memoized here. The tables are read
+ * only and the memoized ancestors are kept in concurrent maps, therefore a
+ * context can be shared by several threads.
+ *
+ * @author shahaal
+ *
+ */
+public class RulesContext {
+
+	// hierarchies used by the rules
+	public static final String PROCESS_HIERARCHY = "process";
+	public static final String REPORT_HIERARCHY = "report";
+	public static final String RACSOURCE_HIERARCHY = "racsource";
+	public static final String EXPO_HIERARCHY = "expo";
+
+	// marks the terms which do not belong to a warn group
+	private static final Term NO_WARN_GROUP = new Term(null);
+
+	private final Catalogue catalogue;
+
+	// upper case code => term
+	private final HashMap<String, Term> terms;
+
+	// code => facet category / hierarchy
+	private final HashMap<String, Attribute> facetCategories;
+	private final HashMap<String, Hierarchy> hierarchies;
+
+	// base term group code => forbidden processes of the group
+	private final HashMap<String, ArrayList<ForbiddenProcess>> forbiddenProcesses;
+
+	// term id => its warn group
+	private final ConcurrentHashMap<Integer, Term> warnGroups;
+
+	// hierarchy code => term id => ids of the term and of its ancestors
+	private final ConcurrentHashMap<String, ConcurrentHashMap<Integer, Set<Integer>>> ancestors;
+
+	/**
+	 * Build the lookup tables of the catalogue
+	 *
+	 * @param catalogue          catalogue with the data loaded in memory
+	 * @param forbiddenProcesses forbidden processes of the business rules data
+	 */
+	public RulesContext(Catalogue catalogue, ArrayList<ForbiddenProcess> forbiddenProcesses) {
+
+		this.catalogue = catalogue;
+		this.terms = new HashMap<>();
+		this.facetCategories = new HashMap<>();
+		this.hierarchies = new HashMap<>();
+		this.forbiddenProcesses = new HashMap<>();
+		this.warnGroups = new ConcurrentHashMap<>();
+		this.ancestors = new ConcurrentHashMap<>();
+
+		for (Term term : catalogue.getTerms())
+			terms.put(term.getCode().toUpperCase(Locale.ROOT), term);
+
+		for (Attribute attr : catalogue.getAttributes())
+			facetCategories.put(attr.getCode(), attr);
+
+		for (Hierarchy hierarchy : catalogue.getHierarchies())
+			hierarchies.put(hierarchy.getCode(), hierarchy);
+
+		if (forbiddenProcesses != null) {
+			for (ForbiddenProcess fp : forbiddenProcesses) {
+
+				ArrayList<ForbiddenProcess> group = this.forbiddenProcesses.get(fp.getGroupCode());
+
+				if (group == null) {
+					group = new ArrayList<>();
+					this.forbiddenProcesses.put(fp.getGroupCode(), group);
+				}
+
+				group.add(fp);
+			}
+		}
+
+		// the ancestors of the process and master hierarchies are used
+		// for each code, therefore they are computed immediately if the
+		// children index cannot be used
+		if (!catalogue.getChildrenIndex().isLoaded()) {
+			precomputeAncestors(getHierarchy(PROCESS_HIERARCHY));
+			precomputeAncestors(catalogue.getMasterHierarchy());
+		}
+	}
+
+	public Catalogue getCatalogue() {
+		return catalogue;
+	}
+
+	/**
+	 * Get a term by its code (case insensitive)
+	 *
+	 * @param code
+	 * @return the term or null if not found
+	 */
+	public Term getTerm(String code) {
+
+		if (code == null)
+			return null;
+
+		return terms.get(code.toUpperCase(Locale.ROOT));
+	}
+
+	/**
+	 * Get a facet category (attribute) by its code
+	 *
+	 * @param code
+	 * @return
+	 */
+	public Attribute getFacetCategory(String code) {
+		return facetCategories.get(code);
+	}
+
+	/**
+	 * Get a hierarchy by its code
+	 *
+	 * @param code
+	 * @return
+	 */
+	public Hierarchy getHierarchy(String code) {
+		return hierarchies.get(code);
+	}
+
+	/**
+	 * Check if the code identifies a group which has forbidden processes
+	 *
+	 * @param groupCode
+	 * @return
+	 */
+	public boolean isWarnGroup(String groupCode) {
+		return forbiddenProcesses.containsKey(groupCode);
+	}
+
+	/**
+	 * Get the first ancestor of the term in the reporting hierarchy (the term
+	 * included) which is a warn group
+	 *
+	 * @param term
+	 * @return the warn group or null if the term does not belong to a warn group
+	 */
+	public Term getWarnGroup(Term term) {
+
+		Term group = warnGroups.get(term.getId());
+
+		if (group == null) {
+
+			group = NO_WARN_GROUP;
+
+			Hierarchy report = getHierarchy(REPORT_HIERARCHY);
+
+			// go up in the tree, parent by parent
+			Term current = term;
+			HashSet<Integer> visited = new HashSet<>();
+			while (current != null && visited.add(current.getId())) {
+
+				if (isWarnGroup(current.getCode())) {
+					group = current;
+					break;
+				}
+
+				current = current.getParent(report);
+			}
+
+			warnGroups.put(term.getId(), group);
+		}
+
+		return group == NO_WARN_GROUP ? null : group;
+	}
+
+	/**
+	 * Get the forbidden processes of the warn group of the term
+	 *
+	 * @param term
+	 * @return the forbidden processes or null if the term does not belong to a
+	 *         warn group
+	 */
+	public ArrayList<ForbiddenProcess> getForbiddenProcesses(Term term) {
+
+		Term group = getWarnGroup(term);
+
+		if (group == null)
+			return null;
+
+		return forbiddenProcesses.get(group.getCode());
+	}
+
+	/**
+	 * Check if the term has as ancestor the 'ancestor' term on the selected
+	 * hierarchy (a term is ancestor of itself), as
+	 * {@link Term#hasAncestor(Term, Hierarchy)}
+	 *
+	 * @param term
+	 * @param ancestor
+	 * @param hierarchy
+	 * @return
+	 */
+	public boolean hasAncestor(Term term, Term ancestor, Hierarchy hierarchy) {
+
+		if (term == null || ancestor == null)
+			return false;
+
+		if (term.equals(ancestor))
+			return true;
+
+		if (hierarchy == null)
+			return false;
+
+		// use the pre-order numbering of the hierarchy if available
+		if (catalogue.getChildrenIndex().isLoaded())
+			return catalogue.getChildrenIndex().hasAncestor(term, ancestor, hierarchy);
+
+		return getAncestors(term, hierarchy).contains(ancestor.getId());
+	}
+
+	/**
+	 * Compute the ancestors of all the terms of the hierarchy
+	 *
+	 * @param hierarchy
+	 */
+	private void precomputeAncestors(Hierarchy hierarchy) {
+
+		if (hierarchy == null)
+			return;
+
+		for (Term term : catalogue.getTerms()) {
+			if (term.belongsToHierarchy(hierarchy))
+				getAncestors(term, hierarchy);
+		}
+	}
+
+	/**
+	 * Get the ids of the term and of its ancestors in the hierarchy. The sets are
+	 * memoized for all the terms of the path to the root.
+	 *
+	 * @param term
+	 * @param hierarchy
+	 * @return
+	 */
+	private Set<Integer> getAncestors(Term term, Hierarchy hierarchy) {
+
+		Map<Integer, Set<Integer>> memo = ancestors.get(hierarchy.getCode());
+
+		if (memo == null) {
+			ancestors.putIfAbsent(hierarchy.getCode(), new ConcurrentHashMap<Integer, Set<Integer>>());
+			memo = ancestors.get(hierarchy.getCode());
+		}
+
+		Set<Integer> set = memo.get(term.getId());
+
+		if (set != null)
+			return set;
+
+		// go up until the root or a term with known ancestors
+		ArrayList<Term> path = new ArrayList<>();
+		Set<Integer> base = Collections.emptySet();
+		HashSet<Integer> visited = new HashSet<>();
+
+		Term current = term;
+		while (current != null && visited.add(current.getId())) {
+
+			Set<Integer> known = memo.get(current.getId());
+
+			if (known != null) {
+				base = known;
+				break;
+			}
+
+			path.add(current);
+			current = current.getParent(hierarchy);
+		}
+
+		// go down from the top of the path adding the terms
+		for (int i = path.size() - 1; i >= 0; i--) {
+
+			HashSet<Integer> ids = new HashSet<>(base);
+			ids.add(path.get(i).getId());
+
+			base = Collections.unmodifiableSet(ids);
+			memo.put(path.get(i).getId(), base);
+		}
+
+		return base;
+	}
+}
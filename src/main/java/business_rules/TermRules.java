@@ -9,15 +9,14 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.StringTokenizer;
-import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import catalogue.Catalogue;
-import catalogue_browser_dao.TermDAO;
 import catalogue_object.Attribute;
 import catalogue_object.Hierarchy;
 import catalogue_object.Term;
@@ -39,6 +38,9 @@ public abstract class TermRules {
 
 	protected Catalogue currentCat;
 
+	// lookup tables of the current catalogue
+	protected RulesContext context;
+
 	// list of all the processes which may cause a warning
 	protected ArrayList<ForbiddenProcess> forbiddenProcesses;
 
@@ -69,7 +71,7 @@ public abstract class TermRules {
 	 * @author shahaal
 	 *
 	 */
-	protected enum WarningLevel {
+	public enum WarningLevel {
 		NONE, LOW, HIGH, ERROR
 	}
 	
@@ -92,12 +94,12 @@ public abstract class TermRules {
 
 		ArrayList<FacetDescriptor> implicitFacets = bt.getFacets(true);
 
-		TermDAO termDao = new TermDAO(currentCat);
+		RulesContext ctx = getContext();
 		ArrayList<Term> implicitTerms = new ArrayList<>();
 		
 		// add implicit facets of the term
 		for (FacetDescriptor fd : implicitFacets)
-			implicitTerms.add(termDao.getByCode(fd.getFacetCode()));
+			implicitTerms.add(ctx.getTerm(fd.getFacetCode()));
 
 		// populate the explicit facets
 		ArrayList<FacetDescriptor> explicitFacets = new ArrayList<>();
@@ -115,7 +117,7 @@ public abstract class TermRules {
 			// split the facet in facet header and facet code
 			String[] split = splitFacetFullCode(code);
 
-			Term term = termDao.getByCode(split[1]);
+			Term term = ctx.getTerm(split[1]);
 
 			FacetDescriptor fd = new FacetDescriptor(term, new TermAttribute(term, null, code), FacetType.EXPLICIT);
 
@@ -126,7 +128,7 @@ public abstract class TermRules {
 		StringBuilder sb = new StringBuilder();
 
 		// get the racsource hierarchy
-		Hierarchy hierarchy = currentCat.getHierarchyByCode("racsource");
+		Hierarchy hierarchy = ctx.getHierarchy(RulesContext.RACSOURCE_HIERARCHY);
 
 		// restrict if explicit is child of an implicit
 		for (FacetDescriptor fd : explicitFacets) {
@@ -134,13 +136,13 @@ public abstract class TermRules {
 			boolean isSpecification = false;
 			
 			for (Term implicit : implicitTerms) {
-				if (fd.getDescriptor().hasAncestor(implicit, hierarchy)) {
+				if (ctx.hasAncestor(fd.getDescriptor(), implicit, hierarchy)) {
 					isSpecification = true;
 					break;
 				}
 			}
 			// check if the explicit facet is specification of the bt
-			isSpecification = isSpecification || fd.getDescriptor().hasAncestor(bt, hierarchy);
+			isSpecification = isSpecification || ctx.hasAncestor(fd.getDescriptor(), bt, hierarchy);
 			// count the number of source commodities facets
 			if (isSourceCommodityFacet(fd.getFacetHeader()) && !isSpecification  ) {
 				sourceCommodityFacetCount += 1;
@@ -217,12 +219,12 @@ public abstract class TermRules {
 		// string builder for generating the diagnostic string
 		StringBuilder sb = new StringBuilder();
 
-		TermDAO termDao = new TermDAO(currentCat);
+		RulesContext ctx = getContext();
 
 		// check implicit facets
 		for (FacetDescriptor fd : implicitFacets) {
 
-			implicitTerms.add(termDao.getByCode(fd.getFacetCode()));
+			implicitTerms.add(ctx.getTerm(fd.getFacetCode()));
 
 			String header = fd.getFacetHeader();
 
@@ -250,21 +252,22 @@ public abstract class TermRules {
 			// split the facet in facet header and facet code
 			String[] split = splitFacetFullCode(code);
 
-			Term term = termDao.getByCode(split[1]);
+			Term term = ctx.getTerm(split[1]);
 
 			FacetDescriptor fd = new FacetDescriptor(term, new TermAttribute(term, null, code), FacetType.EXPLICIT);
 
 			explicitFacets.add(fd);
 		}
 
+		Hierarchy hierarchy = ctx.getHierarchy(RulesContext.RACSOURCE_HIERARCHY);
+
 		// count for explicit facets
 		for (FacetDescriptor fd : explicitFacets) {
 
 			boolean skip = false;
 
-			Hierarchy hierarchy = currentCat.getHierarchyByCode("racsource");
 			for (Term implicit : implicitTerms) {
-				if (fd.getDescriptor().hasAncestor(implicit, hierarchy)) {
+				if (ctx.hasAncestor(fd.getDescriptor(), implicit, hierarchy)) {
 					skip = true;
 					break;
 				}
@@ -400,7 +403,7 @@ public abstract class TermRules {
 				// if the explicit facet is more detailed than the implicit don't print the warning
 				if (facetCategory != null) {
 					for (DescriptorTreeItem dti : bt.getInheritedImplicitFacets(facetCategory)) {
-						if (facet.hasAncestor(dti.getTerm(), facetCategory.getHierarchy()))
+						if (getContext().hasAncestor(facet, dti.getTerm(), facetCategory.getHierarchy()))
 							return;
 					}
 				}
@@ -448,13 +451,13 @@ public abstract class TermRules {
 			if (!fcCat.getCode().equals(facetIndex))
 				continue;
 			// get the implicit term info
-			Term implTerm = currentCat.getTermByCode(fd.getFacetCode());
+			Term implTerm = getContext().getTerm(fd.getFacetCode());
 			// get category hierarchy
 			Hierarchy h = fcCat.getHierarchy();
 			// two terms are siblings if have same parent
 			boolean areSiblings = (fc.getParent(h)==implTerm.getParent(h));
 			// if the explicit has not ancestor the implicit and they are not siblings
-			if (implTerm.hasAncestor(fc, h)&&!areSiblings) {
+			if (getContext().hasAncestor(implTerm, fc, h)&&!areSiblings) {
 				printWarning(WarningEvent.BR16, fc.getCode(), false, stdOut);
 				break;
 			}
@@ -496,14 +499,18 @@ public abstract class TermRules {
 			return;
 
 		// get the forbidden processes of the base term
-		ArrayList<ForbiddenProcess> fps = getForbiddenProcesses(bt, forbiddenProcesses, stdOut);
+		ArrayList<ForbiddenProcess> fps = getContext().getForbiddenProcesses(bt);
 
-		// get all the codes for the forbidden processes
-		ArrayList<String> currentFPCodes = fps.stream().map(fp -> fp.getCode()).collect(Collectors.toCollection(ArrayList::new));
+		if (fps == null)
+			return;
 
 		// print warning if explicit facet is forbidden
-		if (currentFPCodes != null && currentFPCodes.contains(fcCode))
-			printWarning(WarningEvent.BR19, fcCode, false, stdOut);
+		for (ForbiddenProcess fp : fps) {
+			if (fp.getCode().equals(fcCode)) {
+				printWarning(WarningEvent.BR19, fcCode, false, stdOut);
+				break;
+			}
+		}
 
 	}
 
@@ -545,7 +552,7 @@ public abstract class TermRules {
 		// if the base term is a hierarchy
 		if (bt.getDetailLevel().isHierarchyDetailLevel()) {
 			// get the exposure hierarchy
-			Hierarchy expHierarchy = currentCat.getHierarchyByCode("expo");
+			Hierarchy expHierarchy = getContext().getHierarchy(RulesContext.EXPO_HIERARCHY);
 			if (bt.belongsToHierarchy(expHierarchy)) {
 				// print the message related to the hierarchy as base term
 				printWarning(WarningEvent.BR23, bt.getCode(), false, stdOut);
@@ -1360,20 +1367,23 @@ public abstract class TermRules {
 	 */
 	private Term getWarnGroup(Term bt, boolean stdOut) {
 
-		// start to go up in the tree, parent by parent
-		while (bt != null) {
+		// go up in the reporting hierarchy, parent by parent
+		// (the warn groups are memoized by the context)
+		return getContext().getWarnGroup(bt);
+	}
 
-			// if the parent is a warn group => break cycle and return the warn group
-			if (isWarnGroup(bt.getCode(), forbiddenProcesses))
-				return (bt);
+	/**
+	 * Get the lookup tables of the current catalogue. They are built at the
+	 * first use and each time the current catalogue changes.
+	 * 
+	 * @return
+	 */
+	protected RulesContext getContext() {
 
-			// get the parent of the current term and continue the loop, we use the
-			// reporting hierarchy for warnings
-			bt = bt.getParent(currentCat.getHierarchyByCode("report"));
-		}
+		if (context == null || context.getCatalogue() != currentCat)
+			context = new RulesContext(currentCat, forbiddenProcesses);
 
-		// if no warn group is discovered, then return null
-		return null;
+		return context;
 	}
 
 	/**
@@ -1472,9 +1482,9 @@ public abstract class TermRules {
 		// get the base term code (the first part of the full code)
 		String baseTermCode = splits[0];
 
-		TermDAO termDao = new TermDAO(currentCat);
+		RulesContext ctx = getContext();
 
-		Term baseTerm = termDao.getByCode(baseTermCode);
+		Term baseTerm = ctx.getTerm(baseTermCode);
 
 		// if the base term is not in the database
 		if (baseTerm == null) {
@@ -1530,6 +1540,17 @@ public abstract class TermRules {
 		// implicit facets of the base term
 		ArrayList<ForbiddenProcess> implicit = getImplicitForbiddenProcesses(baseTerm, forbiddenProcesses, stdOut);
 
+		// forbidden processes related to the base term by code (NOT ord code!)
+		// (defined in the BR_Data.csv or BR_exceptions.csv)
+		HashMap<String, ForbiddenProcess> currentFP = new HashMap<>();
+
+		if (warnGroup) {
+			for (ForbiddenProcess proc : ctx.getForbiddenProcesses(baseTerm))
+				currentFP.putIfAbsent(proc.getCode(), proc);
+		}
+
+		Hierarchy processHierarchy = ctx.getHierarchy(RulesContext.PROCESS_HIERARCHY);
+
 		// tokenise the rest of the full code to get all the facets codes separately
 		StringTokenizer st = new StringTokenizer(fullFacetsCodes, "$");
 
@@ -1550,7 +1571,7 @@ public abstract class TermRules {
 			String facetCode = facetComponents[1];
 
 			// get the facet by code
-			Term facet = termDao.getByCode(facetCode);
+			Term facet = ctx.getTerm(facetCode);
 
 			// if the facet is not present into the database return (for excel macro)
 			if (facet == null) {
@@ -1561,7 +1582,7 @@ public abstract class TermRules {
 			// only if running from ict check if facet belongs to facet category
 			if (fromICT) {
 				// get the facet category
-				Attribute facetCategory = currentCat.getAttributeByCode(facetIndex);
+				Attribute facetCategory = ctx.getFacetCategory(facetIndex);
 				if (facetCategory == null) {
 					// if the facet category does not exists
 					printWarning(WarningEvent.BR30, facetIndex, false, stdOut);
@@ -1605,21 +1626,11 @@ public abstract class TermRules {
 			// if it is indeed a warn group
 			if (warnGroup) {
 
-				// get all the forbidden processes related to the base term
-				// (defined in the BR_Data.csv or BR_exceptions.csv)
-				ArrayList<ForbiddenProcess> currentFP = getForbiddenProcesses(baseTerm, forbiddenProcesses, stdOut);
-
-				// get the forbidden processes codes (NOT ord code!) related to the base term
-				ArrayList<String> currentFPCodes = new ArrayList<>();
-
-				for (ForbiddenProcess proc : currentFP)
-					currentFPCodes.add(proc.getCode());
+				// get the forbidden process of the process just added, if any
+				ForbiddenProcess addedFP = currentFP.get(facetCode);
 
 				// if the process just added is present into the current forbidden processes
-				if (currentFPCodes.contains(facetCode)) {
-
-					// get the position in the array list
-					int index = currentFPCodes.indexOf(facetCode);
+				if (addedFP != null) {
 
 					boolean isAncestor = false;
 
@@ -1627,15 +1638,15 @@ public abstract class TermRules {
 					for (ForbiddenProcess proc : implicit) {
 
 						// get the facet terms related to the forbidden processes codes
-						Term ancestor = termDao.getByCode(proc.getCode());
-						Term descendant = termDao.getByCode(currentFP.get(index).getCode());
+						Term ancestor = ctx.getTerm(proc.getCode());
+						Term descendant = ctx.getTerm(addedFP.getCode());
 
 						// if the added process is a son of one of the implicit process
 						// add it but remove the implicit, in order to ignore it
-						if (descendant.hasAncestor(ancestor, currentCat.getHierarchyByCode("process"))) {
+						if (ctx.hasAncestor(descendant, ancestor, processHierarchy)) {
 							isAncestor = true;
 							// add since we want to check only the forbidden processes mutually exclusivity
-							explicit.add(currentFP.get(index));
+							explicit.add(addedFP);
 							// remove the implicit
 							implicit.remove(proc);
 							break;
@@ -1644,7 +1655,7 @@ public abstract class TermRules {
 
 					// if no relation => add the process without taking care of implicit processes
 					if (!isAncestor)
-						explicit.add(currentFP.get(index));
+						explicit.add(addedFP);
 				}
 			}
 		}
@@ -72,6 +72,9 @@ public class WarningUtil extends TermRules {
 		forbiddenProcesses = loadForbiddenProcesses(GlobalUtil.getBRData());
 		warnOptions = loadWarningOptions(GlobalUtil.getBRColors());
 		warningMessages = loadWarningMessages(GlobalUtil.getBRMessages());
+
+		// build the lookup tables once, they are used at each check
+		context = new RulesContext(currentCat, forbiddenProcesses);
 	}
 
 	/**
@@ -9,7 +9,6 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.StringTokenizer;
 import javax.xml.soap.SOAPException;
 
@@ -17,6 +16,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import catalogue_browser_dao.AttributeDAO;
 import catalogue_browser_dao.CatalogueDAO;
+import catalogue_browser_dao.ConnectionPool;
 import catalogue_browser_dao.DatabaseManager;
 import catalogue_browser_dao.HierarchyDAO;
 import catalogue_browser_dao.ParentTermDAO;
@@ -93,13 +93,21 @@ public class Catalogue extends BaseObject implements Comparable<Catalogue>, Mapp
 
 	private boolean local; // if the catalogue is a new local catalogue or not
 
-	// list of terms which are contained in the catalogue
-	private HashMap<Integer, Term> terms;
+	// terms which are contained in the catalogue
+	// (indexed by id and by code)
+	private TermStore terms;
 
-	// cache for term ids to speed up finding
-	// terms ids using term code without
-	// iterating the entire collection of terms
-	private HashMap<String, Integer> termsIds;
+	// parent/child relationships of the terms
+	// for each hierarchy, built with the applicabilities
+	private TermChildrenIndex childrenIndex = new TermChildrenIndex();
+
+	// words of the terms names, codes and attributes
+	// used by the search, built with the term attributes
+	private TermSearchIndex searchIndex = new TermSearchIndex();
+
+	// inherited implicit facets of the terms, invalidated
+	// when the facets or the tree change
+	private ImplicitFacetsCache facetsCache = new ImplicitFacetsCache(childrenIndex);
 
 	// list of the hierarchies contained in the
 	// catalogue (both base and attribute hierarchies)
@@ -195,13 +203,12 @@ public class Catalogue extends BaseObject implements Comparable<Catalogue>, Mapp
 		this.releaseNotes = releaseNotes;
 
 		// initialize memory for data
-		terms = new HashMap<>();
+		terms = new TermStore();
 		hierarchies = new ArrayList<>();
 		attributes = new ArrayList<>();
 		facetCategories = new ArrayList<>();
 		detailLevels = new ArrayList<>();
 		termTypes = new ArrayList<>();
-		termsIds = new HashMap<>();
 	}
 
 	/**
@@ -239,66 +246,15 @@ public class Catalogue extends BaseObject implements Comparable<Catalogue>, Mapp
 	 */
 	public void loadData() {
 
-		// thread to load small data
-		Thread baseThread = new Thread(new Runnable() {
-			@Override
-			public void run() {
-				refreshHierarchies();
-				refreshAttributes();
-				refreshTermTypes();
-				refreshDetailLevels();
-				refreshReleaseNotes();
-			}
-		});
-
-		// Thread to load terms
-		Thread termThread = new Thread(new Runnable() {
-			@Override
-			public void run() {
-				refreshTerms();
-			}
-		});
-
-		// load terms and base information
-		baseThread.start();
-		termThread.start();
-
-		// wait to finish, since the applicabilities
-		// and term attributes need the terms in the
-		// RAM memory
-		try {
-			baseThread.join();
-			termThread.join();
-		} catch (InterruptedException e1) {
-			e1.printStackTrace();
-		}
-
-		// refresh applicabilities and term attributes in parallel
-		Thread applThread = new Thread(new Runnable() {
-			@Override
-			public void run() {
-				refreshApplicabities();
-			}
-		});
-
-		Thread taThread = new Thread(new Runnable() {
-			@Override
-			public void run() {
-				refreshTermAttributes();
-			}
-		});
+		// add the indexes and columns missing in old databases
+		DatabaseManager.updateCatalogueSchema(this);
 
-		applThread.start();
-		taThread.start();
+		// read the tables in parallel and link the terms
+		new CatalogueLoader(this).load();
 
-		// wait to finish
-		try {
-			taThread.join();
-			applThread.join();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-			LOGGER.error("Refresh failed for catalogue=" + this, e);
-		}
+		// release the unused capacity of the terms lists
+		for (Term term : terms.values())
+			term.trimToSize();
 	}
 
 	/**
@@ -311,6 +267,9 @@ public class Catalogue extends BaseObject implements Comparable<Catalogue>, Mapp
 		attributes.clear();
 		facetCategories.clear();
 
+		// cleared before the terms, which would invalidate it one by one
+		facetsCache.clear();
+
 		if (terms != null) {
 			for (Term term : terms.values()) {
 				term.clear();
@@ -321,7 +280,8 @@ public class Catalogue extends BaseObject implements Comparable<Catalogue>, Mapp
 
 		detailLevels.clear();
 		termTypes.clear();
-		termsIds.clear();
+		childrenIndex.clear();
+		searchIndex.clear();
 
 		if (releaseNotes != null)
 			releaseNotes.clear();
@@ -394,6 +354,9 @@ public class Catalogue extends BaseObject implements Comparable<Catalogue>, Mapp
 	 */
 	public void closeConnection() {
 
+		// close the pooled connections before stopping the db
+		ConnectionPool.shutdown(getDbUrl());
+
 		// shutdown the connection, by default this operation throws an exception
 		// but the command is correct! We close the connection since we close the db
 		try {
@@ -683,7 +646,8 @@ public class Catalogue extends BaseObject implements Comparable<Catalogue>, Mapp
 	 * @param term
 	 */
 	public void addTerm(Term term) {
-		terms.put(term.getId(), term);
+		terms.put(term);
+		searchIndex.update(term);
 	}
 
 	/**
@@ -702,15 +666,17 @@ public class Catalogue extends BaseObject implements Comparable<Catalogue>, Mapp
 
 		TermDAO termDao = new TermDAO(this);
 
-		// initialise the terms
-		terms = termDao.fetchTerms();
-
-		termsIds = new HashMap<>();
+		// initialise the terms (indexed also by code)
+		setTerms(termDao.fetchTerms());
+	}
 
-		// update cache of ids
-		for (Term term : terms.values()) {
-			termsIds.put(term.getCode(), term.getId());
-		}
+	/**
+	 * Set the terms of the catalogue
+	 * 
+	 * @param terms
+	 */
+	void setTerms(TermStore terms) {
+		this.terms = terms;
 	}
 
 	/**
@@ -726,11 +692,54 @@ public class Catalogue extends BaseObject implements Comparable<Catalogue>, Mapp
 
 		ParentTermDAO parentDao = new ParentTermDAO(this);
 
+		setApplicabilities(parentDao.getAll());
+	}
+
+	/**
+	 * Add the applicabilities to their child terms, which should not have
+	 * applicabilities yet
+	 * 
+	 * @param appls
+	 */
+	void setApplicabilities(Collection<Applicability> appls) {
+
 		// add applicabilities
-		for (Applicability appl : parentDao.getAll()) {
+		for (Applicability appl : appls) {
 			Term term = appl.getChild();
 			term.addApplicability(appl);
 		}
+
+		// build the children index with the same applicabilities
+		childrenIndex.build(appls);
+	}
+
+	/**
+	 * Get the in memory index of the parent/child relationships of the catalogue
+	 * terms. It is available only after {@link #refreshApplicabities()}
+	 * 
+	 * @return
+	 */
+	public TermChildrenIndex getChildrenIndex() {
+		return childrenIndex;
+	}
+
+	/**
+	 * Get the in memory index of the words used by the search. It is available
+	 * only after {@link #refreshTermAttributes()}
+	 * 
+	 * @return
+	 */
+	public TermSearchIndex getSearchIndex() {
+		return searchIndex;
+	}
+
+	/**
+	 * Get the memo of the inherited implicit facets of the terms
+	 * 
+	 * @return
+	 */
+	public ImplicitFacetsCache getImplicitFacetsCache() {
+		return facetsCache;
 	}
 
 	/**
@@ -748,11 +757,25 @@ public class Catalogue extends BaseObject implements Comparable<Catalogue>, Mapp
 		// load the attributes values for the terms
 		TermAttributeDAO taDao = new TermAttributeDAO(this);
 
+		setTermAttributes(taDao.getAll());
+	}
+
+	/**
+	 * Add the term attributes to their terms, which should not have attributes
+	 * yet
+	 * 
+	 * @param tas
+	 */
+	void setTermAttributes(Collection<TermAttribute> tas) {
+
 		// set the term attributes to the terms
-		for (TermAttribute ta : taDao.getAll()) {
+		for (TermAttribute ta : tas) {
 			Term term = ta.getTerm();
 			term.addAttribute(ta);
 		}
+
+		// index names, codes and attributes for the search
+		searchIndex.build(terms.values());
 	}
 
 	/**
@@ -1096,11 +1119,8 @@ public class Catalogue extends BaseObject implements Comparable<Catalogue>, Mapp
 		if (parent instanceof Term)
 			termDao.update((Term) parent);
 
-		// add the term to the hashmap
-		terms.put(id, child);
-
-		// update also the ids cache
-		termsIds.put(code, id);
+		// add the term to the store
+		terms.put(child);
 
 		return child;
 	}
@@ -1153,11 +1173,8 @@ public class Catalogue extends BaseObject implements Comparable<Catalogue>, Mapp
 		if (parent instanceof Term)
 			termDao.update((Term) parent);
 
-		// add the term to the hashmap
-		terms.put(id, child);
-
-		// update also the ids cache
-		termsIds.put(code, id);
+		// add the term to the store
+		terms.put(child);
 
 		return child;
 	}
@@ -1169,7 +1186,7 @@ public class Catalogue extends BaseObject implements Comparable<Catalogue>, Mapp
 	 */
 	public Term getTermById(Integer id) {
 
-		Term term = terms.get(id);
+		Term term = id == null ? null : terms.get(id);
 
 		if (term == null) {
 			LOGGER.error("Term with id " + id + " not found in catalogue " + this);
@@ -1180,6 +1197,16 @@ public class Catalogue extends BaseObject implements Comparable<Catalogue>, Mapp
 		return term;
 	}
 
+	/**
+	 * Check if the term object is the one stored in the catalogue (and not a copy)
+	 * 
+	 * @param term
+	 * @return
+	 */
+	public boolean containsTerm(Term term) {
+		return terms != null && terms.get(term.getId()) == term;
+	}
+
 	/**
 	 * Get a term by its code
 	 * 
@@ -1188,11 +1215,14 @@ public class Catalogue extends BaseObject implements Comparable<Catalogue>, Mapp
 	 */
 	public Term getTermByCode(String code) {
 
-		// get the term id from the cache
-		int id = termsIds.get(code);
+		// get the term from the codes index
+		Term term = terms.getByCode(code);
 
-		// get the term by its id
-		return getTermById(id);
+		if (term == null) {
+			LOGGER.error("Term with code " + code + " not found in catalogue " + this);
+		}
+
+		return term;
 	}
 
 	/**
@@ -2102,11 +2132,64 @@ public class Catalogue extends BaseObject implements Comparable<Catalogue>, Mapp
 	 */
 	public void makeXmlImport(final File file, IProgressBar progressBar, double maxProgress,
 			final ThreadFinishedListener doneListener) {
+		makeXmlImport(file, null, progressBar, maxProgress, doneListener);
+	}
+
+	/**
+	 * Import a catalogue in .xml format applying only its differences to a copy
+	 * of the previous version, if possible
+	 * 
+	 * @param file
+	 * @param previousVersion the previous version already downloaded, can be null
+	 * @param progressBar
+	 * @param doneListener
+	 */
+	public void makeXmlImport(final File file, Catalogue previousVersion, IProgressBar progressBar,
+			double maxProgress, final ThreadFinishedListener doneListener) {
 
 		LOGGER.info("make Xml Import");
-		
+
+		createXmlImport(file, previousVersion, progressBar, maxProgress, doneListener).start();
+	}
+
+	/**
+	 * Import a catalogue in .xml format in the calling thread, applying only its
+	 * differences to a copy of the previous version, if possible
+	 * 
+	 * @param file
+	 * @param previousVersion the previous version already downloaded, can be null
+	 * @param progressBar
+	 * @param doneListener    called at the end of the import
+	 */
+	public void importXml(final File file, Catalogue previousVersion, IProgressBar progressBar, double maxProgress,
+			final ThreadFinishedListener doneListener) {
+
+		LOGGER.info("Xml Import");
+
+		createXmlImport(file, previousVersion, progressBar, maxProgress, doneListener).runImport();
+	}
+
+	/**
+	 * Prepare the import of a catalogue in .xml format. The downloaded file is
+	 * deleted at the end of the import.
+	 * 
+	 * @param file
+	 * @param previousVersion
+	 * @param progressBar
+	 * @param maxProgress
+	 * @param doneListener
+	 * @return
+	 */
+	private CatalogueImporterThread createXmlImport(final File file, Catalogue previousVersion,
+			IProgressBar progressBar, double maxProgress, final ThreadFinishedListener doneListener) {
+
 		CatalogueImporterThread importCat = new CatalogueImporterThread(file, ImportFileFormat.XML);
 
+		if (previousVersion != null) {
+			LOGGER.info("Applying the changes of " + this + " to " + previousVersion);
+			importCat.setPreviousVersion(previousVersion);
+		}
+
 		if (progressBar != null)
 			importCat.setProgressBar(progressBar, maxProgress);
 
@@ -2125,11 +2208,11 @@ public class Catalogue extends BaseObject implements Comparable<Catalogue>, Mapp
 				}
 
 				if (doneListener != null)
-					doneListener.finished(thread, code, null);
+					doneListener.finished(thread, code, exception);
 			}
 		});
 
-		importCat.start();
+		return importCat;
 	}
 
 	/**
@@ -2154,12 +2237,36 @@ public class Catalogue extends BaseObject implements Comparable<Catalogue>, Mapp
 			return false;
 		}
 
-		// import the catalogue
-		makeXmlImport(catalogueXml, progressBar, maxProgress, doneListener);
+		// import the catalogue, starting from the previous version if present
+		makeXmlImport(catalogueXml, getPreviousLocalVersion(), progressBar, maxProgress, doneListener);
 
 		return true;
 	}
 
+	/**
+	 * Get the most recent local version of the catalogue which is older than this
+	 * version
+	 * 
+	 * @return the previous version or null if not downloaded
+	 */
+	public Catalogue getPreviousLocalVersion() {
+
+		Catalogue previous = null;
+
+		CatalogueDAO catDao = new CatalogueDAO();
+
+		for (Catalogue cat : catDao.getMyCatalogues(catalogueType)) {
+
+			if (!cat.getCode().equals(getCode()) || cat.getVersion().equals(getVersion()) || !cat.isOlder(this))
+				continue;
+
+			if (previous == null || previous.isOlder(cat))
+				previous = cat;
+		}
+
+		return previous;
+	}
+
 	/**
 	 * Check if the contents of the catalogue are correct and follows the catalogue
 	 * rules
@@ -2208,7 +2315,7 @@ public class Catalogue extends BaseObject implements Comparable<Catalogue>, Mapp
 	 */
 	public Connection getConnection() throws SQLException {
 
-		Connection con = DriverManager.getConnection(getDbUrl());
+		Connection con = ConnectionPool.getPool(getDbUrl()).getConnection();
 		return con;
 	}
 
@@ -0,0 +1,183 @@
+package catalogue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import catalogue_browser_dao.ParentTermDAO;
+import catalogue_browser_dao.TermAttributeDAO;
+import catalogue_browser_dao.TermAttributeDAO.UnlinkedTermAttributes;
+import catalogue_browser_dao.TermDAO;
+
+/**
+ * Load the data of a catalogue into memory. The tables are read in parallel on
+ * a pool of threads shared by all the catalogues: the small tables
+ * (hierarchies, attributes, term types, detail levels and release notes), the
+ * terms, the parent terms and the term attributes. The parent terms and the
+ * term attributes are read without their terms and they are linked to the
+ * terms once these are loaded, therefore the terms do not need to be cleared
+ * before. If the catalogue has a valid {@link CatalogueSnapshot}, the terms and
+ * their relations are read from it instead, otherwise the snapshot is written
+ * after the load. The time spent in each phase is logged.
+ * 
+ * @author shahaal
+ *
+ */
+class CatalogueLoader {
+
+	private static final Logger LOGGER = LogManager.getLogger(CatalogueLoader.class);
+
+	// threads shared by all the loads, they do not prevent the application from
+	// being closed
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "catalogue-loader-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private final Catalogue catalogue;
+
+	// phase => elapsed milliseconds
+	private final Map<String, Long> timings;
+
+	/**
+	 * Create a loader for the catalogue
+	 * 
+	 * @param catalogue
+	 */
+	CatalogueLoader(Catalogue catalogue) {
+		this.catalogue = catalogue;
+		this.timings = Collections.synchronizedMap(new LinkedHashMap<String, Long>());
+	}
+
+	/**
+	 * Load all the data of the catalogue
+	 */
+	void load() {
+
+		long start = System.currentTimeMillis();
+
+		Future<?> base = EXECUTOR.submit(timed("base data", () -> {
+			catalogue.refreshHierarchies();
+			catalogue.refreshAttributes();
+			catalogue.refreshTermTypes();
+			catalogue.refreshDetailLevels();
+			catalogue.refreshReleaseNotes();
+			return null;
+		}));
+
+		CatalogueSnapshot snapshot = new CatalogueSnapshot(catalogue);
+
+		try {
+
+			boolean loaded = false;
+
+			// the snapshot needs the hierarchies and the attributes
+			if (CatalogueSnapshot.isEnabled() && snapshot.exists()) {
+				base.get();
+				loaded = timed("snapshot reading", snapshot::read).call();
+			}
+
+			if (!loaded && loadFromDatabase(base) && CatalogueSnapshot.isEnabled())
+				timed("snapshot writing", snapshot::write).call();
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOGGER.error("Refresh failed for catalogue=" + catalogue, e);
+			e.printStackTrace();
+		} catch (Exception e) {
+			LOGGER.error("Refresh failed for catalogue=" + catalogue, e);
+			e.printStackTrace();
+		}
+
+		LOGGER.info("Catalogue " + catalogue.getCode() + " loaded in " + (System.currentTimeMillis() - start)
+				+ " ms, phases (ms): " + timings);
+	}
+
+	/**
+	 * Read the terms and their relations from the database
+	 * 
+	 * @param base the task which loads the small tables
+	 * @return true if the terms were loaded
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	private boolean loadFromDatabase(final Future<?> base) throws InterruptedException, ExecutionException {
+
+		Future<TermStore> terms = EXECUTOR.submit(timed("terms", () -> new TermDAO(catalogue).fetchTerms()));
+
+		Future<ArrayList<int[]>> parents = EXECUTOR
+				.submit(timed("parent terms", () -> new ParentTermDAO(catalogue).getAllRows()));
+
+		// the term attributes use the attributes of the catalogue
+		Future<UnlinkedTermAttributes> termAttrs = EXECUTOR.submit(() -> {
+			base.get();
+			return timed("term attributes", () -> new TermAttributeDAO(catalogue).getAllUnlinked()).call();
+		});
+
+		base.get();
+
+		TermStore store = terms.get();
+
+		if (store == null) {
+			LOGGER.error("Cannot load the terms of catalogue=" + catalogue);
+			return false;
+		}
+
+		catalogue.setTerms(store);
+
+		// link the relations to the terms in parallel
+		Future<?> applLink = EXECUTOR.submit(timed("applicabilities linking", () -> {
+			catalogue.setApplicabilities(new ParentTermDAO(catalogue).getByRows(parents.get()));
+			return null;
+		}));
+
+		Future<?> taLink = EXECUTOR.submit(timed("term attributes linking", () -> {
+			catalogue.setTermAttributes(termAttrs.get().link());
+			return null;
+		}));
+
+		applLink.get();
+		taLink.get();
+
+		return true;
+	}
+
+	/**
+	 * Wrap the task in order to record its elapsed time
+	 * 
+	 * @param phase
+	 * @param task
+	 * @return
+	 */
+	private <T> Callable<T> timed(final String phase, final Callable<T> task) {
+
+		return () -> {
+
+			long start = System.currentTimeMillis();
+
+			try {
+				return task.call();
+			} finally {
+				timings.put(phase, System.currentTimeMillis() - start);
+			}
+		};
+	}
+}
@@ -0,0 +1,367 @@
+package catalogue;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import catalogue_browser_dao.ParentTermDAO;
+import catalogue_object.Applicability;
+import catalogue_object.Attribute;
+import catalogue_object.Nameable;
+import catalogue_object.Term;
+import catalogue_object.TermAttribute;
+import utilities.StringPool;
+
+/**
+ * Binary snapshot of the terms, parent terms and term attributes of a
+ * catalogue, written in the catalogue database folder after the catalogue
+ * data are loaded from the database. The next time the catalogue is opened the
+ * terms and their relations are read from the snapshot, which is much faster
+ * than querying the database. The small tables (hierarchies, attributes...)
+ * are always read from the database.
+ * 
+ * The snapshot is valid only for the catalogue version and last update it was
+ * written for, and it is deleted by the DAOs each time the terms, the parent
+ * terms or the term attributes of the catalogue are modified.
+ * 
+ * @author shahaal
+ *
+ */
+public class CatalogueSnapshot {
+
+	private static final Logger LOGGER = LogManager.getLogger(CatalogueSnapshot.class);
+
+	private static final String FILENAME = "catalogue.snapshot";
+
+	// identify the file and the version of its format
+	private static final int MAGIC = 0x43545353;
+	private static final int FORMAT_VERSION = 2;
+
+	// null timestamps, the other ones are followed by their nanos
+	private static final long NULL_TIME = Long.MIN_VALUE;
+
+	private static boolean enabled = true;
+
+	private final Catalogue catalogue;
+	private final File file;
+
+	/**
+	 * Create the snapshot of the catalogue
+	 * 
+	 * @param catalogue
+	 */
+	public CatalogueSnapshot(Catalogue catalogue) {
+		this.catalogue = catalogue;
+		this.file = getFile(catalogue);
+	}
+
+	/**
+	 * Check if the snapshots are written and used when the catalogues are opened
+	 * 
+	 * @return
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Set if the snapshots should be written and used when the catalogues are
+	 * opened
+	 * 
+	 * @param enabled
+	 */
+	public static void setEnabled(boolean enabled) {
+		CatalogueSnapshot.enabled = enabled;
+	}
+
+	/**
+	 * Delete the snapshot of the catalogue, since its data were modified
+	 * 
+	 * @param catalogue
+	 */
+	public static void invalidate(Catalogue catalogue) {
+
+		if (catalogue == null)
+			return;
+
+		File file = getFile(catalogue);
+
+		if (file.exists() && !file.delete())
+			LOGGER.error("Cannot delete the snapshot " + file);
+	}
+
+	private static File getFile(Catalogue catalogue) {
+		return new File(catalogue.getDbPath(), FILENAME);
+	}
+
+	/**
+	 * Check if the snapshot file exists
+	 * 
+	 * @return
+	 */
+	public boolean exists() {
+		return file.exists();
+	}
+
+	/**
+	 * Get the key which identifies the catalogue data the snapshot was written for
+	 * 
+	 * @return
+	 */
+	private String getKey() {
+
+		Timestamp lastUpdate = catalogue.getLastUpdate();
+
+		return catalogue.getCode() + "|" + catalogue.getVersion() + "|"
+				+ (lastUpdate == null ? "" : lastUpdate.getTime());
+	}
+
+	/**
+	 * Write the terms loaded in the catalogue into the snapshot. The file is
+	 * written in a temporary file first, and then moved.
+	 * 
+	 * @return true if the snapshot was written
+	 */
+	public boolean write() {
+
+		File tmp = new File(file.getPath() + ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));) {
+
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			writeString(out, getKey());
+
+			ArrayList<Term> terms = new ArrayList<>(catalogue.getTerms());
+
+			// terms
+			out.writeInt(terms.size());
+			for (Term term : terms) {
+				out.writeInt(term.getId());
+				writeString(out, term.getCode());
+				writeString(out, term.getName());
+				writeString(out, term.getLabel());
+				writeString(out, term.getScopenotes());
+				writeString(out, term.getStatus());
+				writeString(out, term.getVersion());
+				writeTime(out, term.getLastUpdate());
+				writeTime(out, term.getValidFrom());
+				writeTime(out, term.getValidTo());
+				out.writeBoolean(term.isDeprecated());
+			}
+
+			// parent terms
+			int count = 0;
+			for (Term term : terms)
+				count += term.getApplicabilities().size();
+
+			out.writeInt(count);
+			for (Term term : terms) {
+				for (Applicability appl : term.getApplicabilities()) {
+
+					Nameable parent = appl.getParentTerm();
+
+					out.writeInt(term.getId());
+					out.writeInt(appl.getHierarchy().getId());
+					out.writeInt(parent instanceof Term ? ((Term) parent).getId() : 0);
+					out.writeInt(appl.getOrder());
+					out.writeBoolean(appl.isReportable());
+				}
+			}
+
+			// term attributes
+			count = 0;
+			for (Term term : terms)
+				count += term.getAttributes().size();
+
+			out.writeInt(count);
+			for (Term term : terms) {
+				for (TermAttribute ta : term.getAttributes()) {
+					out.writeInt(ta.getId());
+					out.writeInt(term.getId());
+					out.writeInt(ta.getAttribute().getId());
+					writeString(out, ta.getValue());
+				}
+			}
+
+			out.close();
+
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+			return true;
+
+		} catch (IOException e) {
+			LOGGER.error("Cannot write the snapshot " + file, e);
+			e.printStackTrace();
+			tmp.delete();
+			return false;
+		}
+	}
+
+	/**
+	 * Read the terms, the parent terms and the term attributes from the snapshot
+	 * and set them into the catalogue. The hierarchies and the attributes of the
+	 * catalogue should be already loaded.
+	 * 
+	 * @return true if the snapshot was valid and read, false otherwise (the
+	 *         catalogue data are not changed)
+	 */
+	public boolean read() {
+
+		ByteBuffer buffer;
+
+		// the file is read with a single bulk read instead of mapping it, since a
+		// mapped file cannot be deleted (invalidated) until the mapping is garbage
+		// collected on windows
+		try (FileInputStream in = new FileInputStream(file); FileChannel channel = in.getChannel();) {
+
+			buffer = ByteBuffer.allocate((int) channel.size());
+
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+				;
+
+			buffer.flip();
+
+		} catch (IOException e) {
+			LOGGER.error("Cannot read the snapshot " + file, e);
+			e.printStackTrace();
+			return false;
+		}
+
+		try {
+
+			if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+				LOGGER.info("Snapshot " + file + " has an old format, it will be written again");
+				return false;
+			}
+
+			if (!getKey().equals(readString(buffer))) {
+				LOGGER.info("Snapshot " + file + " refers to another version of the catalogue");
+				return false;
+			}
+
+			StringPool strings = new StringPool();
+
+			// terms
+			int count = buffer.getInt();
+			TermStore terms = new TermStore(count);
+
+			for (int i = 0; i < count; i++) {
+
+				Term term = new Term(catalogue, buffer.getInt(), readString(buffer), readString(buffer),
+						readString(buffer), readString(buffer), strings.get(readString(buffer)), readString(buffer),
+						readTime(buffer), readTime(buffer), readTime(buffer), buffer.get() != 0);
+
+				terms.put(term);
+			}
+
+			// parent terms
+			count = buffer.getInt();
+			ArrayList<int[]> rows = new ArrayList<>(count);
+
+			for (int i = 0; i < count; i++)
+				rows.add(new int[] { buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(),
+						buffer.get() != 0 ? 1 : 0 });
+
+			// term attributes
+			HashMap<Integer, Attribute> attributes = new HashMap<>();
+			for (Attribute attr : catalogue.getAttributes())
+				attributes.put(attr.getId(), attr);
+
+			count = buffer.getInt();
+			ArrayList<TermAttribute> tas = new ArrayList<>(count);
+
+			for (int i = 0; i < count; i++) {
+
+				int id = buffer.getInt();
+				Term term = terms.get(buffer.getInt());
+				Attribute attribute = attributes.get(buffer.getInt());
+				String value = strings.get(readString(buffer));
+
+				if (term == null || attribute == null) {
+					LOGGER.info("Snapshot " + file + " does not match the catalogue, it will be written again");
+					return false;
+				}
+
+				tas.add(new TermAttribute(id, term, attribute, value));
+			}
+
+			// set the data only when the entire snapshot is read
+			catalogue.setTerms(terms);
+			catalogue.setApplicabilities(new ParentTermDAO(catalogue).getByRows(rows));
+			catalogue.setTermAttributes(tas);
+
+			return true;
+
+		} catch (RuntimeException e) {
+			LOGGER.error("Corrupted snapshot " + file, e);
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+
+		int length = buffer.getInt();
+
+		if (length < 0)
+			return null;
+
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeTime(DataOutputStream out, Timestamp time) throws IOException {
+
+		if (time == null) {
+			out.writeLong(NULL_TIME);
+			return;
+		}
+
+		// the millis lose the sub-millisecond nanos kept by the database
+		out.writeLong(time.getTime());
+		out.writeInt(time.getNanos());
+	}
+
+	private static Timestamp readTime(ByteBuffer buffer) {
+
+		long time = buffer.getLong();
+
+		if (time == NULL_TIME)
+			return null;
+
+		Timestamp timestamp = new Timestamp(time);
+		timestamp.setNanos(buffer.getInt());
+
+		return timestamp;
+	}
+}
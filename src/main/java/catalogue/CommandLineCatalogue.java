@@ -0,0 +1,62 @@
+package catalogue;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import catalogue_browser_dao.CatalogueDAO;
+import catalogue_browser_dao.DatabaseManager;
+import dcf_manager.Dcf.DcfType;
+
+/**
+ * Open and close the catalogues used by the command line tools, which run
+ * without the graphical interface. The catalogues must be already downloaded
+ * or created with the browser.
+ * 
+ * @author shahaal
+ *
+ */
+public class CommandLineCatalogue {
+
+	private CommandLineCatalogue() {
+	}
+
+	/**
+	 * Start the main database and load in memory the last version of the
+	 * catalogue (official catalogues first, then local catalogues)
+	 * 
+	 * @param code the code of the catalogue
+	 * @return the catalogue with its data loaded
+	 * @throws SQLException
+	 * @throws IOException  if the catalogue was not found
+	 */
+	public static Catalogue open(String code) throws SQLException, IOException {
+
+		DatabaseManager.startMainDB();
+
+		CatalogueDAO catDao = new CatalogueDAO();
+
+		Catalogue catalogue = catDao.getLastVersionByCode(code, DcfType.PRODUCTION);
+
+		if (catalogue == null)
+			catalogue = catDao.getLastVersionByCode(code, DcfType.LOCAL);
+
+		if (catalogue == null) {
+			DatabaseManager.stopMainDB();
+			throw new IOException("Catalogue " + code + " not found, download it with the browser first");
+		}
+
+		catalogue.loadData();
+
+		return catalogue;
+	}
+
+	/**
+	 * Close the catalogue database and the main database
+	 * 
+	 * @param catalogue
+	 */
+	public static void close(Catalogue catalogue) {
+		catalogue.closeConnection();
+		DatabaseManager.stopMainDB();
+	}
+}
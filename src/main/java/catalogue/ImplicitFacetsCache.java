@@ -0,0 +1,139 @@
+package catalogue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import catalogue_object.Attribute;
+import catalogue_object.Hierarchy;
+import catalogue_object.Term;
+import ui_implicit_facet.DescriptorTreeItem;
+
+/**
+ * Memo of the inherited implicit facets of the catalogue terms, for each term
+ * and facet category, used by {@link Term#getInheritedImplicitFacets(Attribute)}
+ * to avoid building again the descriptors tree of all the ancestors. The facets
+ * of the subtree of a term are discarded when its implicit facets change. All
+ * the facets are discarded when a term changes parent, since the relationships
+ * between the descriptors could be changed too.
+ *
+ * @author shahaal
+ *
+ */
+public class ImplicitFacetsCache {
+
+	private final TermChildrenIndex childrenIndex;
+
+	// term id => facet category id => inherited facets leaves
+	private HashMap<Integer, HashMap<Integer, ArrayList<DescriptorTreeItem>>> facets;
+
+	// version of the children index used to compute the facets
+	private long indexVersion;
+
+	// incremented for each invalidation
+	private long generation;
+
+	public ImplicitFacetsCache(TermChildrenIndex childrenIndex) {
+		this.childrenIndex = childrenIndex;
+		this.facets = new HashMap<>();
+		this.indexVersion = -1;
+		this.generation = 0;
+	}
+
+	/**
+	 * Get the inherited facets of the term for the facet category
+	 *
+	 * @param term
+	 * @param facetCategory
+	 * @return a copy of the cached facets or null if they are not cached
+	 */
+	public synchronized ArrayList<DescriptorTreeItem> get(Term term, Attribute facetCategory) {
+
+		// the tree was changed
+		long version = childrenIndex.getVersion();
+		if (version != indexVersion) {
+			facets.clear();
+			indexVersion = version;
+			generation++;
+		}
+
+		HashMap<Integer, ArrayList<DescriptorTreeItem>> termFacets = facets.get(term.getId());
+
+		if (termFacets == null)
+			return null;
+
+		ArrayList<DescriptorTreeItem> items = termFacets.get(facetCategory.getId());
+
+		return items == null ? null : new ArrayList<>(items);
+	}
+
+	/**
+	 * Get the current generation of the cache, to be passed to
+	 * {@link #put(Term, Attribute, ArrayList, long)}
+	 *
+	 * @return
+	 */
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Save the inherited facets of the term for the facet category. They are
+	 * discarded if the cache was invalidated while they were computed.
+	 *
+	 * @param term
+	 * @param facetCategory
+	 * @param items
+	 * @param generation    generation read before computing the facets
+	 */
+	public synchronized void put(Term term, Attribute facetCategory, ArrayList<DescriptorTreeItem> items,
+			long generation) {
+
+		if (generation != this.generation || indexVersion != childrenIndex.getVersion())
+			return;
+
+		HashMap<Integer, ArrayList<DescriptorTreeItem>> termFacets = facets.get(term.getId());
+
+		if (termFacets == null) {
+			termFacets = new HashMap<>();
+			facets.put(term.getId(), termFacets);
+		}
+
+		termFacets.put(facetCategory.getId(), new ArrayList<>(items));
+	}
+
+	/**
+	 * Discard the facets of the term and of its subtree in the master hierarchy,
+	 * which inherit the implicit facets of the term
+	 *
+	 * @param term
+	 * @param master
+	 */
+	public synchronized void invalidate(Term term, Hierarchy master) {
+
+		generation++;
+
+		if (facets.isEmpty())
+			return;
+
+		facets.remove(term.getId());
+
+		if (master == null)
+			return;
+
+		ArrayList<Term> subtree = childrenIndex.isLoaded() ? childrenIndex.getSubtree(term, master) : null;
+
+		if (subtree == null)
+			return;
+
+		for (Term child : subtree)
+			facets.remove(child.getId());
+	}
+
+	/**
+	 * Remove all the facets from the cache
+	 */
+	public synchronized void clear() {
+		facets.clear();
+		generation++;
+	}
+}
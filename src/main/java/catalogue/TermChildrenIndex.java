@@ -0,0 +1,983 @@
+package catalogue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import catalogue_object.Applicability;
+import catalogue_object.Hierarchy;
+import catalogue_object.Nameable;
+import catalogue_object.Term;
+
+/**
+ * In memory parent/child index of the catalogue terms. For each hierarchy it
+ * stores the children of each parent sorted by term order, in order to answer
+ * the tree expansions without querying the PARENT_TERM table every time. The
+ * index is built from the applicabilities loaded by
+ * {@link Catalogue#refreshApplicabities()} and it is kept up to date by the
+ * {@link catalogue_browser_dao.ParentTermDAO} operations. The terms which
+ * belong to each hierarchy are also kept as bit sets of term ids, used by the
+ * search to filter the results.
+ * 
+ * Each hierarchy is also numbered in pre-order (built when first needed): the
+ * subtree of a term is the range of terms which starts at the term and has the
+ * size of the subtree, therefore ancestor checks are made in constant time and
+ * subtrees are read without visiting the tree. When a term is moved under
+ * another parent only the affected range is renumbered.
+ * 
+ * The materialised paths of the terms (hierarchy code, depth and path from the
+ * root) are computed for the whole hierarchy in a single top-down pass and they
+ * are discarded for the subtree of a term when its parent or order change.
+ *
+ * @author shahaal
+ *
+ */
+public class TermChildrenIndex {
+
+	// key used for the terms which have the hierarchy as parent
+	private static final int ROOT_KEY = -1;
+
+	// hierarchy id => parent term id => children
+	private HashMap<Integer, HashMap<Integer, ChildrenList>> children;
+
+	// hierarchy id => child term id => parent key in which
+	// the child is currently stored
+	private HashMap<Integer, HashMap<Integer, Integer>> parents;
+
+	// hierarchy id => ids of the terms of the hierarchy
+	private HashMap<Integer, BitSet> members;
+
+	// hierarchy id => pre-order numbering of the terms
+	private HashMap<Integer, EulerTour> tours;
+
+	// hierarchy id => term id => materialised path of the term
+	private HashMap<Integer, HashMap<Integer, TermPath>> paths;
+
+	// incremented when the parent of a term changes
+	private long version;
+
+	// true if the index was built
+	private boolean loaded;
+
+	public TermChildrenIndex() {
+		children = new HashMap<>();
+		parents = new HashMap<>();
+		members = new HashMap<>();
+		tours = new HashMap<>();
+		paths = new HashMap<>();
+		version = 0;
+		loaded = false;
+	}
+
+	/**
+	 * Build the index starting from all the applicabilities of the catalogue
+	 *
+	 * @param appls
+	 */
+	public synchronized void build(Collection<Applicability> appls) {
+
+		children.clear();
+		parents.clear();
+		members.clear();
+		tours.clear();
+		paths.clear();
+		version++;
+
+		for (Applicability appl : appls)
+			put(appl);
+
+		loaded = true;
+	}
+
+	/**
+	 * Check if the index was built and can be used instead of the database
+	 *
+	 * @return
+	 */
+	public synchronized boolean isLoaded() {
+		return loaded;
+	}
+
+	/**
+	 * Get the version of the tree structure, which changes each time a
+	 * relationship is added or removed or a term changes parent (not when only
+	 * the order changes)
+	 *
+	 * @return
+	 */
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Remove all the relationships from the index
+	 */
+	public synchronized void clear() {
+		children.clear();
+		parents.clear();
+		members.clear();
+		tours.clear();
+		paths.clear();
+		version++;
+		loaded = false;
+	}
+
+	/**
+	 * Add a new applicability to the index
+	 *
+	 * @param appl
+	 */
+	public synchronized void add(Applicability appl) {
+
+		if (!loaded)
+			return;
+
+		// only one parent is allowed for each hierarchy
+		detach(appl);
+		put(appl);
+
+		invalidate(appl);
+	}
+
+	/**
+	 * Remove an applicability from the index
+	 *
+	 * @param appl
+	 */
+	public synchronized void remove(Applicability appl) {
+
+		if (!loaded)
+			return;
+
+		detach(appl);
+
+		invalidate(appl);
+	}
+
+	/**
+	 * Refresh the position of the applicability in the index, it must be called
+	 * when the parent or the order of the applicability is changed
+	 *
+	 * @param appl
+	 */
+	public synchronized void update(Applicability appl) {
+
+		if (!loaded)
+			return;
+
+		Integer oldParentKey = getStoredParentKey(appl);
+
+		detach(appl);
+		put(appl);
+
+		// a change of order does not change the subtrees
+		if (oldParentKey == null || oldParentKey != getParentKey(appl.getParentTerm())) {
+			moveInTour(appl, oldParentKey);
+			version++;
+		}
+
+		// the codes of the whole subtree depend on the order and parent of the term
+		invalidatePaths(appl);
+	}
+
+	/**
+	 * Remove all the relationships of a hierarchy
+	 *
+	 * @param hierarchy
+	 */
+	public synchronized void removeHierarchy(Hierarchy hierarchy) {
+		children.remove(hierarchy.getId());
+		parents.remove(hierarchy.getId());
+		members.remove(hierarchy.getId());
+		tours.remove(hierarchy.getId());
+		paths.remove(hierarchy.getId());
+		version++;
+	}
+
+	/**
+	 * Get the materialised path of the term in the hierarchy. The paths of all the
+	 * terms of the hierarchy are computed the first time, the invalidated ones are
+	 * computed again starting from their parent.
+	 *
+	 * @param term
+	 * @param hierarchy
+	 * @return the path or null if the term is not in the hierarchy
+	 */
+	public synchronized TermPath getPath(Term term, Hierarchy hierarchy) {
+
+		HashMap<Integer, TermPath> hierarchyPaths = paths.get(hierarchy.getId());
+
+		if (hierarchyPaths == null) {
+
+			hierarchyPaths = new HashMap<>();
+
+			HashMap<Integer, ChildrenList> hierarchyChildren = children.get(hierarchy.getId());
+			if (hierarchyChildren != null)
+				buildPaths(hierarchyChildren, ROOT_KEY, null, hierarchyPaths);
+
+			paths.put(hierarchy.getId(), hierarchyPaths);
+		}
+
+		return getPath(hierarchyPaths, term, hierarchy, 0);
+	}
+
+	/**
+	 * Check if the term has as ancestor the 'ancestor' term in the hierarchy. The
+	 * term is not considered ancestor of itself.
+	 *
+	 * @param term
+	 * @param ancestor
+	 * @param hierarchy
+	 * @return
+	 */
+	public synchronized boolean hasAncestor(Term term, Term ancestor, Hierarchy hierarchy) {
+
+		EulerTour tour = getTour(hierarchy.getId());
+
+		Integer termIndex = tour.getIndex(term.getId());
+		Integer ancestorIndex = tour.getIndex(ancestor.getId());
+
+		if (termIndex != null && ancestorIndex != null)
+			return tour.contains(ancestorIndex, termIndex) && !termIndex.equals(ancestorIndex);
+
+		// terms not reachable from the hierarchy, go up parent by parent
+		HashMap<Integer, Integer> hierarchyParents = parents.get(hierarchy.getId());
+
+		if (hierarchyParents == null)
+			return false;
+
+		HashSet<Integer> visited = new HashSet<>();
+		Integer key = hierarchyParents.get(term.getId());
+
+		while (key != null && key != ROOT_KEY && visited.add(key)) {
+
+			if (key == ancestor.getId())
+				return true;
+
+			key = hierarchyParents.get(key);
+		}
+
+		return false;
+	}
+
+	/**
+	 * Get all the terms of the subtree of the parent in the hierarchy, the parent
+	 * excluded. The parents come always before their children.
+	 *
+	 * @param parent
+	 * @param hierarchy
+	 * @return the subtree terms or null if the parent is not reachable from the
+	 *         hierarchy
+	 */
+	public synchronized ArrayList<Term> getSubtree(Term parent, Hierarchy hierarchy) {
+
+		EulerTour tour = getTour(hierarchy.getId());
+
+		Integer index = tour.getIndex(parent.getId());
+
+		if (index == null)
+			return null;
+
+		return tour.getRange(index + 1, index + tour.sizes[index]);
+	}
+
+	/**
+	 * Get the ids of the terms which belong to the hierarchy
+	 *
+	 * @param hierarchy
+	 * @return a copy of the bit set, which can be modified by the caller
+	 */
+	public synchronized BitSet getMembers(Hierarchy hierarchy) {
+
+		BitSet bits = members.get(hierarchy.getId());
+
+		return bits == null ? new BitSet() : (BitSet) bits.clone();
+	}
+
+	/**
+	 * Get the children of the parent in the selected hierarchy, sorted by term
+	 * order. Set hideDeprecated to true to remove the deprecated terms. Set
+	 * hideDismissed to true to remove the non reportable terms which have only non
+	 * reportable children.
+	 *
+	 * @param parent    the parent term, null or the hierarchy itself to get the
+	 *                  first level terms
+	 * @param hierarchy
+	 * @param hideDeprecated
+	 * @param hideDismissed
+	 * @return
+	 */
+	public ArrayList<Term> getChildren(Nameable parent, Hierarchy hierarchy, boolean hideDeprecated,
+			boolean hideDismissed) {
+
+		ArrayList<Term> terms = snapshot(parent, hierarchy, hideDeprecated);
+
+		// dismissed terms are checked outside the lock since
+		// the check visits the whole subtree of the child
+		if (hideDismissed) {
+			ArrayList<Term> filtered = new ArrayList<>();
+			for (Term child : terms) {
+				if (!child.isDismissed(hierarchy))
+					filtered.add(child);
+			}
+			terms = filtered;
+		}
+
+		return terms;
+	}
+
+	/**
+	 * Check if the parent has at least one child which satisfies the filters
+	 *
+	 * @param parent
+	 * @param hierarchy
+	 * @param hideDeprecated
+	 * @param hideDismissed
+	 * @return
+	 */
+	public boolean hasChildren(Nameable parent, Hierarchy hierarchy, boolean hideDeprecated, boolean hideDismissed) {
+
+		for (Term child : snapshot(parent, hierarchy, hideDeprecated)) {
+			if (!hideDismissed || !child.isDismissed(hierarchy))
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Get a copy of the sorted children of the parent
+	 *
+	 * @param parent
+	 * @param hierarchy
+	 * @param hideDeprecated
+	 * @return
+	 */
+	private synchronized ArrayList<Term> snapshot(Nameable parent, Hierarchy hierarchy, boolean hideDeprecated) {
+
+		ArrayList<Term> terms = new ArrayList<>();
+
+		HashMap<Integer, ChildrenList> hierarchyChildren = children.get(hierarchy.getId());
+
+		if (hierarchyChildren == null)
+			return terms;
+
+		ChildrenList list = hierarchyChildren.get(getParentKey(parent));
+
+		if (list == null)
+			return terms;
+
+		for (Applicability appl : list.getSorted()) {
+
+			Term child = appl.getChild();
+
+			if (hideDeprecated && child.isDeprecated())
+				continue;
+
+			terms.add(child);
+		}
+
+		return terms;
+	}
+
+	/**
+	 * Add the applicability under its parent
+	 *
+	 * @param appl
+	 */
+	private void put(Applicability appl) {
+
+		if (appl.getChild() == null || appl.getHierarchy() == null)
+			return;
+
+		int hierarchyId = appl.getHierarchy().getId();
+		int parentKey = getParentKey(appl.getParentTerm());
+
+		HashMap<Integer, ChildrenList> hierarchyChildren = children.get(hierarchyId);
+		if (hierarchyChildren == null) {
+			hierarchyChildren = new HashMap<>();
+			children.put(hierarchyId, hierarchyChildren);
+		}
+
+		ChildrenList list = hierarchyChildren.get(parentKey);
+		if (list == null) {
+			list = new ChildrenList();
+			hierarchyChildren.put(parentKey, list);
+		}
+
+		list.add(appl);
+
+		HashMap<Integer, Integer> hierarchyParents = parents.get(hierarchyId);
+		if (hierarchyParents == null) {
+			hierarchyParents = new HashMap<>();
+			parents.put(hierarchyId, hierarchyParents);
+		}
+
+		hierarchyParents.put(appl.getChild().getId(), parentKey);
+
+		BitSet bits = members.get(hierarchyId);
+		if (bits == null) {
+			bits = new BitSet();
+			members.put(hierarchyId, bits);
+		}
+
+		// terms not saved yet have no valid id
+		if (appl.getChild().getId() >= 0)
+			bits.set(appl.getChild().getId());
+	}
+
+	/**
+	 * Remove the applicability from the parent in which it is currently stored
+	 *
+	 * @param appl
+	 */
+	private void detach(Applicability appl) {
+
+		if (appl.getChild() == null || appl.getHierarchy() == null)
+			return;
+
+		int hierarchyId = appl.getHierarchy().getId();
+
+		HashMap<Integer, Integer> hierarchyParents = parents.get(hierarchyId);
+		if (hierarchyParents == null)
+			return;
+
+		Integer parentKey = hierarchyParents.remove(appl.getChild().getId());
+		if (parentKey == null)
+			return;
+
+		if (appl.getChild().getId() >= 0)
+			members.get(hierarchyId).clear(appl.getChild().getId());
+
+		ChildrenList list = children.get(hierarchyId).get(parentKey);
+		if (list != null)
+			list.remove(appl);
+	}
+
+	/**
+	 * Get the key of the parent under which the child of the applicability is
+	 * currently stored
+	 *
+	 * @param appl
+	 * @return the key or null if the child is not stored
+	 */
+	private Integer getStoredParentKey(Applicability appl) {
+
+		if (appl.getChild() == null || appl.getHierarchy() == null)
+			return null;
+
+		HashMap<Integer, Integer> hierarchyParents = parents.get(appl.getHierarchy().getId());
+
+		if (hierarchyParents == null)
+			return null;
+
+		return hierarchyParents.get(appl.getChild().getId());
+	}
+
+	/**
+	 * Get the numbering of the hierarchy, building it if needed
+	 *
+	 * @param hierarchyId
+	 * @return
+	 */
+	private EulerTour getTour(int hierarchyId) {
+
+		EulerTour tour = tours.get(hierarchyId);
+
+		if (tour == null) {
+
+			HashMap<Integer, Integer> hierarchyParents = parents.get(hierarchyId);
+			tour = new EulerTour(hierarchyParents == null ? 0 : hierarchyParents.size());
+
+			HashMap<Integer, ChildrenList> hierarchyChildren = children.get(hierarchyId);
+			if (hierarchyChildren != null)
+				visit(hierarchyChildren, ROOT_KEY, tour);
+
+			tours.put(hierarchyId, tour);
+		}
+
+		return tour;
+	}
+
+	/**
+	 * Add the subtree of the parent to the numbering, in pre-order
+	 *
+	 * @param hierarchyChildren
+	 * @param parentKey
+	 * @param tour
+	 */
+	private void visit(HashMap<Integer, ChildrenList> hierarchyChildren, int parentKey, EulerTour tour) {
+
+		ChildrenList list = hierarchyChildren.get(parentKey);
+
+		if (list == null)
+			return;
+
+		for (Applicability appl : list.getSorted()) {
+
+			Term child = appl.getChild();
+
+			// skip terms not saved yet and cycles
+			if (child.getId() < 0 || tour.getIndex(child.getId()) != null)
+				continue;
+
+			int index = tour.append(child);
+
+			visit(hierarchyChildren, child.getId(), tour);
+
+			tour.sizes[index] = tour.count - index;
+		}
+	}
+
+	/**
+	 * Move the subtree of the child of the applicability under its new parent in
+	 * the numbering of the hierarchy
+	 *
+	 * @param appl
+	 * @param oldParentKey
+	 */
+	private void moveInTour(Applicability appl, Integer oldParentKey) {
+
+		int hierarchyId = appl.getHierarchy().getId();
+
+		EulerTour tour = tours.get(hierarchyId);
+
+		// not built yet
+		if (tour == null)
+			return;
+
+		boolean moved = oldParentKey != null && tour.move(appl.getChild().getId(), oldParentKey,
+				getParentKey(appl.getParentTerm()), parents.get(hierarchyId));
+
+		// built again when needed
+		if (!moved)
+			tours.remove(hierarchyId);
+	}
+
+	/**
+	 * Discard the numbering and the paths of the hierarchy of the applicability
+	 *
+	 * @param appl
+	 */
+	private void invalidate(Applicability appl) {
+
+		if (appl.getHierarchy() == null)
+			return;
+
+		tours.remove(appl.getHierarchy().getId());
+		paths.remove(appl.getHierarchy().getId());
+		version++;
+	}
+
+	/**
+	 * Discard the paths of the subtree of the child of the applicability
+	 *
+	 * @param appl
+	 */
+	private void invalidatePaths(Applicability appl) {
+
+		if (appl.getChild() == null || appl.getHierarchy() == null)
+			return;
+
+		int hierarchyId = appl.getHierarchy().getId();
+
+		HashMap<Integer, TermPath> hierarchyPaths = paths.get(hierarchyId);
+
+		if (hierarchyPaths == null)
+			return;
+
+		EulerTour tour = getTour(hierarchyId);
+		Integer index = tour.getIndex(appl.getChild().getId());
+
+		// term not reachable from the hierarchy, discard everything
+		if (index == null) {
+			paths.remove(hierarchyId);
+			return;
+		}
+
+		for (int i = index; i < index + tour.sizes[index]; i++)
+			hierarchyPaths.remove(tour.terms[i].getId());
+	}
+
+	/**
+	 * Compute the paths of the subtree of the parent, top-down
+	 *
+	 * @param hierarchyChildren
+	 * @param parentKey
+	 * @param parentPath
+	 * @param hierarchyPaths
+	 */
+	private void buildPaths(HashMap<Integer, ChildrenList> hierarchyChildren, int parentKey, TermPath parentPath,
+			HashMap<Integer, TermPath> hierarchyPaths) {
+
+		ChildrenList list = hierarchyChildren.get(parentKey);
+
+		if (list == null)
+			return;
+
+		for (Applicability appl : list.appls) {
+
+			Term child = appl.getChild();
+
+			// skip terms not saved yet and cycles
+			if (child.getId() < 0 || hierarchyPaths.containsKey(child.getId()))
+				continue;
+
+			TermPath path = new TermPath(child, appl.getOrder(), parentPath);
+			hierarchyPaths.put(child.getId(), path);
+
+			buildPaths(hierarchyChildren, child.getId(), path, hierarchyPaths);
+		}
+	}
+
+	/**
+	 * Get the path of the term, computing it from the path of its parent if it was
+	 * invalidated
+	 *
+	 * @param hierarchyPaths
+	 * @param term
+	 * @param hierarchy
+	 * @param depth          number of terms visited, used to stop on cycles
+	 * @return
+	 */
+	private TermPath getPath(HashMap<Integer, TermPath> hierarchyPaths, Term term, Hierarchy hierarchy, int depth) {
+
+		TermPath path = hierarchyPaths.get(term.getId());
+
+		if (path != null)
+			return path;
+
+		HashMap<Integer, Integer> hierarchyParents = parents.get(hierarchy.getId());
+
+		if (hierarchyParents == null || !hierarchyParents.containsKey(term.getId())
+				|| depth > hierarchyParents.size())
+			return null;
+
+		Applicability appl = term.getApplicability(hierarchy);
+
+		if (appl == null)
+			return null;
+
+		TermPath parentPath = null;
+
+		if (appl.getParentTerm() instanceof Term) {
+
+			parentPath = getPath(hierarchyPaths, (Term) appl.getParentTerm(), hierarchy, depth + 1);
+
+			if (parentPath == null)
+				return null;
+		}
+
+		path = new TermPath(term, appl.getOrder(), parentPath);
+		hierarchyPaths.put(term.getId(), path);
+
+		return path;
+	}
+
+	/**
+	 * Get the key of the parent, the term id or {@link #ROOT_KEY} if the parent is
+	 * the hierarchy
+	 *
+	 * @param parent
+	 * @return
+	 */
+	private static int getParentKey(Nameable parent) {
+
+		if (parent instanceof Term)
+			return ((Term) parent).getId();
+
+		return ROOT_KEY;
+	}
+
+	/**
+	 * Materialised path of a term in a hierarchy. The path of the parent is shared
+	 * by all its children.
+	 *
+	 * @author shahaal
+	 *
+	 */
+	public static class TermPath {
+
+		private final Term term;
+		private final TermPath parent;
+		private final String code;
+		private final int depth;
+
+		private TermPath(Term term, int order, TermPath parent) {
+
+			String single = Term.toSingleHierarchyCode(order);
+
+			this.term = term;
+			this.parent = parent;
+			this.code = parent == null ? single : parent.code + "." + single;
+			this.depth = parent == null ? 1 : parent.depth + 1;
+		}
+
+		/**
+		 * Get the dot separated hierarchy code of the term (e.g. 0001.0001.0002)
+		 *
+		 * @return
+		 */
+		public String getCode() {
+			return code;
+		}
+
+		/**
+		 * Get the level of the term in the tree, 1 for the first level terms
+		 *
+		 * @return
+		 */
+		public int getDepth() {
+			return depth;
+		}
+
+		/**
+		 * Get the terms from the root of the hierarchy to the term, the term
+		 * included
+		 *
+		 * @return
+		 */
+		public ArrayList<Term> getRootPath() {
+
+			Term[] terms = new Term[depth];
+
+			TermPath current = this;
+			for (int i = depth - 1; i >= 0; i--) {
+				terms[i] = current.term;
+				current = current.parent;
+			}
+
+			return new ArrayList<>(Arrays.asList(terms));
+		}
+	}
+
+	/**
+	 * Pre-order numbering of the terms of a hierarchy. The subtree of the term at
+	 * index i is made of the terms from i to i + sizes[i] excluded.
+	 */
+	private static class EulerTour {
+
+		private Term[] terms;
+		private int[] sizes;
+		private int count;
+
+		// term id => index
+		private HashMap<Integer, Integer> indexes;
+
+		public EulerTour(int capacity) {
+			terms = new Term[Math.max(capacity, 16)];
+			sizes = new int[terms.length];
+			indexes = new HashMap<>();
+			count = 0;
+		}
+
+		public Integer getIndex(int termId) {
+			return indexes.get(termId);
+		}
+
+		public boolean contains(int root, int index) {
+			return root <= index && index < root + sizes[root];
+		}
+
+		public ArrayList<Term> getRange(int from, int to) {
+			return new ArrayList<>(Arrays.asList(terms).subList(from, to));
+		}
+
+		/**
+		 * Add a term at the end of the numbering, its size must be set once its
+		 * subtree is added
+		 *
+		 * @param term
+		 * @return the index of the term
+		 */
+		public int append(Term term) {
+
+			ensureCapacity(count + 1);
+
+			terms[count] = term;
+			sizes[count] = 1;
+			indexes.put(term.getId(), count);
+
+			return count++;
+		}
+
+		/**
+		 * Move the subtree of the term under the new parent. The subtree is removed
+		 * and inserted again at the end of the subtree of the new parent, the sizes
+		 * of the old and new ancestors are updated and only the shifted terms are
+		 * renumbered.
+		 *
+		 * @param termId
+		 * @param oldParentKey
+		 * @param newParentKey
+		 * @param hierarchyParents child id => parent key, already updated
+		 * @return false if the numbering could not be updated
+		 */
+		public boolean move(int termId, int oldParentKey, int newParentKey,
+				HashMap<Integer, Integer> hierarchyParents) {
+
+			Integer start = indexes.get(termId);
+
+			if (start == null || hierarchyParents == null)
+				return false;
+
+			int length = sizes[start];
+
+			Integer newParent = null;
+			if (newParentKey != ROOT_KEY) {
+
+				newParent = indexes.get(newParentKey);
+
+				// unknown parent or parent inside the moved subtree
+				if (newParent == null || contains(start, newParent))
+					return false;
+			}
+
+			// the old ancestors come before the subtree
+			if (!addToAncestors(oldParentKey, -length, hierarchyParents, start, length))
+				return false;
+
+			// remove the subtree
+			Term[] movedTerms = Arrays.copyOfRange(terms, start, start + length);
+			int[] movedSizes = Arrays.copyOfRange(sizes, start, start + length);
+
+			System.arraycopy(terms, start + length, terms, start, count - start - length);
+			System.arraycopy(sizes, start + length, sizes, start, count - start - length);
+			count -= length;
+
+			if (newParent != null && newParent > start)
+				newParent -= length;
+
+			// insert it at the end of the subtree of the new parent
+			int target = newParent == null ? count : newParent + sizes[newParent];
+
+			System.arraycopy(terms, target, terms, target + length, count - target);
+			System.arraycopy(sizes, target, sizes, target + length, count - target);
+			System.arraycopy(movedTerms, 0, terms, target, length);
+			System.arraycopy(movedSizes, 0, sizes, target, length);
+			count += length;
+
+			// the new ancestors come before the target
+			if (!addToAncestors(newParentKey, length, hierarchyParents, start, length))
+				return false;
+
+			// renumber the shifted terms
+			int from = Math.min(start, target);
+			int to = Math.max(start, target) + length;
+
+			for (int i = from; i < to; i++)
+				indexes.put(terms[i].getId(), i);
+
+			return true;
+		}
+
+		/**
+		 * Add the delta to the size of the parent and of all its ancestors
+		 *
+		 * @param parentKey
+		 * @param delta
+		 * @param hierarchyParents
+		 * @param removedStart     start of the removed subtree, the stored indexes
+		 *                         after it are shifted back by its length
+		 * @param removedLength
+		 * @return false if an ancestor is not numbered
+		 */
+		private boolean addToAncestors(int parentKey, int delta, HashMap<Integer, Integer> hierarchyParents,
+				int removedStart, int removedLength) {
+
+			Integer key = parentKey;
+
+			for (int steps = 0; key != null && key != ROOT_KEY; steps++) {
+
+				Integer index = indexes.get(key);
+
+				// unknown ancestor or cycle
+				if (index == null || steps > count)
+					return false;
+
+				if (delta > 0 && index > removedStart)
+					index -= removedLength;
+
+				sizes[index] += delta;
+
+				key = hierarchyParents.get(key);
+			}
+
+			return key != null;
+		}
+
+		private void ensureCapacity(int capacity) {
+
+			if (capacity <= terms.length)
+				return;
+
+			int length = Math.max(capacity, terms.length * 2);
+			terms = Arrays.copyOf(terms, length);
+			sizes = Arrays.copyOf(sizes, length);
+		}
+	}
+
+	/**
+	 * Children of a single parent, they are sorted only when they are read after
+	 * a change, since orders are often changed one term at a time
+	 */
+	private static class ChildrenList {
+
+		// same order used by the database: term order and then name
+		private static final Comparator<Applicability> ORDER_SORTER = new Comparator<Applicability>() {
+			@Override
+			public int compare(Applicability a1, Applicability a2) {
+
+				int cmp = Integer.compare(a1.getOrder(), a2.getOrder());
+
+				if (cmp != 0)
+					return cmp;
+
+				String n1 = a1.getChild().getName();
+				String n2 = a2.getChild().getName();
+
+				if (n1 == null || n2 == null)
+					return n1 == null ? (n2 == null ? 0 : -1) : 1;
+
+				return n1.compareTo(n2);
+			}
+		};
+
+		private ArrayList<Applicability> appls = new ArrayList<>();
+		private boolean sorted = true;
+
+		public void add(Applicability appl) {
+			appls.add(appl);
+			sorted = false;
+		}
+
+		public void remove(Applicability appl) {
+			appls.remove(appl);
+		}
+
+		public ArrayList<Applicability> getSorted() {
+
+			// orders can be changed directly in the applicability
+			// objects, therefore we always check the sorting
+			if (!sorted || !isSorted()) {
+				Collections.sort(appls, ORDER_SORTER);
+				sorted = true;
+			}
+
+			return appls;
+		}
+
+		private boolean isSorted() {
+			for (int i = 1; i < appls.size(); i++) {
+				if (ORDER_SORTER.compare(appls.get(i - 1), appls.get(i)) > 0)
+					return false;
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,577 @@
+package catalogue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import catalogue_object.Term;
+import catalogue_object.TermAttribute;
+
+/**
+ * In memory inverted index of the words contained in the terms names, codes
+ * and attributes values. It is used by the search to find the matching terms
+ * without scanning the TERM and TERM_ATTRIBUTE tables at each search. The index
+ * only restricts the candidates, the matching rules are the same of the
+ * database search (the name and the attribute values contain the keywords, the
+ * code is equal to the keyword). The matching terms are ranked by relevance.
+ *
+ * The words are kept sorted, so the words starting with a keyword are found
+ * with a range lookup, while the words which contain it in the middle (e.g. MILK
+ * in BUTTERMILK) are found by scanning the rest of the vocabulary. Both are
+ * candidates, as in the database search; the matches in the middle of a word
+ * are ranked below the matches at the beginning of a word.
+ *
+ * The index is built by {@link Catalogue#refreshTermAttributes()} and it is
+ * kept up to date by the term and term attribute DAOs.
+ *
+ * @author shahaal
+ *
+ */
+public class TermSearchIndex {
+
+	// score given for each matched keyword
+	private static final int CODE_SCORE = 100;
+	private static final int NAME_WORD_SCORE = 20;
+	private static final int NAME_PREFIX_SCORE = 10;
+	private static final int NAME_START_SCORE = 5;
+	private static final int NAME_SCORE = 5;
+	private static final int ATTRIBUTE_SCORE = 2;
+
+	// word => ids of the terms which contain the word, sorted by word
+	private TreeMap<String, HashSet<Integer>> postings;
+
+	// term id => indexed text of the term
+	private HashMap<Integer, Entry> entries;
+
+	// true if the index was built
+	private boolean loaded;
+
+	public TermSearchIndex() {
+		postings = new TreeMap<>();
+		entries = new HashMap<>();
+		loaded = false;
+	}
+
+	/**
+	 * Build the index using the names, codes and attributes of the terms
+	 *
+	 * @param terms
+	 */
+	public synchronized void build(Collection<Term> terms) {
+
+		postings.clear();
+		entries.clear();
+
+		for (Term term : terms)
+			put(term);
+
+		loaded = true;
+	}
+
+	/**
+	 * Check if the index was built and can be used instead of the database
+	 *
+	 * @return
+	 */
+	public synchronized boolean isLoaded() {
+		return loaded;
+	}
+
+	/**
+	 * Remove all the terms from the index
+	 */
+	public synchronized void clear() {
+		postings.clear();
+		entries.clear();
+		loaded = false;
+	}
+
+	/**
+	 * Refresh the indexed name, code and attributes of the term
+	 *
+	 * @param term
+	 */
+	public synchronized void update(Term term) {
+
+		if (!loaded)
+			return;
+
+		detach(term.getId());
+		put(term);
+	}
+
+	/**
+	 * Add a new attribute value to the indexed term
+	 *
+	 * @param ta
+	 */
+	public synchronized void addAttribute(TermAttribute ta) {
+
+		if (!loaded)
+			return;
+
+		Entry entry = entries.get(ta.getTerm().getId());
+
+		if (entry == null) {
+			put(ta.getTerm());
+			return;
+		}
+
+		entry.addAttribute(ta.getAttribute().getId(), ta.getValue());
+		index(entry.id, entry.attrValues.get(entry.attrValues.size() - 1));
+	}
+
+	/**
+	 * Set the value of all the attributes of the term which have the same
+	 * attribute of the term attribute
+	 *
+	 * @param ta
+	 */
+	public synchronized void updateAttribute(TermAttribute ta) {
+
+		if (!loaded)
+			return;
+
+		Entry entry = entries.get(ta.getTerm().getId());
+
+		if (entry == null) {
+			put(ta.getTerm());
+			return;
+		}
+
+		int attrId = ta.getAttribute().getId();
+		String value = toUpper(ta.getValue());
+
+		// remove the old values from the postings
+		detach(entry.id);
+
+		for (int i = 0; i < entry.attrIds.size(); i++) {
+			if (entry.attrIds.get(i) == attrId)
+				entry.attrValues.set(i, value);
+		}
+
+		put(entry);
+	}
+
+	/**
+	 * Remove all the attributes of the term from the index
+	 *
+	 * @param term
+	 */
+	public synchronized void removeAttributes(Term term) {
+
+		if (!loaded)
+			return;
+
+		Entry entry = entries.get(term.getId());
+
+		if (entry == null)
+			return;
+
+		// words of the name and code are added again
+		detach(entry.id);
+		entry.attrIds.clear();
+		entry.attrValues.clear();
+		put(entry);
+	}
+
+	/**
+	 * Get the ids of the terms which match the keywords, sorted by relevance. A
+	 * term matches if its name contains the keywords or its code is equal to the
+	 * keywords, or if one of its attributes contained in the attrIds contains the
+	 * keywords.
+	 *
+	 * @param keywords keywords to search
+	 * @param allWords true if all the keywords should be matched, false if at
+	 *                 least one keyword should be matched
+	 * @param attrIds  ids of the attributes in which we can search
+	 * @return
+	 */
+	public synchronized List<Integer> search(Collection<String> keywords, boolean allWords,
+			Collection<Integer> attrIds) {
+
+		ArrayList<String> keys = new ArrayList<>();
+		for (String keyword : keywords) {
+			if (!keyword.isEmpty())
+				keys.add(toUpper(keyword));
+		}
+
+		final HashMap<Integer, Integer> scores = new HashMap<>();
+
+		if (keys.isEmpty())
+			return new ArrayList<>();
+
+		Set<Integer> searchableAttrs = new HashSet<>(attrIds);
+
+		for (Integer id : getCandidates(keys, allWords)) {
+
+			Entry entry = entries.get(id);
+
+			if (entry == null)
+				continue;
+
+			int score = entry.match(keys, allWords, searchableAttrs);
+
+			if (score > 0)
+				scores.put(id, score);
+		}
+
+		ArrayList<Integer> ids = new ArrayList<>(scores.keySet());
+
+		// best score first, then shortest and alphabetical name
+		Collections.sort(ids, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer id1, Integer id2) {
+
+				int cmp = Integer.compare(scores.get(id2), scores.get(id1));
+
+				if (cmp != 0)
+					return cmp;
+
+				String n1 = entries.get(id1).name;
+				String n2 = entries.get(id2).name;
+
+				cmp = Integer.compare(n1.length(), n2.length());
+
+				if (cmp != 0)
+					return cmp;
+
+				return n1.compareTo(n2);
+			}
+		});
+
+		return ids;
+	}
+
+	/**
+	 * Get the terms which can match the keywords, that is the terms which contain
+	 * all the words of a keyword
+	 *
+	 * @param keys
+	 * @param allWords
+	 * @return
+	 */
+	private Set<Integer> getCandidates(List<String> keys, boolean allWords) {
+
+		Set<Integer> candidates = null;
+
+		for (String key : keys) {
+
+			Set<Integer> keyCandidates = null;
+
+			for (String word : tokenize(key)) {
+
+				Collection<HashSet<Integer>> wordPostings = getPostings(word);
+
+				// a single set for each keyword, the next words only restrict it
+				if (keyCandidates == null) {
+					keyCandidates = new HashSet<>();
+					for (HashSet<Integer> ids : wordPostings)
+						keyCandidates.addAll(ids);
+				} else
+					keyCandidates.retainAll(union(wordPostings));
+			}
+
+			// keyword without words (e.g. only symbols), check all the terms
+			if (keyCandidates == null)
+				keyCandidates = new HashSet<>(entries.keySet());
+
+			if (candidates == null)
+				candidates = keyCandidates;
+			else if (allWords)
+				candidates.retainAll(keyCandidates);
+			else
+				candidates.addAll(keyCandidates);
+		}
+
+		return candidates == null ? new HashSet<Integer>() : candidates;
+	}
+
+	/**
+	 * Get the postings of the indexed words which contain the word: the words
+	 * which start with it and the words which contain it in the middle
+	 *
+	 * @param word
+	 * @return
+	 */
+	private Collection<HashSet<Integer>> getPostings(String word) {
+
+		String end = word + '\uffff';
+
+		Collection<HashSet<Integer>> found = new ArrayList<>(postings.subMap(word, end).values());
+
+		// the words outside the prefix range
+		addInfixPostings(postings.headMap(word), word, found);
+		addInfixPostings(postings.tailMap(end), word, found);
+
+		return found;
+	}
+
+	/**
+	 * Add the postings of the words which contain the word
+	 *
+	 * @param words
+	 * @param word
+	 * @param found
+	 */
+	private static void addInfixPostings(Map<String, HashSet<Integer>> words, String word,
+			Collection<HashSet<Integer>> found) {
+
+		for (Map.Entry<String, HashSet<Integer>> posting : words.entrySet()) {
+			if (posting.getKey().contains(word))
+				found.add(posting.getValue());
+		}
+	}
+
+	/**
+	 * Merge the postings into a single set
+	 *
+	 * @param wordPostings
+	 * @return
+	 */
+	private static Set<Integer> union(Collection<HashSet<Integer>> wordPostings) {
+
+		// no copy is needed for a single word
+		if (wordPostings.size() == 1)
+			return wordPostings.iterator().next();
+
+		Set<Integer> ids = new HashSet<>();
+
+		for (HashSet<Integer> wordIds : wordPostings)
+			ids.addAll(wordIds);
+
+		return ids;
+	}
+
+	/**
+	 * Add the term to the index
+	 *
+	 * @param term
+	 */
+	private void put(Term term) {
+
+		Entry entry = new Entry(term.getId(), toUpper(term.getName()), toUpper(term.getCode()));
+
+		for (TermAttribute ta : term.getAttributes())
+			entry.addAttribute(ta.getAttribute().getId(), ta.getValue());
+
+		put(entry);
+	}
+
+	/**
+	 * Add the entry and its words to the index
+	 *
+	 * @param entry
+	 */
+	private void put(Entry entry) {
+
+		entries.put(entry.id, entry);
+
+		index(entry.id, entry.name);
+		index(entry.id, entry.code);
+
+		for (String value : entry.attrValues)
+			index(entry.id, value);
+	}
+
+	/**
+	 * Remove the term from the index
+	 *
+	 * @param id
+	 */
+	private void detach(int id) {
+
+		Entry entry = entries.remove(id);
+
+		if (entry == null)
+			return;
+
+		ArrayList<String> texts = new ArrayList<>(entry.attrValues);
+		texts.add(entry.name);
+		texts.add(entry.code);
+
+		for (String text : texts) {
+			for (String word : tokenize(text)) {
+
+				HashSet<Integer> ids = postings.get(word);
+
+				if (ids == null)
+					continue;
+
+				ids.remove(id);
+
+				if (ids.isEmpty())
+					postings.remove(word);
+			}
+		}
+	}
+
+	/**
+	 * Add the words of the text to the postings of the term
+	 *
+	 * @param id
+	 * @param text
+	 */
+	private void index(int id, String text) {
+
+		for (String word : tokenize(text)) {
+
+			HashSet<Integer> ids = postings.get(word);
+
+			if (ids == null) {
+				ids = new HashSet<>();
+				postings.put(word, ids);
+			}
+
+			ids.add(id);
+		}
+	}
+
+	/**
+	 * Split the text into words made of letters and digits
+	 *
+	 * @param text
+	 * @return
+	 */
+	private static ArrayList<String> tokenize(String text) {
+
+		ArrayList<String> words = new ArrayList<>();
+
+		if (text == null)
+			return words;
+
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+
+			boolean isWordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+
+			if (isWordChar && start < 0)
+				start = i;
+			else if (!isWordChar && start >= 0) {
+				words.add(text.substring(start, i));
+				start = -1;
+			}
+		}
+
+		return words;
+	}
+
+	private static String toUpper(String text) {
+		return text == null ? "" : text.toUpperCase();
+	}
+
+	/**
+	 * Upper case texts of a single term
+	 */
+	private static class Entry {
+
+		private final int id;
+		private final String name;
+		private final String code;
+		private final ArrayList<Integer> attrIds;
+		private final ArrayList<String> attrValues;
+
+		public Entry(int id, String name, String code) {
+			this.id = id;
+			this.name = name;
+			this.code = code;
+			this.attrIds = new ArrayList<>();
+			this.attrValues = new ArrayList<>();
+		}
+
+		public void addAttribute(int attrId, String value) {
+			attrIds.add(attrId);
+			attrValues.add(toUpper(value));
+		}
+
+		/**
+		 * Compute the relevance of the term for the keywords
+		 *
+		 * @param keys
+		 * @param allWords
+		 * @param searchableAttrs
+		 * @return the score of the term, 0 if it does not match the keywords
+		 */
+		public int match(List<String> keys, boolean allWords, Set<Integer> searchableAttrs) {
+
+			int score = 0;
+
+			// name and code
+			int matched = 0;
+			for (String key : keys) {
+
+				int keyScore = matchNameOrCode(key);
+
+				if (keyScore > 0)
+					matched++;
+
+				score += keyScore;
+			}
+
+			boolean found = allWords ? matched == keys.size() : matched > 0;
+
+			if (!found)
+				score = 0;
+
+			// attributes, the keywords are matched on each single value
+			for (int i = 0; i < attrIds.size(); i++) {
+
+				if (!searchableAttrs.contains(attrIds.get(i)))
+					continue;
+
+				String value = attrValues.get(i);
+
+				matched = 0;
+				for (String key : keys) {
+					if (value.contains(key))
+						matched++;
+				}
+
+				if (allWords ? matched == keys.size() : matched > 0) {
+					found = true;
+					score += matched * ATTRIBUTE_SCORE;
+				}
+			}
+
+			return found ? Math.max(score, 1) : 0;
+		}
+
+		private int matchNameOrCode(String key) {
+
+			int score = 0;
+
+			if (code.equals(key))
+				score += CODE_SCORE;
+
+			int index = name.indexOf(key);
+
+			if (index < 0)
+				return score;
+
+			score += NAME_SCORE;
+
+			if (index == 0)
+				score += NAME_START_SCORE;
+
+			// the keyword is at the beginning of a word
+			if (index == 0 || !Character.isLetterOrDigit(name.charAt(index - 1))) {
+
+				int end = index + key.length();
+
+				if (end == name.length() || !Character.isLetterOrDigit(name.charAt(end)))
+					score += NAME_WORD_SCORE;
+				else
+					score += NAME_PREFIX_SCORE;
+			}
+
+			return score;
+		}
+	}
+}
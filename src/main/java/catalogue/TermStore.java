@@ -0,0 +1,219 @@
+package catalogue;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import catalogue_object.Term;
+
+/**
+ * Compact in memory store of the catalogue terms. The terms are kept in an
+ * array indexed by their id (the ids are generated by the database, therefore
+ * they are almost contiguous), which avoids the boxed keys and the entries of a
+ * hash map, and they are also indexed by code. Ids which are too far from the
+ * others are kept in a separate sorted map, which contains only ids outside
+ * of the array.
+ * 
+ * @author shahaal
+ *
+ */
+public class TermStore {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	// ids greater than this factor times the number of terms are not kept in the array
+	private static final int MAX_SPARSENESS = 4;
+
+	// term id => term
+	private Term[] byId;
+
+	// terms with very high or negative ids, sorted by id
+	private TreeMap<Integer, Term> sparse;
+
+	// term code => term
+	private HashMap<String, Term> byCode;
+
+	private int size;
+
+	private final Collection<Term> values;
+
+	public TermStore() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Create a store for the expected number of terms
+	 * 
+	 * @param capacity
+	 */
+	public TermStore(int capacity) {
+		byId = new Term[Math.max(capacity, 16)];
+		sparse = new TreeMap<>();
+		byCode = new HashMap<>(Math.max(capacity, 16) * 4 / 3 + 1);
+		values = new Values();
+	}
+
+	/**
+	 * Add a term to the store or replace the term with the same id
+	 * 
+	 * @param term
+	 */
+	public void put(Term term) {
+
+		int id = term.getId();
+
+		Term old;
+		if (id >= 0 && id < byId.length) {
+			old = byId[id];
+			byId[id] = term;
+		} else if (id >= 0 && id < (size + INITIAL_CAPACITY) * MAX_SPARSENESS) {
+			grow(id);
+			old = byId[id];
+			byId[id] = term;
+		} else {
+			old = sparse.put(id, term);
+		}
+
+		if (old == null)
+			size++;
+		else if (old.getCode() != null && byCode.get(old.getCode()) == old)
+			byCode.remove(old.getCode());
+
+		if (term.getCode() != null)
+			byCode.put(term.getCode(), term);
+	}
+
+	/**
+	 * Get a term by its id
+	 * 
+	 * @param id
+	 * @return the term or null if not found
+	 */
+	public Term get(int id) {
+
+		if (id >= 0 && id < byId.length)
+			return byId[id];
+
+		return sparse.get(id);
+	}
+
+	/**
+	 * Get a term by its code
+	 * 
+	 * @param code
+	 * @return the term or null if not found
+	 */
+	public Term getByCode(String code) {
+		return byCode.get(code);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Remove all the terms
+	 */
+	public void clear() {
+		byId = new Term[INITIAL_CAPACITY];
+		sparse.clear();
+		byCode.clear();
+		size = 0;
+	}
+
+	/**
+	 * Get all the terms ordered by id. The collection is a view of the store.
+	 * 
+	 * @return
+	 */
+	public Collection<Term> values() {
+		return values;
+	}
+
+	/**
+	 * Enlarge the array in order to contain the id. The sparse terms which fit
+	 * in the new array are moved into it.
+	 * 
+	 * @param id
+	 */
+	private void grow(int id) {
+
+		int capacity = Math.max(id + 1, byId.length + (byId.length >> 1));
+
+		Term[] array = new Term[capacity];
+		System.arraycopy(byId, 0, array, 0, byId.length);
+
+		Map<Integer, Term> fitting = sparse.subMap(byId.length, capacity);
+
+		for (Map.Entry<Integer, Term> entry : fitting.entrySet())
+			array[entry.getKey()] = entry.getValue();
+
+		fitting.clear();
+
+		byId = array;
+	}
+
+	/**
+	 * View of the terms of the store: the negative ids, the array and then the
+	 * high ids
+	 */
+	private class Values extends AbstractCollection<Term> {
+
+		@Override
+		public Iterator<Term> iterator() {
+
+			return new Iterator<Term>() {
+
+				private final Term[] array = byId;
+				private final Iterator<Term> negativeIterator = sparse.headMap(0).values().iterator();
+				private final Iterator<Term> highIterator = sparse.tailMap(0).values().iterator();
+				private int index = nextIndex(0);
+
+				private int nextIndex(int from) {
+
+					int i = from;
+					while (i < array.length && array[i] == null)
+						i++;
+
+					return i;
+				}
+
+				@Override
+				public boolean hasNext() {
+					return negativeIterator.hasNext() || index < array.length || highIterator.hasNext();
+				}
+
+				@Override
+				public Term next() {
+
+					if (negativeIterator.hasNext())
+						return negativeIterator.next();
+
+					if (index < array.length) {
+						Term term = array[index];
+						index = nextIndex(index + 1);
+						return term;
+					}
+
+					if (highIterator.hasNext())
+						return highIterator.next();
+
+					throw new NoSuchElementException();
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package catalogue_browser_dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+
+/**
+ * Settings and utilities shared by the DAOs which insert large amounts of
+ * records (as the import of a catalogue). The records of each insert call are
+ * sent to the database in chunks of {@link #getChunkSize()} rows inside a
+ * single transaction, in order to avoid keeping the entire batch in the driver
+ * memory.
+ *
+ * @author shahaal
+ *
+ */
+public class BulkInsert {
+
+	private static int chunkSize = 1000;
+	private static boolean deferIndexes = true;
+
+	/**
+	 * Get the number of rows which are sent together to the database
+	 *
+	 * @return
+	 */
+	public static int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Set the number of rows which are sent together to the database
+	 *
+	 * @param chunkSize
+	 */
+	public static void setChunkSize(int chunkSize) {
+
+		if (chunkSize <= 0)
+			throw new IllegalArgumentException("The chunk size must be positive, found " + chunkSize);
+
+		BulkInsert.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Check if the secondary indexes should be dropped before importing a
+	 * catalogue and built again at the end of the import
+	 *
+	 * @return
+	 */
+	public static boolean isDeferIndexes() {
+		return deferIndexes;
+	}
+
+	/**
+	 * Set if the secondary indexes should be built only at the end of the import
+	 * of a catalogue
+	 *
+	 * @param deferIndexes
+	 */
+	public static void setDeferIndexes(boolean deferIndexes) {
+		BulkInsert.deferIndexes = deferIndexes;
+	}
+
+	/**
+	 * Prepare the insert statement for the records. The generated keys are
+	 * requested only for single records, since for batches derby returns only
+	 * the key of the last row.
+	 *
+	 * @param con
+	 * @param query
+	 * @param records
+	 * @return
+	 * @throws SQLException
+	 */
+	public static PreparedStatement prepare(Connection con, String query, Iterable<?> records)
+			throws SQLException {
+
+		int keys = isSingle(records) ? Statement.RETURN_GENERATED_KEYS : Statement.NO_GENERATED_KEYS;
+
+		return con.prepareStatement(query, keys);
+	}
+
+	/**
+	 * Add the current parameters to the batch and send the batch to the database
+	 * if the chunk is full
+	 *
+	 * @param stmt
+	 * @param count number of records added to the batch, this one included
+	 * @throws SQLException
+	 */
+	public static void addBatch(PreparedStatement stmt, int count) throws SQLException {
+
+		stmt.addBatch();
+
+		if (count % chunkSize == 0)
+			stmt.executeBatch();
+	}
+
+	/**
+	 * Check if the records contain exactly one element
+	 *
+	 * @param records
+	 * @return
+	 */
+	private static boolean isSingle(Iterable<?> records) {
+
+		Iterator<?> iterator = records.iterator();
+
+		if (!iterator.hasNext())
+			return false;
+
+		iterator.next();
+
+		return !iterator.hasNext();
+	}
+}
@@ -297,6 +297,8 @@ public class CatalogueDAO implements ICatalogueDAO {
 	 */
 	public void deleteContents(Catalogue catalogue) throws SQLException {
 
+		CatalogueWriteHooks.onWrite(catalogue);
+
 		try (Connection con = catalogue.getConnection(); Statement stmt = con.createStatement();) {
 
 			stmt.execute("DELETE FROM APP.PICKLIST_TERM");
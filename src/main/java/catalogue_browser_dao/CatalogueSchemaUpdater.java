@@ -0,0 +1,220 @@
+package catalogue_browser_dao;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Versioned migration of the catalogue databases structure. The version of
+ * the schema is stored in the APP.SCHEMA_VERSION table of each catalogue db
+ * and the missing migrations are applied in order, so that the catalogues
+ * downloaded or created with previous versions of the tool get the same
+ * structure of the new ones.
+ *
+ * To change the structure of the catalogue db, append a new migration to
+ * {@link #MIGRATIONS} (never edit the already released ones).
+ *
+ * @author shahaal
+ *
+ */
+public class CatalogueSchemaUpdater {
+
+	private static final Logger LOGGER = LogManager.getLogger(CatalogueSchemaUpdater.class);
+
+	private static final String VERSION_TABLE = "SCHEMA_VERSION";
+
+	/**
+	 * Migrations of the schema, the migration at index i upgrades the schema to
+	 * version i + 1
+	 */
+	private static final String[][] MIGRATIONS = {
+
+			// version 1: indexes for the children and attribute queries
+			{ "create index APP.PARENT_TERM_PARENT_IDX on APP.PARENT_TERM ( PARENT_TERM_ID, HIERARCHY_ID, TERM_ORDER )",
+					"create index APP.TERM_ATTRIBUTE_ATTR_IDX on APP.TERM_ATTRIBUTE ( ATTR_ID, TERM_ID )" },
+
+			// version 2: upper case columns for the case insensitive searches
+			{ "alter table APP.TERM add column TERM_CODE_UPPER varchar(40) generated always as ( upper( TERM_CODE ) )",
+					"alter table APP.TERM add column TERM_EXTENDED_NAME_UPPER varchar(3000) generated always as ( upper( TERM_EXTENDED_NAME ) )",
+					"alter table APP.TERM add column TERM_SHORT_NAME_UPPER varchar(300) generated always as ( upper( TERM_SHORT_NAME ) )",
+					"create index APP.TERM_CODE_UPPER_IDX on APP.TERM ( TERM_CODE_UPPER )",
+					"create index APP.TERM_EXTENDED_NAME_UPPER_IDX on APP.TERM ( TERM_EXTENDED_NAME_UPPER )",
+					"create index APP.TERM_SHORT_NAME_UPPER_IDX on APP.TERM ( TERM_SHORT_NAME_UPPER )" } };
+
+	/**
+	 * Indexes which are not needed by the constraints of the tables, therefore
+	 * they can be dropped during the bulk load of a catalogue and built at the
+	 * end of it (name, creation statement)
+	 */
+	private static final String[][] SECONDARY_INDEXES = {
+			{ "PARENT_TERM_PARENT_IDX", MIGRATIONS[0][0] },
+			{ "TERM_ATTRIBUTE_ATTR_IDX", MIGRATIONS[0][1] },
+			{ "TERM_CODE_UPPER_IDX", MIGRATIONS[1][3] },
+			{ "TERM_EXTENDED_NAME_UPPER_IDX", MIGRATIONS[1][4] },
+			{ "TERM_SHORT_NAME_UPPER_IDX", MIGRATIONS[1][5] } };
+
+	/**
+	 * Get the schema version which is created by the current tool
+	 *
+	 * @return
+	 */
+	public static int getLatestVersion() {
+		return MIGRATIONS.length;
+	}
+
+	/**
+	 * Apply all the missing migrations to the catalogue database. Each migration
+	 * is applied in a single transaction together with the update of the schema
+	 * version. The secondary indexes dropped by an interrupted bulk load are
+	 * built again.
+	 *
+	 * @param con connection to the catalogue database
+	 * @throws SQLException
+	 */
+	public static void update(Connection con) throws SQLException {
+
+		int version = getVersion(con);
+
+		if (version < MIGRATIONS.length)
+			migrate(con, version);
+
+		createSecondaryIndexes(con);
+	}
+
+	/**
+	 * Apply the migrations starting from the current version
+	 *
+	 * @param con
+	 * @param version current version of the schema
+	 * @throws SQLException
+	 */
+	private static void migrate(Connection con, int version) throws SQLException {
+
+		boolean autoCommit = con.getAutoCommit();
+
+		con.setAutoCommit(false);
+
+		try (Statement stmt = con.createStatement();) {
+
+			for (int i = version; i < MIGRATIONS.length; i++) {
+
+				LOGGER.info("Upgrading catalogue database schema to version " + (i + 1));
+
+				for (String sql : MIGRATIONS[i])
+					stmt.executeUpdate(sql);
+
+				stmt.executeUpdate("update APP." + VERSION_TABLE + " set VERSION = " + (i + 1));
+
+				con.commit();
+			}
+
+		} catch (SQLException e) {
+			con.rollback();
+			throw e;
+		} finally {
+			con.setAutoCommit(autoCommit);
+		}
+	}
+
+	/**
+	 * Drop the secondary indexes of the catalogue database, in order to speed up
+	 * the insertion of a large number of records. Call
+	 * {@link #createSecondaryIndexes(Connection)} at the end of the insertions.
+	 *
+	 * @param con
+	 * @throws SQLException
+	 */
+	public static void dropSecondaryIndexes(Connection con) throws SQLException {
+
+		try (Statement stmt = con.createStatement();) {
+
+			for (String[] index : SECONDARY_INDEXES) {
+				if (hasIndex(con, index[0]))
+					stmt.executeUpdate("drop index APP." + index[0]);
+			}
+		}
+	}
+
+	/**
+	 * Build the secondary indexes of the catalogue database which are missing
+	 *
+	 * @param con
+	 * @throws SQLException
+	 */
+	public static void createSecondaryIndexes(Connection con) throws SQLException {
+
+		try (Statement stmt = con.createStatement();) {
+
+			for (String[] index : SECONDARY_INDEXES) {
+				if (!hasIndex(con, index[0])) {
+					LOGGER.info("Building index " + index[0]);
+					stmt.executeUpdate(index[1]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check if the index exists in the APP schema
+	 *
+	 * @param con
+	 * @param name
+	 * @return
+	 * @throws SQLException
+	 */
+	private static boolean hasIndex(Connection con, String name) throws SQLException {
+
+		String query = "select c.CONGLOMERATENAME from SYS.SYSCONGLOMERATES c, SYS.SYSSCHEMAS s "
+				+ "where c.SCHEMAID = s.SCHEMAID and s.SCHEMANAME = 'APP' and c.CONGLOMERATENAME = ?";
+
+		try (PreparedStatement stmt = con.prepareStatement(query);) {
+
+			stmt.setString(1, name);
+
+			try (ResultSet rs = stmt.executeQuery();) {
+				return rs.next();
+			}
+		}
+	}
+
+	/**
+	 * Get the current schema version of the database, the version table is
+	 * created if not present (version 0)
+	 *
+	 * @param con
+	 * @return
+	 * @throws SQLException
+	 */
+	private static int getVersion(Connection con) throws SQLException {
+
+		DatabaseMetaData dbm = con.getMetaData();
+
+		boolean exists;
+		try (ResultSet rs = dbm.getTables(null, "APP", VERSION_TABLE, null);) {
+			exists = rs.next();
+		}
+
+		try (Statement stmt = con.createStatement();) {
+
+			if (!exists) {
+				stmt.executeUpdate("create table APP." + VERSION_TABLE + " ( VERSION integer not null )");
+				stmt.executeUpdate("insert into APP." + VERSION_TABLE + " ( VERSION ) values ( 0 )");
+				return 0;
+			}
+
+			try (ResultSet rs = stmt.executeQuery("select VERSION from APP." + VERSION_TABLE);) {
+				if (rs.next())
+					return rs.getInt("VERSION");
+			}
+
+			stmt.executeUpdate("insert into APP." + VERSION_TABLE + " ( VERSION ) values ( 0 )");
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package catalogue_browser_dao;
+
+import catalogue.Catalogue;
+import catalogue.CatalogueSnapshot;
+
+/**
+ * Actions required each time the DAOs modify the terms, the parent terms, the
+ * term attributes or the whole contents of a catalogue database. Every write
+ * method of the DAOs calls {@link #onWrite(Catalogue)} before changing the
+ * database.
+ * 
+ * @author shahaal
+ *
+ */
+class CatalogueWriteHooks {
+
+	private CatalogueWriteHooks() {
+	}
+
+	/**
+	 * Notify that the catalogue database is going to be modified: the snapshot
+	 * does not reflect the database anymore and the edit is counted for the
+	 * compaction of the database
+	 * 
+	 * @param catalogue
+	 */
+	static void onWrite(Catalogue catalogue) {
+		CatalogueSnapshot.invalidate(catalogue);
+		CompactionScheduler.recordEdit(catalogue);
+	}
+}
@@ -0,0 +1,394 @@
+package catalogue_browser_dao;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import catalogue.Catalogue;
+import global_manager.GlobalManager;
+
+/**
+ * Compaction of the catalogue databases in background. The DAOs record the
+ * edits made on each database; when a database has been edited enough and it
+ * is idle (no edit for {@link #IDLE_MILLIS}) the fragmentation of its tables
+ * is measured and the most fragmented table is compressed in place with
+ * SYSCS_INPLACE_COMPRESS_TABLE. Only one table is compressed at each run, on a
+ * low priority thread, therefore the compaction never blocks the opening or
+ * the editing of a catalogue for long. Only the database of the opened
+ * catalogue is compacted, since the other databases could be closed, copied or
+ * deleted in the meanwhile.
+ * 
+ * @author shahaal
+ *
+ */
+public class CompactionScheduler {
+
+	private static final Logger LOGGER = LogManager.getLogger(CompactionScheduler.class);
+
+	// time without edits after which a database is idle
+	private static final long IDLE_MILLIS = 60000;
+
+	// time between two runs of the scheduler
+	private static final long PERIOD_SECONDS = 30;
+
+	// number of edits after which the fragmentation is checked
+	private static final int EDITS_THRESHOLD = 50;
+
+	// a table is compressed if at least this fraction of its pages is free
+	private static final double FREE_PAGES_RATIO = 0.2;
+
+	// and if it has at least this number of free pages
+	private static final long MIN_FREE_PAGES = 64;
+
+	private static final String[] TABLES = { "PARENT_TERM", "TERM_ATTRIBUTE", "TERM", "ATTRIBUTE", "HIERARCHY",
+			"PICKLIST_TERM", "RECENT_TERM", "RELEASE_NOTES_OP", "SEARCH_OPT", "PICKLIST", "PREFERENCE",
+			"TERM_TYPE" };
+
+	// db path => state of the database
+	private static final ConcurrentHashMap<String, DbState> STATES = new ConcurrentHashMap<>();
+
+	private static ScheduledExecutorService executor;
+
+	/**
+	 * Record an edit of the catalogue database
+	 * 
+	 * @param catalogue
+	 */
+	public static void recordEdit(Catalogue catalogue) {
+
+		if (catalogue == null)
+			return;
+
+		DbState state = getState(catalogue);
+
+		synchronized (state) {
+			state.edits++;
+			state.lastEdit = System.currentTimeMillis();
+		}
+
+		start();
+	}
+
+	/**
+	 * Request the compaction of the catalogue database, which is performed as soon
+	 * as the database is idle and the catalogue is opened
+	 * 
+	 * @param catalogue
+	 */
+	public static void request(Catalogue catalogue) {
+
+		if (catalogue == null)
+			return;
+
+		DbState state = getState(catalogue);
+
+		synchronized (state) {
+			state.edits = Math.max(state.edits, EDITS_THRESHOLD);
+		}
+
+		start();
+	}
+
+	/**
+	 * Get the statistics of the last compaction of the catalogue database
+	 * 
+	 * @param catalogue
+	 * @return the statistics or null if the database was never compacted
+	 */
+	public static CompactionStats getStats(Catalogue catalogue) {
+
+		if (catalogue == null)
+			return null;
+
+		DbState state = STATES.get(catalogue.getDbPath());
+
+		if (state == null)
+			return null;
+
+		synchronized (state) {
+			return state.stats;
+		}
+	}
+
+	/**
+	 * Start the scheduler thread, if not already started
+	 */
+	private static synchronized void start() {
+
+		if (executor != null)
+			return;
+
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "db-compaction");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+
+		executor.scheduleWithFixedDelay(CompactionScheduler::run, PERIOD_SECONDS, PERIOD_SECONDS, TimeUnit.SECONDS);
+	}
+
+	private static DbState getState(Catalogue catalogue) {
+
+		DbState state = STATES.get(catalogue.getDbPath());
+
+		if (state == null) {
+			STATES.putIfAbsent(catalogue.getDbPath(), new DbState());
+			state = STATES.get(catalogue.getDbPath());
+		}
+
+		return state;
+	}
+
+	/**
+	 * Compact a table of the opened catalogue, if needed
+	 */
+	private static void run() {
+
+		// exceptions would stop the scheduled runs
+		try {
+
+			Catalogue catalogue = GlobalManager.getInstance().getCurrentCatalogue();
+
+			if (catalogue == null)
+				return;
+
+			DbState state = STATES.get(catalogue.getDbPath());
+
+			if (state == null)
+				return;
+
+			long startEdit;
+			synchronized (state) {
+
+				if (state.edits < EDITS_THRESHOLD
+						|| System.currentTimeMillis() - state.lastEdit < IDLE_MILLIS)
+					return;
+
+				startEdit = state.lastEdit;
+			}
+
+			compactNextTable(catalogue, state, startEdit);
+
+		} catch (RuntimeException e) {
+			LOGGER.error("Error during the compaction", e);
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Compress the most fragmented table of the database. If no table is
+	 * fragmented, the compaction of the database is completed.
+	 * 
+	 * @param catalogue
+	 * @param state
+	 * @param startEdit time of the last edit when the run started
+	 */
+	private static void compactNextTable(Catalogue catalogue, DbState state, long startEdit) {
+
+		long start = System.currentTimeMillis();
+
+		try (Connection con = catalogue.getConnection(); Statement stmt = con.createStatement();) {
+
+			String worstTable = null;
+			double worstRatio = 0;
+			long worstFree = 0;
+			long allocated = 0;
+			long free = 0;
+
+			// measure the free pages of the tables and of their indexes
+			for (String table : TABLES) {
+
+				try (ResultSet rs = stmt.executeQuery("select sum(NUMALLOCATEDPAGES), sum(NUMFREEPAGES) "
+						+ "from table (SYSCS_DIAG.SPACE_TABLE('APP', '" + table + "')) as T");) {
+
+					if (!rs.next())
+						continue;
+
+					long tableAllocated = rs.getLong(1);
+					long tableFree = rs.getLong(2);
+
+					allocated += tableAllocated;
+					free += tableFree;
+
+					double ratio = (double) tableFree / Math.max(1, tableAllocated + tableFree);
+
+					if (tableFree >= MIN_FREE_PAGES && ratio >= FREE_PAGES_RATIO && ratio > worstRatio) {
+						worstTable = table;
+						worstRatio = ratio;
+						worstFree = tableFree;
+					}
+				}
+			}
+
+			synchronized (state) {
+
+				// the database was edited in the meanwhile, wait again
+				if (state.lastEdit != startEdit)
+					return;
+
+				// nothing more to compress
+				if (worstTable == null) {
+
+					state.edits = 0;
+
+					if (state.stats == null || state.stats.isRunning()) {
+
+						state.stats = new CompactionStats(state.stats, free, allocated, null, 0,
+								System.currentTimeMillis() - start);
+
+						LOGGER.info("Compaction of " + catalogue + " completed: " + state.stats);
+					}
+
+					return;
+				}
+			}
+
+			try (CallableStatement cs = con
+					.prepareCall("CALL SYSCS_UTIL.SYSCS_INPLACE_COMPRESS_TABLE(?, ?, ?, ?, ?)");) {
+
+				cs.setString(1, "APP");
+				cs.setString(2, worstTable);
+				cs.setShort(3, (short) 1); // purge deleted rows
+				cs.setShort(4, (short) 1); // defragment
+				cs.setShort(5, (short) 1); // truncate the end of the file
+
+				cs.execute();
+			}
+
+			long elapsed = System.currentTimeMillis() - start;
+
+			synchronized (state) {
+				state.stats = new CompactionStats(state.stats, free - worstFree, allocated, worstTable, worstFree,
+						elapsed);
+			}
+
+			LOGGER.info("Compressed table " + worstTable + " of " + catalogue + " (" + worstFree + " free pages) in "
+					+ elapsed + " ms");
+
+			stmt.close();
+			con.close();
+
+		} catch (SQLException e) {
+			LOGGER.error("DB error", e);
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Edits recorded for a database
+	 */
+	private static class DbState {
+		private int edits;
+		private long lastEdit;
+		private CompactionStats stats;
+	}
+
+	/**
+	 * Statistics of the compaction of a database. A compaction is made of several
+	 * runs, one for each compressed table.
+	 * 
+	 * @author shahaal
+	 *
+	 */
+	public static class CompactionStats {
+
+		private final long lastRun;
+		private final boolean running;
+		private final int compressedTables;
+		private final long releasedPages;
+		private final long freePages;
+		private final long allocatedPages;
+		private final long elapsed;
+		private final String lastTable;
+
+		/**
+		 * Add a run to the statistics of the current compaction
+		 * 
+		 * @param previous       statistics of the previous run, can be null
+		 * @param freePages      free pages left in the database
+		 * @param allocatedPages allocated pages of the database
+		 * @param table          the compressed table, null if the compaction is
+		 *                       completed
+		 * @param releasedPages  pages released by the run
+		 * @param elapsed        milliseconds spent in the run
+		 */
+		private CompactionStats(CompactionStats previous, long freePages, long allocatedPages, String table,
+				long releasedPages, long elapsed) {
+
+			// a new compaction is started after a completed one
+			boolean sameCompaction = previous != null && previous.running;
+
+			this.lastRun = System.currentTimeMillis();
+			this.running = table != null;
+			this.compressedTables = (sameCompaction ? previous.compressedTables : 0) + (table != null ? 1 : 0);
+			this.releasedPages = (sameCompaction ? previous.releasedPages : 0) + releasedPages;
+			this.elapsed = (sameCompaction ? previous.elapsed : 0) + elapsed;
+			this.freePages = freePages;
+			this.allocatedPages = allocatedPages;
+			this.lastTable = table != null ? table : (sameCompaction ? previous.lastTable : null);
+		}
+
+		/**
+		 * Time of the last run
+		 * 
+		 * @return
+		 */
+		public long getLastRun() {
+			return lastRun;
+		}
+
+		/**
+		 * Check if the compaction is still in progress
+		 * 
+		 * @return
+		 */
+		public boolean isRunning() {
+			return running;
+		}
+
+		public int getCompressedTables() {
+			return compressedTables;
+		}
+
+		public long getReleasedPages() {
+			return releasedPages;
+		}
+
+		public long getFreePages() {
+			return freePages;
+		}
+
+		public long getAllocatedPages() {
+			return allocatedPages;
+		}
+
+		/**
+		 * Milliseconds spent compressing the tables
+		 * 
+		 * @return
+		 */
+		public long getElapsed() {
+			return elapsed;
+		}
+
+		public String getLastTable() {
+			return lastTable;
+		}
+
+		@Override
+		public String toString() {
+			return "compressed tables=" + compressedTables + ", released pages=" + releasedPages + ", free pages="
+					+ freePages + ", allocated pages=" + allocatedPages + ", elapsed=" + elapsed + " ms";
+		}
+	}
+}
@@ -0,0 +1,668 @@
+package catalogue_browser_dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Pool of reusable derby connections for a single database. The connections
+ * returned by {@link #getConnection()} are wrappers of the physical
+ * connections: closing them gives back the connection to the pool instead of
+ * closing it. The prepared statements created with the wrappers are cached for
+ * each physical connection and closing them only resets their parameters. The
+ * other statements are closed when the connection is given back to the pool,
+ * if the user did not close them.
+ *
+ * Pools are shared by database url, use {@link #getPool(String)} to get the
+ * pool of a database and {@link #shutdown(String)} to close all its connections
+ * before shutting down the database.
+ *
+ * @author shahaal
+ *
+ */
+public class ConnectionPool {
+
+	private static final Logger LOGGER = LogManager.getLogger(ConnectionPool.class);
+
+	// max number of idle connections kept open for each database
+	private static final int MAX_IDLE_CONNECTIONS = 4;
+
+	// max number of prepared statements cached for each connection
+	private static final int MAX_CACHED_STATEMENTS = 64;
+
+	// db url => pool of the db
+	private static final HashMap<String, ConnectionPool> POOLS = new HashMap<>();
+
+	private final String dbUrl;
+
+	// connections which are open but not used
+	private final ArrayDeque<PooledConnection> idle;
+
+	private boolean closed;
+
+	// statistics
+	private long borrowedCount;
+	private long returnedCount;
+	private long openedCount;
+	private long totalWaitNanos;
+	private long maxWaitNanos;
+	private long statementHits;
+	private long statementMisses;
+
+	/**
+	 * Get the pool of the database identified by the url, the pool is created if
+	 * not present
+	 *
+	 * @param dbUrl
+	 * @return
+	 */
+	public static synchronized ConnectionPool getPool(String dbUrl) {
+
+		ConnectionPool pool = POOLS.get(dbUrl);
+
+		if (pool == null) {
+			pool = new ConnectionPool(dbUrl);
+			POOLS.put(dbUrl, pool);
+		}
+
+		return pool;
+	}
+
+	/**
+	 * Close all the idle connections of the database pool and remove the pool.
+	 * The connections which are in use will be closed when they are given back.
+	 *
+	 * @param dbUrl
+	 */
+	public static void shutdown(String dbUrl) {
+
+		ConnectionPool pool;
+
+		synchronized (ConnectionPool.class) {
+			pool = POOLS.remove(dbUrl);
+		}
+
+		if (pool != null)
+			pool.close();
+	}
+
+	/**
+	 * Shutdown all the pools
+	 */
+	public static void shutdownAll() {
+
+		ArrayList<ConnectionPool> pools;
+
+		synchronized (ConnectionPool.class) {
+			pools = new ArrayList<>(POOLS.values());
+			POOLS.clear();
+		}
+
+		for (ConnectionPool pool : pools)
+			pool.close();
+	}
+
+	private ConnectionPool(String dbUrl) {
+		this.dbUrl = dbUrl;
+		this.idle = new ArrayDeque<>();
+		this.closed = false;
+	}
+
+	/**
+	 * Borrow a connection from the pool. A new physical connection is opened if
+	 * no idle connection is available, therefore the call never blocks (DAOs
+	 * can open nested connections while iterating a result set). Close the
+	 * connection to give it back to the pool.
+	 *
+	 * @return
+	 * @throws SQLException
+	 */
+	public Connection getConnection() throws SQLException {
+
+		long start = System.nanoTime();
+
+		PooledConnection pooled = null;
+
+		synchronized (this) {
+			pooled = idle.pollFirst();
+		}
+
+		boolean opened = false;
+
+		// open a new connection if no one is available
+		if (pooled == null) {
+			pooled = new PooledConnection(DriverManager.getConnection(dbUrl));
+			opened = true;
+		}
+
+		long wait = System.nanoTime() - start;
+
+		synchronized (this) {
+
+			borrowedCount++;
+
+			if (opened)
+				openedCount++;
+
+			totalWaitNanos += wait;
+			maxWaitNanos = Math.max(maxWaitNanos, wait);
+		}
+
+		return pooled.borrow();
+	}
+
+	/**
+	 * Give back a connection to the pool
+	 *
+	 * @param pooled
+	 */
+	private void release(PooledConnection pooled) {
+
+		// reset the connection state for the next user
+		boolean reusable = pooled.reset();
+
+		synchronized (this) {
+
+			returnedCount++;
+
+			if (reusable && !closed && idle.size() < MAX_IDLE_CONNECTIONS) {
+				idle.addFirst(pooled);
+				return;
+			}
+		}
+
+		pooled.closePhysical();
+	}
+
+	/**
+	 * Close all the idle connections and refuse the connections which will be
+	 * given back
+	 */
+	private void close() {
+
+		ArrayList<PooledConnection> toClose;
+
+		synchronized (this) {
+			closed = true;
+			toClose = new ArrayList<>(idle);
+			idle.clear();
+		}
+
+		for (PooledConnection pooled : toClose)
+			pooled.closePhysical();
+
+		LOGGER.info("Connection pool closed " + this);
+	}
+
+	private synchronized void countStatement(boolean hit) {
+		if (hit)
+			statementHits++;
+		else
+			statementMisses++;
+	}
+
+	/**
+	 * Number of connections borrowed from the pool
+	 *
+	 * @return
+	 */
+	public synchronized long getBorrowedCount() {
+		return borrowedCount;
+	}
+
+	/**
+	 * Number of connections given back to the pool
+	 *
+	 * @return
+	 */
+	public synchronized long getReturnedCount() {
+		return returnedCount;
+	}
+
+	/**
+	 * Number of physical connections opened by the pool
+	 *
+	 * @return
+	 */
+	public synchronized long getOpenedCount() {
+		return openedCount;
+	}
+
+	/**
+	 * Total time spent to get the connections, in milliseconds
+	 *
+	 * @return
+	 */
+	public synchronized double getTotalWaitMillis() {
+		return totalWaitNanos / 1000000.0;
+	}
+
+	/**
+	 * Max time spent to get a single connection, in milliseconds
+	 *
+	 * @return
+	 */
+	public synchronized double getMaxWaitMillis() {
+		return maxWaitNanos / 1000000.0;
+	}
+
+	/**
+	 * Number of prepared statements which were reused from the cache
+	 *
+	 * @return
+	 */
+	public synchronized long getStatementHits() {
+		return statementHits;
+	}
+
+	/**
+	 * Number of prepared statements which were prepared from scratch
+	 *
+	 * @return
+	 */
+	public synchronized long getStatementMisses() {
+		return statementMisses;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "CONNECTION POOL: url=" + dbUrl + ";borrowed=" + borrowedCount + ";returned=" + returnedCount
+				+ ";opened=" + openedCount + ";idle=" + idle.size() + ";totalWaitMs=" + getTotalWaitMillis()
+				+ ";maxWaitMs=" + getMaxWaitMillis() + ";statementHits=" + statementHits + ";statementMisses="
+				+ statementMisses;
+	}
+
+	/**
+	 * Physical connection of the pool with its cache of prepared statements
+	 */
+	private class PooledConnection {
+
+		private final Connection physical;
+
+		// sql (and generated keys flag) => cached statement
+		private final LinkedHashMap<String, CachedStatement> statements;
+
+		// statements which are not cached, created by the current user
+		private final ArrayList<Statement> uncached;
+
+		// the wrapper given to the current user
+		private ConnectionHandler current;
+
+		public PooledConnection(Connection physical) {
+
+			this.physical = physical;
+			this.uncached = new ArrayList<>();
+
+			// least recently used statements are closed first
+			this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+
+					if (size() <= MAX_CACHED_STATEMENTS || eldest.getValue().inUse)
+						return false;
+
+					eldest.getValue().closePhysical();
+					return true;
+				}
+			};
+		}
+
+		/**
+		 * Create a new wrapper of the connection for a new user
+		 *
+		 * @return
+		 */
+		public Connection borrow() {
+			current = new ConnectionHandler(this);
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, current);
+		}
+
+		/**
+		 * Get a prepared statement from the cache or prepare a new one
+		 *
+		 * @param sql
+		 * @param autoGeneratedKeys null if not specified
+		 * @return
+		 * @throws SQLException
+		 */
+		public PreparedStatement prepare(Connection wrapper, String sql, Integer autoGeneratedKeys)
+				throws SQLException {
+
+			String key = autoGeneratedKeys == null ? sql : sql + "#" + autoGeneratedKeys;
+
+			CachedStatement cached = statements.get(key);
+
+			// the same query is already in use by this user
+			// (e.g. nested queries), use a not cached statement
+			if (cached != null && cached.inUse) {
+				countStatement(false);
+				return track(autoGeneratedKeys == null ? physical.prepareStatement(sql)
+						: physical.prepareStatement(sql, autoGeneratedKeys));
+			}
+
+			countStatement(cached != null);
+
+			if (cached == null) {
+
+				PreparedStatement stmt = autoGeneratedKeys == null ? physical.prepareStatement(sql)
+						: physical.prepareStatement(sql, autoGeneratedKeys);
+
+				cached = new CachedStatement(stmt);
+				statements.put(key, cached);
+			}
+
+			return cached.borrow(wrapper);
+		}
+
+		/**
+		 * Keep track of a statement which is not cached, in order to close it when
+		 * the connection is given back to the pool
+		 *
+		 * @param stmt
+		 * @return the same statement
+		 * @throws SQLException
+		 */
+		public <T extends Statement> T track(T stmt) throws SQLException {
+
+			// forget the statements already closed by the user
+			if (uncached.size() >= MAX_CACHED_STATEMENTS) {
+				Iterator<Statement> iter = uncached.iterator();
+				while (iter.hasNext()) {
+					if (iter.next().isClosed())
+						iter.remove();
+				}
+			}
+
+			uncached.add(stmt);
+
+			return stmt;
+		}
+
+		/**
+		 * Close the statements which are not cached
+		 */
+		private void closeUncached() {
+
+			for (Statement stmt : uncached) {
+				try {
+					stmt.close();
+				} catch (SQLException e) {
+					LOGGER.debug("Statement already closed", e);
+				}
+			}
+
+			uncached.clear();
+		}
+
+		/**
+		 * Reset the connection state after its use
+		 *
+		 * @return true if the connection can be reused
+		 */
+		public boolean reset() {
+
+			// give back the statements which were not closed
+			for (CachedStatement cached : statements.values()) {
+				if (cached.inUse)
+					cached.release();
+			}
+
+			closeUncached();
+
+			try {
+
+				if (physical.isClosed())
+					return false;
+
+				// rollback pending changes of failed transactions
+				if (!physical.getAutoCommit()) {
+					physical.rollback();
+					physical.setAutoCommit(true);
+				}
+
+				physical.clearWarnings();
+
+				return true;
+
+			} catch (SQLException e) {
+				LOGGER.error("Cannot reuse connection of " + dbUrl, e);
+				return false;
+			}
+		}
+
+		/**
+		 * Close the statements and the physical connection
+		 */
+		public void closePhysical() {
+
+			closeUncached();
+
+			Iterator<CachedStatement> iter = statements.values().iterator();
+			while (iter.hasNext()) {
+				iter.next().closePhysical();
+				iter.remove();
+			}
+
+			try {
+				physical.close();
+			} catch (SQLException e) {
+				LOGGER.debug("Connection already closed", e);
+			}
+		}
+	}
+
+	/**
+	 * Wrapper of the physical connection given to a single user
+	 */
+	private class ConnectionHandler implements InvocationHandler {
+
+		private final PooledConnection pooled;
+		private boolean closed;
+
+		public ConnectionHandler(PooledConnection pooled) {
+			this.pooled = pooled;
+			this.closed = false;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			String name = method.getName();
+
+			switch (name) {
+			case "close":
+
+				// a connection can be closed more than once
+				// (explicit close and try with resources)
+				if (!closed) {
+					closed = true;
+					release(pooled);
+				}
+
+				return null;
+
+			case "isClosed":
+				return closed || pooled.physical.isClosed();
+
+			case "equals":
+				return proxy == args[0];
+
+			case "hashCode":
+				return System.identityHashCode(proxy);
+
+			case "toString":
+				return "POOLED " + pooled.physical;
+
+			default:
+				break;
+			}
+
+			if (closed)
+				throw new SQLException("Connection already closed");
+
+			// cache the simple prepared statements
+			if (name.equals("prepareStatement")) {
+
+				Class<?>[] types = method.getParameterTypes();
+
+				if (types.length == 1)
+					return pooled.prepare((Connection) proxy, (String) args[0], null);
+
+				if (types.length == 2 && types[1] == int.class)
+					return pooled.prepare((Connection) proxy, (String) args[0], (Integer) args[1]);
+			}
+
+			try {
+
+				Object result = method.invoke(pooled.physical, args);
+
+				// other statements (createStatement, prepareCall...)
+				if (result instanceof Statement)
+					pooled.track((Statement) result);
+
+				return result;
+
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	/**
+	 * Prepared statement which is kept open after its use
+	 */
+	private static class CachedStatement implements InvocationHandler {
+
+		private final PreparedStatement physical;
+
+		// result sets opened by the current user
+		private final ArrayList<ResultSet> resultSets;
+
+		private Connection owner;
+		private Object current;
+		private boolean inUse;
+
+		public CachedStatement(PreparedStatement physical) {
+			this.physical = physical;
+			this.resultSets = new ArrayList<>();
+			this.inUse = false;
+		}
+
+		public PreparedStatement borrow(Connection owner) {
+			this.owner = owner;
+			this.inUse = true;
+			this.current = Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+					new Class<?>[] { PreparedStatement.class }, this);
+			return (PreparedStatement) current;
+		}
+
+		/**
+		 * Reset the statement for the next user
+		 */
+		public void release() {
+
+			for (ResultSet rs : resultSets) {
+				try {
+					rs.close();
+				} catch (SQLException e) {
+					LOGGER.debug("Result set already closed", e);
+				}
+			}
+
+			resultSets.clear();
+
+			try {
+				physical.clearParameters();
+				physical.clearBatch();
+				physical.clearWarnings();
+			} catch (SQLException e) {
+				LOGGER.debug("Cannot reset statement", e);
+			}
+
+			owner = null;
+			current = null;
+			inUse = false;
+		}
+
+		public void closePhysical() {
+			try {
+				physical.close();
+			} catch (SQLException e) {
+				LOGGER.debug("Statement already closed", e);
+			}
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			String name = method.getName();
+
+			// wrapper of a previous user
+			boolean stale = proxy != current;
+
+			switch (name) {
+			case "close":
+				// the statement is kept open
+				if (!stale)
+					release();
+				return null;
+
+			case "isClosed":
+				return stale;
+
+			case "getConnection":
+				return owner;
+
+			case "equals":
+				return proxy == args[0];
+
+			case "hashCode":
+				return System.identityHashCode(proxy);
+
+			case "toString":
+				return "CACHED " + physical;
+
+			default:
+				break;
+			}
+
+			if (stale)
+				throw new SQLException("Statement already closed");
+
+			try {
+
+				Object result = method.invoke(physical, args);
+
+				// keep track of the result sets to close them
+				// when the statement is given back
+				if (result instanceof ResultSet)
+					resultSets.add((ResultSet) result);
+
+				return result;
+
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package catalogue_browser_dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import catalogue.Catalogue;
+
+/**
+ * Copy of the catalogue databases at file level. The files are copied in
+ * parallel with {@link FileChannel#transferTo}, which lets the operating
+ * system move the data without passing through the java heap, and the big
+ * files are split in chunks copied by different threads. A database in use is
+ * frozen during the copy, so that the copied files are consistent. The
+ * throughput of each copy is logged.
+ * 
+ * @author shahaal
+ *
+ */
+class DatabaseCloner {
+
+	private static final Logger LOGGER = LogManager.getLogger(DatabaseCloner.class);
+
+	// files bigger than this are copied in more chunks
+	private static final long CHUNK_SIZE = 32L * 1024 * 1024;
+
+	// files of the running derby instance which do not contain data
+	private static final Set<String> DERBY_LOCKS = new HashSet<>(Arrays.asList("db.lck", "dbex.lck", "tmp"));
+
+	// threads shared by all the copies, they do not prevent the application from
+	// being closed
+	private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+			Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors())), new ThreadFactory() {
+
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "db-cloner-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/**
+	 * Copy the database of the catalogue into the destination folder. The
+	 * database is frozen during the copy, the connections can still read it but
+	 * the writes wait until the copy is finished.
+	 * 
+	 * @param catalogue   the catalogue whose database is copied
+	 * @param destination the folder of the copy, which will contain directly the
+	 *                    database files
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	static void cloneDatabase(Catalogue catalogue, File destination) throws SQLException, IOException {
+
+		try (Connection con = catalogue.getConnection(); Statement stmt = con.createStatement();) {
+
+			stmt.execute("CALL SYSCS_UTIL.SYSCS_FREEZE_DATABASE()");
+
+			try {
+				copy(catalogue.getDbFolder(), destination, true);
+			} finally {
+				stmt.execute("CALL SYSCS_UTIL.SYSCS_UNFREEZE_DATABASE()");
+			}
+
+			stmt.close();
+			con.close();
+		}
+	}
+
+	/**
+	 * Copy a file or a folder with all its files into the destination
+	 * 
+	 * @param source
+	 * @param destination
+	 * @param database    true if the source is a database folder, in this case the
+	 *                    lock files of derby are not copied
+	 * @return the number of copied bytes
+	 * @throws IOException
+	 */
+	static long copy(File source, File destination, boolean database) throws IOException {
+
+		long start = System.currentTimeMillis();
+
+		List<Future<Long>> tasks = new ArrayList<>();
+
+		int files = submit(source, destination, database, tasks);
+
+		long bytes = 0;
+
+		try {
+
+			for (Future<Long> task : tasks)
+				bytes += task.get();
+
+		} catch (InterruptedException e) {
+
+			for (Future<Long> task : tasks)
+				task.cancel(true);
+
+			Thread.currentThread().interrupt();
+
+			throw new InterruptedIOException("Copy of " + source + " interrupted");
+
+		} catch (ExecutionException e) {
+
+			for (Future<Long> task : tasks)
+				task.cancel(true);
+
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+
+			throw new IOException("Cannot copy " + source + " into " + destination, e.getCause());
+		}
+
+		long elapsed = Math.max(1, System.currentTimeMillis() - start);
+
+		LOGGER.info(String.format("Copied %s into %s: %d files, %.1f MB in %d ms (%.1f MB/s)", source, destination,
+				files, bytes / 1048576.0, elapsed, bytes / 1048576.0 * 1000 / elapsed));
+
+		return bytes;
+	}
+
+	/**
+	 * Create the destination folders and files and submit the copy of the files
+	 * 
+	 * @param source
+	 * @param destination
+	 * @param database
+	 * @param tasks       output copy tasks
+	 * @return the number of files to copy
+	 * @throws IOException
+	 */
+	private static int submit(File source, File destination, boolean database, List<Future<Long>> tasks)
+			throws IOException {
+
+		if (source.isDirectory()) {
+
+			if (!destination.exists() && !destination.mkdirs())
+				throw new IOException("Cannot create the folder " + destination);
+
+			String[] names = source.list();
+
+			if (names == null)
+				throw new IOException("Cannot list the files of " + source);
+
+			int files = 0;
+
+			for (String name : names) {
+
+				if (database && DERBY_LOCKS.contains(name))
+					continue;
+
+				files += submit(new File(source, name), new File(destination, name), database, tasks);
+			}
+
+			return files;
+		}
+
+		final long size = source.length();
+
+		// create the empty file, the chunks are written in place
+		FileChannel.open(destination.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING).close();
+
+		for (long position = 0; position < size; position += CHUNK_SIZE) {
+
+			final long from = position;
+			final long count = Math.min(CHUNK_SIZE, size - position);
+
+			tasks.add(EXECUTOR.submit(() -> copyRange(source, destination, from, count)));
+		}
+
+		return 1;
+	}
+
+	/**
+	 * Copy a range of bytes of the source file into the same range of the
+	 * destination file
+	 * 
+	 * @param source
+	 * @param destination
+	 * @param position
+	 * @param count
+	 * @return the number of copied bytes
+	 * @throws IOException
+	 */
+	private static long copyRange(File source, File destination, long position, long count) throws IOException {
+
+		try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(destination.toPath(), StandardOpenOption.WRITE);) {
+
+			long copied = 0;
+
+			while (copied < count) {
+
+				out.position(position + copied);
+
+				long transferred = in.transferTo(position + copied, count - copied, out);
+
+				// the source is shorter than expected
+				if (transferred <= 0)
+					break;
+
+				copied += transferred;
+			}
+
+			return copied;
+		}
+	}
+}
@@ -4,10 +4,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.channels.FileChannel;
-import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
@@ -112,7 +109,7 @@ public class DatabaseManager {
 	 * @throws SQLException
 	 */
 	public static Connection getMainDBConnection() throws SQLException {
-		return DriverManager.getConnection(getMainDBURL());
+		return ConnectionPool.getPool(getMainDBURL()).getConnection();
 	}
 
 	/**
@@ -214,50 +211,70 @@ public class DatabaseManager {
 	}
 
 	/**
-	 * Compress the database to avoid fragmentation
+	 * Upgrade the structure of the catalogue database to the latest schema
+	 * version (indexes and columns added after the catalogue was created)
 	 * 
-	 * TODO insert missing tables
+	 * @param catalogue
 	 */
-	public static void compressDatabase() {
+	public static void updateCatalogueSchema(Catalogue catalogue) {
 
-		LOGGER.info("Compressing database");
+		try (Connection con = catalogue.getConnection();) {
 
-		// This will fail, if there are dependencies
-		GlobalManager manager = GlobalManager.getInstance();
+			CatalogueSchemaUpdater.update(con);
 
-		try (Connection con = manager.getCurrentCatalogue().getConnection();
-				CallableStatement cs = con.prepareCall("CALL SYSCS_UTIL.SYSCS_COMPRESS_TABLE(?, ?, ?)");) {
+			con.close();
 
-			cs.setString(1, "APP");
+		} catch (SQLException e) {
+			LOGGER.error("Cannot update the schema of the catalogue db " + catalogue.getDbPath(), e);
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Drop or build the secondary indexes of the catalogue database. The indexes
+	 * are dropped before a bulk load and built at the end of it.
+	 * 
+	 * @param catalogue
+	 * @param create    true to build the missing indexes, false to drop them
+	 */
+	public static void setSecondaryIndexes(Catalogue catalogue, boolean create) {
 
-			cs.setShort(3, (short) 1);
+		try (Connection con = catalogue.getConnection();) {
 
-			cs.setString(2, "PARENT_TERM");
-			cs.execute();
-			cs.setString(2, "TERM_ATTRIBUTE");
-			cs.execute();
-			cs.setString(2, "TERM");
-			cs.execute();
-			cs.setString(2, "ATTRIBUTE");
-			cs.execute();
-			cs.setString(2, "HIERARCHY");
-			cs.execute();
+			if (create)
+				CatalogueSchemaUpdater.createSecondaryIndexes(con);
+			else
+				CatalogueSchemaUpdater.dropSecondaryIndexes(con);
 
-			cs.close();
 			con.close();
 
-		} catch (SQLException e) {		
-			LOGGER.error("DB error", e);
+		} catch (SQLException e) {
+			LOGGER.error("Cannot change the indexes of the catalogue db " + catalogue.getDbPath(), e);
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Compress the database of the current catalogue to avoid fragmentation. The
+	 * tables are compressed in background by the {@link CompactionScheduler} when
+	 * the catalogue is idle.
+	 */
+	public static void compressDatabase() {
+
+		LOGGER.info("Compressing database");
+
+		GlobalManager manager = GlobalManager.getInstance();
+
+		CompactionScheduler.request(manager.getCurrentCatalogue());
+	}
+
 	/**
 	 * Close the main db derby connection
 	 */
 	public static void stopMainDB() {
 		try {
 			LOGGER.info("Stopping database...");
+			ConnectionPool.shutdown(getMainDBURL());
 			DriverManager.getConnection(stopMainDBURL());
 		} catch (SQLException e) {
 			LOGGER.info("Database disconnected");
@@ -318,41 +335,15 @@ public class DatabaseManager {
 	 */
 	public static void backupCatalogue(Catalogue catalogue, String backupDir) throws SQLException {
 
-		try (Connection con = catalogue.getConnection();
-				CallableStatement cs = con.prepareCall("CALL SYSCS_UTIL.SYSCS_BACKUP_DATABASE(?)");) {
-			cs.setString(1, backupDir);
-			cs.execute();
-			cs.close();
-			con.close();
+		// the database files are copied directly into the backup dir, while the
+		// database is frozen
+		try {
+			DatabaseCloner.cloneDatabase(catalogue, new File(backupDir));
+		} catch (IOException e) {
+			throw new SQLException("Cannot copy the database of " + catalogue + " in " + backupDir, e);
 		}
 
 		LOGGER.info("Database of " + catalogue + " copied in " + backupDir);
-
-		// here we have created a backup of the database in the backupDir folder
-		// since the backup copies also the database folder we have to extract
-		// all the files contained in that folder to the parent folder in order
-		// to have the right structure of files which is required to read
-		// the catalogues databases
-
-		File dir = new File(backupDir);
-
-		File[] list = dir.listFiles();
-
-		if (list.length == 0) {
-			LOGGER.error("No file was copied");
-			return;
-		}
-
-		File subDir = list[0];
-
-		// move all the files of the sub directory
-		// in the parent directory
-		for (File file : subDir.listFiles()) {
-			file.renameTo(new File(dir, file.getName()));
-		}
-
-		// delete the empty folder
-		subDir.delete();
 	}
 
 	/**
@@ -450,46 +441,8 @@ public class DatabaseManager {
 
 		LOGGER.info("Copying " + source + " into " + destination);
 
-		// if the source is a directory, we recursively
-		// copy all its files
-		if (source.isDirectory()) {
-
-			// create the destination folder if
-			// it does not exist
-			if (!destination.exists()) {
-				destination.mkdirs();
-			}
-
-			// get the source file and copy them
-			// into the destination folder
-			String files[] = source.list();
-
-			for (String file : files) {
-
-				File srcFile = new File(source, file);
-				File destFile = new File(destination, file);
-
-				copyFolder(srcFile, destFile);
-			}
-		} else { // if instead we have a file
-
-			InputStream in = null;
-			OutputStream out = null;
-			// copy the contents using file streams
-			in = new FileInputStream(source);
-			out = new FileOutputStream(destination);
-
-			byte[] buffer = new byte[1024];
-
-			int length;
-			while ((length = in.read(buffer)) > 0) {
-				out.write(buffer, 0, length);
-			}
-
-			// close streams
-			in.close();
-			out.close();
-		}
+		// the files are copied in parallel, the big ones in chunks
+		DatabaseCloner.copy(source, destination, false);
 	}
 
 	/**
@@ -516,8 +469,8 @@ public class DatabaseManager {
 		// delete the current database
 		deleteDb(catalogue);
 
-		// copy the backup into the catalogue database
-		copyFolder(catalogue.getBackupDbPath(), catalogue.getDbPath());
+		// copy the backup into the catalogue database (without the derby locks)
+		DatabaseCloner.copy(file, new File(catalogue.getDbPath()), true);
 
 		// open the catalogue
 		catalogue.open();
@@ -545,6 +498,9 @@ public class DatabaseManager {
 			// create the catalogue db structure
 			executor.exec(ClassLoader.getSystemResourceAsStream("createCatalogueDB"));
 
+			// bring the new db to the latest schema version
+			CatalogueSchemaUpdater.update(con);
+
 			// close the connection
 			con.close();
 
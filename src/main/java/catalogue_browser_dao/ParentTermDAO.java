@@ -4,15 +4,16 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import catalogue.Catalogue;
+import catalogue.TermChildrenIndex;
 import catalogue_object.Applicability;
 import catalogue_object.BaseObject;
 import catalogue_object.Hierarchy;
@@ -67,17 +68,20 @@ public class ParentTermDAO implements CatalogueRelationDAO<Applicability, Term,
 
 	public synchronized List<Integer> insert(Iterable<Applicability> appls) {
 
+		CatalogueWriteHooks.onWrite(catalogue);
+
 		ArrayList<Integer> ids = new ArrayList<>();
 
 		String query = "insert into APP.PARENT_TERM (TERM_ID, HIERARCHY_ID, "
 				+ "PARENT_TERM_ID, TERM_ORDER, TERM_REPORTABLE, TERM_FLAG)" + "values (?, ?, ?, ?, ?, ?)";
 
 		try (Connection con = catalogue.getConnection();
-				PreparedStatement stmt = con.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);) {
+				PreparedStatement stmt = BulkInsert.prepare(con, query, appls);) {
 
-			// get the connection
-			// con.setAutoCommit(false);
+			// all the chunks in a single transaction
+			con.setAutoCommit(false);
 
+			int count = 0;
 			for (Applicability appl : appls) {
 
 				stmt.clearParameters();
@@ -98,9 +102,10 @@ public class ParentTermDAO implements CatalogueRelationDAO<Applicability, Term,
 				// flag is true since the applicability exists
 				stmt.setBoolean(6, true);
 
-				stmt.addBatch();
+				BulkInsert.addBatch(stmt, ++count);
 			}
 
+			// send the last chunk
 			stmt.executeBatch();
 
 			try (ResultSet rs = stmt.getGeneratedKeys();) {
@@ -117,6 +122,10 @@ public class ParentTermDAO implements CatalogueRelationDAO<Applicability, Term,
 			con.commit();
 			con.close();
 
+			// keep the children index aligned with the database
+			for (Applicability appl : appls)
+				catalogue.getChildrenIndex().add(appl);
+
 		} catch (SQLException e) {
 			LOGGER.error("DB error", e);
 			e.printStackTrace();
@@ -129,7 +138,13 @@ public class ParentTermDAO implements CatalogueRelationDAO<Applicability, Term,
 	 * Remove an applicability from the database
 	 */
 	public boolean remove(Applicability appl) {
-		return remove(appl.getHierarchy(), appl.getParentTerm(), appl.getChild());
+
+		boolean removed = remove(appl.getHierarchy(), appl.getParentTerm(), appl.getChild());
+
+		if (removed)
+			catalogue.getChildrenIndex().remove(appl);
+
+		return removed;
 	}
 
 	/**
@@ -143,6 +158,8 @@ public class ParentTermDAO implements CatalogueRelationDAO<Applicability, Term,
 	 */
 	public boolean remove(Hierarchy hierarchy, Nameable parent, Term child) {
 
+		CatalogueWriteHooks.onWrite(catalogue);
+
 		String query = null;
 
 		// remove the relationships between the parent term in the hierarchy
@@ -184,7 +201,15 @@ public class ParentTermDAO implements CatalogueRelationDAO<Applicability, Term,
 	 * @return
 	 */
 	public boolean update(Applicability appl) {
-		return update(appl.getHierarchy(), appl.getParentTerm(), appl.getChild(), appl.getOrder(), appl.isReportable());
+
+		boolean updated = update(appl.getHierarchy(), appl.getParentTerm(), appl.getChild(), appl.getOrder(),
+				appl.isReportable());
+
+		// the parent or the order could be changed
+		if (updated)
+			catalogue.getChildrenIndex().update(appl);
+
+		return updated;
 	}
 
 	/**
@@ -197,6 +222,8 @@ public class ParentTermDAO implements CatalogueRelationDAO<Applicability, Term,
 	 */
 	public boolean update(Hierarchy hierarchy, Nameable parentTerm, Term term, int order, boolean reportable) {
 
+		CatalogueWriteHooks.onWrite(catalogue);
+
 		String query = "update APP.PARENT_TERM P set TERM_REPORTABLE = ?, "
 				+ "PARENT_TERM_ID = ?, TERM_ORDER = ? where HIERARCHY_ID = ? and TERM_ID = ?";
 
@@ -274,28 +301,68 @@ public class ParentTermDAO implements CatalogueRelationDAO<Applicability, Term,
 	 * Get all the applicabilities contained in the database of the catalogue
 	 */
 	public Collection<Applicability> getAll() {
+		return getByRows(getAllRows());
+	}
+
+	/**
+	 * Create the applicabilities of the rows returned by {@link #getAllRows()},
+	 * using the terms and the hierarchies loaded in the catalogue
+	 * 
+	 * @param rows
+	 * @return
+	 */
+	public ArrayList<Applicability> getByRows(List<int[]> rows) {
+
+		ArrayList<Applicability> appls = new ArrayList<>(rows.size());
+
+		// hierarchies of the catalogue by id
+		HashMap<Integer, Hierarchy> hierarchies = new HashMap<>();
+		for (Hierarchy hierarchy : catalogue.getHierarchies())
+			hierarchies.put(hierarchy.getId(), hierarchy);
+
+		for (int[] row : rows) {
 
-		ArrayList<Applicability> appls = new ArrayList<>();
+			Hierarchy hierarchy = hierarchies.get(row[1]);
 
-		// get all the parent terms and hierarchies ( we join with term to retrieve the
-		// parent
-		// term information )
-		// Note that we use a left join in order to maintain also terms which does not
-		// have
-		// a parent (i.e. parent_term_id = null)!
-		// These terms will refer directly to the hierarchy they belong to (as parent)
-		String query = "select * from APP.PARENT_TERM P left join APP.TERM T on P.PARENT_TERM_ID = T.TERM_ID";
+			// set the hierarchy as parent if the element is root (parent id 0)
+			Nameable parentTerm = row[2] != 0 ? catalogue.getTermById(row[2]) : hierarchy;
+
+			appls.add(new Applicability(catalogue.getTermById(row[0]), parentTerm, hierarchy, row[3], row[4] == 1));
+		}
+
+		return appls;
+	}
+
+	/**
+	 * Get all the parent term rows of the catalogue as arrays of ids: term id,
+	 * hierarchy id, parent term id (0 for the root terms), order and
+	 * reportability (1 if reportable). The terms of the catalogue are not needed
+	 * in memory, therefore the rows can be read while the terms are loaded.
+	 * 
+	 * @return
+	 */
+	public ArrayList<int[]> getAllRows() {
+
+		ArrayList<int[]> rows = new ArrayList<>();
+
+		// get all the parent terms and hierarchies (the parent terms are taken from
+		// the terms already loaded in the catalogue, therefore the term table is not
+		// joined)
+		// Note that terms which does not have a parent (i.e. parent_term_id = null)
+		// will refer directly to the hierarchy they belong to (as parent)
+		String query = "select P.TERM_ID, P.HIERARCHY_ID, P.PARENT_TERM_ID, P.TERM_ORDER, P.TERM_REPORTABLE "
+				+ "from APP.PARENT_TERM P";
 
 		try (Connection con = catalogue.getConnection(); PreparedStatement stmt = con.prepareStatement(query);) {
 
-			stmt.setFetchSize(200);
+			stmt.setFetchSize(2000);
 
 			try (ResultSet rs = stmt.executeQuery();) {
 
 				// analyze results
 				while (rs.next()) {
-					Applicability appl = getByResultSet(rs);
-					appls.add(appl);
+					rows.add(new int[] { rs.getInt("TERM_ID"), rs.getInt("HIERARCHY_ID"), rs.getInt("PARENT_TERM_ID"),
+							rs.getInt("TERM_ORDER"), rs.getBoolean("TERM_REPORTABLE") ? 1 : 0 });
 				}
 
 				rs.close();
@@ -309,7 +376,7 @@ public class ParentTermDAO implements CatalogueRelationDAO<Applicability, Term,
 			e.printStackTrace();
 		}
 
-		return appls;
+		return rows;
 	}
 
 	/**
@@ -321,6 +388,8 @@ public class ParentTermDAO implements CatalogueRelationDAO<Applicability, Term,
 	 */
 	public boolean removeByA2(Hierarchy hierarchy) {
 
+		CatalogueWriteHooks.onWrite(catalogue);
+
 		// remove the relationships between the terms and the hierarchy
 		String query = "delete from APP.PARENT_TERM where HIERARCHY_ID = ?";
 
@@ -340,6 +409,9 @@ public class ParentTermDAO implements CatalogueRelationDAO<Applicability, Term,
 			e.printStackTrace();
 			return false;
 		}
+
+		catalogue.getChildrenIndex().removeHierarchy(hierarchy);
+
 		return true;
 	}
 
@@ -367,6 +439,11 @@ public class ParentTermDAO implements CatalogueRelationDAO<Applicability, Term,
 	 */
 	public ArrayList<Term> getChildren(Nameable t, Hierarchy hierarchy, boolean hideDeprecated, boolean hideDismissed) {
 
+		// if the applicabilities are loaded in RAM we do not query the db
+		TermChildrenIndex index = catalogue.getChildrenIndex();
+		if (index.isLoaded())
+			return index.getChildren(t, hierarchy, hideDeprecated, hideDismissed);
+
 		// output list
 		ArrayList<Term> children = new ArrayList<Term>();
 
@@ -441,6 +518,26 @@ public class ParentTermDAO implements CatalogueRelationDAO<Applicability, Term,
 		return children;
 	}
 
+	/**
+	 * Check if the term has at least one child in the chosen hierarchy. The same
+	 * filters of {@link #getChildren(Nameable, Hierarchy, boolean, boolean)} are
+	 * applied.
+	 * 
+	 * @param t
+	 * @param hierarchy
+	 * @param hideDeprecated
+	 * @param hideDismissed
+	 * @return
+	 */
+	public boolean hasChildren(Nameable t, Hierarchy hierarchy, boolean hideDeprecated, boolean hideDismissed) {
+
+		TermChildrenIndex index = catalogue.getChildrenIndex();
+		if (index.isLoaded())
+			return index.hasChildren(t, hierarchy, hideDeprecated, hideDismissed);
+
+		return !getChildren(t, hierarchy, hideDeprecated, hideDismissed).isEmpty();
+	}
+
 	/**
 	 * Get the max order for the parent children in the hierarchy selected
 	 * 
@@ -517,6 +614,8 @@ public class ParentTermDAO implements CatalogueRelationDAO<Applicability, Term,
 	 */
 	public void shiftTerms(ArrayList<Term> sources, Hierarchy hierarchy, int offset) {
 
+		CatalogueWriteHooks.onWrite(catalogue);
+
 		String query = "update APP.PARENT_TERM P set P.TERM_ORDER = P.TERM_ORDER + ? "
 				+ "where P.TERM_ID = ? and P.HIERARCHY_ID = ?";
 
@@ -557,6 +656,8 @@ public class ParentTermDAO implements CatalogueRelationDAO<Applicability, Term,
 	 */
 	public void updateTermOrder(Term term, Hierarchy hierarchy, int order) {
 
+		CatalogueWriteHooks.onWrite(catalogue);
+
 		String query = "UPDATE APP.PARENT_TERM set TERM_ORDER = ? where TERM_ID = ? and HIERARCHY_ID = ? ";
 
 		try (Connection con = catalogue.getConnection(); PreparedStatement stmt = con.prepareStatement(query);) {
@@ -589,6 +690,8 @@ public class ParentTermDAO implements CatalogueRelationDAO<Applicability, Term,
 	 */
 	public void addOrderOffset(Term parent, Hierarchy hierarchy, String operator, int childOrder, int offset) {
 
+		CatalogueWriteHooks.onWrite(catalogue);
+
 		String query = "UPDATE APP.PARENT_TERM " + "set TERM_ORDER = TERM_ORDER + ? "
 				+ "where PARENT_TERM_ID = ? and HIERARCHY_ID = ? ";
 
@@ -630,6 +733,8 @@ public class ParentTermDAO implements CatalogueRelationDAO<Applicability, Term,
 	 */
 	public void swapTermOrder(Term source, Term target, Hierarchy hierarchy) {
 
+		CatalogueWriteHooks.onWrite(catalogue);
+
 		String query = "update APP.PARENT_TERM P set P.TERM_ORDER = ? " + "where P.TERM_ID = ? and P.HIERARCHY_ID = ?";
 
 		try (Connection con = catalogue.getConnection(); PreparedStatement stmt = con.prepareStatement(query);) {
@@ -677,8 +782,41 @@ public class ParentTermDAO implements CatalogueRelationDAO<Applicability, Term,
 		return null;
 	}
 
+	/**
+	 * Remove all the applicabilities of a term, in all the hierarchies
+	 * 
+	 * @param term
+	 * @return
+	 */
 	@Override
-	public boolean removeByA1(Term object) {
+	public boolean removeByA1(Term term) {
+
+		CatalogueWriteHooks.onWrite(catalogue);
+
+		String query = "delete from APP.PARENT_TERM where TERM_ID = ?";
+
+		try (Connection con = catalogue.getConnection(); PreparedStatement stmt = con.prepareStatement(query);) {
+
+			stmt.clearParameters();
+
+			stmt.setInt(1, term.getId());
+
+			stmt.executeUpdate();
+
+			stmt.close();
+			con.close();
+
+			// keep the children index aligned with the database
+			for (Applicability appl : term.getApplicabilities())
+				catalogue.getChildrenIndex().remove(appl);
+
+			return true;
+
+		} catch (SQLException e) {
+			LOGGER.error("DB error", e);
+			e.printStackTrace();
+		}
+
 		return false;
 	}
 
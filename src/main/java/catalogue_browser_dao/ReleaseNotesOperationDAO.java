@@ -112,6 +112,32 @@ public class ReleaseNotesOperationDAO implements CatalogueEntityDAO<ReleaseNotes
 		return false;
 	}
 
+	/**
+	 * Remove all the operations of the release notes
+	 * 
+	 * @return
+	 */
+	public boolean removeAll() {
+
+		String query = "delete from APP.RELEASE_NOTES_OP";
+
+		try (Connection con = catalogue.getConnection(); PreparedStatement stmt = con.prepareStatement(query);) {
+
+			stmt.executeUpdate();
+
+			stmt.close();
+			con.close();
+
+			return true;
+
+		} catch (SQLException e) {
+			LOGGER.error("DB error", e);
+			e.printStackTrace();
+		}
+
+		return false;
+	}
+
 	@Override
 	public boolean update(ReleaseNotesOperation object) {
 
@@ -4,9 +4,10 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
@@ -16,6 +17,7 @@ import catalogue.Catalogue;
 import catalogue_object.Attribute;
 import catalogue_object.Term;
 import catalogue_object.TermAttribute;
+import utilities.StringPool;
 
 /**
  * Class to manage all the database interactions with the term attributes table.
@@ -62,17 +64,21 @@ public class TermAttributeDAO implements CatalogueRelationDAO<TermAttribute, Ter
 
 	public synchronized List<Integer> insert(Iterable<TermAttribute> tas) {
 
+		CatalogueWriteHooks.onWrite(catalogue);
+
 		ArrayList<Integer> ids = new ArrayList<>();
 
 		// create the base query for each record
 		String query = "INSERT INTO APP.TERM_ATTRIBUTE (TERM_ID, ATTR_ID, " + "ATTR_VALUE ) VALUES (" + "?, ?, ? )";
 
 		try (Connection con = catalogue.getConnection();
-				PreparedStatement stmt = con.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);) {
+				PreparedStatement stmt = BulkInsert.prepare(con, query, tas);) {
 
+			// all the chunks in a single transaction
 			con.setAutoCommit(false);
 
 			// get the records one by one and insert them into the database
+			int count = 0;
 			for (TermAttribute ta : tas) {
 
 				// set the term id
@@ -85,13 +91,13 @@ public class TermAttributeDAO implements CatalogueRelationDAO<TermAttribute, Ter
 				stmt.setString(3, ta.getValue());
 
 				// add the record to the batch
-				stmt.addBatch();
+				BulkInsert.addBatch(stmt, ++count);
 			}
 
-			// execute the batch of insertions
+			// execute the last chunk of insertions
 			stmt.executeBatch();
 
-			// get all the ids
+			// get the id (only for single term attributes)
 			try (ResultSet rs = stmt.getGeneratedKeys();) {
 
 				if (rs != null) {
@@ -107,6 +113,10 @@ public class TermAttributeDAO implements CatalogueRelationDAO<TermAttribute, Ter
 			con.commit();
 			con.close();
 
+			// make the new values searchable
+			for (TermAttribute ta : tas)
+				catalogue.getSearchIndex().addAttribute(ta);
+
 		} catch (SQLException e) {
 			LOGGER.error("DB error", e);
 			e.printStackTrace();
@@ -129,6 +139,8 @@ public class TermAttributeDAO implements CatalogueRelationDAO<TermAttribute, Ter
 	 */
 	public boolean update(TermAttribute ta) {
 
+		CatalogueWriteHooks.onWrite(catalogue);
+
 		// get all the hierarchies
 		String query = "update APP.TERM_ATTRIBUTE set ATTR_VALUE = ? where ATTR_ID = ? and TERM_ID = ?";
 
@@ -142,6 +154,8 @@ public class TermAttributeDAO implements CatalogueRelationDAO<TermAttribute, Ter
 
 			stmt.executeUpdate();
 
+			catalogue.getSearchIndex().updateAttribute(ta);
+
 			stmt.close();
 			con.close();
 
@@ -162,13 +176,35 @@ public class TermAttributeDAO implements CatalogueRelationDAO<TermAttribute, Ter
 	}
 
 	/**
-	 * Get all the term attributes contained in the db
+	 * Get all the term attributes contained in the db. The attributes already
+	 * loaded in the catalogue are shared by all the term attributes, as the
+	 * repeated values.
 	 * 
 	 * @author shahaal
 	 */
 	public ArrayList<TermAttribute> getAll() {
+		return getAllUnlinked().link();
+	}
+
+	/**
+	 * Get all the term attributes contained in the db without their terms, which
+	 * are set by {@link UnlinkedTermAttributes#link()}. The terms of the
+	 * catalogue are not needed in memory, therefore the term attributes can be
+	 * read while the terms are loaded (the attributes should be already loaded).
+	 * 
+	 * @return
+	 */
+	public UnlinkedTermAttributes getAllUnlinked() {
+
+		UnlinkedTermAttributes tas = new UnlinkedTermAttributes();
+
+		// attributes of the catalogue by id
+		HashMap<Integer, Attribute> attributes = new HashMap<>();
+		for (Attribute attr : catalogue.getAttributes())
+			attributes.put(attr.getId(), attr);
 
-		ArrayList<TermAttribute> tas = new ArrayList<>();
+		// shared instances of the repeated values
+		StringPool values = new StringPool();
 
 		// get all the parent terms and hierarchies
 		String query = "select * from APP.ATTRIBUTE A inner join APP.TERM_ATTRIBUTE TA on A.ATTR_ID = TA.ATTR_ID";
@@ -176,16 +212,27 @@ public class TermAttributeDAO implements CatalogueRelationDAO<TermAttribute, Ter
 		try (Connection con = catalogue.getConnection();
 				PreparedStatement stmt = con.prepareStatement(query)) {
 
-			stmt.setFetchSize(200);
+			stmt.setFetchSize(2000);
 			
 			ResultSet rs = stmt.executeQuery();
 			
 			while (rs.next()) {
 
+				int attrId = rs.getInt("ATTR_ID");
+
+				Attribute attribute = attributes.get(attrId);
+
+				// attribute not loaded yet, create it from the result set
+				if (attribute == null) {
+					attribute = new AttributeDAO(catalogue).getByResultSet(rs);
+					attributes.put(attrId, attribute);
+				}
+
 				// create the term attribute object
-				TermAttribute ta = getByResultSet(rs);
+				TermAttribute ta = new TermAttribute(rs.getInt("TERM_ATTR_ID"), null, attribute,
+						values.get(rs.getString("ATTR_VALUE")));
 
-				tas.add(ta);
+				tas.add(rs.getInt("TERM_ID"), ta);
 			}
 
 			rs.close();
@@ -200,6 +247,48 @@ public class TermAttributeDAO implements CatalogueRelationDAO<TermAttribute, Ter
 		return tas;
 	}
 
+	/**
+	 * Term attributes read from the database which are not linked yet to their
+	 * terms
+	 * 
+	 * @author shahaal
+	 *
+	 */
+	public class UnlinkedTermAttributes {
+
+		private final ArrayList<TermAttribute> tas = new ArrayList<>();
+
+		// id of the term of each term attribute
+		private int[] termIds = new int[1024];
+
+		private void add(int termId, TermAttribute ta) {
+
+			if (tas.size() == termIds.length)
+				termIds = Arrays.copyOf(termIds, termIds.length * 2);
+
+			termIds[tas.size()] = termId;
+			tas.add(ta);
+		}
+
+		public int size() {
+			return tas.size();
+		}
+
+		/**
+		 * Set the terms of the term attributes, taking them from the terms loaded
+		 * in the catalogue
+		 * 
+		 * @return the term attributes
+		 */
+		public ArrayList<TermAttribute> link() {
+
+			for (int i = 0; i < tas.size(); i++)
+				tas.get(i).setTerm(catalogue.getTermById(termIds[i]));
+
+			return tas;
+		}
+	}
+
 	/**
 	 * Get all the attributes of a single term from the selected catalogue
 	 * 
@@ -273,6 +362,8 @@ public class TermAttributeDAO implements CatalogueRelationDAO<TermAttribute, Ter
 	 */
 	public boolean removeByA1(Term term) {
 
+		CatalogueWriteHooks.onWrite(catalogue);
+
 		// create insert query
 		String query = "delete from APP.TERM_ATTRIBUTE where TERM_ID = ?";
 
@@ -285,6 +376,8 @@ public class TermAttributeDAO implements CatalogueRelationDAO<TermAttribute, Ter
 			// remove all the term attributes related to that term
 			stmt.executeUpdate();
 
+			catalogue.getSearchIndex().removeAttributes(term);
+
 			stmt.close();
 			con.close();
 
@@ -307,6 +400,8 @@ public class TermAttributeDAO implements CatalogueRelationDAO<TermAttribute, Ter
 	 */
 	public boolean removeByA2(Attribute attribute) {
 
+		CatalogueWriteHooks.onWrite(catalogue);
+
 		// create insert query
 		String query = "delete from APP.TERM_ATTRIBUTE where ATTR_ID = ?";
 
@@ -367,6 +462,9 @@ public class TermAttributeDAO implements CatalogueRelationDAO<TermAttribute, Ter
 			// execute the batch update
 			stmt.executeBatch();
 
+			// index the new values of the term
+			catalogue.getSearchIndex().update(term);
+
 			stmt.close();
 
 			// close the connection
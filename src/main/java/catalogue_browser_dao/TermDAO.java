@@ -4,20 +4,20 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import catalogue.Catalogue;
+import catalogue.TermStore;
 import catalogue_object.Term;
+import utilities.StringPool;
 
 /**
  * Class to manage all the databse interactions with the Term table.
@@ -32,6 +32,9 @@ public class TermDAO implements CatalogueEntityDAO<Term> {
 
 	private Catalogue catalogue;
 
+	// shared instances of the repeated values, used while fetching all the terms
+	private StringPool strings;
+
 	/**
 	 * Initialize term dao with the catalogue we want to communicate with
 	 * 
@@ -69,6 +72,8 @@ public class TermDAO implements CatalogueEntityDAO<Term> {
 	 */
 	public synchronized List<Integer> insert(Iterable<Term> terms) {
 
+		CatalogueWriteHooks.onWrite(catalogue);
+
 		ArrayList<Integer> ids = new ArrayList<>();
 
 		String query = "insert into APP.TERM (TERM_CODE, TERM_EXTENDED_NAME, "
@@ -76,10 +81,12 @@ public class TermDAO implements CatalogueEntityDAO<Term> {
 				+ "TERM_VALID_FROM, TERM_VALID_TO, TERM_STATUS, TERM_VERSION ) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ? )";
 
 		try (Connection con = catalogue.getConnection();
-				PreparedStatement stmt = con.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);) {
+				PreparedStatement stmt = BulkInsert.prepare(con, query, terms);) {
 
+			// all the chunks in a single transaction
 			con.setAutoCommit(false);
 
+			int count = 0;
 			for (Term t : terms) {
 
 				stmt.clearParameters();
@@ -108,19 +115,22 @@ public class TermDAO implements CatalogueEntityDAO<Term> {
 				stmt.setString(9, t.getStatus());
 				stmt.setString(10, t.getVersion());
 
-				stmt.addBatch();
+				BulkInsert.addBatch(stmt, ++count);
 			}
 
+			// send the last chunk
 			stmt.executeBatch();
 
-			// if empty
 			// update the terms ids with the ones given by the database
+			// (only for single terms, no keys are generated for batches)
 			try (ResultSet rs = stmt.getGeneratedKeys();) {
 
-				while (rs.next())
-					ids.add(rs.getInt(1));
+				if (rs != null) {
+					while (rs.next())
+						ids.add(rs.getInt(1));
 
-				rs.close();
+					rs.close();
+				}
 			}
 
 			stmt.close();
@@ -144,6 +154,8 @@ public class TermDAO implements CatalogueEntityDAO<Term> {
 	 */
 	public boolean update(Term t) {
 
+		CatalogueWriteHooks.onWrite(catalogue);
+
 		String query = "update APP.TERM set TERM_CODE = ?, TERM_EXTENDED_NAME = ?, "
 				+ "TERM_SHORT_NAME = ?, TERM_SCOPENOTE = ?, TERM_DEPRECATED = ?, TERM_LAST_UPDATE = ?,"
 				+ "TERM_VALID_FROM = ?, TERM_VALID_TO = ?, TERM_STATUS = ?, TERM_VERSION = ? where TERM_ID = ?";
@@ -183,6 +195,9 @@ public class TermDAO implements CatalogueEntityDAO<Term> {
 			// execute the statement
 			stmt.executeUpdate();
 
+			// refresh the searchable name and code
+			catalogue.getSearchIndex().update(t);
+
 			// close statement
 			stmt.close();
 
@@ -199,6 +214,82 @@ public class TermDAO implements CatalogueEntityDAO<Term> {
 		return false;
 	}
 
+	/**
+	 * Update a batch of terms in the DB. Differently from {@link #update(Term)},
+	 * the last update field is taken from the terms (used to apply the changes of
+	 * a new catalogue version).
+	 * 
+	 * @param terms the terms to be updated (with their id set)
+	 * @return true if the terms were updated
+	 */
+	public synchronized boolean update(Iterable<Term> terms) {
+
+		CatalogueWriteHooks.onWrite(catalogue);
+
+		String query = "update APP.TERM set TERM_CODE = ?, TERM_EXTENDED_NAME = ?, "
+				+ "TERM_SHORT_NAME = ?, TERM_SCOPENOTE = ?, TERM_DEPRECATED = ?, TERM_LAST_UPDATE = ?,"
+				+ "TERM_VALID_FROM = ?, TERM_VALID_TO = ?, TERM_STATUS = ?, TERM_VERSION = ? where TERM_ID = ?";
+
+		try (Connection con = catalogue.getConnection(); PreparedStatement stmt = con.prepareStatement(query);) {
+
+			// all the chunks in a single transaction
+			con.setAutoCommit(false);
+
+			int count = 0;
+			for (Term t : terms) {
+
+				stmt.clearParameters();
+
+				stmt.setString(1, t.getCode());
+				stmt.setString(2, t.getName());
+				stmt.setString(3, t.getShortName(false));
+				stmt.setString(4, t.getScopenotes());
+				stmt.setBoolean(5, t.isDeprecated());
+
+				if (t.getLastUpdate() != null)
+					stmt.setTimestamp(6, t.getLastUpdate());
+				else
+					stmt.setNull(6, Types.TIMESTAMP);
+
+				if (t.getValidFrom() != null)
+					stmt.setTimestamp(7, t.getValidFrom());
+				else
+					stmt.setNull(7, Types.TIMESTAMP);
+
+				if (t.getValidTo() != null)
+					stmt.setTimestamp(8, t.getValidTo());
+				else
+					stmt.setNull(8, Types.TIMESTAMP);
+
+				stmt.setString(9, t.getStatus());
+				stmt.setString(10, t.getVersion());
+				stmt.setInt(11, t.getId());
+
+				BulkInsert.addBatch(stmt, ++count);
+			}
+
+			// send the last chunk
+			stmt.executeBatch();
+
+			stmt.close();
+
+			con.commit();
+			con.close();
+
+			// refresh the searchable names and codes
+			for (Term t : terms)
+				catalogue.getSearchIndex().update(t);
+
+			return true;
+
+		} catch (SQLException e) {
+			LOGGER.error("DB error", e);
+			e.printStackTrace();
+		}
+
+		return false;
+	}
+
 	// update the term in the hashmap of terms (which is used to
 	// store in RAM the terms). Use this to refresh term field in ram
 	// once they are modified
@@ -221,9 +312,11 @@ public class TermDAO implements CatalogueEntityDAO<Term> {
 	 * 
 	 * @return
 	 */
-	public HashMap<Integer, Term> fetchTerms() {
+	public TermStore fetchTerms() {
+
+		TermStore terms = new TermStore();
 
-		HashMap<Integer, Term> terms = new HashMap<>();
+		strings = new StringPool();
 
 		String query = "select * from APP.TERM";
 
@@ -238,7 +331,7 @@ public class TermDAO implements CatalogueEntityDAO<Term> {
 			while (rs.next()) {
 
 				Term term = getByResultSet(rs);
-				terms.put(term.getId(), term);
+				terms.put(term);
 			}
 
 			rs.close();
@@ -249,6 +342,8 @@ public class TermDAO implements CatalogueEntityDAO<Term> {
 			LOGGER.error("DB error", e);
 			e.printStackTrace();
 			return null;
+		} finally {
+			strings = null;
 		}
 
 		return terms;
@@ -262,7 +357,9 @@ public class TermDAO implements CatalogueEntityDAO<Term> {
 	 */
 	public Term getByCode(String code) {
 
-		String query = "select TERM_ID " + " from  APP.TERM " + " where upper( TERM_CODE ) = ? ";
+		// indexed upper case column (see CatalogueSchemaUpdater), the parameter
+		// is converted by derby as the column, independently of the java locale
+		String query = "select TERM_ID from APP.TERM where TERM_CODE_UPPER = upper( cast( ? as varchar(40) ) ) ";
 
 		Term term = null;
 		try (Connection con = catalogue.getConnection(); PreparedStatement stmt = con.prepareStatement(query);) {
@@ -270,7 +367,7 @@ public class TermDAO implements CatalogueEntityDAO<Term> {
 			stmt.clearParameters();
 
 			/* I want to retrieve the first level under the root */
-			stmt.setString(1, code.toUpperCase());
+			stmt.setString(1, code);
 
 			try (ResultSet rs = stmt.executeQuery();) {
 
@@ -301,7 +398,9 @@ public class TermDAO implements CatalogueEntityDAO<Term> {
 	 */
 	public Term getByName(String extendedName) {
 
-		String query = "select * from APP.TERM where upper( TERM_EXTENDED_NAME ) = ? ";
+		// indexed upper case column (see CatalogueSchemaUpdater), the parameter
+		// is converted by derby as the column, independently of the java locale
+		String query = "select TERM_ID from APP.TERM where TERM_EXTENDED_NAME_UPPER = upper( cast( ? as varchar(3000) ) ) ";
 
 		Term term = null;
 		try (Connection con = catalogue.getConnection(); PreparedStatement stmt = con.prepareStatement(query);) {
@@ -309,7 +408,7 @@ public class TermDAO implements CatalogueEntityDAO<Term> {
 			stmt.clearParameters();
 
 			/* I want to retrieve the first level under the root */
-			stmt.setString(1, extendedName.toUpperCase());
+			stmt.setString(1, extendedName);
 
 			try (ResultSet rs = stmt.executeQuery();) {
 
@@ -381,7 +480,7 @@ public class TermDAO implements CatalogueEntityDAO<Term> {
 		t.setValidTo(rs.getTimestamp("TERM_VALID_TO"));
 
 		// set status
-		t.setStatus(rs.getString("TERM_STATUS"));
+		t.setStatus(strings == null ? rs.getString("TERM_STATUS") : strings.get(rs.getString("TERM_STATUS")));
 
 		// set version
 		t.setVersion(rs.getString("TERM_VERSION"));
@@ -405,11 +504,14 @@ public class TermDAO implements CatalogueEntityDAO<Term> {
 
 		String query = "select TERM_ID from APP.TERM where ";
 
-		// check on the correct field
+		// check on the correct field, the indexed upper case column
+		// restricts the candidates, the name check is still case sensitive.
+		// The parameter is converted with the same derby function of the
+		// column, the java conversion would depend on the default locale
 		if (extended)
-			query = query + "TERM_EXTENDED_NAME = ? ";
+			query = query + "TERM_EXTENDED_NAME_UPPER = upper( cast( ? as varchar(3000) ) ) and TERM_EXTENDED_NAME = ? ";
 		else
-			query = query + "TERM_SHORT_NAME = ? ";
+			query = query + "TERM_SHORT_NAME_UPPER = upper( cast( ? as varchar(300) ) ) and TERM_SHORT_NAME = ? ";
 
 		query = query + "and TERM_CODE <> ?";
 
@@ -419,7 +521,8 @@ public class TermDAO implements CatalogueEntityDAO<Term> {
 			stmt.clearParameters();
 
 			stmt.setString(1, termName);
-			stmt.setString(2, termCode);
+			stmt.setString(2, termName);
+			stmt.setString(3, termCode);
 
 			try (ResultSet rs = stmt.executeQuery();) {
 				noDupl = !rs.next();
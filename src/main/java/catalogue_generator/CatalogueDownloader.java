@@ -1,6 +1,9 @@
 package catalogue_generator;
 
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.concurrent.CancellationException;
+
 import javax.xml.soap.SOAPException;
 
 import org.apache.logging.log4j.LogManager;
@@ -23,6 +26,10 @@ import utilities.GlobalUtil;
  * {@link ThreadFinishedListener} using the
  * {@link #setDoneListener(ThreadFinishedListener)} method.
  * 
+ * The download and the import can also be run separately with
+ * {@link #download()} and {@link #importFile(File)}, as done by the
+ * {@link CatalogueDownloaderManager} which runs them on different pools.
+ * 
  * @author avonva
  * @author shahaal
  *
@@ -34,7 +41,8 @@ public class CatalogueDownloader extends Thread {
 	private ThreadFinishedListener doneListener;
 	private IProgressBar progressBar;
 	private Catalogue catalogue;
-	private boolean finished;
+	private volatile boolean finished;
+	private volatile int code;
 
 	/**
 	 * Download and import in the application database the selected
@@ -49,8 +57,39 @@ public class CatalogueDownloader extends Thread {
 
 	@Override
 	public void run() {
+
+		File file = download();
+
+		if (file != null)
+			importFile(file);
+	}
+
+	/**
+	 * First stage: download the catalogue from the dcf. If the download fails,
+	 * the process is stopped and the done listener is called.
+	 * 
+	 * @return the downloaded file or null if the download failed
+	 */
+	public File download() {
+
+		// show the progress bar
+		if (progressBar != null) {
+			progressBar.setLabel(CBMessages.getString("DownloadCatalogue.ProgressBarDownload"));
+			progressBar.addProgress(10);
+		}
+
 		try {
-			downloadAndImport();
+
+			File file = catalogue.download();
+
+			// if file not found
+			if (!file.exists()) {
+				stop(ThreadFinishedListener.ERROR, new FileNotFoundException());
+				return null;
+			}
+
+			return file;
+
 		} catch (SOAPException e) {
 
 			// TODO show an error and force the user to wait 1 minute, then try again to
@@ -70,40 +109,36 @@ public class CatalogueDownloader extends Thread {
 			e.printStackTrace();
 			stop(ThreadFinishedListener.ERROR, e);
 		}
+
+		return null;
 	}
 
 	/**
-	 * Get the catalogue. add the metadata to the master table and create the db
-	 * related to the catalogue. The catalogue data are downloaded from the dcf. The
-	 * downloaded catalogue is in xml format and it will be converted into xlsx
-	 * format to be imported
+	 * Second stage: import the downloaded catalogue in the calling thread,
+	 * starting from the previous version if present. The done listener is called
+	 * at the end.
 	 * 
-	 * @param catalogue
-	 * @throws SOAPException
-	 * @throws AttachmentNotFoundException
+	 * @param file the file returned by {@link #download()}
+	 * @return the result code of the import, as in {@link ThreadFinishedListener}
 	 */
-	private void downloadAndImport() throws SOAPException, AttachmentNotFoundException {
+	public int importFile(File file) {
 
-		// show the progress bar
-		if (progressBar != null) {
-			progressBar.setLabel(CBMessages.getString("DownloadCatalogue.ProgressBarDownload"));
-			progressBar.addProgress(10);
-		}
+		catalogue.importXml(file, catalogue.getPreviousLocalVersion(), progressBar, 90,
+				new ThreadFinishedListener() {
+					@Override
+					public void finished(Thread thread, int code, Exception e) {
+						done(code, e);
+					}
+				});
 
-		// download and import the catalogue
-		boolean ok = catalogue.downloadAndImport(progressBar, 90, new ThreadFinishedListener() {
-			@Override
-			public void finished(Thread thread, int code, Exception e) {
-				callListener(code);
-				finished = true;
-			}
-		});
+		return code;
+	}
 
-		// if file not found
-		if (!ok) {
-			stop(ThreadFinishedListener.ERROR, new FileNotFoundException());
-			return;
-		}
+	/**
+	 * Stop the process before the import, since it was cancelled
+	 */
+	public void cancel() {
+		stop(ThreadFinishedListener.ERROR, new CancellationException("Download of " + catalogue + " cancelled"));
 	}
 
 	/**
@@ -112,8 +147,22 @@ public class CatalogueDownloader extends Thread {
 	 * @param code
 	 */
 	private void stop(int code, Exception e) {
-		progressBar.stop(e);
-		callListener(code);
+
+		if (progressBar != null)
+			progressBar.stop(e);
+
+		done(code, e);
+	}
+
+	/**
+	 * Set the process as finished and call the done listener
+	 * 
+	 * @param code
+	 * @param e
+	 */
+	private void done(int code, Exception e) {
+		this.code = code;
+		callListener(code, e);
 		finished = true;
 	}
 
@@ -122,9 +171,9 @@ public class CatalogueDownloader extends Thread {
 	 * 
 	 * @param correct
 	 */
-	private void callListener(int code) {
+	private void callListener(int code, Exception e) {
 		if (doneListener != null)
-			doneListener.finished(this, code, null);
+			doneListener.finished(this, code, e);
 	}
 
 	/**
@@ -154,6 +203,15 @@ public class CatalogueDownloader extends Thread {
 		return finished;
 	}
 
+	/**
+	 * Get the result code of the process, as in {@link ThreadFinishedListener}
+	 * 
+	 * @return
+	 */
+	public int getCode() {
+		return code;
+	}
+
 	/**
 	 * Get the catalogue which is being downloaded
 	 * 
@@ -1,41 +1,84 @@
 package catalogue_generator;
 
+import java.io.File;
 import java.util.ArrayList;
-import java.util.ListIterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.swt.widgets.Listener;
 
 /**
- * Manager used to manage several threads. It is possible
- * to start the threads in batches, limiting the maximum
- * number of threads active at runtime (save computational power
- * and memory)
+ * Manager used to download and import several catalogues. The downloads
+ * (bound by the network) and the imports (bound by disk and cpu) are two
+ * separated stages, each one with its own pool of threads, therefore a
+ * catalogue can be imported while the next ones are being downloaded. The
+ * maximum number of active downloads and imports can be set independently.
+ * 
  * @author avonva
+ * @author shahaal
  *
  */
-public class CatalogueDownloaderManager extends Thread {
+public class CatalogueDownloaderManager {
 
 	private static final Logger LOGGER = LogManager.getLogger(CatalogueDownloaderManager.class);
-	
-	private ArrayList<CatalogueDownloader> threads;
-	private int batchSize;
+
+	// default limits, the imports use also several threads each
+	public static final int DEFAULT_DOWNLOADS = 4;
+	public static final int DEFAULT_IMPORTS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+	private final ArrayList<CatalogueDownloader> downloaders;
+	private final ArrayList<CompletableFuture<Integer>> results;
+	private final int maxDownloads;
+	private final int maxImports;
 	private Listener doneListener;
-	private int startedCount = 0;
+
+	private ExecutorService downloadExecutor;
+	private ExecutorService importExecutor;
+	private volatile boolean cancelled;
+
+	/**
+	 * Initialise the manager with the default limits
+	 */
+	public CatalogueDownloaderManager() {
+		this(DEFAULT_DOWNLOADS, DEFAULT_IMPORTS);
+	}
+
+	/**
+	 * Initialise the manager
+	 * 
+	 * @param batchSize maximum number of downloads and of imports which can be
+	 *                  active at runtime in the same time
+	 */
+	public CatalogueDownloaderManager(int batchSize) {
+		this(batchSize, batchSize);
+	}
 
 	/**
 	 * Initialise the manager
-	 * @param batchSize maximum number of threads which can
-	 * be active at runtime in the same time
+	 * 
+	 * @param maxDownloads maximum number of downloads active at the same time
+	 * @param maxImports   maximum number of imports active at the same time
 	 */
-	public CatalogueDownloaderManager( int batchSize ) {
-		this.threads = new ArrayList<>();
-		this.batchSize = batchSize;
+	public CatalogueDownloaderManager(int maxDownloads, int maxImports) {
+
+		if (maxDownloads <= 0 || maxImports <= 0)
+			throw new IllegalArgumentException(
+					"The limits must be positive, found downloads=" + maxDownloads + ", imports=" + maxImports);
+
+		this.downloaders = new ArrayList<>();
+		this.results = new ArrayList<>();
+		this.maxDownloads = maxDownloads;
+		this.maxImports = maxImports;
 	}
 
 	/**
-	 * Called when all the threads finishes
+	 * Called when all the downloads and imports finish
+	 * 
 	 * @param doneListener
 	 */
 	public void setDoneListener(Listener doneListener) {
@@ -43,67 +86,124 @@ public class CatalogueDownloaderManager extends Thread {
 	}
 
 	/**
-	 * Plan a new thread
+	 * Plan the download and the import of a catalogue
+	 * 
 	 * @param downloader
+	 * @return the future completed with the result code of the process, as in
+	 *         {@link ThreadFinishedListener}
 	 */
-	public void add( CatalogueDownloader downloader ) {
-		threads.add( downloader );
+	public synchronized CompletableFuture<Integer> add(CatalogueDownloader downloader) {
+
+		if (downloadExecutor != null)
+			throw new IllegalStateException("Cannot add downloads after the start of the manager");
+
+		CompletableFuture<Integer> result = new CompletableFuture<>();
+
+		downloaders.add(downloader);
+		results.add(result);
+
+		return result;
 	}
 
-	@Override
-	public void run() {
+	/**
+	 * Start the planned downloads, the method returns immediately
+	 */
+	public synchronized void start() {
 
-		if ( batchSize > threads.size() ) {
-			LOGGER.warn( "CatalogueDownloaderManager: Cannot create a batch size greater "
-					+ "that the available threads. Setting to " + threads.size() );
-			batchSize = threads.size();
-		}
+		if (downloadExecutor != null)
+			throw new IllegalStateException("The manager was already started");
 
-		ListIterator<CatalogueDownloader> list = threads.listIterator();
+		// no more threads than needed
+		downloadExecutor = Executors.newFixedThreadPool(Math.max(1, Math.min(maxDownloads, downloaders.size())),
+				createThreadFactory("catalogue-download-"));
+		importExecutor = Executors.newFixedThreadPool(Math.max(1, Math.min(maxImports, downloaders.size())),
+				createThreadFactory("catalogue-import-"));
 
-		// continue until we have something
-		while ( list.hasNext() ) {
-			
-			// proceed if we can start a thread
-			if ( startedCount < batchSize ) {
+		for (int i = 0; i < downloaders.size(); i++)
+			submit(downloaders.get(i), results.get(i));
 
-				// start the next thread
-				CatalogueDownloader thread = list.next();
+		CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[results.size()]))
+				.whenComplete((ignored, e) -> {
 
-				// when finished decrease the thread count
-				thread.setDoneListener( new ThreadFinishedListener() {
+					downloadExecutor.shutdown();
+					importExecutor.shutdown();
 
-					@Override
-					public void finished(Thread thread, int code, Exception e) {
-						startedCount--;
-					}
+					if (doneListener != null)
+						doneListener.handleEvent(null);
 				});
+	}
+
+	/**
+	 * Cancel the downloads and the imports which are not started yet. The running
+	 * ones are completed, in order not to leave incomplete databases.
+	 */
+	public void cancel() {
+		LOGGER.info("Cancelling the pending catalogue downloads");
+		cancelled = true;
+	}
 
-				thread.start();
+	/**
+	 * Submit the stages of the downloader
+	 * 
+	 * @param downloader
+	 * @param result
+	 */
+	private void submit(final CatalogueDownloader downloader, final CompletableFuture<Integer> result) {
 
-				startedCount++;
+		CompletableFuture.supplyAsync(() -> {
+
+			if (cancelled) {
+				downloader.cancel();
+				return null;
 			}
-			else {  // Otherwise wait for a while
-				sleepFor(300);
+
+			return downloader.download();
+
+		}, downloadExecutor).thenApplyAsync(file -> {
+
+			// the download failed and the listener was already called
+			if (file == null)
+				return downloader.getCode();
+
+			if (cancelled) {
+				deleteQuietly(file);
+				downloader.cancel();
+				return downloader.getCode();
 			}
-		} // end while
-		
-		// wait remaining threads to finish
-		for ( CatalogueDownloader thread : threads ) {
-			while ( !thread.isFinished() )
-				sleepFor(300);
-		}
-
-		if ( doneListener != null )
-			doneListener.handleEvent( null );
+
+			return downloader.importFile(file);
+
+		}, importExecutor).whenComplete((code, e) -> {
+
+			if (e != null) {
+				LOGGER.error("Cannot download/import catalogue=" + downloader.getCatalogue(), e);
+				result.completeExceptionally(e);
+			} else
+				result.complete(code);
+		});
 	}
-	
-	private void sleepFor ( long time ) {
-		try {
-			Thread.sleep( time );
-		} catch (InterruptedException e) {
-			LOGGER.error("Cannot sleep thread=" + this, e);
-			e.printStackTrace();
-		}
+
+	/**
+	 * Delete a downloaded file which will not be imported
+	 * 
+	 * @param file
+	 */
+	private static void deleteQuietly(File file) {
+		if (!file.delete())
+			LOGGER.warn("Cannot delete the downloaded file " + file);
+	}
+
+	private static ThreadFactory createThreadFactory(final String prefix) {
+		return new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
 	}
 }
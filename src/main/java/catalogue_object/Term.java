@@ -22,6 +22,8 @@ import org.eclipse.swt.graphics.FontData;
 import org.eclipse.swt.widgets.Display;
 
 import catalogue.Catalogue;
+import catalogue.ImplicitFacetsCache;
+import catalogue.TermChildrenIndex.TermPath;
 import catalogue_browser_dao.ParentTermDAO;
 import catalogue_browser_dao.TermDAO;
 import data_transformation.BooleanConverter;
@@ -101,10 +103,21 @@ public class Term extends CatalogueObject implements Mappable {
 		applicabilities = new ArrayList<>();
 	}
 
+	/**
+	 * Release the unused capacity of the lists of the term, to be called once the
+	 * catalogue data are loaded
+	 */
+	public void trimToSize() {
+		implicitFacets.trimToSize();
+		termAttributes.trimToSize();
+		applicabilities.trimToSize();
+	}
+
 	public void clear() {
 		implicitFacets.clear();
 		termAttributes.clear();
 		applicabilities.clear();
+		invalidateInheritedFacets();
 	}
 
 	public String getFullCode(boolean allFacets, boolean baseTerm) {
@@ -146,8 +159,7 @@ public class Term extends CatalogueObject implements Mappable {
 		// facets)
 		if (descriptorCodes.length() > 0)
 			result = result + descriptorCodes.substring(0, descriptorCodes.length() - 1);
-		
-		LOGGER.info("full code of term : " + result);
+
 		return result;
 	}
 
@@ -325,7 +337,48 @@ public class Term extends CatalogueObject implements Mappable {
 	 *         facets using their children)
 	 */
 	public ArrayList<DescriptorTreeItem> getInheritedImplicitFacets(Attribute facetCategory) {
-		return this.getImplicitFacetsLeaves(getImplicitFacetsTree(facetCategory));
+
+		ImplicitFacetsCache cache = getFacetsCache();
+
+		if (cache == null)
+			return this.getImplicitFacetsLeaves(getImplicitFacetsTree(facetCategory));
+
+		ArrayList<DescriptorTreeItem> leaves = cache.get(this, facetCategory);
+
+		if (leaves == null) {
+
+			long generation = cache.getGeneration();
+
+			leaves = this.getImplicitFacetsLeaves(getImplicitFacetsTree(facetCategory));
+
+			cache.put(this, facetCategory, leaves, generation);
+		}
+
+		return leaves;
+	}
+
+	/**
+	 * Get the memo of the inherited facets, only for the terms stored in the
+	 * catalogue (not for their copies) and only if the tree is in memory
+	 * 
+	 * @return the cache or null if it cannot be used
+	 */
+	private ImplicitFacetsCache getFacetsCache() {
+
+		if (catalogue == null || !catalogue.getChildrenIndex().isLoaded() || !catalogue.containsTerm(this))
+			return null;
+
+		return catalogue.getImplicitFacetsCache();
+	}
+
+	/**
+	 * Discard the inherited facets of the term and of its children, to be called
+	 * when the implicit facets of the term change
+	 */
+	private void invalidateInheritedFacets() {
+
+		if (catalogue != null && catalogue.containsTerm(this))
+			catalogue.getImplicitFacetsCache().invalidate(this, catalogue.getMasterHierarchy());
 	}
 
 	/**
@@ -341,7 +394,6 @@ public class Term extends CatalogueObject implements Mappable {
 		if (replace && getLabel().equals(""))
 			return getName();
 
-		LOGGER.info("short name of the term : " + getLabel());
 		return getLabel();
 	}
 
@@ -488,16 +540,24 @@ public class Term extends CatalogueObject implements Mappable {
 		if (appl == null)
 			return null;
 
-		// start from the order integer of the term
-		String hierarchyCode = String.valueOf(appl.getOrder());
+		return toSingleHierarchyCode(appl.getOrder());
+	}
 
-		// add zeros to format code
-		while (hierarchyCode.length() < 4) {
-			hierarchyCode = "0" + hierarchyCode;
-		}
+	/**
+	 * Convert an order integer to a single hierarchy code, padding it with zeros
+	 * to four characters
+	 * 
+	 * @param order
+	 * @return
+	 */
+	public static String toSingleHierarchyCode(int order) {
 
-		LOGGER.info("single hierarchy code : " + hierarchyCode);
-		return hierarchyCode;
+		String hierarchyCode = String.valueOf(order);
+
+		if (hierarchyCode.length() >= 4)
+			return hierarchyCode;
+
+		return "0000".substring(hierarchyCode.length()) + hierarchyCode;
 	}
 
 	/**
@@ -509,6 +569,12 @@ public class Term extends CatalogueObject implements Mappable {
 	 */
 	public String getHierarchyCode(Hierarchy hierarchy) {
 
+		// use the cached path if available
+		TermPath path = getCachedPath(hierarchy);
+
+		if (path != null)
+			return "Z" + path.getCode();
+
 		String hierarchyCode = this.getSingleHierarchyCode(hierarchy);
 
 		// if no code found return void
@@ -539,7 +605,6 @@ public class Term extends CatalogueObject implements Mappable {
 		// add the Z at the beginning (to avoid excel issues)
 		hierarchyCode = "Z" + hierarchyCode;
 
-		LOGGER.info("hierarchy code : " + hierarchyCode);
 		return hierarchyCode;
 	}
 
@@ -969,6 +1034,7 @@ public class Term extends CatalogueObject implements Mappable {
 			// create an implicit facet descriptor
 			FacetDescriptor fa = new FacetDescriptor(this, ta, FacetType.IMPLICIT);
 			implicitFacets.add(fa);
+			invalidateInheritedFacets();
 		}
 	}
 
@@ -983,8 +1049,10 @@ public class Term extends CatalogueObject implements Mappable {
 		termAttributes.remove(ta);
 
 		// if it was an implicit facet remove it also from the cache
-		if (ta.getAttribute().isImplicitFacet())
+		if (ta.getAttribute().isImplicitFacet()) {
 			implicitFacets.remove(ta);
+			invalidateInheritedFacets();
+		}
 
 		if (ta.getAttribute().isDetailLevel())
 			detailLevel = null;
@@ -1008,6 +1076,8 @@ public class Term extends CatalogueObject implements Mappable {
 
 		termAttributes.add(fd.getTermAttribute());
 		implicitFacets.add(fd);
+
+		invalidateInheritedFacets();
 	}
 
 	/**
@@ -1023,6 +1093,8 @@ public class Term extends CatalogueObject implements Mappable {
 
 		// remove the descriptor
 		implicitFacets.remove(fd);
+
+		invalidateInheritedFacets();
 	}
 
 	/**
@@ -1033,8 +1105,10 @@ public class Term extends CatalogueObject implements Mappable {
 		if (termAttributes != null)
 			termAttributes.clear();
 
-		if (implicitFacets != null)
+		if (implicitFacets != null && !implicitFacets.isEmpty()) {
 			implicitFacets.clear();
+			invalidateInheritedFacets();
+		}
 
 		detailLevel = null;
 		termType = null;
@@ -1083,8 +1157,10 @@ public class Term extends CatalogueObject implements Mappable {
 
 				// if we have an implicit facet then we remove also from the implicit facet
 				// array
-				if (removed.getAttribute().isImplicitFacet())
+				if (removed.getAttribute().isImplicitFacet()) {
 					implicitFacets.remove(removed);
+					invalidateInheritedFacets();
+				}
 
 				if (removed.getAttribute().isDetailLevel())
 					detailLevel = null;
@@ -1229,6 +1305,11 @@ public class Term extends CatalogueObject implements Mappable {
 		if (this.equals(ancestor))
 			found = true;
 
+		// use the pre-order numbering of the hierarchy if available
+		else if (catalogue != null && ancestor != null && hierarchy != null
+				&& catalogue.getChildrenIndex().isLoaded())
+			found = catalogue.getChildrenIndex().hasAncestor(this, ancestor, hierarchy);
+
 		else {
 
 			// if we have not found the relationship then we
@@ -1281,7 +1362,10 @@ public class Term extends CatalogueObject implements Mappable {
 	 * @return
 	 */
 	public boolean hasChildren(Hierarchy hierarchy, boolean hideDeprecated, boolean hideNotReportable) {
-		return !getChildren(hierarchy, hideDeprecated, hideNotReportable).isEmpty();
+
+		ParentTermDAO parentDao = new ParentTermDAO(catalogue);
+
+		return parentDao.hasChildren(this, hierarchy, hideDeprecated, hideNotReportable);
 	}
 
 	/**
@@ -1908,6 +1992,13 @@ public class Term extends CatalogueObject implements Mappable {
 	 * @unused
 	 */
 	public int getLevelInTree(Hierarchy hierarchy) {
+
+		// use the cached path if available
+		TermPath path = getCachedPath(hierarchy);
+
+		if (path != null)
+			return path.getDepth();
+
 		// min level of detail
 		int level=1;
 		
@@ -1925,6 +2016,21 @@ public class Term extends CatalogueObject implements Mappable {
 		return level;
 	}
 
+	/**
+	 * Get the materialised path of the term from the children index of the
+	 * catalogue
+	 * 
+	 * @param hierarchy
+	 * @return the path or null if not available
+	 */
+	private TermPath getCachedPath(Hierarchy hierarchy) {
+
+		if (catalogue == null || hierarchy == null || !catalogue.getChildrenIndex().isLoaded())
+			return null;
+
+		return catalogue.getChildrenIndex().getPath(this, hierarchy);
+	}
+
 	/**
 	 * 
 	 * @param termsOnLevel
@@ -10,7 +10,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import catalogue.Catalogue;
-import term_code_generator.CodeGenerator;
+import term_code_generator.TermCodeAllocator;
 import term_code_generator.TermCodeException;
 
 /**
@@ -84,8 +84,9 @@ public class TxtTermsParser {
 		int termsAdded=1;
 		try {
 			
-			// initialise the code generatore
-			CodeGenerator generator = new CodeGenerator();
+			// initialise the code allocator (the maximum
+			// code is read only once for all the terms)
+			TermCodeAllocator allocator = new TermCodeAllocator(catalogue, catalogue.getTermCodeMask());
 			
 			// iterate the file
 			while(hasNext()) {
@@ -101,7 +102,7 @@ public class TxtTermsParser {
 				}
 				
 				// get the a new code for the term using the catalogue term code mask
-				String code = generator.getTermCode( catalogue.getTermCodeMask() );
+				String code = allocator.next();
 				
 				CatalogueObject parent = (CatalogueObject) catalogue.getTermByCode(st.nextToken());
 				
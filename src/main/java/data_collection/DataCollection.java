@@ -6,6 +6,8 @@ import java.sql.Timestamp;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.xml.soap.SOAPException;
 import javax.xml.stream.XMLStreamException;
@@ -16,6 +18,7 @@ import org.apache.logging.log4j.Logger;
 import catalogue.Catalogue;
 import catalogue_browser_dao.CatalogueDAO;
 import catalogue_generator.CatalogueDownloader;
+import catalogue_generator.CatalogueDownloaderManager;
 import dcf_manager.Dcf;
 import i18n_messages.CBMessages;
 import progress_bar.ProgressList;
@@ -238,26 +241,38 @@ public class DataCollection implements IDcfDataCollection {
 		// related to the data collection
 		Collection<CatalogueDownloader> down = prepareDownloadThreads();
 
+		final CatalogueDownloaderManager manager = new CatalogueDownloaderManager();
+
 		for ( final CatalogueDownloader thread : down ) {
 
-			// start the thread
-			thread.start();
+			// plan the download and the import
+			final Future<Integer> result = manager.add( thread );
 
-			// create a wait progress step for that thread
+			// create a wait progress step for that catalogue
 			list.add( new ProgressStep( "t_" + thread.getId(), 
 					thread.getCatalogue().toString() ) {
 
 				@Override
 				public void execute() throws InterruptedException {
-					while ( !thread.isFinished() ) {
-						Thread.sleep( 100 );
+					try {
+						result.get();
+					} catch (ExecutionException e) {
+						LOGGER.error("Cannot download catalogue=" + thread.getCatalogue(), e);
+						e.printStackTrace();
+					} catch (InterruptedException e) {
+						// the progress list was stopped, do not start
+						// the remaining downloads
+						manager.cancel();
+						throw e;
 					}
 				}
 			});
 		}
 
+		manager.start();
+
 		// start the execution of the steps
-		// i.e. wait all the threads
+		// i.e. wait all the downloads
 		list.start();
 	}
 
@@ -1,5 +1,8 @@
 package export_catalogue;
 
+import java.io.File;
+import java.io.IOException;
+
 import catalogue.Catalogue;
 import catalogue_generator.ThreadFinishedListener;
 import progress_bar.IProgressBar;
@@ -80,4 +83,33 @@ public class ExportActions {
 		exportThread.setListener(doneListener);
 		exportThread.start();
 	}
+
+	/**
+	 * Export the selected catalogue as text files (one for each sheet) into the
+	 * selected folder, see {@link ExportCatalogueText}. This method is a sync
+	 * method.
+	 * 
+	 * @param catalogue catalogue to be exported
+	 * @param folder    folder which will contain the files
+	 * @param format    csv or json lines
+	 * @param gzip      true to compress the files with gzip
+	 * @return true if the export was successful
+	 */
+	public boolean exportText(Catalogue catalogue, File folder, TextFormat format, boolean gzip) {
+
+		ExportCatalogueText export = new ExportCatalogueText();
+
+		if (progressBar != null)
+			export.setProgressBar(progressBar);
+
+		try {
+			export.exportCatalogue(catalogue, folder, format, gzip);
+		} catch (IOException e) {
+			LOGGER.error("Cannot export catalogue=" + catalogue + " in folder=" + folder, e);
+			e.printStackTrace();
+			return false;
+		}
+
+		return true;
+	}
 }
@@ -0,0 +1,181 @@
+package export_catalogue;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Locale;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import catalogue.Catalogue;
+import catalogue.CommandLineCatalogue;
+import i18n_messages.CBMessages;
+import naming_convention.Headers;
+import progress_bar.IProgressBar;
+
+/**
+ * Export the catalogue as text files for the downstream pipelines, one file for
+ * each sheet (catalogue, hierarchies, attributes, terms, term hierarchies and
+ * term attributes) in csv or json lines format. The sheets use the same headers
+ * of the excel export and the rows are streamed to the files, therefore the
+ * memory used does not depend on the size of the files. The
+ * {@link #main(String[])} method runs the export from the command line.
+ * 
+ * @author shahaal
+ *
+ */
+public class ExportCatalogueText {
+
+	private static final Logger LOGGER = LogManager.getLogger(ExportCatalogueText.class);
+
+	// names of the files of the long format sheets
+	public static final String TERM_HIERARCHY_SHEET_NAME = "termHierarchy";
+	public static final String TERM_ATTRIBUTE_SHEET_NAME = "termAttribute";
+
+	private IProgressBar progressBar;
+
+	/**
+	 * Set the progress bar if needed
+	 * 
+	 * @param progressBar
+	 */
+	public void setProgressBar(IProgressBar progressBar) {
+		this.progressBar = progressBar;
+	}
+
+	/**
+	 * Export a catalogue from the command line. Arguments: the code of the
+	 * catalogue, the output folder, the format (csv or jsonl) and optionally gzip
+	 * to compress the files.
+	 * 
+	 * @param args
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	public static void main(String[] args) throws IOException, SQLException {
+
+		if (args.length < 3 || args.length > 4 || (args.length == 4 && !args[3].equalsIgnoreCase("gzip"))) {
+			System.err.println("Usage: ExportCatalogueText <catalogue code> <folder> <csv|jsonl> [gzip]");
+			System.exit(1);
+		}
+
+		TextFormat format = TextFormat.valueOf(args[2].toUpperCase(Locale.ROOT));
+
+		Catalogue catalogue = CommandLineCatalogue.open(args[0]);
+
+		boolean ok;
+		try {
+			ok = new ExportActions().exportText(catalogue, new File(args[1]), format, args.length == 4);
+		} finally {
+			CommandLineCatalogue.close(catalogue);
+		}
+
+		if (!ok)
+			System.exit(1);
+	}
+
+	/**
+	 * Export the catalogue into the folder. The files are named as
+	 * catalogueCode_sheetName.extension (.gz if compressed).
+	 * 
+	 * @param catalogue the catalogue we want to export
+	 * @param folder    the folder which will contain the files
+	 * @param format    the format of the files
+	 * @param gzip      true to compress the files with gzip
+	 * @return the created files
+	 * @throws IOException
+	 */
+	public ArrayList<File> exportCatalogue(Catalogue catalogue, File folder, TextFormat format, boolean gzip)
+			throws IOException {
+
+		long startTime = System.currentTimeMillis();
+
+		LOGGER.info("Starting " + format + " export of catalogue " + catalogue + " into " + folder);
+
+		if (!folder.isDirectory() && !folder.mkdirs())
+			throw new IOException("Cannot create the folder " + folder);
+
+		// the sheets do not have a workbook, the rows are written only into the files
+		// (with the label of the progress bar)
+		ArrayList<SheetWriter> sheets = new ArrayList<>();
+		ArrayList<String> labels = new ArrayList<>();
+
+		sheets.add(new ExportCatalogueSheet(catalogue, null, Headers.CAT_SHEET_NAME));
+		labels.add(CBMessages.getString("Export.CatalogueSheet"));
+
+		sheets.add(new ExportHierarchySheet(catalogue, null, Headers.HIER_SHEET_NAME));
+		labels.add(CBMessages.getString("Export.HierarchySheet"));
+
+		sheets.add(new ExportAttributeSheet(catalogue, null, Headers.ATTR_SHEET_NAME, true));
+		labels.add(CBMessages.getString("Export.AttributeSheet"));
+
+		sheets.add(new ExportTermSheet(catalogue, null, Headers.TERM_SHEET_NAME, true));
+		labels.add(CBMessages.getString("Export.TermSheet"));
+
+		sheets.add(new ExportTermHierarchySheet(catalogue, null, TERM_HIERARCHY_SHEET_NAME));
+		labels.add(CBMessages.getString("Export.HierarchySheet"));
+
+		sheets.add(new ExportTermAttributeSheet(catalogue, null, TERM_ATTRIBUTE_SHEET_NAME));
+		labels.add(CBMessages.getString("Export.AttributeSheet"));
+
+		ParallelSheetsWriter writer = new ParallelSheetsWriter();
+		writer.setProgressBar(progressBar);
+
+		ArrayList<File> files = new ArrayList<>();
+		ArrayList<SheetOutput> outputs = new ArrayList<>();
+		boolean written = false;
+
+		try {
+
+			for (int i = 0; i < sheets.size(); i++) {
+
+				SheetWriter sheet = sheets.get(i);
+
+				String filename = catalogue.getCode() + "_" + sheet.getSheetName() + "." + format.getExtension();
+
+				if (gzip)
+					filename = filename + ".gz";
+
+				File file = new File(folder, filename);
+
+				SheetOutput output = new TextSheetOutput(file, format, gzip);
+				outputs.add(output);
+				files.add(file);
+
+				sheet.setOutput(output);
+
+				writer.add(sheet, false, 100 / sheets.size(), labels.get(i));
+			}
+
+			writer.write();
+			written = true;
+
+		} finally {
+
+			// close all the files, also if the export failed
+			IOException closeError = null;
+			for (SheetOutput output : outputs) {
+				try {
+					output.close();
+				} catch (IOException e) {
+					LOGGER.error("Cannot close export file", e);
+					closeError = e;
+				}
+			}
+
+			// do not hide the error of the export
+			if (closeError != null && written)
+				throw closeError;
+		}
+
+		if (progressBar != null)
+			progressBar.fillToMax();
+
+		LOGGER.info("Export finished, statistics: overall time = " + (System.currentTimeMillis() - startTime) / 1000.00
+				+ " seconds");
+
+		return files;
+	}
+}
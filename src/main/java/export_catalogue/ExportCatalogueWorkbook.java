@@ -58,88 +58,54 @@ public class ExportCatalogueWorkbook {
 		// set that we want to maintain the temp files smaller
 		workbook.setCompressTempFiles(true);
 
+		// the rows of the sheets are computed in parallel and appended
+		// to the workbook by this thread
+		ParallelSheetsWriter sheets = new ParallelSheetsWriter();
+		sheets.setProgressBar(progressBar);
+
 		// if exporting the info
 		if (flag) {
 
-			LOGGER.info("Exporting catalogue" + catalogue);
-
-			// write the catalogue sheet
-			ExportCatalogueSheet catSheet = new ExportCatalogueSheet(catalogue, workbook, Headers.CAT_SHEET_NAME);
-
-			if (progressBar != null)
-				catSheet.setProgressBar(progressBar, 20, CBMessages.getString("Export.CatalogueSheet"));
-
-			catSheet.write();
-
-			LOGGER.info("Exporting hierarchies");
-
-			// write the hierarchy sheet
-			ExportHierarchySheet hierarchySheet = new ExportHierarchySheet(catalogue, workbook,
-					Headers.HIER_SHEET_NAME);
-
-			if (progressBar != null)
-				hierarchySheet.setProgressBar(progressBar, 40, CBMessages.getString("Export.HierarchySheet"));
-
-			hierarchySheet.write();
-
-			LOGGER.info("Exporting attributes");
-
-			// write the attribute sheet
-			ExportAttributeSheet attrSheet = new ExportAttributeSheet(catalogue, workbook, Headers.ATTR_SHEET_NAME,
-					true);
+			LOGGER.info("Exporting catalogue " + catalogue);
 
-			if (progressBar != null)
-				attrSheet.setProgressBar(progressBar, 60, CBMessages.getString("Export.AttributeSheet"));
+			// catalogue sheet
+			sheets.add(new ExportCatalogueSheet(catalogue, workbook, Headers.CAT_SHEET_NAME), false, 20,
+					CBMessages.getString("Export.CatalogueSheet"));
 
-			attrSheet.write();
+			// hierarchy sheet
+			sheets.add(new ExportHierarchySheet(catalogue, workbook, Headers.HIER_SHEET_NAME), false, 40,
+					CBMessages.getString("Export.HierarchySheet"));
 
-			LOGGER.info("Exporting terms");
+			// attribute sheet
+			sheets.add(new ExportAttributeSheet(catalogue, workbook, Headers.ATTR_SHEET_NAME, true), false, 60,
+					CBMessages.getString("Export.AttributeSheet"));
 
-			// write the term sheet
-			ExportTermSheet termSheet = new ExportTermSheet(catalogue, workbook, Headers.TERM_SHEET_NAME, true);
+			// term sheet, with the dump record if extracting the xml
+			boolean withDump = User.getInstance().isCatManager() && extractXML;
 
-			if (progressBar != null)
-				termSheet.setProgressBar(progressBar, 80, CBMessages.getString("Export.TermSheet"));
+			sheets.add(new ExportTermSheet(catalogue, workbook, Headers.TERM_SHEET_NAME, true), withDump, 80,
+					CBMessages.getString("Export.TermSheet"));
 
-			if (User.getInstance().isCatManager() && extractXML)
-				termSheet.writeWithDump();
-			else
-				termSheet.write();
+			// release notes sheet
+			sheets.add(new ExportReleaseNotesSheet(catalogue, workbook, Headers.NOTES_SHEET_NAME), false, 95,
+					CBMessages.getString("Export.NotesSheet"));
 
-			LOGGER.info("Exporting release notes");
-
-			// write the term sheet
-			ExportReleaseNotesSheet noteSheet = new ExportReleaseNotesSheet(catalogue, workbook,
-					Headers.NOTES_SHEET_NAME);
-
-			if (progressBar != null)
-				noteSheet.setProgressBar(progressBar, 95, CBMessages.getString("Export.NotesSheet"));
-
-			noteSheet.write();
+			sheets.write();
 
 		} else {
 
 			// if needed just the interpreting and checking tool info
-			LOGGER.info("Exporting attributes");
-
-			// write the attribute sheet
-			ExportAttributeSheet attrSheet = new ExportAttributeSheet(catalogue, workbook, Headers.ATTR_SHEET_NAME,
-					false);
-
-			if (progressBar != null)
-				attrSheet.setProgressBar(progressBar, 20, CBMessages.getString("Export.AttributeSheet"));
+			LOGGER.info("Exporting attributes and terms");
 
-			attrSheet.write();
+			// attribute sheet
+			sheets.add(new ExportAttributeSheet(catalogue, workbook, Headers.ATTR_SHEET_NAME, false), false, 20,
+					CBMessages.getString("Export.AttributeSheet"));
 
-			LOGGER.info("Exporting terms");
+			// term sheet
+			sheets.add(new ExportTermSheet(catalogue, workbook, Headers.TERM_SHEET_NAME, false), false, 95,
+					CBMessages.getString("Export.TermSheet"));
 
-			// write the term sheet
-			ExportTermSheet termSheet = new ExportTermSheet(catalogue, workbook, Headers.TERM_SHEET_NAME, false);
-
-			if (progressBar != null)
-				termSheet.setProgressBar(progressBar, 95, CBMessages.getString("Export.TermSheet"));
-
-			termSheet.write();
+			sheets.write();
 
 			// copy the new db into the ict main folder
 			new ICTInstaller().createDatabase();
@@ -151,6 +117,8 @@ public class ExportCatalogueWorkbook {
 
 		LOGGER.info("Creating excel file");
 
+		long writeStart = System.currentTimeMillis();
+
 		// write in the workbook
 		OutputStream out = new FileOutputStream(filename);
 		workbook.write(out);
@@ -160,6 +128,11 @@ public class ExportCatalogueWorkbook {
 
 		out.close();
 
+		// remove the temporary files of the streaming sheets
+		workbook.dispose();
+
+		LOGGER.info("Excel file written in " + (System.currentTimeMillis() - writeStart) / 1000.00 + " seconds");
+
 		// fill progress bar
 		if (progressBar != null)
 			progressBar.fillToMax();
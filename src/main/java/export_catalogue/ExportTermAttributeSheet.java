@@ -0,0 +1,79 @@
+package export_catalogue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.apache.poi.ss.usermodel.Workbook;
+
+import catalogue.Catalogue;
+import catalogue_object.Mappable;
+import catalogue_object.Term;
+import catalogue_object.TermAttribute;
+import naming_convention.Headers;
+import sheet_header.SheetHeader;
+
+/**
+ * Export the attribute values of the terms, one row for each term attribute.
+ * It is the long format of the attribute columns of the term sheet.
+ * 
+ * @author shahaal
+ *
+ */
+public class ExportTermAttributeSheet extends SheetWriter {
+
+	private Catalogue catalogue;
+
+	public ExportTermAttributeSheet(Catalogue catalogue, Workbook workbook, String sheetName) {
+		super(workbook, sheetName);
+		this.catalogue = catalogue;
+	}
+
+	@Override
+	public HashMap<String, SheetHeader> getHeaders() {
+
+		HashMap<String, SheetHeader> headers = new HashMap<>();
+
+		headers.put("TERM_CODE",  new SheetHeader(0, Headers.TERM_CODE));
+		headers.put("ATTR_CODE",  new SheetHeader(1, "attributeCode"));
+		headers.put("ATTR_NAME",  new SheetHeader(2, "attributeName"));
+		headers.put("ATTR_VALUE", new SheetHeader(3, "value"));
+
+		return headers;
+	}
+
+	@Override
+	public ArrayList<? extends Mappable> getData() {
+
+		ArrayList<Mappable> data = new ArrayList<>();
+
+		for (Term term : catalogue.getTerms()) {
+			for (TermAttribute ta : term.getAttributes())
+				data.add(key -> getValue(ta, key));
+		}
+
+		return data;
+	}
+
+	/**
+	 * Get the field of the term attribute related to the key
+	 * 
+	 * @param ta
+	 * @param key
+	 * @return
+	 */
+	private String getValue(TermAttribute ta, String key) {
+
+		switch (key) {
+		case "TERM_CODE":
+			return ta.getTerm().getCode();
+		case "ATTR_CODE":
+			return ta.getAttribute().getCode();
+		case "ATTR_NAME":
+			return ta.getAttribute().getName();
+		case "ATTR_VALUE":
+			return ta.getValue();
+		default:
+			return "";
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package export_catalogue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.apache.poi.ss.usermodel.Workbook;
+
+import catalogue.Catalogue;
+import catalogue_object.Applicability;
+import catalogue_object.Hierarchy;
+import catalogue_object.Mappable;
+import catalogue_object.Nameable;
+import catalogue_object.Term;
+import data_transformation.BooleanConverter;
+import naming_convention.Headers;
+import sheet_header.SheetHeader;
+
+/**
+ * Export the applicabilities of the terms, one row for each term and
+ * hierarchy with the parent code, the order and the reportable flag. It is the
+ * long format of the hierarchy columns of the term sheet.
+ * 
+ * @author shahaal
+ *
+ */
+public class ExportTermHierarchySheet extends SheetWriter {
+
+	private Catalogue catalogue;
+
+	public ExportTermHierarchySheet(Catalogue catalogue, Workbook workbook, String sheetName) {
+		super(workbook, sheetName);
+		this.catalogue = catalogue;
+	}
+
+	@Override
+	public HashMap<String, SheetHeader> getHeaders() {
+
+		HashMap<String, SheetHeader> headers = new HashMap<>();
+
+		headers.put("TERM_CODE",      new SheetHeader(0, Headers.TERM_CODE));
+		headers.put("HIERARCHY_CODE", new SheetHeader(1, "hierarchyCode"));
+		headers.put("PARENT_CODE",    new SheetHeader(2, "parentCode"));
+		headers.put("ORDER",          new SheetHeader(3, "order"));
+		headers.put("REPORTABLE",     new SheetHeader(4, "reportable"));
+
+		return headers;
+	}
+
+	@Override
+	public ArrayList<? extends Mappable> getData() {
+
+		ArrayList<Mappable> data = new ArrayList<>();
+
+		for (Term term : catalogue.getTerms()) {
+			for (Applicability appl : term.getApplicabilities())
+				data.add(key -> getValue(appl, key));
+		}
+
+		return data;
+	}
+
+	/**
+	 * Get the field of the applicability related to the key
+	 * 
+	 * @param appl
+	 * @param key
+	 * @return
+	 */
+	private String getValue(Applicability appl, String key) {
+
+		switch (key) {
+		case "TERM_CODE":
+			return appl.getChild().getCode();
+		case "HIERARCHY_CODE":
+
+			Hierarchy hierarchy = appl.getHierarchy();
+
+			return hierarchy.isMaster() ? Hierarchy.MASTER_HIERARCHY_CODE : hierarchy.getCode();
+		case "PARENT_CODE":
+
+			Nameable parent = appl.getParentTerm();
+
+			// the root terms have "root" as parent code as convention
+			if (parent instanceof Term)
+				return ((Term) parent).getCode();
+			else if (parent instanceof Hierarchy)
+				return "root";
+
+			return "";
+		case "ORDER":
+			return String.valueOf(appl.getOrder());
+		case "REPORTABLE":
+			return BooleanConverter.toNumericBoolean(String.valueOf(appl.isReportable()));
+		default:
+			return "";
+		}
+	}
+}
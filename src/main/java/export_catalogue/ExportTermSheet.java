@@ -33,12 +33,15 @@ public class ExportTermSheet extends SheetWriter {
 	//flag used for the interpreting and checking tool
 	private boolean flag; 
 	private List<String> IctColumns = Stream.of("allFacets", "matrixCode", "foodexOldCode", "detailLevel", "termType").collect(Collectors.toList());
+	// values of the columns computed with resolved headers and cached hierarchy codes
+	private TermSheetValues termValues;
 	
 	public ExportTermSheet( Catalogue catalogue, Workbook workbook, String sheetName, boolean b) {
 		
 		super(workbook, sheetName);
 		this.catalogue = catalogue;
 		this.flag = b;
+		this.termValues = new TermSheetValues(catalogue);
 	}
 
 	@Override
@@ -116,6 +119,11 @@ public class ExportTermSheet extends SheetWriter {
 		return headers;
 	}
 
+	@Override
+	protected void getValues(Mappable record, String[] keys, String[] values) {
+		termValues.getValues((Term) record, keys, values);
+	}
+
 	@Override
 	public Collection<? extends Mappable> getData() {
 		
@@ -0,0 +1,291 @@
+package export_catalogue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import catalogue_object.Mappable;
+import progress_bar.IProgressBar;
+
+/**
+ * Write several sheets of a workbook using a pool of threads. The headers and
+ * the data of all the sheets are retrieved in parallel, then the records are
+ * split in chunks whose rows are computed by the pool. The calling thread only
+ * appends the computed rows to the sheets (or to their outputs), in the order
+ * in which the sheets were added, since the streaming workbook cannot be
+ * written by several threads. The number of chunks computed and not appended
+ * yet is limited, in order to keep the memory bounded. The time spent for each
+ * sheet is logged.
+ * 
+ * @author shahaal
+ *
+ */
+class ParallelSheetsWriter {
+
+	private static final Logger LOGGER = LogManager.getLogger(ParallelSheetsWriter.class);
+
+	// records of each chunk
+	private static final int CHUNK_SIZE = 500;
+
+	/**
+	 * Sheet which needs to be written
+	 */
+	private static class Entry {
+
+		private final SheetWriter sheet;
+		private final boolean withDump;
+		private final int maxFill;
+		private final String label;
+
+		// headers and data of the sheet
+		private Future<List<? extends Mappable>> data;
+
+		// nanoseconds spent computing the rows by all the threads
+		private final AtomicLong generationTime = new AtomicLong();
+		private long prepareTime;
+		private long appendTime;
+		private int rows;
+
+		private Entry(SheetWriter sheet, boolean withDump, int maxFill, String label) {
+			this.sheet = sheet;
+			this.withDump = withDump;
+			this.maxFill = maxFill;
+			this.label = label;
+		}
+	}
+
+	/**
+	 * Rows of a chunk of records of a sheet
+	 */
+	private static class Chunk {
+
+		private final Entry entry;
+		private final Future<List<String[]>> rows;
+
+		private Chunk(Entry entry, Future<List<String[]>> rows) {
+			this.entry = entry;
+			this.rows = rows;
+		}
+	}
+
+	private final ArrayList<Entry> entries;
+	private final int threads;
+	private IProgressBar progressBar;
+
+	/**
+	 * Create a writer which uses a thread for each available processor
+	 */
+	ParallelSheetsWriter() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a writer which uses the selected number of threads
+	 * 
+	 * @param threads
+	 */
+	ParallelSheetsWriter(int threads) {
+		this.entries = new ArrayList<>();
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Set the progress bar which is updated while the sheets are written
+	 * 
+	 * @param progressBar
+	 */
+	void setProgressBar(IProgressBar progressBar) {
+		this.progressBar = progressBar;
+	}
+
+	/**
+	 * Add a sheet which needs to be written
+	 * 
+	 * @param sheet    the sheet
+	 * @param withDump true to add the record with length 4000 after the headers
+	 * @param maxFill  the maximum amount that the sheet adds to the progress bar
+	 * @param label    the label of the progress bar while the sheet is written
+	 */
+	void add(SheetWriter sheet, boolean withDump, int maxFill, String label) {
+		entries.add(new Entry(sheet, withDump, maxFill, label));
+	}
+
+	/**
+	 * Write all the sheets
+	 * 
+	 * @throws IOException
+	 */
+	void write() throws IOException {
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "sheet-writer-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		try {
+
+			// headers and data of all the sheets
+			for (Entry entry : entries)
+				entry.data = executor.submit(prepare(entry));
+
+			// chunks submitted and not appended yet, in sheets order
+			ArrayDeque<Chunk> pending = new ArrayDeque<>();
+			int maxPending = threads * 2;
+
+			int entryIndex = 0;
+			int from = 0;
+			Entry current = null;
+			long appendStart = 0;
+
+			while (true) {
+
+				// keep the pool busy with the next chunks, also of the next sheets
+				while (pending.size() < maxPending && entryIndex < entries.size()) {
+
+					Entry next = entries.get(entryIndex);
+					List<? extends Mappable> data = next.data.get();
+
+					// a sheet without data has a single empty chunk for the headers
+					int to = Math.min(from + CHUNK_SIZE, data.size());
+
+					pending.add(new Chunk(next, executor.submit(generate(next, data.subList(from, to)))));
+
+					from = to;
+
+					if (from >= data.size()) {
+						entryIndex++;
+						from = 0;
+					}
+				}
+
+				Chunk chunk = pending.poll();
+
+				if (chunk == null)
+					break;
+
+				// start the sheet
+				if (chunk.entry != current) {
+
+					if (current != null)
+						finish(current, appendStart);
+
+					current = chunk.entry;
+					appendStart = System.nanoTime();
+
+					if (progressBar != null)
+						current.sheet.setProgressBar(progressBar, current.maxFill, current.label);
+
+					current.sheet.setRowsCount(current.data.get().size());
+					current.sheet.writeHeaders(current.withDump);
+				}
+
+				for (String[] values : chunk.rows.get())
+					current.sheet.appendRow(values);
+			}
+
+			if (current != null)
+				finish(current, appendStart);
+
+		} catch (UncheckedIOException e) {
+			// error of the output of the sheets
+			throw e.getCause();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Export interrupted", e);
+		} catch (ExecutionException e) {
+
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+
+			throw new IOException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Task which prepares the headers of the sheet and gets its data
+	 * 
+	 * @param entry
+	 * @return
+	 */
+	private Callable<List<? extends Mappable>> prepare(final Entry entry) {
+
+		return () -> {
+
+			long start = System.nanoTime();
+
+			entry.sheet.prepare();
+			List<? extends Mappable> data = new ArrayList<>(entry.sheet.getData());
+
+			entry.prepareTime = System.nanoTime() - start;
+			entry.rows = data.size();
+
+			return data;
+		};
+	}
+
+	/**
+	 * Task which computes the rows of a chunk of records
+	 * 
+	 * @param entry
+	 * @param records
+	 * @return
+	 */
+	private Callable<List<String[]>> generate(final Entry entry, final List<? extends Mappable> records) {
+
+		return () -> {
+
+			long start = System.nanoTime();
+
+			List<String[]> rows = new ArrayList<>(records.size());
+
+			for (Mappable record : records)
+				rows.add(entry.sheet.getValues(record));
+
+			entry.generationTime.addAndGet(System.nanoTime() - start);
+
+			return rows;
+		};
+	}
+
+	/**
+	 * Log the timings of the sheet
+	 * 
+	 * @param entry
+	 * @param appendStart
+	 */
+	private void finish(Entry entry, long appendStart) {
+
+		entry.appendTime = System.nanoTime() - appendStart;
+
+		LOGGER.info("Sheet " + entry.sheet.getSheetName() + " exported, statistics: rows = " + entry.rows
+				+ ", data retrieval time = " + seconds(entry.prepareTime) + " seconds, rows generation time = "
+				+ seconds(entry.generationTime.get()) + " seconds (sum over threads), writing time = "
+				+ seconds(entry.appendTime) + " seconds");
+	}
+
+	private static double seconds(long nanos) {
+		return nanos / 1000000 / 1000.00;
+	}
+}
@@ -0,0 +1,31 @@
+package export_catalogue;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination of the rows of a {@link SheetWriter} other than the workbook
+ * sheet (see {@link SheetWriter#setOutput(SheetOutput)}). The values are
+ * ordered by column index.
+ * 
+ * @author shahaal
+ *
+ */
+interface SheetOutput extends Closeable {
+
+	/**
+	 * Write the names of the columns
+	 * 
+	 * @param names
+	 * @throws IOException
+	 */
+	void writeHeaders(String[] names) throws IOException;
+
+	/**
+	 * Write a row. The array is reused for the next rows.
+	 * 
+	 * @param values the values of the row, null values are written as empty
+	 * @throws IOException
+	 */
+	void writeRow(String[] values) throws IOException;
+}
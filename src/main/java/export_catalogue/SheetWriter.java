@@ -1,5 +1,8 @@
 package export_catalogue;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 
@@ -33,22 +36,49 @@ public abstract class SheetWriter {
 	// the considered fields of the xml which will be the sheet columns
 	public HashMap<String, SheetHeader> headers;
 
+	// keys and column indexes of the headers, resolved once for all the rows
+	private String[] keys;
+	private int[] columns;
+
+	// progress added for each row
+	private double increment = 0;
+
 	// the current number of rows
 	private int rowNum = 0;
 
 	// the sheet which will be created
 	private Sheet sheet;
+	private String sheetName;
+
+	// if set, the rows are written here instead of the sheet
+	private SheetOutput output;
+
+	// values of the current row ordered by column index, for the output
+	private String[] outputValues;
 
 	/**
-	 * Create the sheet
+	 * Create the sheet. If the workbook is null, the sheet can only be written
+	 * into a {@link SheetOutput}.
 	 * 
 	 * @param workbook
 	 * @param sheetName
 	 */
 	public SheetWriter(Workbook workbook, String sheetName) {
 
+		this.sheetName = sheetName;
+
 		// create the sheet
-		sheet = workbook.createSheet(sheetName);
+		if (workbook != null)
+			sheet = workbook.createSheet(sheetName);
+	}
+
+	/**
+	 * Write the headers and the rows into the output instead of the workbook sheet
+	 * 
+	 * @param output
+	 */
+	void setOutput(SheetOutput output) {
+		this.output = output;
 	}
 
 	/**
@@ -57,10 +87,10 @@ public abstract class SheetWriter {
 	public void write() {
 
 		// prepare the headers
-		headers = getHeaders();
+		prepare();
 
 		// insert headers
-		insertHeaders(sheet);
+		writeHeaders(false);
 
 		// insert the data into the sheet
 		insertData(sheet);
@@ -75,19 +105,141 @@ public abstract class SheetWriter {
 	public void writeWithDump() {
 
 		// prepare the headers
+		prepare();
+
+		// insert headers and dump record
+		writeHeaders(true);
+
+		// insert the data into the sheet
+		insertData(sheet);
+	}
+
+	/**
+	 * Get the headers and resolve their keys and column indexes. It does not
+	 * write into the sheet, therefore it can be called outside of the thread which
+	 * writes the workbook.
+	 */
+	void prepare() {
+
 		headers = getHeaders();
 
-		// insert headers
+		keys = headers.keySet().toArray(new String[headers.size()]);
+		columns = new int[keys.length];
+
+		for (int i = 0; i < keys.length; i++)
+			columns[i] = headers.get(keys[i]).getColumnIndex();
+	}
+
+	/**
+	 * Insert the headers as first line of the sheet, followed by the dump record
+	 * if required (not for the output). The sheet should be prepared before.
+	 * 
+	 * @param withDump true to add the record with length 4000 after the headers
+	 */
+	void writeHeaders(boolean withDump) {
+
+		if (output != null) {
+
+			int width = 0;
+			for (int column : columns)
+				width = Math.max(width, column + 1);
+
+			outputValues = new String[width];
+
+			// column names ordered by column index
+			String[] names = new String[width];
+			Arrays.fill(names, "");
+
+			for (int i = 0; i < keys.length; i++) {
+				if (columns[i] >= 0)
+					names[columns[i]] = headers.get(keys[i]).getColumnName();
+			}
+
+			try {
+				output.writeHeaders(names);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			return;
+		}
+
 		insertHeaders(sheet);
 
-		// create the dump string with length 4000
-		String dump = createDumpString();
-		
 		// insert the dump string as first record in the external file
-		insertFirstRow(dump);
+		if (withDump)
+			insertFirstRow(createDumpString());
+	}
 
-		// insert the data into the sheet
-		insertData(sheet);
+	/**
+	 * Set the number of rows which will be appended, in order to compute the
+	 * progress of each row
+	 * 
+	 * @param count
+	 */
+	void setRowsCount(int count) {
+		increment = (double) maxFill / count;
+	}
+
+	/**
+	 * Get the values of a record in the order of the resolved headers. It does not
+	 * write into the sheet, therefore it can be called outside of the thread which
+	 * writes the workbook.
+	 * 
+	 * @param record
+	 * @return
+	 */
+	String[] getValues(Mappable record) {
+
+		String[] values = new String[keys.length];
+
+		getValues(record, keys, values);
+
+		return values;
+	}
+
+	/**
+	 * Append a row with the values of a record, computed with
+	 * {@link #getValues(Mappable)}
+	 * 
+	 * @param values
+	 */
+	void appendRow(String[] values) {
+
+		if (output != null) {
+
+			Arrays.fill(outputValues, null);
+
+			for (int i = 0; i < keys.length; i++) {
+				if (columns[i] >= 0)
+					outputValues[columns[i]] = values[i];
+			}
+
+			try {
+				output.writeRow(outputValues);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		} else {
+
+			Row row = createRow(sheet);
+
+			for (int i = 0; i < keys.length; i++)
+				createCell(columns[i], row, values[i]);
+		}
+
+		// refresh the progress bar if needed
+		if (progressBar != null)
+			progressBar.addProgress(increment);
+	}
+
+	/**
+	 * Get the name of the sheet
+	 * 
+	 * @return
+	 */
+	public String getSheetName() {
+		return sheetName;
 	}
 
 	/**
@@ -97,9 +249,6 @@ public abstract class SheetWriter {
 	 */
 	private void insertHeaders(Sheet sheet) {
 
-		// get the headers
-		this.headers = getHeaders();
-
 		// create a row for the headers
 		Row row = createRow(sheet);
 
@@ -120,21 +269,37 @@ public abstract class SheetWriter {
 		// get of how much we have to increment the progress bar
 		// we can increment at maximum of maxFill, so we add
 		// for each row maxFill/#rows
-		double increment = (double) maxFill / data.size();
+		setRowsCount(data.size());
+
+		// values of the current row, the buffer is reused for all the rows
+		String[] values = new String[keys.length];
 
 		// for each record we create a row
 		// with the values into the right cells
 		for (Mappable record : data) {
 
-			// insert a single row
-			insertDataRow(record);
+			getValues(record, keys, values);
 
-			// refresh the progress bar if needed
-			if (progressBar != null)
-				progressBar.addProgress(increment);
+			appendRow(values);
 		}
 	}
 
+	/**
+	 * Get the values of a record related to the headers keys. Override to compute
+	 * the values of several columns together. Since the rows can be computed by
+	 * several threads, the implementation should not modify shared state without
+	 * synchronization.
+	 * 
+	 * @param record the record which has to be inserted
+	 * @param keys   the keys of the headers
+	 * @param values the values related to each key (output)
+	 */
+	protected void getValues(Mappable record, String[] keys, String[] values) {
+
+		for (int i = 0; i < keys.length; i++)
+			values[i] = record.getValueByKey(keys[i]);
+	}
+
 	/**
 	 * create a dump string of length 4000 useful for not truncating strings in SAS
 	 * 
@@ -171,26 +336,6 @@ public abstract class SheetWriter {
 			createCell(headers.get(dbColumnName).getColumnIndex(), row, dump);
 	}
 
-	/**
-	 * Insert a single record into the sheet
-	 * 
-	 * @param record, the record which has to be inserted
-	 */
-	private void insertDataRow(Mappable record) {
-
-		Row row = createRow(sheet);
-
-		// for each header we set the cell value related to it
-		for (String dbColumnName : headers.keySet()) {
-
-			// get the value of the catalogue field
-			String value = record.getValueByKey(dbColumnName);
-
-			// add the cell to the sheet
-			createCell(headers.get(dbColumnName).getColumnIndex(), row, value);
-		}
-	}
-
 	/**
 	 * Set a progress bar which needs to be updated. Max fill is used to limit the
 	 * maximum relative amount of progress that this sheet can achieve. The label is
@@ -0,0 +1,301 @@
+package export_catalogue;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import catalogue.Catalogue;
+import catalogue_object.Applicability;
+import catalogue_object.Hierarchy;
+import catalogue_object.Nameable;
+import catalogue_object.ParentField;
+import catalogue_object.Term;
+import data_transformation.BooleanConverter;
+import naming_convention.SpecialValues;
+import ui_implicit_facet.ComparatorAlphaFacetDescriptor;
+
+/**
+ * Compute the values of the columns of the term sheet, as
+ * {@link Term#getValueByKey(String)} does. The headers keys are resolved only
+ * once into columns (term field, attribute or hierarchy property) and the
+ * hierarchy codes are computed once for each term and hierarchy, reusing the
+ * code of the parent term instead of walking up to the root for each term. The
+ * values of different terms can be computed by several threads together.
+ * 
+ * @author shahaal
+ *
+ */
+class TermSheetValues {
+
+	private enum ColumnType {
+		FIELD, ATTRIBUTE, ALL_FACETS, IMPLICIT_FACETS, HIERARCHY
+	}
+
+	/**
+	 * Column of the sheet resolved from its header key
+	 */
+	private static class Column {
+
+		private final ColumnType type;
+		private final String key;
+		private final String attrName;
+		private final Hierarchy hierarchy;
+		private final ParentField field;
+
+		private Column(ColumnType type, String key, String attrName, Hierarchy hierarchy, ParentField field) {
+			this.type = type;
+			this.key = key;
+			this.attrName = attrName;
+			this.hierarchy = hierarchy;
+			this.field = field;
+		}
+	}
+
+	/**
+	 * Columns resolved from an array of keys
+	 */
+	private static class Resolution {
+
+		private final String[] keys;
+		private final Column[] columns;
+
+		private Resolution(String[] keys, Column[] columns) {
+			this.keys = keys;
+			this.columns = columns;
+		}
+	}
+
+	private final Catalogue catalogue;
+
+	private final ComparatorAlphaFacetDescriptor facetSorter;
+
+	// columns of the last keys
+	private volatile Resolution resolution;
+
+	// hierarchy code => term id => hierarchy code of the term (without the Z)
+	private final ConcurrentHashMap<String, Map<Integer, String>> hierarchyCodes;
+
+	TermSheetValues(Catalogue catalogue) {
+		this.catalogue = catalogue;
+		this.facetSorter = new ComparatorAlphaFacetDescriptor();
+		this.hierarchyCodes = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Get the values of the term for each key
+	 * 
+	 * @param term
+	 * @param keys   keys of the headers
+	 * @param values values of the term (output)
+	 */
+	void getValues(Term term, String[] keys, String[] values) {
+
+		Resolution current = resolution;
+
+		if (current == null || current.keys != keys) {
+			current = new Resolution(keys, resolve(keys));
+			resolution = current;
+		}
+
+		Column[] columns = current.columns;
+
+		for (int i = 0; i < columns.length; i++)
+			values[i] = getValue(term, columns[i]);
+	}
+
+	/**
+	 * Resolve the keys into columns, using the same conventions of
+	 * {@link Term#getValueByKey(String)}
+	 * 
+	 * @param keys
+	 * @return the column of each key
+	 */
+	private Column[] resolve(String[] keys) {
+
+		Column[] columns = new Column[keys.length];
+
+		for (int i = 0; i < keys.length; i++) {
+
+			String key = keys[i];
+
+			ParentField field = null;
+
+			if (key.contains("flag_"))
+				field = ParentField.FLAG;
+
+			if (key.contains("parent_"))
+				field = ParentField.PARENT_CODE;
+
+			if (key.contains("order_"))
+				field = ParentField.ORDER;
+
+			if (key.contains("reportable_"))
+				field = ParentField.REPORTABLE;
+
+			if (key.contains("hierarchyCode_"))
+				field = ParentField.HIERARCHY_CODE;
+
+			String name = key.contains("_") ? key.split("_", 2)[1] : null;
+
+			if (field != null) {
+				columns[i] = new Column(ColumnType.HIERARCHY, key, null, getHierarchy(name), field);
+			} else if (key.contains("attribute_")) {
+
+				ColumnType type = ColumnType.ATTRIBUTE;
+
+				if (name.equals(SpecialValues.ALL_FACETS_NAME))
+					type = ColumnType.ALL_FACETS;
+				else if (name.equals(SpecialValues.IMPLICIT_FACETS_NAME))
+					type = ColumnType.IMPLICIT_FACETS;
+
+				columns[i] = new Column(type, key, name, null, null);
+			} else {
+				columns[i] = new Column(ColumnType.FIELD, key, null, null, null);
+			}
+		}
+
+		return columns;
+	}
+
+	/**
+	 * Get the hierarchy related to the code used in the headers
+	 * 
+	 * @param code
+	 * @return
+	 */
+	private Hierarchy getHierarchy(String code) {
+
+		if (Hierarchy.MASTER_HIERARCHY_CODE.equals(code))
+			return catalogue.getMasterHierarchy();
+
+		return catalogue.getHierarchyByCode(code);
+	}
+
+	private String getValue(Term term, Column column) {
+
+		switch (column.type) {
+		case ATTRIBUTE:
+			return term.getAttributeValueByName(column.attrName);
+		case ALL_FACETS:
+			return term.getFullCode(true, true, facetSorter);
+		case IMPLICIT_FACETS:
+			return term.getFullCode(false, false, facetSorter);
+		case HIERARCHY:
+			return getHierarchyValue(term, column.hierarchy, column.field);
+		default:
+			return term.getValueByKey(column.key);
+		}
+	}
+
+	/**
+	 * Get the field of the term applicability in the hierarchy
+	 * 
+	 * @param term
+	 * @param hierarchy
+	 * @param field
+	 * @return
+	 */
+	private String getHierarchyValue(Term term, Hierarchy hierarchy, ParentField field) {
+
+		if (hierarchy == null)
+			return "";
+
+		// get the term applicability related to the hierarchy
+		Applicability appl = term.getApplicability(hierarchy);
+
+		// return empty value if no applicability is retrieved
+		if (appl == null)
+			return "";
+
+		switch (field) {
+		case FLAG:
+			return "1";
+		case PARENT_CODE:
+
+			Nameable parent = appl.getParentTerm();
+
+			// the root terms have "root" as parent code as convention
+			if (parent instanceof Term)
+				return ((Term) parent).getCode();
+			else if (parent instanceof Hierarchy)
+				return "root";
+
+			return "";
+		case ORDER:
+			return String.valueOf(appl.getOrder());
+		case REPORTABLE:
+			return BooleanConverter.toNumericBoolean(String.valueOf(appl.isReportable()));
+		case HIERARCHY_CODE:
+			return getHierarchyCode(term, hierarchy);
+		default:
+			return "";
+		}
+	}
+
+	/**
+	 * Get the hierarchy code of the term (e.g. Z0001.0001.0002), as
+	 * {@link Term#getHierarchyCode(Hierarchy)}. The codes of the term and of its
+	 * ancestors are kept, so that the other terms of the same branch reuse them.
+	 * 
+	 * @param term
+	 * @param hierarchy
+	 * @return
+	 */
+	private String getHierarchyCode(Term term, Hierarchy hierarchy) {
+
+		// the children index already caches the codes
+		if (term.getCatalogue() != null && term.getCatalogue().getChildrenIndex().isLoaded())
+			return term.getHierarchyCode(hierarchy);
+
+		Map<Integer, String> codes = hierarchyCodes.get(hierarchy.getCode());
+
+		if (codes == null) {
+			hierarchyCodes.putIfAbsent(hierarchy.getCode(), new ConcurrentHashMap<Integer, String>());
+			codes = hierarchyCodes.get(hierarchy.getCode());
+		}
+
+		String code = codes.get(term.getId());
+
+		if (code == null) {
+
+			// go up until the root or a term with known code
+			ArrayList<Term> path = new ArrayList<>();
+			ArrayList<String> singleCodes = new ArrayList<>();
+
+			Term current = term;
+			while (current != null) {
+
+				code = codes.get(current.getId());
+
+				if (code != null)
+					break;
+
+				String single = current.getSingleHierarchyCode(hierarchy);
+
+				// term not in the hierarchy
+				if (single == null)
+					break;
+
+				path.add(current);
+				singleCodes.add(single);
+
+				current = current.getParent(hierarchy);
+			}
+
+			// go down adding the single codes
+			for (int i = path.size() - 1; i >= 0; i--) {
+
+				code = code == null ? singleCodes.get(i) : code + "." + singleCodes.get(i);
+
+				codes.put(path.get(i).getId(), code);
+			}
+		}
+
+		// if no code found return void
+		if (code == null)
+			return "";
+
+		// add the Z at the beginning (to avoid excel issues)
+		return "Z" + code;
+	}
+}
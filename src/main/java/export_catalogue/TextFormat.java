@@ -0,0 +1,27 @@
+package export_catalogue;
+
+/**
+ * Formats of the text export of a catalogue
+ * 
+ * @author shahaal
+ *
+ */
+public enum TextFormat {
+
+	CSV("csv"), JSONL("jsonl");
+
+	private String extension;
+
+	private TextFormat(String extension) {
+		this.extension = extension;
+	}
+
+	/**
+	 * Get the extension of the files (without the dot)
+	 * 
+	 * @return
+	 */
+	public String getExtension() {
+		return extension;
+	}
+}
@@ -0,0 +1,117 @@
+package export_catalogue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import utilities.EscapeUtil;
+
+/**
+ * Write the rows of a sheet into a text file, as csv (headers in the first
+ * line) or as json lines (an object for each row, with the headers as keys).
+ * The rows are streamed to the file, optionally compressed with gzip.
+ * 
+ * @author shahaal
+ *
+ */
+class TextSheetOutput implements SheetOutput {
+
+	// size of the buffers of the file
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Writer writer;
+	private final TextFormat format;
+
+	// json names of the columns
+	private String[] jsonNames;
+
+	/**
+	 * Create the output file
+	 * 
+	 * @param file   the file to create
+	 * @param format the format of the rows
+	 * @param gzip   true to compress the file with gzip
+	 * @throws IOException
+	 */
+	TextSheetOutput(File file, TextFormat format, boolean gzip) throws IOException {
+
+		OutputStream out = new FileOutputStream(file);
+
+		try {
+			if (gzip)
+				out = new GZIPOutputStream(out, BUFFER_SIZE);
+		} catch (IOException e) {
+			out.close();
+			throw e;
+		}
+
+		this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+		this.format = format;
+	}
+
+	@Override
+	public void writeHeaders(String[] names) throws IOException {
+
+		if (format == TextFormat.JSONL) {
+
+			jsonNames = new String[names.length];
+
+			for (int i = 0; i < names.length; i++)
+				jsonNames[i] = EscapeUtil.escapeJson(names[i]);
+
+			return;
+		}
+
+		writeCsv(names);
+	}
+
+	@Override
+	public void writeRow(String[] values) throws IOException {
+
+		if (format == TextFormat.JSONL)
+			writeJson(values);
+		else
+			writeCsv(values);
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+
+	private void writeCsv(String[] values) throws IOException {
+
+		for (int i = 0; i < values.length; i++) {
+
+			if (i > 0)
+				writer.write(',');
+
+			writer.write(EscapeUtil.escapeCsv(values[i]));
+		}
+
+		writer.write('\n');
+	}
+
+	private void writeJson(String[] values) throws IOException {
+
+		writer.write('{');
+
+		for (int i = 0; i < values.length; i++) {
+
+			if (i > 0)
+				writer.write(',');
+
+			writer.write(jsonNames[i]);
+			writer.write(':');
+			writer.write(EscapeUtil.escapeJson(values[i]));
+		}
+
+		writer.write("}\n");
+	}
+}
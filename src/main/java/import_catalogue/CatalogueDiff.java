@@ -0,0 +1,373 @@
+package import_catalogue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+
+import catalogue.Catalogue;
+import catalogue_browser_dao.TermDAO;
+import catalogue_object.Applicability;
+import catalogue_object.Nameable;
+import catalogue_object.Term;
+import catalogue_object.TermAttribute;
+
+/**
+ * Differences between a catalogue database copied from the previous version
+ * and the terms of a new version. Only the fields of the terms of the previous
+ * version and the keys of their relations are kept in memory (see
+ * {@link #load(Catalogue)}), the catalogue data are not loaded. Each term of
+ * the new version is compared with them (by term code, then by term attributes
+ * and applicabilities), in order to find which terms have to be inserted,
+ * updated or deprecated and which terms need their relations replaced.
+ * 
+ * @author shahaal
+ *
+ */
+class CatalogueDiff {
+
+	/**
+	 * Result of the comparison of a term
+	 */
+	enum TermChange {
+		NEW, CHANGED, UNCHANGED
+	}
+
+	// code => term of the previous version
+	private final HashMap<String, Term> previousByCode;
+
+	// id => term of the previous version
+	private final HashMap<Integer, Term> previousById;
+
+	// term id => keys of the relations of the previous version
+	private final HashMap<Integer, List<String>> previousAttributes;
+	private final HashMap<Integer, List<String>> previousApplicabilities;
+
+	// codes of the terms found in the new version
+	private final HashSet<String> found;
+
+	// statistics
+	private int inserted;
+	private int updated;
+	private int deprecated;
+	private int relationsReplaced;
+
+	/**
+	 * Create an empty diff, the previous version is added with
+	 * {@link #addPreviousTerm(Term)} and the related methods
+	 */
+	CatalogueDiff() {
+
+		this.previousByCode = new HashMap<>();
+		this.previousById = new HashMap<>();
+		this.previousAttributes = new HashMap<>();
+		this.previousApplicabilities = new HashMap<>();
+		this.found = new HashSet<>();
+	}
+
+	/**
+	 * Create the diff for the catalogue reading the terms and the keys of their
+	 * relations from the database, one query for each table. The terms are
+	 * created without relations and are not added to the catalogue.
+	 * 
+	 * @param catalogue the copy of the previous version, its data are not needed
+	 * @return
+	 * @throws SQLException
+	 */
+	static CatalogueDiff load(Catalogue catalogue) throws SQLException {
+
+		CatalogueDiff diff = new CatalogueDiff();
+
+		TermDAO termDao = new TermDAO(catalogue);
+
+		try (Connection con = catalogue.getConnection();) {
+
+			try (PreparedStatement stmt = con.prepareStatement("select * from APP.TERM");
+					ResultSet rs = stmt.executeQuery();) {
+
+				while (rs.next())
+					diff.addPreviousTerm(termDao.getByResultSet(rs));
+			}
+
+			try (PreparedStatement stmt = con
+					.prepareStatement("select TERM_ID, ATTR_ID, ATTR_VALUE from APP.TERM_ATTRIBUTE");
+					ResultSet rs = stmt.executeQuery();) {
+
+				while (rs.next())
+					diff.addPreviousAttribute(rs.getInt("TERM_ID"), rs.getInt("ATTR_ID"), rs.getString("ATTR_VALUE"));
+			}
+
+			try (PreparedStatement stmt = con.prepareStatement(
+					"select TERM_ID, HIERARCHY_ID, PARENT_TERM_ID, TERM_ORDER, TERM_REPORTABLE from APP.PARENT_TERM");
+					ResultSet rs = stmt.executeQuery();) {
+
+				// as convention 0 is returned for the root terms
+				while (rs.next())
+					diff.addPreviousApplicability(rs.getInt("TERM_ID"), rs.getInt("HIERARCHY_ID"),
+							rs.getInt("PARENT_TERM_ID"), rs.getInt("TERM_ORDER"), rs.getBoolean("TERM_REPORTABLE"));
+			}
+		}
+
+		return diff;
+	}
+
+	/**
+	 * Add a term of the previous version, with its term attributes and
+	 * applicabilities if any
+	 * 
+	 * @param term
+	 */
+	void addPreviousTerm(Term term) {
+
+		previousByCode.put(term.getCode(), term);
+		previousById.put(term.getId(), term);
+
+		for (TermAttribute ta : term.getAttributes())
+			addPreviousAttribute(term.getId(), ta.getAttribute().getId(), ta.getValue());
+
+		for (Applicability appl : term.getApplicabilities())
+			addPreviousApplicability(term.getId(), appl.getHierarchy().getId(), getParentId(appl), appl.getOrder(),
+					appl.isReportable());
+	}
+
+	/**
+	 * Add a term attribute of the previous version
+	 * 
+	 * @param termId
+	 * @param attrId
+	 * @param value
+	 */
+	void addPreviousAttribute(int termId, int attrId, String value) {
+		getKeys(previousAttributes, termId).add(getAttributeKey(attrId, value));
+	}
+
+	/**
+	 * Add an applicability of the previous version
+	 * 
+	 * @param termId
+	 * @param hierarchyId
+	 * @param parentId    0 for the root terms
+	 * @param order
+	 * @param reportable
+	 */
+	void addPreviousApplicability(int termId, int hierarchyId, int parentId, int order, boolean reportable) {
+		getKeys(previousApplicabilities, termId).add(getApplicabilityKey(hierarchyId, parentId, order, reportable));
+	}
+
+	/**
+	 * Compare a term of the new version with the previous version. If the term
+	 * was already present its id is set.
+	 * 
+	 * @param term
+	 * @return
+	 */
+	TermChange compareTerm(Term term) {
+
+		found.add(term.getCode());
+
+		Term previous = previousByCode.get(term.getCode());
+
+		if (previous == null) {
+			inserted++;
+			return TermChange.NEW;
+		}
+
+		term.setId(previous.getId());
+
+		if (sameFields(previous, term))
+			return TermChange.UNCHANGED;
+
+		updated++;
+		return TermChange.CHANGED;
+	}
+
+	/**
+	 * Get the terms of the previous version which are not present in the new
+	 * version. They are not removed, since other data can refer to them, but they
+	 * are set as deprecated.
+	 * 
+	 * @return the terms to be updated
+	 */
+	Collection<Term> getMissingTerms() {
+
+		Collection<Term> missing = new ArrayList<>();
+
+		for (Term term : previousByCode.values()) {
+
+			if (found.contains(term.getCode()) || term.isDeprecated())
+				continue;
+
+			term.setDeprecated(true);
+			missing.add(term);
+		}
+
+		deprecated = missing.size();
+
+		return missing;
+	}
+
+	/**
+	 * Get the term of the previous version with the id
+	 * 
+	 * @param termId
+	 * @return the term or null if the term is new
+	 */
+	Term getPreviousTerm(int termId) {
+		return previousById.get(termId);
+	}
+
+	/**
+	 * Check if the relations of a term of the new version are different from the
+	 * ones of the previous version
+	 * 
+	 * @param termId the id of the term
+	 * @param tas    the term attributes of the new version
+	 * @param appls  the applicabilities of the new version
+	 * @return true if the relations need to be replaced (always for new terms)
+	 */
+	boolean relationsChanged(int termId, Collection<TermAttribute> tas, Collection<Applicability> appls) {
+
+		Term previous = previousById.get(termId);
+
+		boolean changed = previous == null
+				|| !getSortedKeys(previousAttributes, termId).equals(getAttributeKeys(tas))
+				|| !getSortedKeys(previousApplicabilities, termId).equals(getApplicabilityKeys(appls));
+
+		if (changed && previous != null)
+			relationsReplaced++;
+
+		return changed;
+	}
+
+	/**
+	 * Get the statistics of the applied changes
+	 * 
+	 * @return
+	 */
+	String getSummary() {
+		return "inserted terms = " + inserted + ", updated terms = " + updated + ", deprecated terms = " + deprecated
+				+ ", terms with replaced relations = " + relationsReplaced + ", unchanged terms = "
+				+ (previousByCode.size() - updated - deprecated);
+	}
+
+	/**
+	 * Check if the fields of the terms are the same
+	 * 
+	 * @param t1
+	 * @param t2
+	 * @return
+	 */
+	private static boolean sameFields(Term t1, Term t2) {
+		return Objects.equals(t1.getName(), t2.getName())
+				&& Objects.equals(t1.getShortName(false), t2.getShortName(false))
+				&& Objects.equals(t1.getScopenotes(), t2.getScopenotes()) && t1.isDeprecated() == t2.isDeprecated()
+				&& Objects.equals(t1.getVersion(), t2.getVersion())
+				&& Objects.equals(t1.getLastUpdate(), t2.getLastUpdate())
+				&& Objects.equals(t1.getValidFrom(), t2.getValidFrom())
+				&& Objects.equals(t1.getValidTo(), t2.getValidTo()) && Objects.equals(t1.getStatus(), t2.getStatus());
+	}
+
+	/**
+	 * Get the keys of a term of the previous version, creating the list if needed
+	 * 
+	 * @param keys
+	 * @param termId
+	 * @return
+	 */
+	private static List<String> getKeys(HashMap<Integer, List<String>> keys, int termId) {
+
+		List<String> termKeys = keys.get(termId);
+
+		if (termKeys == null) {
+			termKeys = new ArrayList<>(2);
+			keys.put(termId, termKeys);
+		}
+
+		return termKeys;
+	}
+
+	/**
+	 * Get the sorted keys of a term of the previous version
+	 * 
+	 * @param keys
+	 * @param termId
+	 * @return
+	 */
+	private static List<String> getSortedKeys(HashMap<Integer, List<String>> keys, int termId) {
+
+		List<String> termKeys = keys.get(termId);
+
+		if (termKeys == null)
+			return Collections.emptyList();
+
+		Collections.sort(termKeys);
+
+		return termKeys;
+	}
+
+	/**
+	 * Get the sorted keys (attribute and value) of the term attributes
+	 * 
+	 * @param tas
+	 * @return
+	 */
+	private static List<String> getAttributeKeys(Collection<TermAttribute> tas) {
+
+		List<String> keys = new ArrayList<>(tas.size());
+
+		for (TermAttribute ta : tas)
+			keys.add(getAttributeKey(ta.getAttribute().getId(), ta.getValue()));
+
+		Collections.sort(keys);
+
+		return keys;
+	}
+
+	private static String getAttributeKey(int attrId, String value) {
+		return attrId + "\u0000" + value;
+	}
+
+	/**
+	 * Get the sorted keys (hierarchy, parent, order and reportability) of the
+	 * applicabilities
+	 * 
+	 * @param appls
+	 * @return
+	 */
+	private static List<String> getApplicabilityKeys(Collection<Applicability> appls) {
+
+		List<String> keys = new ArrayList<>(appls.size());
+
+		for (Applicability appl : appls)
+			keys.add(getApplicabilityKey(appl.getHierarchy().getId(), getParentId(appl), appl.getOrder(),
+					appl.isReportable()));
+
+		Collections.sort(keys);
+
+		return keys;
+	}
+
+	private static String getApplicabilityKey(int hierarchyId, int parentId, int order, boolean reportable) {
+		return hierarchyId + "\u0000" + parentId + "\u0000" + order + "\u0000" + reportable;
+	}
+
+	/**
+	 * Get the id of the parent term of the applicability
+	 * 
+	 * @param appl
+	 * @return the id, 0 for the root terms which have a hierarchy as parent
+	 */
+	private static int getParentId(Applicability appl) {
+
+		Nameable parent = appl.getParentTerm();
+
+		return parent instanceof Term ? ((Term) parent).getId() : 0;
+	}
+}
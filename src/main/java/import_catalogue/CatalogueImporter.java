@@ -35,6 +35,7 @@ public class CatalogueImporter {
 	private String filename; // path of the file
 	private ImportFileFormat format; // the format of the file
 	private Catalogue openedCat;
+	private Catalogue previousCat;
 	private IProgressBar progressBar;
 	private double maxProgress;
 	private double preprocProgress;
@@ -224,7 +225,9 @@ public class CatalogueImporter {
 	}
 
 	/**
-	 * Import a .xml catalogue
+	 * Import a .xml catalogue. The xml is streamed directly into the catalogue
+	 * database, the conversion to .xlsx is used only if the xml does not contain
+	 * a catalogue which can be read by the {@link XmlCatalogueImporter}
 	 * 
 	 * @param filename the absolute path of the .xml catalogue
 	 * @throws TransformerException
@@ -238,6 +241,47 @@ public class CatalogueImporter {
 	private void importXml(String filename) throws TransformerException, IOException, XMLStreamException,
 			OpenXML4JException, SAXException, SQLException, ImportException {
 
+		XmlCatalogueImporter importer = null;
+
+		if (this.attrDao == null)
+			importer = new XmlCatalogueImporter();
+		else
+			importer = new XmlCatalogueImporter(catDao, attrDao, hierDao, termDao, taDao, parentDao, notesDao);
+
+		if (openedCat != null)
+			importer.setOpenedCatalogue(openedCat);
+
+		if (previousCat != null)
+			importer.setPreviousVersion(previousCat);
+
+		try {
+
+			importer.importXml(progressBar, filename, maxProgress - preprocProgress);
+
+			// delete all the temporary files
+			deleteGarbage();
+
+			return;
+
+		} catch (ImportException e) {
+
+			// nothing was imported or the copy was discarded, import the whole catalogue
+			if (XmlCatalogueImporter.DIFF_NOT_APPLICABLE_ERROR.equals(e.getCode())) {
+
+				LOGGER.warn("Cannot apply the changes to the previous version, importing the whole catalogue", e);
+
+				previousCat = null;
+				importXml(filename);
+				return;
+			}
+
+			// nothing was imported, try with the old conversion
+			if (!XmlCatalogueImporter.NO_CATALOGUE_ERROR.equals(e.getCode()))
+				throw e;
+
+			LOGGER.warn("Cannot stream the xml catalogue, converting it to .xlsx", e);
+		}
+
 		String xlsxFile = processXml(filename);
 
 		// at the end of the process delete the
@@ -301,4 +345,15 @@ public class CatalogueImporter {
 	public void setOpenedCat(Catalogue openedCat) {
 		this.openedCat = openedCat;
 	}
+
+	/**
+	 * Set the previous version of the catalogue which is being imported. The
+	 * .xml catalogues are imported by applying only their differences to a copy
+	 * of the previous version, if possible.
+	 * 
+	 * @param previousCat
+	 */
+	public void setPreviousVersion(Catalogue previousCat) {
+		this.previousCat = previousCat;
+	}
 }
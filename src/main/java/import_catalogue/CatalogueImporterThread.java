@@ -35,6 +35,7 @@ public class CatalogueImporterThread extends Thread {
 	private static final Logger LOGGER = LogManager.getLogger(CatalogueImporterThread.class);
 
 	private Catalogue openedCat;
+	private Catalogue previousCat;
 	private String filename; // path of the file
 	private ImportFileFormat format; // the format of the file
 
@@ -64,6 +65,14 @@ public class CatalogueImporterThread extends Thread {
 	 * Run the import thread
 	 */
 	public void run() {
+		runImport();
+	}
+
+	/**
+	 * Import the catalogue in the calling thread. The done listener is called at
+	 * the end, as for the thread.
+	 */
+	public void runImport() {
 
 		if (progressBar != null)
 			progressBar.open();
@@ -71,6 +80,7 @@ public class CatalogueImporterThread extends Thread {
 		CatalogueImporter importer = new CatalogueImporter(filename, format, progressBar, maxProgress);
 
 		importer.setOpenedCat(openedCat);
+		importer.setPreviousVersion(previousCat);
 		try {
 			importer.makeImport();
 
@@ -157,4 +167,14 @@ public class CatalogueImporterThread extends Thread {
 	public void setOpenedCatalogue(Catalogue openedCat) {
 		this.openedCat = openedCat;
 	}
+
+	/**
+	 * Set the previous version of the imported catalogue, in order to apply only
+	 * the differences of the new version to a copy of its database
+	 * 
+	 * @param previousCat
+	 */
+	public void setPreviousVersion(Catalogue previousCat) {
+		this.previousCat = previousCat;
+	}
 }
@@ -3,6 +3,7 @@ package import_catalogue;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 
@@ -13,6 +14,7 @@ import catalogue.Catalogue;
 import catalogue.CatalogueBuilder;
 import catalogue.ReleaseNotes;
 import catalogue_browser_dao.CatalogueDAO;
+import catalogue_browser_dao.CompactionScheduler;
 import catalogue_browser_dao.DatabaseManager;
 import catalogue_browser_dao.ICatalogueDAO;
 import dcf_manager.Dcf;
@@ -29,6 +31,9 @@ public class CatalogueSheetImporter extends SheetImporter<Catalogue> {
 	private Catalogue catalogue;
 	private Catalogue openedCatalogue;
 
+	// database copied to create the new one
+	private Catalogue sourceCatalogue;
+
 	private String excelCatCode;
 
 	public CatalogueSheetImporter() {
@@ -49,6 +54,18 @@ public class CatalogueSheetImporter extends SheetImporter<Catalogue> {
 		this.openedCatalogue = openedCatalogue;
 	}
 
+	/**
+	 * Create the database of the new catalogue as a copy of the database of the
+	 * source catalogue instead of an empty database (used to apply the changes of
+	 * a new version). The source is used only if the database of the new
+	 * catalogue does not exist yet.
+	 * 
+	 * @param sourceCatalogue
+	 */
+	public void setSourceCatalogue(Catalogue sourceCatalogue) {
+		this.sourceCatalogue = sourceCatalogue;
+	}
+
 	@Override
 	public Catalogue getByResultSet(ResultDataSet rs) {
 
@@ -63,6 +80,37 @@ public class CatalogueSheetImporter extends SheetImporter<Catalogue> {
 			e.printStackTrace();
 		}
 
+		prepare(catalogue);
+
+		// else the excel catalogue
+		return catalogue;
+	}
+
+	/**
+	 * Import a catalogue which was not read from a catalogue sheet (as the
+	 * catalogue streamed from the .xml file). The same rules of the sheet import
+	 * are applied and the catalogue database is created.
+	 * 
+	 * @param catalogue
+	 * @throws ImportException
+	 */
+	public void importCatalogue(Catalogue catalogue) throws ImportException {
+
+		prepare(catalogue);
+
+		Collection<Catalogue> data = new ArrayList<>();
+		data.add(catalogue);
+
+		insert(data);
+	}
+
+	/**
+	 * Apply the fields of the opened catalogue to the imported one, if required
+	 * 
+	 * @param catalogue
+	 */
+	private void prepare(Catalogue catalogue) {
+
 		// save the excel code in global variable
 		// since if we have a local catalogue this
 		// code will be overridden (and we need it
@@ -97,9 +145,6 @@ public class CatalogueSheetImporter extends SheetImporter<Catalogue> {
 
 		// save the catalogue as global variable
 		this.catalogue = catalogue;
-
-		// else the excel catalogue
-		return catalogue;
 	}
 
 	/**
@@ -224,8 +269,8 @@ public class CatalogueSheetImporter extends SheetImporter<Catalogue> {
 
 			dao.deleteContents(catalogue);
 
-			LOGGER.info("Freeing deleted memory...");
-			dao.compress(catalogue);
+			// the deleted space is freed in background once the catalogue is idle
+			CompactionScheduler.request(catalogue);
 
 			// set the id to the catalogue
 			catalogueId = dao.getCatalogue(catalogue.getCode(), catalogue.getVersion(), catalogue.getCatalogueType())
@@ -247,9 +292,22 @@ public class CatalogueSheetImporter extends SheetImporter<Catalogue> {
 			// set the catalogue id
 			catalogue.setId(catalogueId);
 
-			// create the standard database structure for
-			// the new catalogue
-			DatabaseManager.createCatalogueDatabase(catalogue.getDbPath());
+			if (sourceCatalogue != null) {
+
+				LOGGER.info("Copying the database of " + sourceCatalogue + " into " + catalogue.getDbPath());
+
+				// start from a consistent copy of the source database
+				try {
+					DatabaseManager.backupCatalogue(sourceCatalogue, catalogue.getDbPath());
+				} catch (SQLException e1) {
+					throw new IOException("Cannot copy the database of " + sourceCatalogue, e1);
+				}
+			} else {
+
+				// create the standard database structure for
+				// the new catalogue
+				DatabaseManager.createCatalogueDatabase(catalogue.getDbPath());
+			}
 		}
 	}
 
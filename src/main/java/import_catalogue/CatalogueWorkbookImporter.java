@@ -15,9 +15,11 @@ import org.xml.sax.SAXException;
 import catalogue.Catalogue;
 import catalogue.ReleaseNotesOperation;
 import catalogue_browser_dao.AttributeDAO;
+import catalogue_browser_dao.BulkInsert;
 import catalogue_browser_dao.CatalogueDAO;
 import catalogue_browser_dao.CatalogueEntityDAO;
 import catalogue_browser_dao.CatalogueRelationDAO;
+import catalogue_browser_dao.DatabaseManager;
 import catalogue_browser_dao.HierarchyDAO;
 import catalogue_browser_dao.ICatalogueDAO;
 import catalogue_browser_dao.ParentTermDAO;
@@ -132,6 +134,8 @@ public class CatalogueWorkbookImporter {
 		this.progressBar = pb;
 		this.maxProgress = maxProgress;
 
+		long start = System.currentTimeMillis();
+
 		// get the excel data
 		try (WorkbookReader workbookReader = new WorkbookReader(filename)) {
 
@@ -149,31 +153,42 @@ public class CatalogueWorkbookImporter {
 			// prepare daos to import data
 			this.initDaos(importedCat);
 
-			// import hierarchies
-			LOGGER.info("Import hierarchy sheet");
+			// build the secondary indexes only once at the end
+			if (BulkInsert.isDeferIndexes())
+				DatabaseManager.setSecondaryIndexes(importedCat, false);
 
-			if (progressBar != null)
-				progressBar.setLabel(CBMessages.getString("Import.Hierarchy"));
+			try {
 
-			importHierarchySheet(workbookReader, importedCat, catExcelCode);
+				// import hierarchies
+				LOGGER.info("Import hierarchy sheet");
 
-			// import attributes
-			LOGGER.info("Import attribute sheet");
-			if (progressBar != null)
-				progressBar.setLabel(CBMessages.getString("Import.Attribute"));
-			importAttributeSheet(workbookReader, importedCat);
+				if (progressBar != null)
+					progressBar.setLabel(CBMessages.getString("Import.Hierarchy"));
 
-			// import terms
-			LOGGER.info("Import term sheet");
-			if (progressBar != null)
-				progressBar.setLabel(CBMessages.getString("Import.Term"));
-			TermSheetImporter termImp = importTermSheet(workbookReader, importedCat);
+				importHierarchySheet(workbookReader, importedCat, catExcelCode);
 
-			// import term attributes and parent
-			LOGGER.info("Import term attributes and parents sheet");
-			if (progressBar != null)
-				progressBar.setLabel(CBMessages.getString("Import.TermAttrParent"));
-			importTermRelations(workbookReader, importedCat, termImp.getNewCodes());
+				// import attributes
+				LOGGER.info("Import attribute sheet");
+				if (progressBar != null)
+					progressBar.setLabel(CBMessages.getString("Import.Attribute"));
+				importAttributeSheet(workbookReader, importedCat);
+
+				// import terms
+				LOGGER.info("Import term sheet");
+				if (progressBar != null)
+					progressBar.setLabel(CBMessages.getString("Import.Term"));
+				TermSheetImporter termImp = importTermSheet(workbookReader, importedCat);
+
+				// import term attributes and parent
+				LOGGER.info("Import term attributes and parents sheet");
+				if (progressBar != null)
+					progressBar.setLabel(CBMessages.getString("Import.TermAttrParent"));
+				importTermRelations(workbookReader, importedCat, termImp.getNewCodes());
+
+			} finally {
+				if (BulkInsert.isDeferIndexes())
+					DatabaseManager.setSecondaryIndexes(importedCat, true);
+			}
 
 			// import the release note sheet
 			LOGGER.info("Import release notes sheet");
@@ -203,7 +218,8 @@ public class CatalogueWorkbookImporter {
 				progressBar.addProgress(prog);
 			}
 
-			LOGGER.info(importedCat + " successfully imported in " + importedCat.getDbPath());
+			LOGGER.info(importedCat + " successfully imported in " + importedCat.getDbPath() + " in "
+					+ (System.currentTimeMillis() - start) + " ms");
 
 			// clear temporary files
 			GlobalUtil.clearTempDir();
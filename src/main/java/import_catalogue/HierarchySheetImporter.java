@@ -118,6 +118,12 @@ public class HierarchySheetImporter extends SheetImporter<Hierarchy> {
 		return isMasterDefined;
 	}
 
+	@Override
+	protected int getChunkSize() {
+		// the master hierarchy is checked on the whole sheet
+		return 0;
+	}
+
 	@Override
 	public void insert(Collection<Hierarchy> hierarchies) throws ImportException {
 		
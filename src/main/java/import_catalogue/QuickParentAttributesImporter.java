@@ -3,6 +3,8 @@ package import_catalogue;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -26,18 +28,28 @@ import progress_bar.IProgressBar;
 
 /**
  * Import in a parallel way both the parent terms and the term attributes
- * contained in the term sheet.
+ * contained in the term sheet. The batches of rows read from the sheet are
+ * passed to two workers (one for the term attributes and one for the parent
+ * terms) which insert them into the database with their own connections. The
+ * queues of the workers are bounded, therefore the sheet reading waits if the
+ * workers are too slow.
  * 
  * @author avonva
+ * @author shahaal
  *
  */
 public class QuickParentAttributesImporter extends QuickImporter {
 
 	private static final Logger LOGGER = LogManager.getLogger(QuickParentAttributesImporter.class);
 
+	// number of batches which can wait for each worker
+	private static final int QUEUE_SIZE = 4;
+
 	private TermAttributeImporter taImp;
 	private ParentImporter parentImp;
-	private ImportException occurredEx;
+
+	private RelationWorker taWorker;
+	private RelationWorker parentWorker;
 
 	/**
 	 * Initialize the importer.
@@ -102,60 +114,159 @@ public class QuickParentAttributesImporter extends QuickImporter {
 		this.parentImp.manageNewTerms(newCodes);
 	}
 
+	@Override
+	public void importSheet() throws XMLStreamException, InvalidFormatException, IOException, ImportException {
+
+		taWorker = new RelationWorker("term-attribute-importer", taImp);
+		parentWorker = new RelationWorker("parent-term-importer", parentImp);
+
+		taWorker.start();
+		parentWorker.start();
+
+		try {
+			// read the sheet and pass the batches to the workers
+			super.importSheet();
+		} finally {
+			// wait that all the batches are imported
+			taWorker.finish();
+			parentWorker.finish();
+		}
+
+		// if an exception occurred in the workers throw it
+		taWorker.checkError();
+		parentWorker.checkError();
+	}
+
 	@Override
 	public void importData(final ResultDataSet rs) throws ImportException {
 
-		// import the term attribute sheet in parallel
-		Thread thread = new Thread(new Runnable() {
+		// the batch is closed by the reader after this call,
+		// therefore each worker gets its own copy
+		taWorker.add(rs);
+		parentWorker.add(rs);
+
+		// stop reading the sheet if a worker failed
+		taWorker.checkError();
+		parentWorker.checkError();
+	}
+
+	/**
+	 * Thread which imports the batches of the term sheet with a sheet importer
+	 * 
+	 * @author shahaal
+	 *
+	 */
+	private static class RelationWorker extends Thread {
+
+		private final SheetImporter<?> importer;
+		private final BlockingQueue<Object> queue;
+
+		// batch which notifies the end of the sheet
+		private final Object endOfSheet;
+		private volatile ImportException error;
+
+		public RelationWorker(String name, SheetImporter<?> importer) {
+			super(name);
+			this.importer = importer;
+			this.queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+			this.endOfSheet = new Object();
+		}
+
+		/**
+		 * Add a copy of the batch to the queue, waiting if the queue is full
+		 * 
+		 * @param rs
+		 * @throws ImportException
+		 */
+		public void add(ResultDataSet rs) throws ImportException {
+
+			ResultDataSet copy;
+			try {
+				copy = (ResultDataSet) rs.clone();
+			} catch (CloneNotSupportedException e) {
+				LOGGER.error("Cannot import result data set batch", e);
+				e.printStackTrace();
+				throw new ImportException(e);
+			}
+
+			put(copy);
+		}
+
+		/**
+		 * Notify the end of the sheet and wait that the queued batches are
+		 * imported
+		 */
+		public void finish() {
+
+			put(endOfSheet);
+
+			try {
+				join();
+			} catch (InterruptedException e) {
+				LOGGER.error("Thread error ", e);
+				e.printStackTrace();
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * Throw the exception occurred while importing the batches, if any
+		 * 
+		 * @throws ImportException
+		 */
+		public void checkError() throws ImportException {
+			if (error != null)
+				throw error;
+		}
+
+		private void put(Object batch) {
+			try {
+				queue.put(batch);
+			} catch (InterruptedException e) {
+				LOGGER.error("Thread error ", e);
+				e.printStackTrace();
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void run() {
 
-			@Override
-			public void run() {
+			while (true) {
 
-				// copy result data set to perform
-				// parallel actions
-				ResultDataSet clonedRs;
+				Object batch;
 				try {
-					clonedRs = (ResultDataSet) rs.clone();
-				} catch (CloneNotSupportedException e) {
-					LOGGER.error("Cannot import result data set batch", e);
+					batch = queue.take();
+				} catch (InterruptedException e) {
+					LOGGER.error("Thread error ", e);
 					e.printStackTrace();
 					return;
 				}
 
-				// import the dataset
-				try {
-					taImp.importData(clonedRs);
-				} catch (ImportException e) {
-					LOGGER.error("Cannot import result dataset batch", e);
-					e.printStackTrace();
-					occurredEx = e;
+				if (batch == endOfSheet)
+					return;
+
+				ResultDataSet rs = (ResultDataSet) batch;
+
+				// after an error the batches are only discarded
+				// to avoid blocking the sheet reader
+				if (error == null) {
+					try {
+						importer.importData(rs);
+					} catch (ImportException e) {
+						LOGGER.error("Cannot import result dataset batch", e);
+						e.printStackTrace();
+						error = e;
+					} catch (RuntimeException e) {
+						LOGGER.error("Cannot import result dataset batch", e);
+						e.printStackTrace();
+						error = new ImportException(e);
+					}
 				}
 
 				// close the dataset
-				clonedRs.close();
+				rs.close();
 			}
-		});
-
-		// start the thread
-		thread.start();
-
-		// import also the parent terms
-		// in parallel to the term attributes
-		parentImp.importData(rs);
-
-		// wait for the term attribute process
-		// to finish to guarantee that we can
-		// proceed with the next batch
-		try {
-			thread.join();
-		} catch (InterruptedException e) {
-			LOGGER.error("Thread error ", e);
-			e.printStackTrace();
-		}
-
-		// if an exception occurred in the thread throw it
-		if (occurredEx != null) {
-			throw occurredEx;
 		}
 	}
 }
@@ -9,6 +9,7 @@ import java.util.Collection;
 import java.util.HashMap;
 
 import catalogue.Catalogue;
+import catalogue_browser_dao.BulkInsert;
 import catalogue_object.Term;
 import open_xml_reader.ResultDataSet;
 import progress_bar.IProgressBar;
@@ -30,17 +31,22 @@ public abstract class SheetImporter<T> {
 	private double maxProgress;
 
 	/**
-	 * Start the import process of the sheet.
+	 * Start the import process of the sheet. The parsed objects are inserted in
+	 * chunks of {@link #getChunkSize()} objects, in order to keep in memory only
+	 * a part of the sheet.
 	 * 
 	 * @throws ImportException
 	 */
 	public void importData(ResultDataSet data) throws ImportException {
 
-		// list of all objects which were parsed
+		// list of the objects which were parsed and not inserted yet
 		Collection<T> objs = new ArrayList<>();
 
+		int chunkSize = getChunkSize();
+
 		// count the sheet rows
 		int processedSheetRows = 0;
+		int insertedSheetRows = 0;
 
 		while (data.next()) {
 
@@ -67,18 +73,20 @@ public abstract class SheetImporter<T> {
 			}
 
 			processedSheetRows++;
+
+			// insert the chunk into the db
+			if (chunkSize > 0 && objs.size() >= chunkSize) {
+				insert(objs);
+				objs.clear();
+				addProgress(processedSheetRows - insertedSheetRows);
+				insertedSheetRows = processedSheetRows;
+			}
 		}
 
 		// insert all the remaining T objects into the db
 		if (!objs.isEmpty()) {
-
 			insert(objs);
-
-			// notify the progress if enabled
-			if (progressBar != null) {
-				double progress = (processedSheetRows * maxProgress * 1.0000000) / rowCount;
-				progressBar.addProgress(progress);
-			}
+			addProgress(processedSheetRows - insertedSheetRows);
 		}
 
 		objs.clear();
@@ -88,6 +96,29 @@ public abstract class SheetImporter<T> {
 		end();
 	}
 
+	/**
+	 * Get the maximum number of objects which are kept in memory before inserting
+	 * them into the db. Override and return 0 if all the objects of the sheet are
+	 * needed together by {@link #insert(Collection)}.
+	 * 
+	 * @return
+	 */
+	protected int getChunkSize() {
+		return BulkInsert.getChunkSize();
+	}
+
+	/**
+	 * Notify the progress of the inserted rows if the progress bar is enabled
+	 * 
+	 * @param rows number of inserted sheet rows
+	 */
+	private void addProgress(int rows) {
+		if (progressBar != null) {
+			double progress = (rows * maxProgress * 1.0000000) / rowCount;
+			progressBar.addProgress(progress);
+		}
+	}
+
 	/**
 	 * Set a progress bar for the process
 	 * 
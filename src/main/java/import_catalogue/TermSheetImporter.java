@@ -3,6 +3,7 @@ package import_catalogue;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -15,6 +16,7 @@ import catalogue_object.TermBuilder;
 import naming_convention.Headers;
 import open_xml_reader.ResultDataSet;
 import term_code_generator.CodeGenerator;
+import term_code_generator.TermCodeAllocator;
 import term_code_generator.TermCodeException;
 
 /**
@@ -46,6 +48,10 @@ public class TermSheetImporter extends SheetImporter<Term> {
 
 	private CodeGenerator generator = new CodeGenerator();
 
+	// creates the codes of the temp terms, the current
+	// maximum code is read only once for the whole sheet
+	private TermCodeAllocator allocator;
+
 	/**
 	 * Initialize the term sheet importer
 	 * 
@@ -134,30 +140,35 @@ public class TermSheetImporter extends SheetImporter<Term> {
 	@Override
 	public void end() throws ImportException {
 
-		if (!tempTerms.isEmpty()) {
-			if (catalogue.getTermCodeMask() == null || catalogue.getTermCodeMask().isEmpty()) {
-				LOGGER.error("No term code mask is defined for " + catalogue + ", cannot perform append operation");
-				return;
-			}
+		if (tempTerms.isEmpty())
+			return;
+
+		if (catalogue.getTermCodeMask() == null || catalogue.getTermCodeMask().isEmpty()) {
+			LOGGER.error("No term code mask is defined for " + catalogue + ", cannot perform append operation");
+			return;
 		}
 
-		// for each temp term
-		for (Term newTerm : tempTerms) {
+		// create the new term codes following the catalogue
+		// term code mask (since we are creating terms
+		// automatically, a term code mask needs to be
+		// defined! Otherwise we cannot do the append)
+		if (allocator == null)
+			allocator = new TermCodeAllocator(catalogue, catalogue.getTermCodeMask());
+
+		List<String> codes;
+		try {
+			codes = allocator.next(tempTerms.size());
+		} catch (TermCodeException e) {
+			LOGGER.error("Cannot generate additional codes for catalogue=" + catalogue
+					+ ". Maximum term code reached for mask=" + catalogue.getTermCodeMask(), e);
+			e.printStackTrace();
+			throw new ImportException(e.getMessage(), "X100");
+		}
 
-			// create a new term code following the catalogue
-			// term code mask (since we are creating terms
-			// automatically, a term code mask needs to be
-			// defined! Otherwise we cannot do the append)
-			String newCode;
-			try {
-				newCode = generator.getTermCode(catalogue.getTermCodeMask());
-			} catch (TermCodeException e) {
-				LOGGER.error("Cannot generate additional codes for catalogue=" + catalogue
-						+ ". Maximum term code reached for mask=" + catalogue.getTermCodeMask(), e);
-				e.printStackTrace();
-				throw new ImportException(e.getMessage(), "X100");
-			}
+		int i = 0;
+		for (Term newTerm : tempTerms) {
 
+			String newCode = codes.get(i++);
 			String tempCode = newTerm.getCode();
 
 			// add the new code to the hash map to maintain
@@ -167,17 +178,12 @@ public class TermSheetImporter extends SheetImporter<Term> {
 
 			// update the term code with the real one
 			newTerm.setCode(newCode);
+		}
 
-			// we need a collection since the insert uses
-			// only collections
-			Collection<Term> term = new ArrayList<>();
-			term.add(newTerm);
+		// the codes are already unique, insert all the terms together
+		insert(tempTerms);
 
-			// insert the current term (we need to insert
-			// one term at a time, otherwise new term codes
-			// which are based on the database will be always
-			// equal among them)
-			insert(term);
-		}
+		// end is called for each batch of the sheet
+		tempTerms.clear();
 	}
 }
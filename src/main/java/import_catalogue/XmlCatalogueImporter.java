@@ -0,0 +1,1573 @@
+package import_catalogue;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import catalogue.Catalogue;
+import catalogue.CatalogueBuilder;
+import catalogue.ReleaseNotes;
+import catalogue.ReleaseNotesOperation;
+import catalogue_browser_dao.AttributeDAO;
+import catalogue_browser_dao.BulkInsert;
+import catalogue_browser_dao.CatalogueDAO;
+import catalogue_browser_dao.CatalogueEntityDAO;
+import catalogue_browser_dao.CatalogueRelationDAO;
+import catalogue_browser_dao.DatabaseManager;
+import catalogue_browser_dao.HierarchyDAO;
+import catalogue_browser_dao.ICatalogueDAO;
+import catalogue_browser_dao.ParentTermDAO;
+import catalogue_browser_dao.ReleaseNotesOperationDAO;
+import catalogue_browser_dao.TermAttributeDAO;
+import catalogue_browser_dao.TermDAO;
+import catalogue_object.Applicability;
+import catalogue_object.Attribute;
+import catalogue_object.AttributeBuilder;
+import catalogue_object.Hierarchy;
+import catalogue_object.HierarchyBuilder;
+import catalogue_object.Nameable;
+import catalogue_object.RepeatableParser;
+import catalogue_object.Term;
+import catalogue_object.TermAttribute;
+import catalogue_object.TermBuilder;
+import dcf_manager.Dcf;
+import i18n_messages.CBMessages;
+import naming_convention.SpecialValues;
+import progress_bar.IProgressBar;
+import ui_search_bar.SearchOptionDAO;
+import user_preferences.CataloguePreferenceDAO;
+import utilities.GlobalUtil;
+
+/**
+ * Import a catalogue .xml file (the one contained in the .ecf files) directly
+ * into the catalogue database, without converting it into a .xlsx workbook.
+ * The xml is streamed three times with StAX, in order to keep in memory only a
+ * batch of records at a time:
+ * <ol>
+ * <li>catalogue metadata and release notes, the catalogue database is
+ * created</li>
+ * <li>hierarchies, attributes and terms</li>
+ * <li>term attributes and parent terms (the terms ids are needed)</li>
+ * </ol>
+ * The wrapper elements of the records (as termDesc, termVersion...) are
+ * flattened, therefore only the names of the fields and of the records are
+ * relevant.
+ *
+ * If the previous version of the catalogue is set, the database of the new
+ * version is created as a copy of the previous one and only the differences are
+ * written (see {@link #setPreviousVersion(Catalogue)}).
+ *
+ * @author shahaal
+ *
+ */
+public class XmlCatalogueImporter {
+
+	private static final Logger LOGGER = LogManager.getLogger(XmlCatalogueImporter.class);
+
+	/**
+	 * Error code used if the xml file does not contain a catalogue
+	 */
+	public static final String NO_CATALOGUE_ERROR = "X104";
+
+	/**
+	 * Error code used if the changes cannot be applied to the previous version,
+	 * in this case no data were written
+	 */
+	public static final String DIFF_NOT_APPLICABLE_ERROR = "X105";
+
+	// date formats used in the xml (with and without milliseconds)
+	private static final String[] DATE_FORMATS = { Catalogue.ISO_8601_24H_FULL_FORMAT,
+			"yyyy-MM-dd'T'HH:mm:ssXXX", "yyyy-MM-dd" };
+
+
+	// records
+	private static final String CATALOGUE_DESC = "catalogueDesc";
+	private static final String CATALOGUE_VERSION = "catalogueVersion";
+	private static final String RELEASE_NOTES = "releaseNotes";
+	private static final String HIERARCHY = "hierarchy";
+	private static final String ATTRIBUTE = "attribute";
+	private static final String TERM = "term";
+
+	// records nested into other records
+	private static final HashSet<String> CHILD_RECORDS = new HashSet<>(
+			Arrays.asList(ATTRIBUTE, "termAttribute", "hierarchyAssignment", "operationDetail"));
+
+	// common fields
+	private static final String CODE = "code";
+	private static final String NAME = "name";
+	private static final String LABEL = "label";
+	private static final String SCOPENOTE = "scopeNote";
+	private static final String VERSION = "version";
+	private static final String LAST_UPDATE = "lastUpdate";
+	private static final String VALID_FROM = "validFrom";
+	private static final String VALID_TO = "validTo";
+	private static final String STATUS = "status";
+	private static final String DEPRECATED = "deprecated";
+
+	// catalogue fields
+	private static final String CAT_CODE_MASK = "termCodeMask";
+	private static final String CAT_CODE_LENGTH = "termCodeLength";
+	private static final String CAT_MIN_CODE = "termMinCode";
+	private static final String CAT_ACCEPT_NOT_STD = "acceptNonStandardCodes";
+	private static final String CAT_GEN_MISSING = "generateMissingCodes";
+	private static final String CAT_GROUPS = "catalogueGroups";
+
+	// release notes fields
+	private static final String NOTES_DESCRIPTION = "description";
+	private static final String NOTES_DATE = "releaseDate";
+	private static final String NOTES_VERSION = "internalVersion";
+	private static final String NOTES_NOTE = "internalVersionNote";
+	private static final String OP_NAME = "operationName";
+	private static final String OP_DATE = "operationDate";
+	private static final String OP_INFO = "operationInfo";
+	private static final String OP_GROUP = "operationGroupId";
+
+	// hierarchy fields
+	private static final String HIER_APPL = "hierarchyApplicability";
+	private static final String HIER_ORDER = "hierarchyOrder";
+	private static final String HIER_GROUPS = "hierarchyGroups";
+
+	// attribute fields
+	private static final String ATTR_REPORT = "attributeReportable";
+	private static final String ATTR_VISIB = "attributeVisible";
+	private static final String ATTR_SEARCH = "attributeSearchable";
+	private static final String ATTR_ORDER = "attributeOrder";
+	private static final String ATTR_TYPE = "attributeType";
+	private static final String ATTR_MAX_LENGTH = "attributeMaxLength";
+	private static final String ATTR_PRECISION = "attributePrecision";
+	private static final String ATTR_SCALE = "attributeScale";
+	private static final String ATTR_CAT_CODE = "attributeCatalogueCode";
+	private static final String ATTR_SR = "attributeSingleOrRepeatable";
+	private static final String ATTR_INHERIT = "attributeInheritance";
+	private static final String ATTR_UNIQUE = "attributeUniqueness";
+	private static final String ATTR_ALIAS = "attributeTermCodeAlias";
+
+	// term fields
+	private static final String TERM_CODE = "termCode";
+	private static final String TERM_EXT_NAME = "termExtendedName";
+	private static final String TERM_SHORT_NAME = "termShortName";
+	private static final String TERM_SCOPENOTE = "termScopeNote";
+
+	// term attribute fields
+	private static final String TA_CODE = "attributeCode";
+	private static final String TA_VALUE = "attributeValue";
+
+	// parent term fields
+	private static final String ASSIGN_HIER_CODE = "hierarchyCode";
+	private static final String ASSIGN_PARENT_CODE = "parentCode";
+	private static final String ASSIGN_ORDER = "order";
+	private static final String ASSIGN_REPORT = "reportable";
+
+	private ICatalogueDAO catDao;
+	private CatalogueEntityDAO<Attribute> attrDao;
+	private CatalogueEntityDAO<Hierarchy> hierDao;
+	private CatalogueEntityDAO<Term> termDao;
+	private CatalogueRelationDAO<TermAttribute, Term, Attribute> taDao;
+	private CatalogueRelationDAO<Applicability, Term, Hierarchy> parentDao;
+	private CatalogueEntityDAO<ReleaseNotesOperation> notesDao;
+
+	// set this to import a local catalogue
+	private Catalogue openedCat;
+	private IProgressBar progressBar;
+	private double maxProgress;
+
+	private Catalogue importedCat;
+	private String xmlCatCode;
+	private int termCount;
+
+	// set this to apply only the differences with the previous version
+	private Catalogue previousCat;
+	private boolean incremental;
+	private List<XmlRecord> hierarchyRecords;
+	private List<XmlRecord> attributeRecords;
+
+	public XmlCatalogueImporter() {
+		this.catDao = new CatalogueDAO();
+	}
+
+	public XmlCatalogueImporter(ICatalogueDAO catDao, CatalogueEntityDAO<Attribute> attrDao,
+			CatalogueEntityDAO<Hierarchy> hierDao, CatalogueEntityDAO<Term> termDao,
+			CatalogueRelationDAO<TermAttribute, Term, Attribute> taDao,
+			CatalogueRelationDAO<Applicability, Term, Hierarchy> parentDao,
+			CatalogueEntityDAO<ReleaseNotesOperation> notesDao) {
+		this.catDao = catDao;
+		this.attrDao = attrDao;
+		this.hierDao = hierDao;
+		this.termDao = termDao;
+		this.taDao = taDao;
+		this.parentDao = parentDao;
+		this.notesDao = notesDao;
+	}
+
+	/**
+	 * Set this if you are importing the .xml in the catalogue opened in the main
+	 * panel in order to override its data
+	 *
+	 * @param openedCat
+	 */
+	public void setOpenedCatalogue(Catalogue openedCat) {
+		this.openedCat = openedCat;
+	}
+
+	/**
+	 * Set the previous version of the catalogue, already downloaded. The database
+	 * of the new version is created as a copy of the previous one and only the
+	 * terms, term attributes and applicabilities which changed are written. If the
+	 * changes cannot be applied (different hierarchies or attributes, missing
+	 * database...) the import fails with {@link #DIFF_NOT_APPLICABLE_ERROR}
+	 * before writing any data. If an error occurs while the changes are applied,
+	 * the copied database and its catalogue record are deleted and the import
+	 * fails with the same code. Ignored if an opened catalogue is set.
+	 *
+	 * @param previousCat
+	 */
+	public void setPreviousVersion(Catalogue previousCat) {
+		this.previousCat = previousCat;
+	}
+
+	private void initDaos(Catalogue catalogue) {
+
+		if (this.attrDao == null) {
+			this.attrDao = new AttributeDAO(catalogue);
+			this.hierDao = new HierarchyDAO(catalogue);
+			this.termDao = new TermDAO(catalogue);
+			this.notesDao = new ReleaseNotesOperationDAO(catalogue);
+			this.taDao = new TermAttributeDAO(catalogue);
+			this.parentDao = new ParentTermDAO(catalogue);
+		}
+
+		this.hierDao.setCatalogue(catalogue);
+		this.attrDao.setCatalogue(catalogue);
+		this.termDao.setCatalogue(catalogue);
+		this.taDao.setCatalogue(catalogue);
+		this.parentDao.setCatalogue(catalogue);
+		this.notesDao.setCatalogue(catalogue);
+	}
+
+	/**
+	 * Import the .xml catalogue
+	 *
+	 * @param pb          progress bar, can be null
+	 * @param filename    path of the .xml file
+	 * @param maxProgress progress which is reached at the end of the import
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 * @throws SQLException
+	 * @throws ImportException if the file does not contain a catalogue the code
+	 *                         {@link #NO_CATALOGUE_ERROR} is used, in this case no
+	 *                         data were written
+	 */
+	public void importXml(IProgressBar pb, String filename, double maxProgress)
+			throws IOException, XMLStreamException, SQLException, ImportException {
+
+		this.progressBar = pb;
+		this.maxProgress = maxProgress;
+
+		long start = System.currentTimeMillis();
+
+		LOGGER.info("Importing catalogue metadata from " + filename);
+
+		if (progressBar != null)
+			progressBar.setLabel(CBMessages.getString("Import.Catalogue"));
+
+		try {
+
+			importCatalogue(filename);
+
+			// the copied database has already the data and the preferences
+			if (incremental) {
+				importChanges(filename);
+			} else {
+				importAll(filename);
+			}
+
+		} catch (IOException | XMLStreamException | SQLException | ImportException | RuntimeException e) {
+
+			// nothing was copied yet
+			if (!incremental || importedCat == null)
+				throw e;
+
+			// do not leave a half patched copy, the caller can import the whole catalogue
+			discardCopy();
+
+			ImportException diffError = new ImportException(
+					"Cannot apply the changes of " + importedCat + " to " + previousCat, DIFF_NOT_APPLICABLE_ERROR);
+			diffError.initCause(e);
+
+			throw diffError;
+		}
+
+		LOGGER.info(importedCat + " successfully imported in " + importedCat.getDbPath() + " in "
+				+ (System.currentTimeMillis() - start) + " ms");
+
+		// clear temporary files
+		GlobalUtil.clearTempDir();
+	}
+
+	/**
+	 * Import all the data of the catalogue into the new database
+	 *
+	 * @param filename
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 * @throws SQLException
+	 * @throws ImportException
+	 */
+	private void importAll(String filename) throws IOException, XMLStreamException, SQLException, ImportException {
+
+		// build the secondary indexes only once at the end
+		if (BulkInsert.isDeferIndexes())
+			DatabaseManager.setSecondaryIndexes(importedCat, false);
+
+		try {
+
+			LOGGER.info("Importing hierarchies, attributes and terms");
+
+			if (progressBar != null)
+				progressBar.setLabel(CBMessages.getString("Import.Term"));
+
+			importTerms(filename);
+
+			LOGGER.info("Importing term attributes and parents");
+
+			if (progressBar != null)
+				progressBar.setLabel(CBMessages.getString("Import.TermAttrParent"));
+
+			importTermRelations(filename);
+
+		} finally {
+			if (BulkInsert.isDeferIndexes())
+				DatabaseManager.setSecondaryIndexes(importedCat, true);
+		}
+
+		// insert default preferences
+		LOGGER.info("Creating default preferences");
+		if (progressBar != null)
+			progressBar.setLabel(CBMessages.getString("Import.Preferences"));
+
+		CataloguePreferenceDAO prefDao = new CataloguePreferenceDAO(importedCat);
+		prefDao.insertDefaultPreferences();
+
+		// insert the default search options
+		SearchOptionDAO optDao = new SearchOptionDAO(importedCat);
+		optDao.insertDefaultSearchOpt();
+
+		addProgress(ProgressSettings.DEFAULT_PREF);
+	}
+
+	/**
+	 * First pass: create the catalogue and its database, import the release notes
+	 *
+	 * @param filename
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 * @throws ImportException
+	 */
+	private void importCatalogue(String filename) throws IOException, XMLStreamException, ImportException {
+
+		XmlRecord catRecord = new XmlRecord(CATALOGUE_DESC);
+		XmlRecord notesRecord = null;
+
+		termCount = 0;
+		importedCat = null;
+
+		// the hierarchies and attributes are compared with the previous version
+		incremental = previousCat != null && openedCat == null;
+		hierarchyRecords = new ArrayList<>();
+		attributeRecords = new ArrayList<>();
+
+		try (InputStream input = new BufferedInputStream(new FileInputStream(filename));) {
+
+			XMLStreamReader reader = createReader(input);
+
+			try {
+				while (reader.hasNext()) {
+
+					if (reader.next() != XMLStreamConstants.START_ELEMENT)
+						continue;
+
+					switch (reader.getLocalName()) {
+					case CATALOGUE_DESC:
+					case CATALOGUE_VERSION:
+						readElement(reader, catRecord);
+						break;
+					case RELEASE_NOTES:
+						notesRecord = new XmlRecord(RELEASE_NOTES);
+						readElement(reader, notesRecord);
+						break;
+					case TERM:
+						termCount++;
+						skipElement(reader);
+						break;
+					case HIERARCHY:
+						if (incremental) {
+							XmlRecord record = new XmlRecord(HIERARCHY);
+							readElement(reader, record);
+							hierarchyRecords.add(record);
+						} else
+							skipElement(reader);
+						break;
+					case ATTRIBUTE:
+						if (incremental) {
+							XmlRecord record = new XmlRecord(ATTRIBUTE);
+							readElement(reader, record);
+							attributeRecords.add(record);
+						} else
+							skipElement(reader);
+						break;
+					default:
+						break;
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+
+		// nothing was written yet, the caller can still use another import method
+		if (catRecord.getString(CODE).isEmpty() || termCount == 0) {
+			throw new ImportException("No catalogue found in " + filename, NO_CATALOGUE_ERROR);
+		}
+
+		Catalogue catalogue = getCatalogue(catRecord, notesRecord);
+
+		// nothing was written yet, the caller can import the whole catalogue
+		if (incremental)
+			checkPreviousVersion(catalogue);
+
+		CatalogueSheetImporter catImp = new CatalogueSheetImporter(catDao);
+
+		if (openedCat != null)
+			catImp.setOpenedCatalogue(openedCat);
+
+		// start from a copy of the previous version
+		if (incremental) {
+			catImp.setSourceCatalogue(previousCat);
+
+			// the copy is discarded if the import fails from now on
+			importedCat = catalogue;
+		}
+
+		catImp.importCatalogue(catalogue);
+
+		importedCat = catImp.getImportedCatalogue();
+		xmlCatCode = catImp.getExcelCode();
+
+		// prepare daos to import data
+		initDaos(importedCat);
+
+		addProgress(ProgressSettings.CAT_SHEET);
+
+		// the release notes of the new version replace the copied ones
+		if (incremental)
+			new ReleaseNotesOperationDAO(importedCat).removeAll();
+
+		// import release notes operations
+		if (notesRecord != null) {
+
+			Collection<ReleaseNotesOperation> ops = new ArrayList<>();
+
+			for (XmlRecord op : notesRecord.children) {
+				if (!op.getString(OP_NAME).isEmpty())
+					ops.add(new ReleaseNotesOperation(op.getString(OP_NAME), op.getTimestamp(OP_DATE),
+							op.getString(OP_INFO), op.getInt(OP_GROUP, 0)));
+			}
+
+			if (!ops.isEmpty())
+				notesDao.insert(ops);
+		}
+
+		addProgress(ProgressSettings.NOTES_SHEET);
+	}
+
+	/**
+	 * Check that the new version can be obtained by applying its differences to
+	 * the previous version. No data are written by this method.
+	 *
+	 * @param catalogue the new version of the catalogue
+	 * @throws ImportException with code {@link #DIFF_NOT_APPLICABLE_ERROR} if the
+	 *                         whole catalogue should be imported
+	 */
+	private void checkPreviousVersion(Catalogue catalogue) throws ImportException {
+
+		String reason = null;
+
+		if (!previousCat.getCode().equals(catalogue.getCode()))
+			reason = "different catalogue code";
+		else if (!previousCat.getDbFolder().exists())
+			reason = "the database of the previous version is missing";
+		else if (catalogue.getDbFolder().exists())
+			reason = "the database of the new version already exists";
+		else {
+
+			// the structure of the catalogue must be the same
+			HashSet<String> hierCodes = new HashSet<>();
+			for (Hierarchy hierarchy : new HierarchyDAO(previousCat).getAll())
+				hierCodes.add(hierarchy.isMaster() ? catalogue.getCode() : hierarchy.getCode());
+
+			HashSet<String> attrCodes = new HashSet<>();
+			for (Attribute attr : new AttributeDAO(previousCat).getAll())
+				attrCodes.add(attr.getCode());
+
+			if (!hierCodes.equals(getCodes(hierarchyRecords)))
+				reason = "the hierarchies changed";
+			else if (!attrCodes.equals(getCodes(attributeRecords)))
+				reason = "the attributes changed";
+		}
+
+		if (reason != null) {
+			throw new ImportException("Cannot apply the changes of " + catalogue + " to " + previousCat + ": "
+					+ reason, DIFF_NOT_APPLICABLE_ERROR);
+		}
+	}
+
+	/**
+	 * Delete the database copied from the previous version and the catalogue
+	 * record of the new version
+	 */
+	private void discardCopy() {
+
+		LOGGER.warn("Deleting the copy of " + previousCat + " in " + importedCat.getDbPath());
+
+		try {
+
+			if (importedCat.getDbFolder().exists())
+				DatabaseManager.deleteDb(importedCat);
+
+		} catch (IOException e) {
+			LOGGER.error("Cannot delete the database of " + importedCat, e);
+			e.printStackTrace();
+		}
+
+		catDao.remove(importedCat);
+	}
+
+	/**
+	 * Get the not empty codes of the records
+	 *
+	 * @param records
+	 * @return
+	 */
+	private static HashSet<String> getCodes(List<XmlRecord> records) {
+
+		HashSet<String> codes = new HashSet<>();
+
+		for (XmlRecord record : records) {
+			if (!record.getString(CODE).isEmpty())
+				codes.add(record.getString(CODE));
+		}
+
+		return codes;
+	}
+
+	/**
+	 * Apply the differences of the new version to the copy of the database of the
+	 * previous version. Hierarchies and attributes are updated, new terms are
+	 * inserted, changed terms are updated and the terms which are not present
+	 * anymore are deprecated. The term attributes and the applicabilities are
+	 * replaced only for the terms whose relations changed.
+	 *
+	 * @param filename
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 * @throws SQLException
+	 * @throws ImportException
+	 */
+	private void importChanges(String filename) throws IOException, XMLStreamException, SQLException, ImportException {
+
+		LOGGER.info("Applying the changes to the copy of " + previousCat);
+
+		if (progressBar != null)
+			progressBar.setLabel(CBMessages.getString("Import.Term"));
+
+		updateHierarchies();
+		updateAttributes();
+
+		// the copied terms are compared with the new ones, without loading
+		// the catalogue data
+		CatalogueDiff diff = CatalogueDiff.load(importedCat);
+
+		importTermChanges(filename, diff);
+
+		if (progressBar != null)
+			progressBar.setLabel(CBMessages.getString("Import.TermAttrParent"));
+
+		importRelationChanges(filename, diff);
+
+		// preferences and search options were copied
+		addProgress(ProgressSettings.DEFAULT_PREF);
+
+		LOGGER.info("Changes applied to " + importedCat + ": " + diff.getSummary());
+	}
+
+	/**
+	 * Update the copied hierarchies with the ones of the new version
+	 */
+	private void updateHierarchies() {
+
+		HashMap<String, Integer> ids = new HashMap<>();
+		for (Hierarchy hierarchy : hierDao.getAll())
+			ids.put(hierarchy.getCode(), hierarchy.getId());
+
+		for (XmlRecord record : hierarchyRecords) {
+
+			Hierarchy hierarchy = getHierarchy(record);
+
+			if (hierarchy == null || !ids.containsKey(hierarchy.getCode()))
+				continue;
+
+			hierarchy.setId(ids.get(hierarchy.getCode()));
+			hierDao.update(hierarchy);
+		}
+
+		hierarchyRecords = null;
+
+		addProgress(ProgressSettings.HIER_SHEET);
+	}
+
+	/**
+	 * Update the copied attributes with the ones of the new version
+	 */
+	private void updateAttributes() {
+
+		HashMap<String, Integer> ids = new HashMap<>();
+		for (Attribute attr : attrDao.getAll())
+			ids.put(attr.getCode(), attr.getId());
+
+		for (XmlRecord record : attributeRecords) {
+
+			Attribute attr = getAttribute(record);
+
+			if (attr == null || !ids.containsKey(attr.getCode()))
+				continue;
+
+			attr.setId(ids.get(attr.getCode()));
+			attrDao.update(attr);
+		}
+
+		attributeRecords = null;
+
+		addProgress(ProgressSettings.ATTR_SHEET);
+	}
+
+	/**
+	 * Insert the new terms, update the changed ones and deprecate the terms which
+	 * are not present in the new version
+	 *
+	 * @param filename
+	 * @param diff
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	private void importTermChanges(String filename, CatalogueDiff diff) throws IOException, XMLStreamException {
+
+		TermDAO updateDao = new TermDAO(importedCat);
+
+		Collection<Term> newTerms = new ArrayList<>();
+		Collection<Term> changedTerms = new ArrayList<>();
+
+		// terms read since the last progress update
+		int read = 0;
+
+		try (InputStream input = new BufferedInputStream(new FileInputStream(filename));) {
+
+			XMLStreamReader reader = createReader(input);
+
+			try {
+				while (reader.hasNext()) {
+
+					if (reader.next() != XMLStreamConstants.START_ELEMENT)
+						continue;
+
+					switch (reader.getLocalName()) {
+					case TERM:
+
+						XmlRecord record = new XmlRecord(TERM);
+						readElement(reader, record);
+
+						Term term = getTerm(record);
+
+						if (term == null)
+							break;
+
+						switch (diff.compareTerm(term)) {
+						case NEW:
+							newTerms.add(term);
+							break;
+						case CHANGED:
+							changedTerms.add(term);
+							break;
+						default:
+							break;
+						}
+
+						if (newTerms.size() >= BulkInsert.getChunkSize()) {
+							termDao.insert(newTerms);
+							newTerms.clear();
+						}
+
+						if (changedTerms.size() >= BulkInsert.getChunkSize()) {
+							updateDao.update(changedTerms);
+							changedTerms.clear();
+						}
+
+						if (++read >= BulkInsert.getChunkSize()) {
+							addProgress(ProgressSettings.TERM_SHEET, read);
+							read = 0;
+						}
+						break;
+
+					case CATALOGUE_DESC:
+					case CATALOGUE_VERSION:
+					case RELEASE_NOTES:
+					case HIERARCHY:
+					case ATTRIBUTE:
+						skipElement(reader);
+						break;
+
+					default:
+						break;
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+
+		if (!newTerms.isEmpty())
+			termDao.insert(newTerms);
+
+		addProgress(ProgressSettings.TERM_SHEET, read);
+
+		changedTerms.addAll(diff.getMissingTerms());
+
+		if (!changedTerms.isEmpty())
+			updateDao.update(changedTerms);
+	}
+
+	/**
+	 * Replace the term attributes and the applicabilities of the terms whose
+	 * relations changed and add the ones of the new terms
+	 *
+	 * @param filename
+	 * @param diff
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 * @throws SQLException
+	 * @throws ImportException
+	 */
+	private void importRelationChanges(String filename, CatalogueDiff diff)
+			throws IOException, XMLStreamException, SQLException, ImportException {
+
+		// get the ids given by the database, new terms included
+		HashMap<String, Integer> termIds = SheetImporter.createIdHashMap(importedCat, "TERM_ID", "TERM_CODE",
+				"APP.TERM");
+
+		HashMap<String, Attribute> attributes = getAttributesByCode();
+		HashMap<String, Hierarchy> hierarchies = getHierarchiesByXmlCode();
+
+		Collection<TermAttribute> tas = new ArrayList<>();
+		Collection<Applicability> appls = new ArrayList<>();
+
+		// relations of the current term
+		Collection<TermAttribute> termTas = new ArrayList<>();
+		Collection<Applicability> termAppls = new ArrayList<>();
+
+		try (InputStream input = new BufferedInputStream(new FileInputStream(filename));) {
+
+			XMLStreamReader reader = createReader(input);
+
+			try {
+				while (reader.hasNext()) {
+
+					if (reader.next() != XMLStreamConstants.START_ELEMENT)
+						continue;
+
+					switch (reader.getLocalName()) {
+					case TERM:
+
+						XmlRecord record = new XmlRecord(TERM);
+						readElement(reader, record);
+
+						Integer termId = termIds.get(record.getString(TERM_CODE));
+
+						if (termId == null)
+							break;
+
+						termTas.clear();
+						termAppls.clear();
+
+						addRelations(record, termIds, attributes, hierarchies, termTas, termAppls);
+
+						if (!diff.relationsChanged(termId, termTas, termAppls))
+							break;
+
+						// remove the relations of the previous version
+						Term previous = diff.getPreviousTerm(termId);
+						if (previous != null) {
+							taDao.removeByA1(previous);
+							parentDao.removeByA1(previous);
+						}
+
+						tas.addAll(termTas);
+						appls.addAll(termAppls);
+
+						if (tas.size() >= BulkInsert.getChunkSize()) {
+							taDao.insert(tas);
+							tas.clear();
+						}
+
+						if (appls.size() >= BulkInsert.getChunkSize()) {
+							parentDao.insert(appls);
+							appls.clear();
+						}
+						break;
+
+					case CATALOGUE_DESC:
+					case CATALOGUE_VERSION:
+					case RELEASE_NOTES:
+					case HIERARCHY:
+					case ATTRIBUTE:
+						skipElement(reader);
+						break;
+
+					default:
+						break;
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+
+		if (!tas.isEmpty())
+			taDao.insert(tas);
+
+		if (!appls.isEmpty())
+			parentDao.insert(appls);
+
+		addProgress(ProgressSettings.TERM_ATTR_SHEET);
+		addProgress(ProgressSettings.PARENT_SHEET);
+	}
+
+	/**
+	 * Get the attributes of the database by their code
+	 *
+	 * @return
+	 */
+	private HashMap<String, Attribute> getAttributesByCode() {
+
+		HashMap<String, Attribute> attributes = new HashMap<>();
+		for (Attribute attr : attrDao.getAll())
+			attributes.put(attr.getCode(), attr);
+
+		return attributes;
+	}
+
+	/**
+	 * Get the hierarchies of the database by the code used in the xml
+	 *
+	 * @return
+	 */
+	private HashMap<String, Hierarchy> getHierarchiesByXmlCode() {
+
+		HashMap<String, Hierarchy> hierarchies = new HashMap<>();
+		for (Hierarchy hierarchy : hierDao.getAll()) {
+
+			// the xml uses its own code for the master
+			if (hierarchy.isMaster())
+				hierarchies.put(xmlCatCode, hierarchy);
+			else
+				hierarchies.put(hierarchy.getCode(), hierarchy);
+		}
+
+		return hierarchies;
+	}
+
+	/**
+	 * Second pass: import hierarchies, attributes and terms
+	 *
+	 * @param filename
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 * @throws ImportException
+	 */
+	private void importTerms(String filename) throws IOException, XMLStreamException, ImportException {
+
+		Collection<Hierarchy> hierarchies = new ArrayList<>();
+		Collection<Attribute> attributes = new ArrayList<>();
+		Collection<Term> terms = new ArrayList<>();
+
+		boolean hierarchiesDone = false;
+		boolean attributesDone = false;
+
+		try (InputStream input = new BufferedInputStream(new FileInputStream(filename));) {
+
+			XMLStreamReader reader = createReader(input);
+
+			try {
+				while (reader.hasNext()) {
+
+					if (reader.next() != XMLStreamConstants.START_ELEMENT)
+						continue;
+
+					XmlRecord record;
+
+					switch (reader.getLocalName()) {
+					case HIERARCHY:
+						record = new XmlRecord(HIERARCHY);
+						readElement(reader, record);
+
+						Hierarchy hierarchy = getHierarchy(record);
+						if (hierarchy != null)
+							hierarchies.add(hierarchy);
+						break;
+
+					case ATTRIBUTE:
+						record = new XmlRecord(ATTRIBUTE);
+						readElement(reader, record);
+
+						Attribute attribute = getAttribute(record);
+						if (attribute != null)
+							attributes.add(attribute);
+						break;
+
+					case TERM:
+
+						// terms need hierarchies and attributes
+						if (!hierarchiesDone) {
+							insertHierarchies(hierarchies);
+							hierarchiesDone = true;
+						}
+
+						if (!attributesDone) {
+							insertAttributes(attributes);
+							attributesDone = true;
+						}
+
+						record = new XmlRecord(TERM);
+						readElement(reader, record);
+
+						Term term = getTerm(record);
+						if (term != null)
+							terms.add(term);
+
+						if (terms.size() >= BulkInsert.getChunkSize()) {
+							termDao.insert(terms);
+							addProgress(ProgressSettings.TERM_SHEET, terms.size());
+							terms.clear();
+						}
+						break;
+
+					case CATALOGUE_DESC:
+					case CATALOGUE_VERSION:
+					case RELEASE_NOTES:
+						skipElement(reader);
+						break;
+
+					default:
+						break;
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+
+		if (!hierarchiesDone)
+			insertHierarchies(hierarchies);
+
+		if (!attributesDone)
+			insertAttributes(attributes);
+
+		if (!terms.isEmpty()) {
+			termDao.insert(terms);
+			addProgress(ProgressSettings.TERM_SHEET, terms.size());
+		}
+	}
+
+	/**
+	 * Third pass: import term attributes and parent terms
+	 *
+	 * @param filename
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 * @throws SQLException
+	 * @throws ImportException
+	 */
+	private void importTermRelations(String filename)
+			throws IOException, XMLStreamException, SQLException, ImportException {
+
+		// get the ids given by the database
+		HashMap<String, Integer> termIds = SheetImporter.createIdHashMap(importedCat, "TERM_ID", "TERM_CODE",
+				"APP.TERM");
+
+		HashMap<String, Attribute> attributes = getAttributesByCode();
+		HashMap<String, Hierarchy> hierarchies = getHierarchiesByXmlCode();
+
+		Collection<TermAttribute> tas = new ArrayList<>();
+		Collection<Applicability> appls = new ArrayList<>();
+
+		try (InputStream input = new BufferedInputStream(new FileInputStream(filename));) {
+
+			XMLStreamReader reader = createReader(input);
+
+			try {
+				while (reader.hasNext()) {
+
+					if (reader.next() != XMLStreamConstants.START_ELEMENT)
+						continue;
+
+					switch (reader.getLocalName()) {
+					case TERM:
+
+						XmlRecord record = new XmlRecord(TERM);
+						readElement(reader, record);
+
+						addRelations(record, termIds, attributes, hierarchies, tas, appls);
+
+						if (tas.size() >= BulkInsert.getChunkSize()) {
+							taDao.insert(tas);
+							tas.clear();
+						}
+
+						if (appls.size() >= BulkInsert.getChunkSize()) {
+							parentDao.insert(appls);
+							addProgress(ProgressSettings.PARENT_SHEET, appls.size());
+							appls.clear();
+						}
+						break;
+
+					case CATALOGUE_DESC:
+					case CATALOGUE_VERSION:
+					case RELEASE_NOTES:
+					case HIERARCHY:
+					case ATTRIBUTE:
+						skipElement(reader);
+						break;
+
+					default:
+						break;
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+
+		if (!tas.isEmpty())
+			taDao.insert(tas);
+
+		if (!appls.isEmpty())
+			parentDao.insert(appls);
+
+		addProgress(ProgressSettings.TERM_ATTR_SHEET);
+	}
+
+	/**
+	 * Insert the hierarchies, a master hierarchy is required
+	 *
+	 * @param hierarchies
+	 * @throws ImportException
+	 */
+	private void insertHierarchies(Collection<Hierarchy> hierarchies) throws ImportException {
+
+		boolean isMasterDefined = false;
+		for (Hierarchy h : hierarchies) {
+			if (h.isMaster()) {
+				isMasterDefined = true;
+				break;
+			}
+		}
+
+		if (!isMasterDefined) {
+			throw new ImportException("No master hierarchy was defined!", "X102");
+		}
+
+		hierDao.insert(hierarchies);
+		hierarchies.clear();
+
+		addProgress(ProgressSettings.HIER_SHEET);
+	}
+
+	/**
+	 * Insert the attributes and the term types defined in them
+	 *
+	 * @param attributes
+	 */
+	private void insertAttributes(Collection<Attribute> attributes) {
+
+		attrDao.insert(attributes);
+		attributes.clear();
+
+		// import the term types related to the attributes
+		TermTypeImporter ttImp = new TermTypeImporter(importedCat);
+		ttImp.importSheet();
+
+		addProgress(ProgressSettings.ATTR_SHEET);
+	}
+
+	/**
+	 * Create the catalogue from the xml metadata
+	 *
+	 * @param record
+	 * @param notes  release notes, can be null
+	 * @return
+	 */
+	private Catalogue getCatalogue(XmlRecord record, XmlRecord notes) {
+
+		CatalogueBuilder builder = new CatalogueBuilder();
+
+		builder.setCode(record.getString(CODE));
+		builder.setVersion(record.getString(VERSION));
+		builder.setName(record.getString(NAME));
+		builder.setLabel(record.getString(LABEL));
+		builder.setScopenotes(record.getString(SCOPENOTE));
+		builder.setTermCodeMask(record.getString(CAT_CODE_MASK));
+		builder.setTermCodeLength(record.getString(CAT_CODE_LENGTH));
+		builder.setTermMinCode(record.getString(CAT_MIN_CODE));
+		builder.setAcceptNonStandardCodes(record.getBoolean(CAT_ACCEPT_NOT_STD, true));
+		builder.setGenerateMissingCodes(record.getBoolean(CAT_GEN_MISSING, false));
+		builder.setStatus(record.getString(STATUS));
+		builder.setCatalogueGroups(record.getString(CAT_GROUPS));
+
+		Timestamp ts = record.getTimestamp(LAST_UPDATE);
+		if (ts != null)
+			builder.setLastUpdate(ts);
+
+		ts = record.getTimestamp(VALID_FROM);
+		if (ts != null)
+			builder.setValidFrom(ts);
+
+		ts = record.getTimestamp(VALID_TO);
+		if (ts != null)
+			builder.setValidTo(ts);
+
+		builder.setDeprecated(record.getBoolean(DEPRECATED, false));
+
+		if (notes != null) {
+			builder.setReleaseNotes(new ReleaseNotes(notes.getString(NOTES_DESCRIPTION),
+					notes.getTimestamp(NOTES_DATE), notes.getString(NOTES_VERSION), notes.getString(NOTES_NOTE),
+					null));
+		}
+
+		// same dcf type used for the .ecf imports
+		builder.setCatalogueType(Dcf.dcfType);
+
+		return builder.build();
+	}
+
+	/**
+	 * Create the hierarchy from the xml record
+	 *
+	 * @param record
+	 * @return
+	 */
+	private Hierarchy getHierarchy(XmlRecord record) {
+
+		String code = record.getString(CODE);
+
+		if (code.isEmpty()) {
+			LOGGER.error("Empty hierarchy code found, skipping...");
+			return null;
+		}
+
+		boolean isMaster = code.equals(xmlCatCode);
+
+		HierarchyBuilder builder = new HierarchyBuilder();
+
+		builder.setCatalogue(importedCat);
+
+		// for local catalogues the master
+		// should have the same name of the
+		// local catalogue
+		if (importedCat.isLocal() && isMaster) {
+			builder.setCode(importedCat.getCode());
+			builder.setName(importedCat.getName());
+			builder.setLabel(importedCat.getLabel());
+		} else {
+			builder.setCode(code);
+			builder.setName(record.getString(NAME));
+			builder.setLabel(record.getString(LABEL));
+		}
+
+		builder.setScopenotes(record.getString(SCOPENOTE));
+		builder.setApplicability(record.getString(HIER_APPL));
+		builder.setOrder(record.getInt(HIER_ORDER, 1));
+		builder.setStatus(record.getString(STATUS));
+		builder.setMaster(isMaster);
+		builder.setLastUpdate(record.getTimestamp(LAST_UPDATE));
+		builder.setValidFrom(record.getTimestamp(VALID_FROM));
+		builder.setValidTo(record.getTimestamp(VALID_TO));
+		builder.setVersion(record.getString(VERSION));
+		builder.setDeprecated(record.getBoolean(DEPRECATED, false));
+		builder.setGroups(record.getString(HIER_GROUPS));
+
+		return builder.build();
+	}
+
+	/**
+	 * Create the attribute from the xml record
+	 *
+	 * @param record
+	 * @return
+	 */
+	private Attribute getAttribute(XmlRecord record) {
+
+		String code = record.getString(CODE);
+
+		if (code.isEmpty())
+			return null;
+
+		AttributeBuilder builder = new AttributeBuilder();
+
+		builder.setCatalogue(importedCat);
+		builder.setCode(code);
+		builder.setName(record.getString(NAME));
+		builder.setLabel(record.getString(LABEL));
+		builder.setScopenotes(record.getString(SCOPENOTE));
+		builder.setReportable(record.getString(ATTR_REPORT));
+		builder.setVisible(record.getBoolean(ATTR_VISIB, true));
+		builder.setSearchable(record.getBoolean(ATTR_SEARCH, true));
+		builder.setOrder(record.getInt(ATTR_ORDER, 1));
+		builder.setType(record.getString(ATTR_TYPE));
+		builder.setMaxLength(record.getInt(ATTR_MAX_LENGTH, -1));
+		builder.setPrecision(record.getInt(ATTR_PRECISION, -1));
+		builder.setScale(record.getInt(ATTR_SCALE, -1));
+		builder.setCatalogueCode(record.getString(ATTR_CAT_CODE));
+		builder.setSingleOrRepeatable(record.getString(ATTR_SR));
+		builder.setInheritance(record.getString(ATTR_INHERIT));
+		builder.setUniqueness(record.getBoolean(ATTR_UNIQUE, false));
+		builder.setTermCodeAlias(record.getBoolean(ATTR_ALIAS, false));
+		builder.setLastUpdate(record.getTimestamp(LAST_UPDATE));
+		builder.setValidFrom(record.getTimestamp(VALID_FROM));
+		builder.setValidTo(record.getTimestamp(VALID_TO));
+		builder.setStatus(record.getString(STATUS));
+		builder.setDeprecated(record.getBoolean(DEPRECATED, false));
+		builder.setVersion(record.getString(VERSION));
+
+		return builder.build();
+	}
+
+	/**
+	 * Create the term from the xml record
+	 *
+	 * @param record
+	 * @return
+	 */
+	private Term getTerm(XmlRecord record) {
+
+		String code = record.getString(TERM_CODE);
+
+		if (code.isEmpty()) {
+			LOGGER.error("Empty code found, skipping this term");
+			return null;
+		}
+
+		TermBuilder builder = new TermBuilder();
+
+		builder.setCatalogue(importedCat);
+		builder.setCode(code);
+		builder.setName(record.getString(TERM_EXT_NAME));
+		builder.setLabel(record.getString(TERM_SHORT_NAME));
+		builder.setScopenotes(record.getString(TERM_SCOPENOTE));
+		builder.setDeprecated(record.getBoolean(DEPRECATED, false));
+		builder.setVersion(record.getString(VERSION));
+		builder.setLastUpdate(record.getTimestamp(LAST_UPDATE));
+		builder.setValidFrom(record.getTimestamp(VALID_FROM));
+		builder.setValidTo(record.getTimestamp(VALID_TO));
+		builder.setStatus(record.getString(STATUS));
+
+		return builder.build();
+	}
+
+	/**
+	 * Create the term attributes and the applicabilities of the term record
+	 *
+	 * @param record
+	 * @param termIds
+	 * @param attributes
+	 * @param hierarchies
+	 * @param tas         output term attributes
+	 * @param appls       output applicabilities
+	 * @throws ImportException
+	 */
+	private void addRelations(XmlRecord record, HashMap<String, Integer> termIds,
+			HashMap<String, Attribute> attributes, HashMap<String, Hierarchy> hierarchies,
+			Collection<TermAttribute> tas, Collection<Applicability> appls) throws ImportException {
+
+		String termCode = record.getString(TERM_CODE);
+
+		Integer termId = termIds.get(termCode);
+
+		if (termId == null)
+			return;
+
+		Term term = new Term(importedCat);
+		term.setId(termId);
+
+		for (XmlRecord child : record.children) {
+
+			// term attribute
+			String attrCode = child.getString(TA_CODE);
+			if (!attrCode.isEmpty()) {
+
+				Attribute attr = attributes.get(attrCode);
+				String value = child.getString(TA_VALUE);
+
+				if (attr == null) {
+					LOGGER.error("The attribute " + attrCode + " is not present in the DB, please check!");
+					continue;
+				}
+
+				if (value.isEmpty())
+					continue;
+
+				if (attr.isRepeatable()) {
+					for (String singleValue : RepeatableParser.getRepeatableValues(value))
+						tas.add(new TermAttribute(term, attr, singleValue));
+				} else
+					tas.add(new TermAttribute(term, attr, value));
+
+				continue;
+			}
+
+			// parent term
+			String hierCode = child.getString(ASSIGN_HIER_CODE);
+			if (hierCode.isEmpty())
+				continue;
+
+			Hierarchy hierarchy = hierarchies.get(hierCode);
+
+			if (hierarchy == null) {
+				LOGGER.error("The hierarchy " + hierCode + " is not present in the DB, please check!");
+				continue;
+			}
+
+			String parentCode = child.getString(ASSIGN_PARENT_CODE);
+
+			if (parentCode.isEmpty())
+				continue;
+
+			// ERROR! cannot set a term parent of itself
+			if (parentCode.equals(termCode)) {
+				ImportException e = new ImportException(
+						"ERROR: A TERM CANNOT BE PARENT OF ITSELF: term code " + termCode, "X101");
+				e.setData(termCode);
+				throw e;
+			}
+
+			Nameable parent;
+
+			if (parentCode.equalsIgnoreCase(SpecialValues.NO_PARENT)) {
+				parent = new Hierarchy(importedCat);
+			} else {
+
+				Integer parentId = termIds.get(parentCode);
+
+				if (parentId == null) {
+					LOGGER.error("The parent term " + parentCode + " is not present in the DB, please check!");
+					continue;
+				}
+
+				Term parentTerm = new Term(importedCat);
+				parentTerm.setId(parentId);
+				parent = parentTerm;
+			}
+
+			appls.add(new Applicability(term, parent, hierarchy, child.getInt(ASSIGN_ORDER, -1),
+					child.getBoolean(ASSIGN_REPORT, true)));
+		}
+	}
+
+	/**
+	 * Add the progress of a whole import step
+	 *
+	 * @param step
+	 */
+	private void addProgress(int step) {
+		if (progressBar != null)
+			progressBar.addProgress(ProgressSettings.getProgress(step, maxProgress));
+	}
+
+	/**
+	 * Add the progress related to a batch of terms of an import step
+	 *
+	 * @param step
+	 * @param count number of terms processed
+	 */
+	private void addProgress(int step, int count) {
+		if (progressBar != null && termCount > 0)
+			progressBar.addProgress(ProgressSettings.getProgress(step, maxProgress) * count / termCount);
+	}
+
+	/**
+	 * Create a StAX reader for the input, external entities are not resolved
+	 *
+	 * @param input
+	 * @return
+	 * @throws XMLStreamException
+	 */
+	private static XMLStreamReader createReader(InputStream input) throws XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		return factory.createXMLStreamReader(input);
+	}
+
+	/**
+	 * Read the element on which the reader is positioned, until its end. The
+	 * leaves are saved as fields of the record, the wrappers are flattened and
+	 * the {@link #CHILD_RECORDS} are added as children of the record.
+	 *
+	 * @param reader
+	 * @param record
+	 * @return the text of the element if it is a leaf, otherwise null
+	 * @throws XMLStreamException
+	 */
+	private static String readElement(XMLStreamReader reader, XmlRecord record) throws XMLStreamException {
+
+		StringBuilder text = new StringBuilder();
+		boolean isLeaf = true;
+
+		while (reader.hasNext()) {
+
+			switch (reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+
+				isLeaf = false;
+
+				String name = reader.getLocalName();
+
+				if (CHILD_RECORDS.contains(name)) {
+					XmlRecord child = new XmlRecord(name);
+					readElement(reader, child);
+					record.children.add(child);
+				} else {
+					String value = readElement(reader, record);
+					if (value != null)
+						record.fields.put(name, value);
+				}
+				break;
+
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+				text.append(reader.getText());
+				break;
+
+			case XMLStreamConstants.END_ELEMENT:
+				return isLeaf ? text.toString().trim() : null;
+
+			default:
+				break;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Skip the element on which the reader is positioned
+	 *
+	 * @param reader
+	 * @throws XMLStreamException
+	 */
+	private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+
+		int depth = 1;
+
+		while (depth > 0 && reader.hasNext()) {
+
+			int event = reader.next();
+
+			if (event == XMLStreamConstants.START_ELEMENT)
+				depth++;
+			else if (event == XMLStreamConstants.END_ELEMENT)
+				depth--;
+		}
+	}
+
+	/**
+	 * Flattened xml record
+	 */
+	private static class XmlRecord {
+
+		private final String name;
+		private final HashMap<String, String> fields;
+		private final List<XmlRecord> children;
+
+		public XmlRecord(String name) {
+			this.name = name;
+			this.fields = new HashMap<>();
+			this.children = new ArrayList<>();
+		}
+
+		public String getString(String key) {
+			String value = fields.get(key);
+			return value == null ? "" : value;
+		}
+
+		public boolean getBoolean(String key, boolean defaultValue) {
+
+			String value = getString(key);
+
+			if (value.isEmpty())
+				return defaultValue;
+
+			return value.equalsIgnoreCase("true") || value.equals("1") || value.equalsIgnoreCase("Y");
+		}
+
+		public int getInt(String key, int defaultValue) {
+
+			String value = getString(key);
+
+			if (value.isEmpty())
+				return defaultValue;
+
+			try {
+				return Integer.parseInt(value);
+			} catch (NumberFormatException e) {
+				LOGGER.error("Wrong integer " + value + " for " + key + " in " + name, e);
+				return defaultValue;
+			}
+		}
+
+		public Timestamp getTimestamp(String key) {
+
+			String value = getString(key);
+
+			if (value.isEmpty())
+				return null;
+
+			for (String format : DATE_FORMATS) {
+				try {
+					return GlobalUtil.getTimestampFromString(value, format);
+				} catch (ParseException e) {
+					// try the next format
+				}
+			}
+
+			LOGGER.error("Cannot parse timestamp=" + value + " for " + key + " in " + name);
+			return null;
+		}
+	}
+}
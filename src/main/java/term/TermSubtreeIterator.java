@@ -1,9 +1,11 @@
 package term;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.Queue;
 
+import catalogue.TermChildrenIndex;
 import catalogue_object.Hierarchy;
 import catalogue_object.Term;
 
@@ -18,6 +20,7 @@ public class TermSubtreeIterator {
 	Term parent;
 	Hierarchy hierarchy;
 	Queue<Term> children;
+	boolean expanded; // true if the queue already contains the entire subtree
 	
 	/**
 	 * Iterate all the parent subtree children. Use next() to get the next term iteratively
@@ -43,6 +46,20 @@ public class TermSubtreeIterator {
 	 * Initialize the queue using the first level children of the parent term
 	 */
 	private void initializeQueue () {
+
+		// read the entire subtree from the in memory index if possible
+		if ( parent.getCatalogue() != null ) {
+
+			TermChildrenIndex index = parent.getCatalogue().getChildrenIndex();
+			ArrayList<Term> subtree = index.isLoaded() ? index.getSubtree( parent, hierarchy ) : null;
+
+			if ( subtree != null ) {
+				children.addAll( subtree );
+				expanded = true;
+				return;
+			}
+		}
+
 		// get the term children in the current hierarchy as starting point
 		children.addAll( parent.getAllChildren( hierarchy ) );
 	}
@@ -63,6 +80,9 @@ public class TermSubtreeIterator {
 		if (child == null)
 			return null;
 		
+		if ( expanded )
+			return child;
+		
 		Collection<Term> list = child.getAllChildren(hierarchy);
 		
 		if ( list == null || list.isEmpty() )
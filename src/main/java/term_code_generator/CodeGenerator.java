@@ -1,14 +1,7 @@
 package term_code_generator;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.ArrayList;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-
 import global_manager.GlobalManager;
 
 /**
@@ -20,8 +13,6 @@ import global_manager.GlobalManager;
  */
 public class CodeGenerator {
 
-	private final Logger LOGGER = LogManager.getLogger(CodeGenerator.class);
-
 	public final String TEMP_TERM_CODE = "TEMP_";
 
 	/**
@@ -94,7 +85,7 @@ public class CodeGenerator {
 		return retVal;
 	}
 
-	private String initialiseCode(String mask) {
+	String initialiseCode(String mask) {
 		return (String.valueOf(initialiseCode(mask.toCharArray())));
 	}
 
@@ -159,13 +150,13 @@ public class CodeGenerator {
 		return alphaNumCode;
 	}
 
-	private String incrementCode(String alphaNumCode, String mask) throws TermCodeException {
+	String incrementCode(String alphaNumCode, String mask) throws TermCodeException {
 
 		return String.valueOf(incrementCodeRec(alphaNumCode.toCharArray(), mask.toCharArray(), mask.length() - 1));
 
 	}
 
-	private String restructureCode(ArrayList<StringSegment> constantSegments, ArrayList<StringSegment> variableSegments,
+	String restructureCode(ArrayList<StringSegment> constantSegments, ArrayList<StringSegment> variableSegments,
 			String alphaNumCode, String codeMask) {
 
 		String retVal = "";
@@ -218,14 +209,28 @@ public class CodeGenerator {
 	 * @author avonva
 	 * @param codeMask
 	 * @return
-	 * @throws TermCodeException
+	 * @throws TermCodeException if the maximum code of the mask is reached or if
+	 *                           the current codes cannot be read from the
+	 *                           database
 	 */
 	public String getTermCode(String codeMask) throws TermCodeException {
 
-		// I am preparing the selection mask
+		GlobalManager manager = GlobalManager.getInstance();
+
+		TermCodeAllocator allocator = new TermCodeAllocator(manager.getCurrentCatalogue(), codeMask);
 
-		ArrayList<StringSegment> constantSegments = new ArrayList<StringSegment>();
-		ArrayList<StringSegment> variableSegments = new ArrayList<StringSegment>();
+		return allocator.next();
+	}
+
+	/**
+	 * Split the code mask into its constant and variable segments
+	 * 
+	 * @param codeMask
+	 * @param constantSegments output constant segments
+	 * @param variableSegments output variable segments
+	 */
+	void parseMask(String codeMask, ArrayList<StringSegment> constantSegments,
+			ArrayList<StringSegment> variableSegments) {
 
 		boolean readingConstant = false;
 		boolean readingVariable = false;
@@ -284,6 +289,19 @@ public class CodeGenerator {
 			}
 
 		}
+	}
+
+	/**
+	 * Get the query which returns the maximum variable part (CURR_CODE) of the
+	 * codes which follow the mask
+	 * 
+	 * @param codeMask
+	 * @param constantSegments
+	 * @param variableSegments
+	 * @return
+	 */
+	String getMaxCodeQuery(String codeMask, ArrayList<StringSegment> constantSegments,
+			ArrayList<StringSegment> variableSegments) {
 
 		/* prepare SQL variable */
 
@@ -308,54 +326,34 @@ public class CodeGenerator {
 			}
 		}
 
-		/* prepare the mask for the variable part to use in the increment */
-
-		String variableMask = "";
+		/* get the maximum code according to the specified mask */
+		String sql = "select max(" + sqlVariable + ") as CURR_CODE from APP.TERM";
 
-		for (int i = 0; i < variableSegments.size(); i++) {
-			variableMask = variableMask
-					+ codeMask.substring(variableSegments.get(i).start, variableSegments.get(i).getEnd());
+		if (sqlConstant.length() > 0) {
+			sql = sql + " where " + sqlConstant;
 		}
 
-		String alphaNumCode = "";
-		String currAlphaNumCode = "";
-		GlobalManager manager = GlobalManager.getInstance();
-
-		// solve memory leak
-		try (Connection con = manager.getCurrentCatalogue().getConnection()) {
-
-			/* get the maximum code according to the specified mask */
-			String sql = "select max(" + sqlVariable + ") as CURR_CODE from APP.TERM";
-
-			if (sqlConstant.length() > 0) {
-				sql = sql + " where " + sqlConstant;
-			}
-
-			PreparedStatement codeStmt = con.prepareStatement(sql);
-			ResultSet codeRs = codeStmt.executeQuery();
+		return sql;
+	}
 
-			while (codeRs.next()) {
-				currAlphaNumCode = codeRs.getString("CURR_CODE");
-			}
-			if ((currAlphaNumCode == null) || currAlphaNumCode == "") {
-				// this is the first instance of this code therefore it has to
-				// be initialised
-				currAlphaNumCode = initialiseCode(variableMask);
-			}
+	/**
+	 * Get the mask of the variable part of the codes
+	 * 
+	 * @param codeMask
+	 * @param variableSegments
+	 * @return
+	 */
+	String getVariableMask(String codeMask, ArrayList<StringSegment> variableSegments) {
 
-			alphaNumCode = restructureCode(constantSegments, variableSegments,
-					incrementCode(currAlphaNumCode, variableMask), codeMask);
+		/* prepare the mask for the variable part to use in the increment */
 
-			codeRs.close();
-			codeStmt.close();
-			con.close();
+		String variableMask = "";
 
-		} catch (SQLException e) {
-			LOGGER.error("Cannot generate new code", e);
-			e.printStackTrace();
+		for (int i = 0; i < variableSegments.size(); i++) {
+			variableMask = variableMask
+					+ codeMask.substring(variableSegments.get(i).start, variableSegments.get(i).getEnd());
 		}
-		LOGGER.info("The code of the new term " + alphaNumCode + " given the code mask " + codeMask);
-		return alphaNumCode;
 
+		return variableMask;
 	}
 }
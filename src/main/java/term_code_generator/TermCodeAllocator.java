@@ -0,0 +1,153 @@
+package term_code_generator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import catalogue.Catalogue;
+
+/**
+ * Allocate the codes of new terms following a term code mask. The maximum code
+ * of the catalogue which follows the mask is read from the database only once,
+ * then the next codes are created in memory. Therefore, the allocated codes
+ * are unique only if the terms are inserted with codes of the same allocator
+ * (e.g. during an import).
+ * 
+ * @author shahaal
+ *
+ */
+public class TermCodeAllocator {
+
+	private static final Logger LOGGER = LogManager.getLogger(TermCodeAllocator.class);
+
+	private final CodeGenerator generator;
+	private final Catalogue catalogue;
+	private final String codeMask;
+
+	private final ArrayList<StringSegment> constantSegments;
+	private final ArrayList<StringSegment> variableSegments;
+	private final String variableMask;
+
+	// variable part of the last allocated code, null if not read yet
+	private String currentCode;
+
+	/**
+	 * Create an allocator for the codes of the catalogue
+	 * 
+	 * @param catalogue catalogue which contains the terms
+	 * @param codeMask  the term code mask
+	 */
+	public TermCodeAllocator(Catalogue catalogue, String codeMask) {
+
+		this.generator = new CodeGenerator();
+		this.catalogue = catalogue;
+		this.codeMask = codeMask;
+
+		this.constantSegments = new ArrayList<>();
+		this.variableSegments = new ArrayList<>();
+
+		generator.parseMask(codeMask, constantSegments, variableSegments);
+
+		this.variableMask = generator.getVariableMask(codeMask, variableSegments);
+	}
+
+	/**
+	 * Get the code of a new term
+	 * 
+	 * @return
+	 * @throws TermCodeException
+	 */
+	public synchronized String next() throws TermCodeException {
+		return next(1).get(0);
+	}
+
+	/**
+	 * Get a range of consecutive codes for new terms
+	 * 
+	 * @param count number of codes
+	 * @return
+	 * @throws TermCodeException if the maximum code of the mask is reached
+	 */
+	public synchronized List<String> next(int count) throws TermCodeException {
+
+		if (currentCode == null)
+			currentCode = readCurrentCode();
+
+		List<String> codes = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+
+			currentCode = generator.incrementCode(currentCode, variableMask);
+
+			// the segments are consumed by the restructure
+			codes.add(generator.restructureCode(new ArrayList<>(constantSegments),
+					new ArrayList<>(variableSegments), currentCode, codeMask));
+		}
+
+		if (!codes.isEmpty())
+			LOGGER.info("The codes of the new terms " + codes.get(0) + " - " + codes.get(codes.size() - 1)
+					+ " given the code mask " + codeMask);
+
+		return codes;
+	}
+
+	/**
+	 * Get the variable part of the maximum code which follows the mask, or of the
+	 * initial code of the mask if no term follows it yet
+	 * 
+	 * @return
+	 * @throws TermCodeException
+	 */
+	private String readCurrentCode() throws TermCodeException {
+
+		String currAlphaNumCode = readMaxCode();
+
+		if (currAlphaNumCode == null || currAlphaNumCode.isEmpty()) {
+			// this is the first instance of this code therefore it has to
+			// be initialised
+			currAlphaNumCode = generator.initialiseCode(variableMask);
+		}
+
+		return currAlphaNumCode;
+	}
+
+	/**
+	 * Read from the database the variable part of the maximum code which follows
+	 * the mask
+	 * 
+	 * @return the variable part of the code, null if no code follows the mask
+	 * @throws TermCodeException if the code cannot be read
+	 */
+	String readMaxCode() throws TermCodeException {
+
+		String currAlphaNumCode = null;
+
+		String sql = generator.getMaxCodeQuery(codeMask, constantSegments, variableSegments);
+
+		try (Connection con = catalogue.getConnection();
+				PreparedStatement codeStmt = con.prepareStatement(sql);
+				ResultSet codeRs = codeStmt.executeQuery();) {
+
+			while (codeRs.next()) {
+				currAlphaNumCode = codeRs.getString("CURR_CODE");
+			}
+
+			codeRs.close();
+			codeStmt.close();
+			con.close();
+
+		} catch (SQLException e) {
+			LOGGER.error("Cannot generate new code", e);
+			e.printStackTrace();
+			throw new TermCodeException("Cannot read the maximum code for mask=" + codeMask);
+		}
+
+		return currAlphaNumCode;
+	}
+}
@@ -11,6 +11,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.MessageBox;
@@ -615,7 +617,20 @@ public class FileActions {
 	private static void downloadCatalogues(final Shell shell, final String title, final String msg,
 			final Collection<Catalogue> cats) {
 
-		CatalogueDownloaderManager manager = new CatalogueDownloaderManager(1);
+		// downloads and imports run in parallel with their own limits
+		final CatalogueDownloaderManager manager = new CatalogueDownloaderManager();
+
+		// if the application is closed, the catalogues which are not started yet
+		// are not downloaded
+		final DisposeListener cancelListener = new DisposeListener() {
+
+			@Override
+			public void widgetDisposed(DisposeEvent e) {
+				manager.cancel();
+			}
+		};
+
+		shell.addDisposeListener(cancelListener);
 
 		// download all the dc catalogues
 		final FormMultipleProgress dialog = new FormMultipleProgress(shell);
@@ -649,6 +664,11 @@ public class FileActions {
 					@Override
 					public void run() {
 
+						if (shell.isDisposed())
+							return;
+
+						shell.removeDisposeListener(cancelListener);
+
 						GlobalUtil.showDialog(shell, title, msg, SWT.ICON_INFORMATION);
 
 						dialog.done();
@@ -657,7 +677,7 @@ public class FileActions {
 			}
 		});
 
-		// start thread in a batch way
+		// start the downloads, the manager does not block
 		manager.start();
 
 		dialog.open();
@@ -12,7 +12,6 @@ import org.eclipse.swt.events.ModifyListener;
 import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.SelectionListener;
-import org.eclipse.swt.graphics.Cursor;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.layout.RowLayout;
@@ -38,9 +37,11 @@ import user_preferences.CataloguePreferenceDAO;
  * some settings: - search as exact match, any word or all words - search in the
  * selected hierarchy or globally
  * 
- * When the search button is pressed, the search is performed. When the results
- * are ready to be used by the program, a listener is called to update the main
- * thread that the search is finished and it can use the results.
+ * When the search button is pressed, the search is performed in background.
+ * When the results are ready to be used by the program, a listener is called
+ * to update the main thread that the search is finished and it can use the
+ * results. If the live search is enabled, the search is also started when the
+ * user stops typing and its results are sent as updates.
  * 
  * @author avonva
  * @author shahaal
@@ -61,6 +62,12 @@ public class SearchBar implements Observer {
 
 	private SearchListener listener;
 
+	// runs the searches outside of the UI thread
+	private SearchExecutor executor;
+
+	// search while typing
+	private boolean liveSearch;
+
 	// hierarchy which is currently opened in the browser
 	private Hierarchy currentHierarchy;
 
@@ -227,6 +234,25 @@ public class SearchBar implements Observer {
 		this.listener = listener;
 	}
 
+	/**
+	 * Start the search when the user stops typing. The results of these searches
+	 * are sent with {@link SearchListener#resultsUpdated(SearchEvent)}
+	 * 
+	 * @param liveSearch
+	 */
+	public void setLiveSearch(boolean liveSearch) {
+		this.liveSearch = liveSearch;
+	}
+
+	/**
+	 * Get the latency statistics of the searches made with this bar
+	 * 
+	 * @return
+	 */
+	public SearchExecutor.SearchStats getSearchStats() {
+		return executor == null ? null : executor.getStats();
+	}
+
 	/**
 	 * Update the search globally feature (used to restore previous state)
 	 * 
@@ -276,7 +302,9 @@ public class SearchBar implements Observer {
 	 * Display the search bar, instantiate the UI
 	 */
 	public void display() {
-		
+
+		executor = new SearchExecutor(parent.getDisplay());
+
 		// Setting the "search" widget
 		Composite searchComposite = new Composite(parent, SWT.NONE);
 		searchComposite.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
@@ -300,6 +328,10 @@ public class SearchBar implements Observer {
 			public void modifyText(ModifyEvent e) {
 
 				buttonSearch.setEnabled(canSearch(textSearch.getText().trim().length()) && textSearch.isEnabled());
+
+				// wait that the user stops typing
+				if (liveSearch && textSearch.isEnabled())
+					search(SearchExecutor.TYPING_DELAY, false);
 			}
 		});
 
@@ -365,31 +397,7 @@ public class SearchBar implements Observer {
 
 			@Override
 			public void widgetSelected(SelectionEvent e) {
-
-				// change the cursor to wait
-				Cursor cursor = new Cursor(parent.getDisplay(), SWT.CURSOR_WAIT);
-				parent.getShell().setCursor(cursor);
-
-				// call the external listener to say that the search results are ready to be
-				// used
-				searchResults = search(getKeyword(), getSearchMode());
-
-				// dispose the old cursor and instantiate the new one
-				if (cursor != null)
-					cursor.dispose();
-
-				// reload the old cursor, the search is finished
-				cursor = new Cursor(parent.getDisplay(), SWT.CURSOR_ARROW);
-				parent.getShell().setCursor(cursor);
-
-				if (listener != null) {
-
-					SearchEvent event = new SearchEvent();
-					event.setResults(searchResults);
-
-					// call the search listener
-					listener.searchPerformed(event);
-				}
+				search(0, true);
 			}
 
 			@Override
@@ -478,37 +486,86 @@ public class SearchBar implements Observer {
 	}
 
 	/**
-	 * The search method check the query string and search the terms who match the
-	 * query string. Method added for reducing and avoiding duplication code in the
-	 * system. Return an array list of terms (search results), which is empty if no
-	 * results are found
+	 * Search the terms which match the keyword in background, cancelling the
+	 * previous searches. The results are sent to the listener as soon as they are
+	 * found. The results of the searches made with the search button are notified
+	 * as performed when completed, the other ones only as updates.
+	 * 
+	 * @param delay    milliseconds to wait before starting the search
+	 * @param explicit true if the search was requested with the search button
 	 */
-	private ArrayList<Term> search(String keyword, SearchType type) {
+	private void search(long delay, final boolean explicit) {
 
-		// output array
-		ArrayList<Term> searchResults = new ArrayList<>();
+		String keyword = getKeyword();
 
 		// if the number of characters of the search are less than the minimum number of
-		// characters
-		if (!canSearch(keyword.trim().length()))
-			return searchResults;
+		// characters, no results
+		if (catalogue == null || !canSearch(keyword.trim().length())) {
 
-		SearchDAO searchDao = new SearchDAO(catalogue);
+			executor.cancel();
+			setBusy(false);
 
-		// Set root term for the search
-		if (rootTerm != null)
-			searchDao.setRootTerm(rootTerm);
+			if (explicit)
+				notifyResults(new ArrayList<Term>(), true);
+
+			return;
+		}
 
 		// get the hierarchy in which we have to search
 		searchHierarchy = globalSearchEnabled ? catalogue.getMasterHierarchy() : currentHierarchy;
 
-		searchResults = searchDao.startSearch(keyword, type, searchHierarchy);
+		// change the cursor to wait
+		if (explicit)
+			setBusy(true);
 
-		// filter deprecated and not in use terms
-		searchResults = TermFilter.filterByFlag(hideDeprecated, hideNotInUse, searchResults, searchHierarchy);
+		SearchExecutor.Query query = new SearchExecutor.Query(catalogue, keyword, getSearchMode(), searchHierarchy,
+				rootTerm, hideDeprecated, hideNotInUse);
 
-		// return the results
-		return searchResults;
+		executor.submit(query, delay, (results, completed) -> {
+
+			// reload the old cursor, the search is finished
+			if (completed)
+				setBusy(false);
+
+			notifyResults(results, completed && explicit);
+		});
+	}
+
+	/**
+	 * Save the results and call the search listener
+	 * 
+	 * @param results
+	 * @param performed true if the search is completed and it was requested with
+	 *                  the search button
+	 */
+	private void notifyResults(ArrayList<Term> results, boolean performed) {
+
+		searchResults = results;
+
+		if (listener == null)
+			return;
+
+		SearchEvent event = new SearchEvent();
+		event.setResults(results);
+
+		if (performed)
+			listener.searchPerformed(event);
+		else
+			listener.resultsUpdated(event);
+	}
+
+	/**
+	 * Show the wait cursor while a search is running
+	 * 
+	 * @param busy
+	 */
+	private void setBusy(boolean busy) {
+
+		if (parent.isDisposed())
+			return;
+
+		int cursor = busy ? SWT.CURSOR_WAIT : SWT.CURSOR_ARROW;
+		parent.getShell().setCursor(parent.getDisplay().getSystemCursor(cursor));
 	}
 
 	/**
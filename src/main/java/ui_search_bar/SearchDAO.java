@@ -14,6 +14,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import catalogue.Catalogue;
+import catalogue.TermSearchIndex;
 import catalogue_object.Attribute;
 import catalogue_object.Hierarchy;
 import catalogue_object.Term;
@@ -67,6 +68,35 @@ public class SearchDAO {
 	 */
 	public ArrayList<Term> startSearch(String text, SearchType type, Hierarchy hierarchy) {
 
+		SearchFilter filter = createFilter(hierarchy);
+
+		return getTerms(findIds(text, type, filter), filter, hierarchy);
+	}
+
+	/**
+	 * Create the filter of a search, reading the search options once. The filter
+	 * reads the catalogue objects, therefore it must be created in the thread
+	 * which edits them.
+	 * 
+	 * @param hierarchy the hierarchy in which the terms are searched
+	 * @return
+	 */
+	SearchFilter createFilter(Hierarchy hierarchy) {
+		return new SearchFilter(catalogue, hierarchy, getSearchableTermTypes(), getSearchableAttributes());
+	}
+
+	/**
+	 * Find the ids of the terms which match the text, sorted by relevance if the
+	 * search index is loaded. Only the search index and the database are read,
+	 * therefore it can be called outside the thread which edits the terms.
+	 * 
+	 * @param text
+	 * @param type
+	 * @param filter the filter of the search
+	 * @return
+	 */
+	Collection<Integer> findIds(String text, SearchType type, SearchFilter filter) {
+
 		ArrayList<String> keywords;
 
 		// if exact match, we use the entire text as single keyword
@@ -83,39 +113,43 @@ public class SearchDAO {
 			keywords = new ArrayList<String>(Arrays.asList(text.split(" ")));
 		}
 
-		return search(keywords, type, hierarchy);
+		TermSearchIndex index = catalogue.getSearchIndex();
+
+		// use the in memory index if available (results sorted by relevance)
+		if (index.isLoaded())
+			return index.search(keywords, type == SearchType.ALL_WORDS, filter.getAttributeIds());
+
+		ArrayList<Integer> ids1 = findByCodeOrName(keywords, type);
+		ArrayList<Integer> ids2 = findByAttribute(keywords, type, filter.getAttributeIds());
+
+		// create a set to combine the results avoiding duplicated
+		Set<Integer> ids = new HashSet<>();
+		ids.addAll(ids1);
+		ids.addAll(ids2);
+
+		return ids;
 	}
 
 	/**
-	 * Perform a search in the database terms and term attributes possibly filtering
-	 * by hierarchies and term types (if present in the db)
+	 * Get the terms of the ids which pass the filter and, if set, are children of
+	 * the root term. Must be called in the thread which edits the terms.
 	 * 
-	 * @param keywords    set of keywords to be searched
-	 * @param type        the search method we want to use. See
-	 *                    {@linkplain SearchType }
-	 * @param hierarchies subset of hierarchies in which searching terms (empty =
-	 *                    global search)
+	 * @param ids       the ids found by {@link #findIds}
+	 * @param filter    the filter of the search
+	 * @param hierarchy the hierarchy in which the terms are searched
 	 * @return
 	 */
-	private ArrayList<Term> search(ArrayList<String> keywords, SearchType type, Hierarchy hierarchy) {
+	ArrayList<Term> getTerms(Collection<Integer> ids, SearchFilter filter, Hierarchy hierarchy) {
 
 		ArrayList<Term> terms = new ArrayList<>();
 
-		ArrayList<Integer> ids1 = findByCodeOrName(keywords, type);
-		ArrayList<Integer> ids2 = findByAttribute(keywords, type);
-
-		// create a set to combine the results avoiding duplicated
-		Set<Integer> uniqueIds = new HashSet<>();
-		uniqueIds.addAll(ids1);
-		uniqueIds.addAll(ids2);
-
 		// filter by term type and hierarchy
-		for (Integer id : uniqueIds) {
+		for (Integer id : ids) {
 
 			Term term = catalogue.getTermById(id);
 
-			// Hide the term if not in use
-			if (!term.isInUse())
+			// the term must be in use, in the hierarchy and of a searchable type
+			if (!filter.accept(term))
 				continue;
 
 			// Skip elements which are not children of the
@@ -124,76 +158,12 @@ public class SearchDAO {
 				continue;
 			}
 
-			// if the term type of the term is searchable and also one
-			// of the hierarchy of the term is searchable, add it
-			if (isTypeSearchable(term) && hasHierachySearchable(term, hierarchy)) {
-				terms.add(term);
-			}
+			terms.add(term);
 		}
 
 		return terms;
 	}
 
-	/**
-	 * Check if the term type of the term is one of the selected in the user
-	 * settings
-	 * 
-	 * @param term
-	 * @return
-	 */
-	@SuppressWarnings("unlikely-arg-type")
-	private boolean isTypeSearchable(Term term) {
-
-		// if the catalogue does not use term types
-		// we return true as default to avoid blocking
-		// search operations
-		if (!catalogue.hasTermTypes())
-			return true;
-
-		// if the term does not have a term type
-		// we include it in the results as default
-		if (term.getTermType() == null)
-			return true;
-
-		// get the searchable term types
-		Collection<TermType> types = getSearchableTermTypes();
-
-		// return true if the term type is contained in the
-		// searchable term types
-		return types.contains(term.getTermType());
-	}
-
-	/**
-	 * Check if the term has an applicable hierarchy which is contained in the
-	 * searchable hierarchies
-	 * 
-	 * @param term
-	 * @param searchableHierarchies
-	 * @return
-	 */
-	private boolean hasHierachySearchable(Term term, Hierarchy hierarchy) {
-
-		// if no searchable hierarchies => we search globally
-		// therefore we return true
-		// if ( searchableHierarchies.isEmpty() )
-		// return true;
-
-		// if no applicable hierarchy => we do not return it
-		if (term.getApplicableHierarchies().isEmpty())
-			return false;
-
-		// if the hierarchy is contained in the applicable hierarchies of the term
-		// then found
-		for (Hierarchy termHierarchy : term.getApplicableHierarchies()) {
-
-			if (hierarchy.equals(termHierarchy)) {
-				return true;
-			}
-		}
-
-		return false;
-	}
-
 	/**
 	 * Get all the ids of the terms which matched the keywords by their name or code
 	 * with the selected search type.
@@ -265,7 +235,8 @@ public class SearchDAO {
 	 * @return list of terms ids which have term attributes which matched the
 	 *         keywords with the selected search method
 	 */
-	private ArrayList<Integer> findByAttribute(ArrayList<String> keywords, SearchType type) {
+	private ArrayList<Integer> findByAttribute(ArrayList<String> keywords, SearchType type,
+			Collection<Integer> searchableAttrIds) {
 
 		ArrayList<Integer> termIds = new ArrayList<>();
 
@@ -275,7 +246,7 @@ public class SearchDAO {
 
 		// get all the attributes ids related to the
 		// attributes we are allowed to search in
-		String attrIds = getAttributeFilter();
+		String attrIds = getAttributeFilter(searchableAttrIds);
 
 		// get all the term attributes ids which match
 		// the keywords
@@ -321,32 +292,30 @@ public class SearchDAO {
 	 * Get the searchable attributes ids in a comma separated way in order to use
 	 * them as a filter in the main query
 	 * 
+	 * @param attrIds the ids of the searchable attributes
 	 * @return a string which contains the searchable attributes ids in a comma
 	 *         separated way. If no searchable attribute is retrieved an empty
 	 *         string is returned
 	 */
-	private String getAttributeFilter() {
+	private String getAttributeFilter(Collection<Integer> attrIds) {
 
 		StringBuilder ids = new StringBuilder();
 
-		// get all the searchable attributes
-		Collection<Attribute> attrs = getSearchableAttributes();
-
 		int attrCount = 0;
 
 		// we take only the records which has as attribute one
 		// of the searchable attributes
-		for (Attribute attr : attrs) {
+		for (Integer attrId : attrIds) {
 
 			// add the current attribute id to
 			// the one which can be selected
-			ids.append(attr.getId());
+			ids.append(attrId);
 
 			attrCount++;
 
 			// add the comma only if it is not
 			// the last one
-			if (attrCount < attrs.size())
+			if (attrCount < attrIds.size())
 				ids.append(",");
 		}
 
@@ -0,0 +1,417 @@
+package ui_search_bar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.swt.widgets.Display;
+
+import catalogue.Catalogue;
+import catalogue_object.Hierarchy;
+import catalogue_object.Term;
+import ui_main_panel.TermFilter;
+
+/**
+ * Runs the searches of a search bar outside of the UI thread. A new search
+ * supersedes the previous ones: the searches which are waiting are discarded,
+ * the running one is stopped and its results are never delivered. The first
+ * {@link #FIRST_RESULTS} results (the most relevant ones when the search index
+ * is loaded) are delivered as soon as they are found, the other ones are added
+ * in batches until the search is completed. The results are always delivered
+ * in the UI thread.
+ * 
+ * The terms are edited in the UI thread, therefore the background thread only
+ * reads the search index and the database to find the ids of the matching
+ * terms. The terms themselves are checked in the UI thread, a small batch of
+ * ids at a time, so that an edit is never applied while a term is read and the
+ * UI stays responsive during long searches.
+ * 
+ * All the search bars share the same background thread.
+ * 
+ * @author shahaal
+ *
+ */
+public class SearchExecutor {
+
+	private static final Logger LOGGER = LogManager.getLogger(SearchExecutor.class);
+
+	// delay used to wait that the user stops typing
+	static final long TYPING_DELAY = 300;
+
+	// results delivered before completing the search
+	static final int FIRST_RESULTS = 50;
+	static final int BATCH_RESULTS = 500;
+
+	// ids checked in the UI thread at each step
+	static final int CHECK_BATCH = 200;
+
+	private static ScheduledExecutorService executor;
+
+	private final Display display;
+
+	// incremented for each new search, the older searches are cancelled
+	private final AtomicLong generation;
+
+	private ScheduledFuture<?> pending;
+	private SearchStats stats;
+
+	/**
+	 * Create an executor which delivers the results in the UI thread of the
+	 * display
+	 * 
+	 * @param display
+	 */
+	SearchExecutor(Display display) {
+		this.display = display;
+		this.generation = new AtomicLong();
+		this.stats = new SearchStats(null, null, 0, 0, 0, true);
+	}
+
+	/**
+	 * Start a new search after the delay, cancelling the previous ones
+	 * 
+	 * @param query    what to search
+	 * @param delay    milliseconds to wait before starting the search
+	 * @param listener called in the UI thread with the results
+	 */
+	synchronized void submit(Query query, long delay, ResultsListener listener) {
+
+		long id = cancel();
+
+		pending = getExecutor().schedule(() -> run(id, query, listener), delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Cancel the waiting and running searches
+	 * 
+	 * @return the id of the next search
+	 */
+	synchronized long cancel() {
+
+		if (pending != null)
+			pending.cancel(false);
+
+		pending = null;
+
+		return generation.incrementAndGet();
+	}
+
+	/**
+	 * Get the latency statistics of the searches
+	 * 
+	 * @return
+	 */
+	public synchronized SearchStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Perform the search and deliver its results
+	 * 
+	 * @param id
+	 * @param query
+	 * @param listener
+	 */
+	private void run(final long id, final Query query, final ResultsListener listener) {
+
+		if (isCancelled(id))
+			return;
+
+		final long start = System.currentTimeMillis();
+		long firstResults = -1;
+
+		ArrayList<Term> results = new ArrayList<>();
+
+		try {
+
+			SearchDAO searchDao = new SearchDAO(query.catalogue);
+
+			if (query.rootTerm != null)
+				searchDao.setRootTerm(query.rootTerm);
+
+			SearchFilter filter = inUiThread(id, () -> searchDao.createFilter(query.hierarchy));
+
+			// only the search index and the database are read here
+			List<Integer> ids = filter == null ? new ArrayList<>()
+					: new ArrayList<>(searchDao.findIds(query.keyword, query.type, filter));
+
+			int nextDelivery = FIRST_RESULTS;
+
+			for (int i = 0; i < ids.size(); i += CHECK_BATCH) {
+
+				List<Integer> batch = ids.subList(i, Math.min(i + CHECK_BATCH, ids.size()));
+
+				ArrayList<Term> found = inUiThread(id,
+						() -> query.filter(searchDao.getTerms(batch, filter, query.hierarchy)));
+
+				// stop if the search is not needed anymore
+				if (found == null)
+					break;
+
+				results.addAll(found);
+
+				// send the results found so far
+				if (results.size() >= nextDelivery && i + CHECK_BATCH < ids.size()) {
+
+					if (firstResults < 0)
+						firstResults = System.currentTimeMillis() - start;
+
+					deliver(id, new ArrayList<>(results), false, listener);
+
+					nextDelivery = results.size() + BATCH_RESULTS;
+				}
+			}
+
+		} catch (RuntimeException e) {
+			LOGGER.error("Search error", e);
+			e.printStackTrace();
+		}
+
+		long elapsed = System.currentTimeMillis() - start;
+		boolean cancelled = isCancelled(id);
+
+		synchronized (this) {
+			stats = new SearchStats(stats, query.keyword, elapsed, firstResults < 0 ? elapsed : firstResults,
+					results.size(), cancelled);
+		}
+
+		LOGGER.debug("Search of " + query.keyword + (cancelled ? " cancelled" : " completed") + " in " + elapsed
+				+ " ms with " + results.size() + " results");
+
+		if (!cancelled)
+			deliver(id, results, true, listener);
+	}
+
+	/**
+	 * Send the results to the listener in the UI thread, if the search was not
+	 * superseded in the meantime
+	 * 
+	 * @param id
+	 * @param results
+	 * @param completed
+	 * @param listener
+	 */
+	private void deliver(final long id, final ArrayList<Term> results, final boolean completed,
+			final ResultsListener listener) {
+
+		if (display.isDisposed())
+			return;
+
+		display.asyncExec(() -> {
+
+			if (!isCancelled(id))
+				listener.resultsFound(results, completed);
+		});
+	}
+
+	/**
+	 * Read the catalogue objects in the UI thread, waiting for the result
+	 * 
+	 * @param id       the id of the search
+	 * @param supplier
+	 * @return the result of the supplier, null if the search was cancelled in
+	 *         the meantime
+	 */
+	private <T> T inUiThread(final long id, final Supplier<T> supplier) {
+
+		AtomicReference<T> result = new AtomicReference<>();
+
+		if (display.isDisposed() || isCancelled(id))
+			return null;
+
+		display.syncExec(() -> {
+
+			if (!isCancelled(id))
+				result.set(supplier.get());
+		});
+
+		return result.get();
+	}
+
+	private boolean isCancelled(long id) {
+		return generation.get() != id;
+	}
+
+	/**
+	 * Get the background thread, starting it if needed
+	 * 
+	 * @return
+	 */
+	private static synchronized ScheduledExecutorService getExecutor() {
+
+		if (executor == null) {
+			executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "search");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		return executor;
+	}
+
+	/**
+	 * Receives the results of a search in the UI thread
+	 */
+	interface ResultsListener {
+
+		/**
+		 * @param results   the results found so far
+		 * @param completed true if the search is completed
+		 */
+		void resultsFound(ArrayList<Term> results, boolean completed);
+	}
+
+	/**
+	 * Parameters of a search, read from the UI before starting it
+	 */
+	static class Query {
+
+		private final Catalogue catalogue;
+		private final String keyword;
+		private final SearchType type;
+		private final Hierarchy hierarchy;
+		private final Term rootTerm;
+		private final boolean hideDeprecated;
+		private final boolean hideNotInUse;
+
+		Query(Catalogue catalogue, String keyword, SearchType type, Hierarchy hierarchy, Term rootTerm,
+				boolean hideDeprecated, boolean hideNotInUse) {
+			this.catalogue = catalogue;
+			this.keyword = keyword;
+			this.type = type;
+			this.hierarchy = hierarchy;
+			this.rootTerm = rootTerm;
+			this.hideDeprecated = hideDeprecated;
+			this.hideNotInUse = hideNotInUse;
+		}
+
+		/**
+		 * Remove the deprecated and not in use terms if required
+		 * 
+		 * @param results
+		 * @return
+		 */
+		private ArrayList<Term> filter(ArrayList<Term> results) {
+			return TermFilter.filterByFlag(hideDeprecated, hideNotInUse, results, hierarchy);
+		}
+	}
+
+	/**
+	 * Latency statistics of the searches
+	 * 
+	 * @author shahaal
+	 *
+	 */
+	public static class SearchStats {
+
+		private final String lastKeyword;
+		private final long lastLatency;
+		private final long lastFirstResults;
+		private final int lastResults;
+		private final int completed;
+		private final int cancelled;
+		private final long totalLatency;
+		private final long maxLatency;
+
+		/**
+		 * Add a search to the statistics
+		 * 
+		 * @param previous     statistics of the previous searches, can be null
+		 * @param keyword      the searched text
+		 * @param latency      milliseconds spent in the search
+		 * @param firstResults milliseconds needed to find the first results
+		 * @param results      number of results
+		 * @param cancelled    true if the search was superseded by another one
+		 */
+		private SearchStats(SearchStats previous, String keyword, long latency, long firstResults, int results,
+				boolean cancelled) {
+
+			boolean first = previous == null;
+
+			this.cancelled = (first ? 0 : previous.cancelled) + (cancelled && !first ? 1 : 0);
+
+			// the cancelled searches do not count for the latency
+			if (first || cancelled) {
+				this.lastKeyword = first ? null : previous.lastKeyword;
+				this.lastLatency = first ? 0 : previous.lastLatency;
+				this.lastFirstResults = first ? 0 : previous.lastFirstResults;
+				this.lastResults = first ? 0 : previous.lastResults;
+				this.completed = first ? 0 : previous.completed;
+				this.totalLatency = first ? 0 : previous.totalLatency;
+				this.maxLatency = first ? 0 : previous.maxLatency;
+			} else {
+				this.lastKeyword = keyword;
+				this.lastLatency = latency;
+				this.lastFirstResults = firstResults;
+				this.lastResults = results;
+				this.completed = previous.completed + 1;
+				this.totalLatency = previous.totalLatency + latency;
+				this.maxLatency = Math.max(previous.maxLatency, latency);
+			}
+		}
+
+		public String getLastKeyword() {
+			return lastKeyword;
+		}
+
+		/**
+		 * Milliseconds spent by the last completed search
+		 * 
+		 * @return
+		 */
+		public long getLastLatency() {
+			return lastLatency;
+		}
+
+		/**
+		 * Milliseconds needed by the last completed search to deliver its first
+		 * results
+		 * 
+		 * @return
+		 */
+		public long getLastFirstResults() {
+			return lastFirstResults;
+		}
+
+		public int getLastResults() {
+			return lastResults;
+		}
+
+		public int getCompleted() {
+			return completed;
+		}
+
+		public int getCancelled() {
+			return cancelled;
+		}
+
+		/**
+		 * Average milliseconds spent by the completed searches
+		 * 
+		 * @return
+		 */
+		public long getAverageLatency() {
+			return completed == 0 ? 0 : totalLatency / completed;
+		}
+
+		public long getMaxLatency() {
+			return maxLatency;
+		}
+
+		@Override
+		public String toString() {
+			return "completed=" + completed + ", cancelled=" + cancelled + ", last=" + lastLatency
+					+ " ms, first results=" + lastFirstResults + " ms, average=" + getAverageLatency() + " ms, max="
+					+ maxLatency + " ms";
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package ui_search_bar;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import catalogue.Catalogue;
+import catalogue.TermChildrenIndex;
+import catalogue_object.Applicability;
+import catalogue_object.Attribute;
+import catalogue_object.Hierarchy;
+import catalogue_object.Term;
+import catalogue_object.TermAttribute;
+import term_type.TermType;
+
+/**
+ * Filters applied to the terms found by a search, built once for each search.
+ * The searchable term types and attributes are read only once from the search
+ * options, and the terms which belong to the searched hierarchy are taken as a
+ * bit set from the {@link TermChildrenIndex} of the catalogue, therefore
+ * checking a term does not require any database query.
+ * 
+ * @author shahaal
+ *
+ */
+class SearchFilter {
+
+	private final Hierarchy hierarchy;
+
+	// false if the catalogue does not use term types
+	private final boolean checkTypes;
+
+	// codes of the searchable term types
+	private final Set<String> typeCodes;
+
+	// ids of the searchable attributes
+	private final Set<Integer> attrIds;
+
+	// ids of the hierarchies hidden to the user
+	private final Set<Integer> notUsedIds;
+
+	// ids of the terms of the hierarchy, null if the index is not available
+	private final BitSet eligible;
+
+	/**
+	 * Create the filter for a search
+	 * 
+	 * @param catalogue
+	 * @param hierarchy the hierarchy in which the terms are searched
+	 * @param types     the searchable term types
+	 * @param attrs     the searchable attributes
+	 */
+	SearchFilter(Catalogue catalogue, Hierarchy hierarchy, Collection<TermType> types,
+			Collection<Attribute> attrs) {
+
+		this.hierarchy = hierarchy;
+		this.checkTypes = catalogue.hasTermTypes();
+
+		this.typeCodes = new HashSet<>();
+		for (TermType type : types) {
+			if (type != null)
+				typeCodes.add(type.getCode());
+		}
+
+		this.attrIds = new HashSet<>();
+		for (Attribute attr : attrs) {
+			if (attr != null)
+				attrIds.add(attr.getId());
+		}
+
+		this.notUsedIds = new HashSet<>();
+		for (Hierarchy notUsed : catalogue.getNotUsedHierarchies())
+			notUsedIds.add(notUsed.getId());
+
+		TermChildrenIndex index = catalogue.getChildrenIndex();
+
+		if (!index.isLoaded())
+			eligible = null;
+		else {
+
+			// the terms of a used hierarchy are also in use
+			eligible = index.getMembers(hierarchy);
+
+			// otherwise keep only the terms used in another hierarchy
+			if (notUsedIds.contains(hierarchy.getId())) {
+
+				BitSet inUse = new BitSet();
+				for (Hierarchy used : catalogue.getInUseHierarchies())
+					inUse.or(index.getMembers(used));
+
+				eligible.and(inUse);
+			}
+		}
+	}
+
+	/**
+	 * Get the ids of the searchable attributes
+	 * 
+	 * @return
+	 */
+	Set<Integer> getAttributeIds() {
+		return attrIds;
+	}
+
+	/**
+	 * Check if the term is in use, belongs to the searched hierarchy and has a
+	 * searchable term type
+	 * 
+	 * @param term
+	 * @return
+	 */
+	boolean accept(Term term) {
+
+		if (term == null)
+			return false;
+
+		boolean inHierarchy = eligible != null ? eligible.get(term.getId()) : isInHierarchy(term);
+
+		return inHierarchy && isTypeSearchable(term);
+	}
+
+	/**
+	 * Check if the term type of the term is one of the selected in the user
+	 * settings
+	 * 
+	 * @param term
+	 * @return
+	 */
+	private boolean isTypeSearchable(Term term) {
+
+		// if the catalogue does not use term types
+		// we return true as default to avoid blocking
+		// search operations
+		if (!checkTypes)
+			return true;
+
+		TermAttribute type = term.getTermType();
+
+		// if the term does not have a term type
+		// we include it in the results as default
+		if (type == null)
+			return true;
+
+		return typeCodes.contains(type.getValue());
+	}
+
+	/**
+	 * Check if the term is in use and belongs to the searched hierarchy, used if
+	 * the children index was not built
+	 * 
+	 * @param term
+	 * @return
+	 */
+	private boolean isInHierarchy(Term term) {
+
+		boolean found = false;
+		boolean inUse = false;
+
+		for (Applicability appl : term.getApplicabilities()) {
+
+			Hierarchy applHierarchy = appl.getHierarchy();
+
+			if (hierarchy.equals(applHierarchy))
+				found = true;
+
+			if (applHierarchy != null && !notUsedIds.contains(applHierarchy.getId()))
+				inUse = true;
+		}
+
+		return found && inUse;
+	}
+}
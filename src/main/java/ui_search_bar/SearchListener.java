@@ -8,4 +8,13 @@ package ui_search_bar;
 public class SearchListener {
 	public void searchPerformed ( SearchEvent event ) {
 	}
+
+	/**
+	 * Called with the partial results of a running search and with the results
+	 * of the searches started while typing
+	 * 
+	 * @param event
+	 */
+	public void resultsUpdated(SearchEvent event) {
+	}
 }
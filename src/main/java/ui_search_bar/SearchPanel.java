@@ -59,6 +59,9 @@ public class SearchPanel implements Observer {
 		// at the beginning we set all disabled (no catalogue is opened)
 		searchBar.setEnabled(false);
 
+		// show the results while typing
+		searchBar.setLiveSearch(true);
+
 		// table to show the results
 		table = new TermTable(parent, catalogue);
 
@@ -67,19 +70,22 @@ public class SearchPanel implements Observer {
 			@Override
 			public void searchPerformed(SearchEvent event) {
 
-				table.removeAll();
+				showResults(event.getResults());
 
-				// get the search results from the searchBar
-				ArrayList<Term> terms = event.getResults();
+				// call the caller listener
+				if (searchListener != null) {
+					searchListener.searchPerformed(event);
+				}
+			}
 
-				table.setCurrentHierarchy(searchBar.getSearchHierarchy());
+			@Override
+			public void resultsUpdated(SearchEvent event) {
 
-				// Update the list search input with the
-				table.setInput(terms);
+				// partial results, the table is filled progressively
+				showResults(event.getResults());
 
-				// call the caller listener
 				if (searchListener != null) {
-					searchListener.searchPerformed(event);
+					searchListener.resultsUpdated(event);
 				}
 			}
 		});
@@ -91,6 +97,21 @@ public class SearchPanel implements Observer {
 
 	}
 
+	/**
+	 * Show the search results in the table
+	 * 
+	 * @param terms
+	 */
+	private void showResults(ArrayList<Term> terms) {
+
+		table.removeAll();
+
+		table.setCurrentHierarchy(searchBar.getSearchHierarchy());
+
+		// Update the list search input with the
+		table.setInput(terms);
+	}
+
 	/**
 	 * Add a contextual menu to the search results table
 	 * 
@@ -0,0 +1,73 @@
+package utilities;
+
+/**
+ * Escape values for the text formats used by the exports (csv and json)
+ * 
+ * @author shahaal
+ *
+ */
+public class EscapeUtil {
+
+	/**
+	 * Quote the value if it contains csv special characters
+	 * 
+	 * @param value
+	 * @return the csv field, empty if the value is null
+	 */
+	public static String escapeCsv(String value) {
+
+		if (value == null)
+			return "";
+
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+				&& value.indexOf('\r') < 0)
+			return value;
+
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+
+	/**
+	 * Create a json string literal with the value
+	 * 
+	 * @param value
+	 * @return the json string, null if the value is null
+	 */
+	public static String escapeJson(String value) {
+
+		if (value == null)
+			return "null";
+
+		StringBuilder sb = new StringBuilder(value.length() + 2);
+		sb.append('"');
+
+		for (int i = 0; i < value.length(); i++) {
+
+			char c = value.charAt(i);
+
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if (c < 0x20)
+					sb.append(String.format("\\u%04x", (int) c));
+				else
+					sb.append(c);
+			}
+		}
+
+		return sb.append('"').toString();
+	}
+}
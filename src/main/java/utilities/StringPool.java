@@ -0,0 +1,33 @@
+package utilities;
+
+import java.util.HashMap;
+
+/**
+ * Pool of strings used while loading large amounts of records, in order to
+ * share the same object among all the records which have the same value (as
+ * the status of the terms or the values of the flag attributes). Unlike
+ * {@link String#intern()}, the pool is released with the loader.
+ * 
+ * @author shahaal
+ *
+ */
+public class StringPool {
+
+	private final HashMap<String, String> strings = new HashMap<>();
+
+	/**
+	 * Get the pooled instance of the value
+	 * 
+	 * @param value
+	 * @return
+	 */
+	public String get(String value) {
+
+		if (value == null)
+			return null;
+
+		String pooled = strings.putIfAbsent(value, value);
+
+		return pooled == null ? value : pooled;
+	}
+}
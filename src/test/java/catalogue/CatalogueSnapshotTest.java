@@ -0,0 +1,181 @@
+package catalogue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.sql.Timestamp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import catalogue_object.Applicability;
+import catalogue_object.Attribute;
+import catalogue_object.AttributeBuilder;
+import catalogue_object.Hierarchy;
+import catalogue_object.HierarchyBuilder;
+import catalogue_object.Term;
+import catalogue_object.TermAttribute;
+
+public class CatalogueSnapshotTest {
+
+	private static final Timestamp LAST_UPDATE = new Timestamp(1500000000000L);
+	private static final Timestamp VALID_FROM = Timestamp.valueOf("2017-07-14 02:40:00.123456789");
+
+	private File dbFolder;
+	private File snapshotFile;
+
+	@Before
+	public void init() throws IOException {
+
+		this.dbFolder = Files.createTempDirectory("snapshot").toFile();
+
+		// write the snapshot of a small catalogue
+		Catalogue catalogue = createCatalogue(LAST_UPDATE);
+
+		Hierarchy hierarchy = catalogue.getHierarchies().get(0);
+		Attribute attribute = catalogue.getAttributes().get(0);
+
+		Term root = new Term(catalogue, 1, "A0001", "Root", "Root label", "Root notes", "APPROVED", "1.0",
+				LAST_UPDATE, null, null, false);
+		Term child = new Term(catalogue, 2, "A0002", "Child", "Child label", null, "DEPRECATED", "1.0", null,
+				VALID_FROM, null, true);
+
+		root.addApplicability(new Applicability(root, hierarchy, hierarchy, 1, true));
+		child.addApplicability(new Applicability(child, root, hierarchy, 3, false));
+		child.addAttribute(new TermAttribute(7, child, attribute, "Bos taurus"));
+
+		catalogue.addTerm(root);
+		catalogue.addTerm(child);
+
+		CatalogueSnapshot snapshot = new CatalogueSnapshot(catalogue);
+
+		assertTrue(snapshot.write());
+		assertTrue(snapshot.exists());
+
+		this.snapshotFile = new File(dbFolder, "catalogue.snapshot");
+		assertTrue(snapshotFile.exists());
+	}
+
+	@After
+	public void clear() {
+
+		File[] files = dbFolder.listFiles();
+
+		if (files != null) {
+			for (File file : files)
+				file.delete();
+		}
+
+		dbFolder.delete();
+	}
+
+	/**
+	 * Create a catalogue in the temporary folder, with the hierarchies and the
+	 * attributes already loaded
+	 */
+	private Catalogue createCatalogue(Timestamp lastUpdate) {
+
+		CatalogueBuilder builder = new CatalogueBuilder();
+		builder.setCode("TEST");
+		builder.setVersion("1.0");
+		builder.setLastUpdate(lastUpdate);
+		builder.setTermCodeLength("5");
+		builder.setDbPath(dbFolder.getPath());
+		Catalogue catalogue = builder.build();
+
+		HierarchyBuilder hierBuilder = new HierarchyBuilder();
+		hierBuilder.setCatalogue(catalogue);
+		hierBuilder.setId(1);
+		hierBuilder.setCode("report");
+		hierBuilder.setName("Reporting hierarchy");
+		catalogue.getHierarchies().add(hierBuilder.build());
+
+		AttributeBuilder attrBuilder = new AttributeBuilder();
+		attrBuilder.setCatalogue(catalogue);
+		attrBuilder.setId(10);
+		attrBuilder.setCode("scientificNames");
+		attrBuilder.setName("scientificNames");
+		catalogue.getAttributes().add(attrBuilder.build());
+
+		return catalogue;
+	}
+
+	@Test
+	public void roundTrip() {
+
+		Catalogue catalogue = createCatalogue(LAST_UPDATE);
+		Hierarchy hierarchy = catalogue.getHierarchies().get(0);
+
+		assertTrue(new CatalogueSnapshot(catalogue).read());
+		assertEquals(2, catalogue.getTerms().size());
+
+		Term root = catalogue.getTermById(1);
+		assertEquals("A0001", root.getCode());
+		assertEquals("Root", root.getName());
+		assertEquals("Root label", root.getLabel());
+		assertEquals("Root notes", root.getScopenotes());
+		assertEquals(LAST_UPDATE, root.getLastUpdate());
+		assertNull(root.getValidFrom());
+		assertFalse(root.isDeprecated());
+
+		Term child = catalogue.getTermById(2);
+		assertNull(child.getScopenotes());
+		assertEquals("DEPRECATED", child.getStatus());
+		// the nanos are kept as in the database
+		assertEquals(VALID_FROM, child.getValidFrom());
+		assertEquals(123456789, child.getValidFrom().getNanos());
+		assertTrue(child.isDeprecated());
+
+		// the relations refer to the objects of the catalogue which is read
+		Applicability rootAppl = root.getApplicability(hierarchy);
+		assertSame(hierarchy, rootAppl.getParentTerm());
+		assertEquals(1, rootAppl.getOrder());
+		assertTrue(rootAppl.isReportable());
+
+		Applicability childAppl = child.getApplicability(hierarchy);
+		assertSame(root, childAppl.getParentTerm());
+		assertSame(hierarchy, childAppl.getHierarchy());
+		assertEquals(3, childAppl.getOrder());
+		assertFalse(childAppl.isReportable());
+
+		assertEquals(1, child.getAttributes().size());
+
+		TermAttribute ta = child.getAttributes().get(0);
+		assertEquals(7, ta.getId());
+		assertSame(catalogue.getAttributes().get(0), ta.getAttribute());
+		assertEquals("Bos taurus", ta.getValue());
+
+		assertTrue(root.getAttributes().isEmpty());
+	}
+
+	@Test
+	public void changedKeyIsNotRead() {
+
+		// the catalogue was updated after the snapshot was written
+		Catalogue catalogue = createCatalogue(new Timestamp(LAST_UPDATE.getTime() + 1));
+
+		assertFalse(new CatalogueSnapshot(catalogue).read());
+		assertTrue(catalogue.getTerms().isEmpty());
+	}
+
+	@Test
+	public void truncatedFileIsNotRead() throws IOException {
+
+		try (RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw");) {
+			file.setLength(file.length() - 6);
+		}
+
+		Catalogue catalogue = createCatalogue(LAST_UPDATE);
+
+		assertFalse(new CatalogueSnapshot(catalogue).read());
+		assertTrue(catalogue.getTerms().isEmpty());
+	}
+}
@@ -0,0 +1,216 @@
+package catalogue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import catalogue.TermChildrenIndex.TermPath;
+import catalogue_object.Applicability;
+import catalogue_object.Attribute;
+import catalogue_object.AttributeBuilder;
+import catalogue_object.Hierarchy;
+import catalogue_object.HierarchyBuilder;
+import catalogue_object.Nameable;
+import catalogue_object.Term;
+
+public class TermChildrenIndexTest {
+
+	private Catalogue catalogue;
+	private Hierarchy hierarchy;
+	private TermChildrenIndex index;
+
+	// A (B) are first level terms, C and D are children of A, E is child of C
+	private Term a;
+	private Term b;
+	private Term c;
+	private Term d;
+	private Term e;
+
+	private Collection<Applicability> appls;
+
+	@Before
+	public void init() {
+
+		this.catalogue = new Catalogue();
+		catalogue.setCode("TEST");
+
+		HierarchyBuilder builder = new HierarchyBuilder();
+		builder.setCatalogue(catalogue);
+		builder.setId(1);
+		builder.setCode("report");
+		builder.setName("Reporting hierarchy");
+		this.hierarchy = builder.build();
+
+		this.appls = new ArrayList<>();
+
+		this.a = createTerm(1, "A");
+		this.b = createTerm(2, "B");
+		this.c = createTerm(3, "C");
+		this.d = createTerm(4, "D");
+		this.e = createTerm(5, "E");
+
+		addApplicability(a, hierarchy, 1);
+		addApplicability(b, hierarchy, 2);
+		addApplicability(c, a, 1);
+		addApplicability(d, a, 2);
+		addApplicability(e, c, 1);
+
+		this.index = new TermChildrenIndex();
+		index.build(appls);
+	}
+
+	private Term createTerm(int id, String code) {
+		return new Term(catalogue, id, code, code, code, "", "APPROVED", "1.0", null, null, null, false);
+	}
+
+	private Applicability addApplicability(Term child, Nameable parent, int order) {
+
+		Applicability appl = new Applicability(child, parent, hierarchy, order, true);
+
+		child.addApplicability(appl);
+		appls.add(appl);
+
+		return appl;
+	}
+
+	private void move(Term term, Nameable newParent, int order) {
+
+		Applicability appl = term.getApplicability(hierarchy);
+		appl.setParentTerm(newParent);
+		appl.setOrder(order);
+
+		index.update(appl);
+	}
+
+	@Test
+	public void childrenSortedByOrder() {
+
+		assertTrue(index.isLoaded());
+		assertEquals(Arrays.asList(a, b), index.getChildren(hierarchy, hierarchy, false, false));
+		assertEquals(Arrays.asList(c, d), index.getChildren(a, hierarchy, false, false));
+		assertTrue(index.hasChildren(c, hierarchy, false, false));
+		assertFalse(index.hasChildren(e, hierarchy, false, false));
+	}
+
+	@Test
+	public void addAndRemoveApplicability() {
+
+		Term f = createTerm(6, "F");
+
+		long version = index.getVersion();
+
+		Applicability appl = new Applicability(f, b, hierarchy, 1, true);
+		f.addApplicability(appl);
+		index.add(appl);
+
+		assertEquals(Arrays.asList(f), index.getChildren(b, hierarchy, false, false));
+		assertTrue(index.getMembers(hierarchy).get(6));
+		assertTrue(index.hasAncestor(f, b, hierarchy));
+		assertTrue(index.getVersion() > version);
+
+		version = index.getVersion();
+
+		index.remove(appl);
+
+		assertTrue(index.getChildren(b, hierarchy, false, false).isEmpty());
+		assertFalse(index.getMembers(hierarchy).get(6));
+		assertFalse(index.hasAncestor(f, b, hierarchy));
+		assertTrue(index.getVersion() > version);
+	}
+
+	@Test
+	public void moveUpdatesAncestorsAndSubtrees() {
+
+		// build the numbering before the move
+		assertTrue(index.hasAncestor(e, a, hierarchy));
+		assertEquals(Arrays.asList(c, e, d), index.getSubtree(a, hierarchy));
+
+		move(c, b, 1);
+
+		assertEquals(Arrays.asList(d), index.getChildren(a, hierarchy, false, false));
+		assertEquals(Arrays.asList(c), index.getChildren(b, hierarchy, false, false));
+
+		assertFalse(index.hasAncestor(e, a, hierarchy));
+		assertTrue(index.hasAncestor(e, b, hierarchy));
+		assertTrue(index.hasAncestor(c, b, hierarchy));
+		assertFalse(index.hasAncestor(b, b, hierarchy));
+
+		assertEquals(Arrays.asList(d), index.getSubtree(a, hierarchy));
+		assertEquals(Arrays.asList(c, e), index.getSubtree(b, hierarchy));
+	}
+
+	@Test
+	public void pathsAfterMove() {
+
+		TermPath path = index.getPath(e, hierarchy);
+
+		assertEquals("0001.0001.0001", path.getCode());
+		assertEquals(3, path.getDepth());
+		assertEquals(Arrays.asList(a, c, e), path.getRootPath());
+
+		move(c, b, 3);
+
+		assertEquals("0002.0003", index.getPath(c, hierarchy).getCode());
+		assertEquals("0002.0003.0001", index.getPath(e, hierarchy).getCode());
+		assertEquals(Arrays.asList(b, c, e), index.getPath(e, hierarchy).getRootPath());
+
+		// the other terms are not affected
+		assertEquals("0001.0002", index.getPath(d, hierarchy).getCode());
+
+		// move to the first level
+		move(e, hierarchy, 3);
+
+		path = index.getPath(e, hierarchy);
+
+		assertEquals("0003", path.getCode());
+		assertEquals(1, path.getDepth());
+		assertEquals(Arrays.asList(e), path.getRootPath());
+	}
+
+	@Test
+	public void orderChangeKeepsVersion() {
+
+		long version = index.getVersion();
+
+		move(d, a, 5);
+
+		assertEquals(version, index.getVersion());
+		assertEquals("0001.0005", index.getPath(d, hierarchy).getCode());
+		assertEquals(Arrays.asList(c, d), index.getChildren(a, hierarchy, false, false));
+	}
+
+	@Test
+	public void versionBumpClearsImplicitFacetsCache() {
+
+		AttributeBuilder builder = new AttributeBuilder();
+		builder.setCatalogue(catalogue);
+		builder.setId(7);
+		builder.setCode("process");
+		builder.setName("process");
+		Attribute category = builder.build();
+
+		ImplicitFacetsCache cache = new ImplicitFacetsCache(index);
+
+		assertNull(cache.get(e, category));
+
+		cache.put(e, category, new ArrayList<>(), cache.getGeneration());
+		assertNotNull(cache.get(e, category));
+
+		// only the order changed, the facets are kept
+		move(d, a, 5);
+		assertNotNull(cache.get(e, category));
+
+		// the parent changed, all the facets are discarded
+		move(c, b, 1);
+		assertNull(cache.get(e, category));
+	}
+}
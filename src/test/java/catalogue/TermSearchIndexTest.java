@@ -0,0 +1,168 @@
+package catalogue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import catalogue_object.Attribute;
+import catalogue_object.AttributeBuilder;
+import catalogue_object.Term;
+import catalogue_object.TermAttribute;
+
+public class TermSearchIndexTest {
+
+	private Catalogue catalogue;
+	private Attribute scientificName;
+	private TermSearchIndex index;
+
+	private Term goatMilk;
+	private Term cowMilk;
+	private Term buttermilk;
+	private Term milk;
+	private Term sheep;
+
+	private Collection<Integer> attrIds;
+
+	@Before
+	public void init() {
+
+		this.catalogue = new Catalogue();
+		catalogue.setCode("TEST");
+
+		AttributeBuilder builder = new AttributeBuilder();
+		builder.setCatalogue(catalogue);
+		builder.setId(10);
+		builder.setCode("scientificNames");
+		builder.setName("scientificNames");
+		this.scientificName = builder.build();
+
+		this.goatMilk = createTerm(1, "A0001", "Goat milk");
+		this.cowMilk = createTerm(2, "A0002", "Cow milk");
+		this.buttermilk = createTerm(3, "A0003", "Buttermilk");
+		this.milk = createTerm(4, "A0004", "Milk");
+		this.sheep = createTerm(5, "A0005", "Sheep");
+
+		sheep.addAttribute(new TermAttribute(sheep, scientificName, "Ovis aries"));
+
+		this.attrIds = Arrays.asList(scientificName.getId());
+
+		this.index = new TermSearchIndex();
+		index.build(Arrays.asList(goatMilk, cowMilk, buttermilk, milk, sheep));
+	}
+
+	private Term createTerm(int id, String code, String name) {
+		return new Term(catalogue, id, code, name, name, "", "APPROVED", "1.0", null, null, null, false);
+	}
+
+	/**
+	 * Search as the SearchDAO does: the text is split in words unless an exact
+	 * match is required
+	 */
+	private List<Integer> search(String text, boolean allWords, boolean exactMatch) {
+
+		List<String> keywords = exactMatch ? Collections.singletonList(text) : Arrays.asList(text.split(" "));
+
+		return index.search(keywords, allWords, attrIds);
+	}
+
+	@Test
+	public void anyWord() {
+
+		List<Integer> ids = search("goat milk", false, false);
+
+		assertEquals(4, ids.size());
+		assertTrue(ids.containsAll(Arrays.asList(1, 2, 3, 4)));
+
+		// the name which contains both the words first
+		assertEquals(Integer.valueOf(1), ids.get(0));
+	}
+
+	@Test
+	public void allWords() {
+		assertEquals(Arrays.asList(1), search("milk goat", true, false));
+	}
+
+	@Test
+	public void exactMatch() {
+		assertEquals(Arrays.asList(1), search("goat milk", false, true));
+		assertTrue(search("milk goat", false, true).isEmpty());
+	}
+
+	@Test
+	public void rankingOrder() {
+
+		// whole name, then shortest name, then alphabetical, then the
+		// keyword in the middle of a word
+		assertEquals(Arrays.asList(4, 2, 1, 3), search("milk", false, false));
+
+		// code equal to the keyword first
+		assertEquals(Integer.valueOf(2), search("a0002", false, false).get(0));
+	}
+
+	@Test
+	public void prefixAndInfixMatches() {
+
+		// prefix of a word
+		assertEquals(Arrays.asList(1), search("goa", false, false));
+
+		// no word starts with the keyword, the words are scanned
+		assertEquals(Arrays.asList(3), search("uttermil", false, false));
+	}
+
+	@Test
+	public void infixMatchesWithPrefixMatches() {
+
+		// other words start with the keyword, the infix is found anyway
+		assertTrue(search("milk", false, false).contains(3));
+		assertEquals(Arrays.asList(3), search("milk butter", true, false));
+	}
+
+	@Test
+	public void searchableAttributes() {
+
+		assertEquals(Arrays.asList(5), search("ovis", false, false));
+
+		List<Integer> ids = index.search(Arrays.asList("ovis"), false, new ArrayList<Integer>());
+		assertTrue(ids.isEmpty());
+	}
+
+	@Test
+	public void updateAfterTermChange() {
+
+		// as done by TermDAO.update once the term is saved
+		cowMilk.setName("Cow cream");
+		index.update(cowMilk);
+
+		assertEquals(Arrays.asList(2), search("cream", false, false));
+		assertEquals(Arrays.asList(4, 1, 3), search("milk", false, false));
+	}
+
+	@Test
+	public void updateAfterAttributeChanges() {
+
+		TermAttribute ta = new TermAttribute(goatMilk, scientificName, "Capra hircus");
+		goatMilk.addAttribute(ta);
+		index.addAttribute(ta);
+
+		assertEquals(Arrays.asList(1), search("capra", false, false));
+
+		ta.setValue("Capra aegagrus");
+		index.updateAttribute(ta);
+
+		assertEquals(Arrays.asList(1), search("aegagrus", false, false));
+		assertTrue(search("hircus", false, false).isEmpty());
+
+		index.removeAttributes(goatMilk);
+
+		assertTrue(search("capra", false, false).isEmpty());
+		assertEquals(Arrays.asList(1), search("goat", false, false));
+	}
+}
@@ -0,0 +1,208 @@
+package import_catalogue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import catalogue.Catalogue;
+import catalogue_object.Applicability;
+import catalogue_object.Attribute;
+import catalogue_object.AttributeBuilder;
+import catalogue_object.Hierarchy;
+import catalogue_object.HierarchyBuilder;
+import catalogue_object.Term;
+import catalogue_object.TermAttribute;
+import import_catalogue.CatalogueDiff.TermChange;
+
+public class CatalogueDiffTest {
+
+	private Catalogue previousCat;
+	private Catalogue newCat;
+
+	private Hierarchy hierarchy;
+	private Attribute attribute;
+
+	private Term root;
+	private Term child;
+	private Term removed;
+
+	private CatalogueDiff diff;
+
+	@Before
+	public void init() {
+
+		this.previousCat = new Catalogue();
+		previousCat.setCode("TEST");
+		previousCat.setVersion("1.0");
+
+		this.newCat = new Catalogue();
+		newCat.setCode("TEST");
+		newCat.setVersion("1.1");
+
+		// the copied database keeps the ids of hierarchies and attributes
+		HierarchyBuilder hierBuilder = new HierarchyBuilder();
+		hierBuilder.setCatalogue(previousCat);
+		hierBuilder.setId(1);
+		hierBuilder.setCode("report");
+		hierBuilder.setName("Reporting hierarchy");
+		this.hierarchy = hierBuilder.build();
+
+		AttributeBuilder attrBuilder = new AttributeBuilder();
+		attrBuilder.setCatalogue(previousCat);
+		attrBuilder.setId(10);
+		attrBuilder.setCode("scientificNames");
+		attrBuilder.setName("scientificNames");
+		this.attribute = attrBuilder.build();
+
+		// previous version: root > child, plus a term removed in the new version
+		this.root = createTerm(previousCat, 100, "A0001", "Root");
+		this.child = createTerm(previousCat, 101, "A0002", "Child");
+		this.removed = createTerm(previousCat, 102, "A0003", "Removed");
+
+		root.addApplicability(new Applicability(root, hierarchy, hierarchy, 1, true));
+		child.addApplicability(new Applicability(child, root, hierarchy, 1, true));
+		removed.addApplicability(new Applicability(removed, hierarchy, hierarchy, 2, true));
+
+		child.addAttribute(new TermAttribute(child, attribute, "Bos taurus"));
+		child.addAttribute(new TermAttribute(child, attribute, "Bos primigenius"));
+
+		this.diff = new CatalogueDiff();
+		diff.addPreviousTerm(root);
+		diff.addPreviousTerm(child);
+		diff.addPreviousTerm(removed);
+	}
+
+	private static Term createTerm(Catalogue catalogue, int id, String code, String name) {
+		return new Term(catalogue, id, code, name, name, "", "APPROVED", "1.0", null, null, null, false);
+	}
+
+	@Test
+	public void newTerm() {
+
+		Term term = createTerm(newCat, -1, "A0004", "New term");
+
+		assertEquals(TermChange.NEW, diff.compareTerm(term));
+
+		// new terms get their id from the database
+		assertEquals(-1, term.getId());
+	}
+
+	@Test
+	public void unchangedTermGetsPreviousId() {
+
+		Term term = createTerm(newCat, -1, "A0001", "Root");
+
+		assertEquals(TermChange.UNCHANGED, diff.compareTerm(term));
+		assertEquals(100, term.getId());
+	}
+
+	@Test
+	public void changedTerm() {
+
+		Term term = createTerm(newCat, -1, "A0002", "Child renamed");
+
+		assertEquals(TermChange.CHANGED, diff.compareTerm(term));
+		assertEquals(101, term.getId());
+
+		Term deprecated = createTerm(newCat, -1, "A0001", "Root");
+		deprecated.setDeprecated(true);
+
+		assertEquals(TermChange.CHANGED, diff.compareTerm(deprecated));
+	}
+
+	@Test
+	public void missingTermsAreDeprecated() {
+
+		diff.compareTerm(createTerm(newCat, -1, "A0001", "Root"));
+		diff.compareTerm(createTerm(newCat, -1, "A0002", "Child"));
+
+		Collection<Term> missing = diff.getMissingTerms();
+
+		assertEquals(1, missing.size());
+
+		Term term = missing.iterator().next();
+		assertEquals("A0003", term.getCode());
+		assertTrue(term.isDeprecated());
+	}
+
+	@Test
+	public void alreadyDeprecatedTermsAreNotUpdated() {
+
+		removed.setDeprecated(true);
+
+		diff.compareTerm(createTerm(newCat, -1, "A0001", "Root"));
+		diff.compareTerm(createTerm(newCat, -1, "A0002", "Child"));
+
+		assertTrue(diff.getMissingTerms().isEmpty());
+	}
+
+	@Test
+	public void sameRelationsInAnotherOrder() {
+
+		Term term = createTerm(newCat, 101, "A0002", "Child");
+
+		Collection<TermAttribute> tas = new ArrayList<>();
+		tas.add(new TermAttribute(term, attribute, "Bos primigenius"));
+		tas.add(new TermAttribute(term, attribute, "Bos taurus"));
+
+		Collection<Applicability> appls = new ArrayList<>();
+		appls.add(new Applicability(term, root, hierarchy, 1, true));
+
+		assertFalse(diff.relationsChanged(101, tas, appls));
+	}
+
+	@Test
+	public void changedAttributeValue() {
+
+		Term term = createTerm(newCat, 101, "A0002", "Child");
+
+		Collection<TermAttribute> tas = new ArrayList<>();
+		tas.add(new TermAttribute(term, attribute, "Bos taurus"));
+		tas.add(new TermAttribute(term, attribute, "Bos indicus"));
+
+		Collection<Applicability> appls = new ArrayList<>();
+		appls.add(new Applicability(term, root, hierarchy, 1, true));
+
+		assertTrue(diff.relationsChanged(101, tas, appls));
+	}
+
+	@Test
+	public void changedApplicabilityOrder() {
+
+		Term term = createTerm(newCat, 100, "A0001", "Root");
+
+		Collection<Applicability> appls = new ArrayList<>();
+		appls.add(new Applicability(term, hierarchy, hierarchy, 2, true));
+
+		assertTrue(diff.relationsChanged(100, new ArrayList<>(), appls));
+	}
+
+	@Test
+	public void rootParentAndTermParentAreDifferent() {
+
+		Term term = createTerm(newCat, 102, "A0003", "Removed");
+
+		// same position, the hierarchy is still the parent
+		Collection<Applicability> appls = new ArrayList<>();
+		appls.add(new Applicability(term, hierarchy, hierarchy, 2, true));
+
+		assertFalse(diff.relationsChanged(102, new ArrayList<>(), appls));
+
+		// moved under a term of the hierarchy
+		appls.clear();
+		appls.add(new Applicability(term, root, hierarchy, 2, true));
+
+		assertTrue(diff.relationsChanged(102, new ArrayList<>(), appls));
+	}
+
+	@Test
+	public void newTermRelationsAreAlwaysAdded() {
+		assertTrue(diff.relationsChanged(999, new ArrayList<>(), new ArrayList<>()));
+	}
+}
@@ -0,0 +1,81 @@
+package term_code_generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import catalogue.Catalogue;
+
+public class TermCodeAllocatorTest {
+
+	/**
+	 * Allocator which reads the maximum code from memory instead of the
+	 * database
+	 */
+	private static class AllocatorMock extends TermCodeAllocator {
+
+		private final String maxCode;
+		private int reads;
+
+		public AllocatorMock(String codeMask, String maxCode) {
+			super(new Catalogue(), codeMask);
+			this.maxCode = maxCode;
+		}
+
+		@Override
+		String readMaxCode() throws TermCodeException {
+			reads++;
+			return maxCode;
+		}
+	}
+
+	@Test
+	public void consecutiveCodes() throws TermCodeException {
+
+		AllocatorMock allocator = new AllocatorMock("A####", "0041");
+
+		assertEquals(Arrays.asList("A0042", "A0043", "A0044"), allocator.next(3));
+		assertEquals("A0045", allocator.next());
+
+		// the maximum code is read only once
+		assertEquals(1, allocator.reads);
+	}
+
+	@Test
+	public void carryBetweenSegments() throws TermCodeException {
+
+		AllocatorMock allocator = new AllocatorMock("X@#Y#", "A99");
+
+		assertEquals(Arrays.asList("XB0Y0", "XB0Y1"), allocator.next(2));
+	}
+
+	@Test
+	public void emptyTableStartsFromInitialCode() throws TermCodeException {
+
+		AllocatorMock allocator = new AllocatorMock("A####", null);
+
+		assertEquals(Arrays.asList("A0001", "A0002"), allocator.next(2));
+	}
+
+	@Test
+	public void overflowAtMaximumCode() throws TermCodeException {
+
+		AllocatorMock allocator = new AllocatorMock("A##", "97");
+
+		assertEquals(Arrays.asList("A98", "A99"), allocator.next(2));
+
+		try {
+			allocator.next();
+			fail("The maximum code of the mask was reached");
+		} catch (TermCodeException e) {
+		}
+	}
+
+	@Test(expected = TermCodeException.class)
+	public void rangeOverflowingTheMask() throws TermCodeException {
+		new AllocatorMock("A##", "97").next(3);
+	}
+}